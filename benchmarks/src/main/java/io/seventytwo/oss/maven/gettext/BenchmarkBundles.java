@@ -0,0 +1,139 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.logging.Logger;
+import org.codehaus.plexus.logging.console.ConsoleLogger;
+import org.codehaus.plexus.util.FileUtils;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates synthetic catalogs and runs the dist goal on them. Lives in the package of the plugin to
+ * configure the goal like Maven does. The formats "class", "properties" and "java" run msgfmt and
+ * msgcat, which have to be on the PATH or set with the system properties gettext.msgfmt and
+ * gettext.msgcat. "compressed" and "shared", the class format with a shared string pool, are
+ * generated in-process.
+ */
+public final class BenchmarkBundles {
+
+    /**
+     * Base name of the generated bundles
+     */
+    public static final String BUNDLE = "bench.Messages";
+
+    /**
+     * Locale of the generated bundles
+     */
+    public static final String LOCALE = "de";
+
+    private static final String[] WORDS = {"file", "Datei", "übersetzt", "window", "Fenster", "größer",
+            "message", "Nachricht", "schließen", "open", "öffnen", "save", "speichern", "{0}", "%s"};
+
+    private BenchmarkBundles() {
+    }
+
+    /**
+     * Keys of a synthetic catalog
+     *
+     * @param singular msgids of singular messages
+     * @param plural   msgids of plural messages
+     */
+    public record Keys(String[] singular, String[] plural) {
+    }
+
+    /**
+     * Writes a German de.po file. Every tenth message has a plural form, messages are between a
+     * few and about fifty words long and contain non-ascii characters.
+     *
+     * @param poDirectory directory of the po file
+     * @param messages    number of messages
+     * @param seed        seed of the generated words
+     * @return keys of the messages
+     * @throws IOException if the file cannot be written
+     */
+    public static Keys writeCatalog(File poDirectory, int messages, long seed) throws IOException {
+        Random random = new Random(seed);
+        List<String> singular = new ArrayList<>();
+        List<String> plural = new ArrayList<>();
+        StringBuilder sb = new StringBuilder("""
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+                "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+                """);
+        for (int i = 0; i < messages; i++) {
+            String msgid = "Message %d %s".formatted(i, words(random));
+            if (i % 10 == 0) {
+                sb.append("msgid \"%s\"\nmsgid_plural \"%s\"\nmsgstr[0] \"%s\"\nmsgstr[1] \"%s\"\n\n".formatted(
+                        msgid, msgid + " (plural)", "Eine " + words(random), "Viele " + words(random)));
+                plural.add(msgid);
+            } else {
+                sb.append("msgid \"%s\"\nmsgstr \"%s\"\n\n".formatted(msgid, "Nachricht " + words(random)));
+                singular.add(msgid);
+            }
+        }
+        FileUtils.forceMkdir(poDirectory);
+        FileUtils.fileWrite(new File(poDirectory, LOCALE + ".po"), StandardCharsets.UTF_8.name(), sb.toString());
+        return new Keys(singular.toArray(new String[0]), plural.toArray(new String[0]));
+    }
+
+    private static String words(Random random) {
+        int count = 2 + (int) Math.abs(random.nextGaussian() * 10);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < Math.min(count, 50); i++) {
+            if (i > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Runs the dist goal and, for the java format, compiles the generated sources in place
+     *
+     * @param format          class, properties, java, compressed or shared
+     * @param poDirectory     directory of the po files
+     * @param outputDirectory directory of the bundles
+     * @throws MojoExecutionException if the bundles cannot be generated
+     */
+    public static void dist(String format, File poDirectory, File outputDirectory) throws MojoExecutionException {
+        Log log = new DefaultLog(new ConsoleLogger(Logger.LEVEL_WARN, "dist"));
+        DistMojo mojo = new DistMojo();
+        mojo.setLog(log);
+        mojo.buildContext = new DefaultBuildContext();
+        mojo.poDirectory = poDirectory;
+        mojo.outputDirectory = outputDirectory;
+        mojo.targetBundle = BUNDLE;
+        mojo.outputFormat = "shared".equals(format) ? "class" : format;
+        mojo.sharedStringPool = "shared".equals(format);
+        mojo.msgfmtCmd = System.getProperty("gettext.msgfmt", "msgfmt");
+        mojo.msgcatCmd = System.getProperty("gettext.msgcat", "msgcat");
+        mojo.javaVersion = "2";
+        mojo.sourceLocale = "en";
+        mojo.encoding = "utf-8";
+        mojo.release = "17";
+        mojo.compressionBlockSize = 16384;
+        mojo.compressionCacheBlocks = 8;
+        mojo.keywords = "-ktr";
+        mojo.execute();
+
+        if ("java".equals(format)) {
+            try {
+                List<File> sources = FileUtils.getFiles(outputDirectory, "**/*.java", null);
+                JavaSourceCompiler.compile(sources, outputDirectory, StandardCharsets.UTF_8, "17", log);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to find generated sources", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package io.seventytwo.oss.maven.gettext.benchmarks;
+
+import io.seventytwo.oss.maven.gettext.BenchmarkBundles;
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Locale;
+import java.util.ResourceBundle;
+
+/**
+ * Bundles generated by the dist goal from a synthetic catalog, shared by all threads of a benchmark.
+ */
+@State(Scope.Benchmark)
+public class BundleState {
+
+    private static final ResourceBundle.Control NO_FALLBACK = ResourceBundle.Control.getNoFallbackControl(ResourceBundle.Control.FORMAT_DEFAULT);
+    private static final Locale LOCALE = Locale.forLanguageTag(BenchmarkBundles.LOCALE);
+    private static final String BUNDLE_CLASS = BenchmarkBundles.BUNDLE + "_" + BenchmarkBundles.LOCALE;
+
+    /**
+     * Output format of the dist goal, "shared" is the class format with a shared string pool.
+     */
+    @Param({"class", "properties", "java", "compressed", "shared"})
+    public String format;
+
+    /**
+     * Number of messages of the catalog.
+     */
+    @Param({"2000", "50000"})
+    public int messages;
+
+    File directory;
+    URL classpath;
+    String[] keys;
+    String[] pluralKeys;
+    ResourceBundle bundle;
+    private MethodHandle lookup;
+    private MethodHandle pluralEval;
+
+    @Setup(Level.Trial)
+    public void generate() throws Exception {
+        directory = Files.createTempDirectory("gettext-benchmark").toFile();
+        File output = new File(directory, "classes");
+        BenchmarkBundles.Keys generated = BenchmarkBundles.writeCatalog(new File(directory, "po"), messages, 42);
+        BenchmarkBundles.dist(format, new File(directory, "po"), output);
+        classpath = output.toURI().toURL();
+        keys = generated.singular();
+        pluralKeys = generated.plural();
+
+        bundle = loadBundle(newLoader());
+        // the bundles of msgfmt and the plugin provide the lookup and pluralEval methods Gettext Commons uses
+        MethodHandles.Lookup publicLookup = MethodHandles.publicLookup();
+        try {
+            lookup = publicLookup.findVirtual(bundle.getClass(), "lookup", MethodType.methodType(Object.class, String.class));
+            pluralEval = publicLookup.findStatic(bundle.getClass(), "pluralEval", MethodType.methodType(long.class, long.class));
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            // properties bundles hold the singular form only
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        FileUtils.deleteDirectory(directory);
+    }
+
+    /**
+     * Returns a class loader that has not loaded the bundle yet
+     *
+     * @return class loader
+     */
+    ClassLoader newLoader() {
+        return new URLClassLoader(new URL[]{classpath}, BundleState.class.getClassLoader());
+    }
+
+    /**
+     * Loads the bundle class without initializing it, or reads the properties file
+     *
+     * @param loader class loader
+     * @return class or file content
+     * @throws Exception if the bundle cannot be loaded
+     */
+    Object load(ClassLoader loader) throws Exception {
+        if ("properties".equals(format)) {
+            try (InputStream in = loader.getResourceAsStream(BUNDLE_CLASS.replace('.', '/') + ".properties")) {
+                return in.readAllBytes();
+            }
+        }
+        return Class.forName(BUNDLE_CLASS, false, loader);
+    }
+
+    /**
+     * Loads and initializes the bundle
+     *
+     * @param loader class loader
+     * @return bundle
+     */
+    ResourceBundle loadBundle(ClassLoader loader) {
+        return ResourceBundle.getBundle(BenchmarkBundles.BUNDLE, LOCALE, loader, NO_FALLBACK);
+    }
+
+    /**
+     * Looks up a plural message like Gettext Commons does
+     *
+     * @param msgid msgid
+     * @param n     number
+     * @return translation
+     */
+    String plural(String msgid, long n) {
+        if (lookup == null) {
+            return bundle.getString(msgid);
+        }
+        try {
+            Object value = lookup.invoke(bundle, msgid);
+            if (value instanceof String[] forms) {
+                return forms[(int) (long) pluralEval.invoke(n)];
+            }
+            return (String) value;
+        } catch (Throwable e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
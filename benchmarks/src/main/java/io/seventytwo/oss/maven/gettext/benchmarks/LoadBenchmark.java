@@ -0,0 +1,49 @@
+package io.seventytwo.oss.maven.gettext.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start of a bundle: every invocation uses a new class loader, so the class is loaded and
+ * initialized again.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(5)
+public class LoadBenchmark {
+
+    /**
+     * Loads the bundle class without running its static initializer, reads the file of properties
+     * bundles
+     */
+    @Benchmark
+    public Object load(BundleState state) throws Exception {
+        return state.load(state.newLoader());
+    }
+
+    /**
+     * Loads and initializes the bundle through ResourceBundle.getBundle
+     */
+    @Benchmark
+    public ResourceBundle initialize(BundleState state) {
+        return state.loadBundle(state.newLoader());
+    }
+
+    /**
+     * Time to the first translated string
+     */
+    @Benchmark
+    public String firstLookup(BundleState state) {
+        return state.loadBundle(state.newLoader()).getString(state.keys[0]);
+    }
+}
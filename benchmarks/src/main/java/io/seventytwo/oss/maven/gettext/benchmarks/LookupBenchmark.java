@@ -0,0 +1,100 @@
+package io.seventytwo.oss.maven.gettext.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in an initialized bundle, by a single thread and by as many threads as there are cores.
+ * Throughput and the latency distribution are reported for each.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 2)
+@Fork(2)
+public class LookupBenchmark {
+
+    /**
+     * Position in a shuffled order of the keys, per thread so threads do not share a cache line
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+
+        private int[] order;
+        private int[] pluralOrder;
+        private int next;
+        private int nextPlural;
+
+        @Setup(Level.Trial)
+        public void shuffle(BundleState state) {
+            Random random = new Random(Thread.currentThread().getId());
+            order = shuffled(state.keys.length, random);
+            pluralOrder = shuffled(state.pluralKeys.length, random);
+        }
+
+        private static int[] shuffled(int length, Random random) {
+            int[] order = new int[length];
+            for (int i = 0; i < length; i++) {
+                order[i] = i;
+            }
+            for (int i = length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                int swap = order[i];
+                order[i] = order[j];
+                order[j] = swap;
+            }
+            return order;
+        }
+
+        String key(BundleState state) {
+            if (next == order.length) {
+                next = 0;
+            }
+            return state.keys[order[next++]];
+        }
+
+        String pluralKey(BundleState state) {
+            if (nextPlural == pluralOrder.length) {
+                nextPlural = 0;
+            }
+            return state.pluralKeys[pluralOrder[nextPlural++]];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String getString(BundleState state, Cursor cursor) {
+        return state.bundle.getString(cursor.key(state));
+    }
+
+    @Benchmark
+    @Threads(1)
+    public String plural(BundleState state, Cursor cursor) {
+        return state.plural(cursor.pluralKey(state), cursor.nextPlural);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String getStringContended(BundleState state, Cursor cursor) {
+        return state.bundle.getString(cursor.key(state));
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String pluralContended(BundleState state, Cursor cursor) {
+        return state.plural(cursor.pluralKey(state), cursor.nextPlural);
+    }
+}
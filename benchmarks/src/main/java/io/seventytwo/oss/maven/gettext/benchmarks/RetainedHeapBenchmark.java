@@ -0,0 +1,75 @@
+package io.seventytwo.oss.maven.gettext.benchmarks;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ResourceBundle;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Heap retained by a loaded bundle after every key has been looked up once, reported as the
+ * retainedBytes counter. The time of the benchmark includes the garbage collections and is not
+ * meaningful.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(3)
+public class RetainedHeapBenchmark {
+
+    /**
+     * Heap usage of the last iteration
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Heap {
+
+        /**
+         * Bytes of used heap the bundle added
+         */
+        public long retainedBytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            retainedBytes = 0;
+        }
+    }
+
+    @Benchmark
+    public ResourceBundle retained(BundleState state, Heap heap) {
+        ClassLoader loader = state.newLoader();
+        long before = usedHeap();
+        ResourceBundle bundle = state.loadBundle(loader);
+        for (String key : state.keys) {
+            bundle.getString(key);
+        }
+        for (String key : state.pluralKeys) {
+            bundle.getObject(key);
+        }
+        heap.retainedBytes = usedHeap() - before;
+        // returned to keep the bundle reachable until after the measurement
+        return bundle;
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // repeated until the collections settle, System.gc() is only a hint
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
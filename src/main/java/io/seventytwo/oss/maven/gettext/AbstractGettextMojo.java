@@ -1,15 +1,28 @@
 package io.seventytwo.oss.maven.gettext;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Supplier;
 
 import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.Scanner;
+import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
  * Base class with generally used parameters
  */
 public abstract class AbstractGettextMojo extends AbstractMojo {
 
+    /**
+     * Header fields the tools set to the time or to their version.
+     */
+    protected static final List<String> VOLATILE_HEADERS = List.of("POT-Creation-Date", "PO-Revision-Date", "X-Generator");
+
     /**
      * The output directory for generated class or properties files.
      */
@@ -57,4 +70,245 @@ public abstract class AbstractGettextMojo extends AbstractMojo {
      */
     @Parameter(required = true, defaultValue = "false")
     protected boolean printPOTCreationDate;
+
+    /**
+     * Produce identical output files for identical inputs, so they can be cached and deduplicated.
+     * Generated pot files lose the POT-Creation-Date, PO-Revision-Date and X-Generator headers and
+     * the line numbers of their source references, merged .po files lose the POT-Creation-Date header
+     * and generated bundles do not contain the volatile headers. Files are processed in sorted order.
+     */
+    @Parameter(property = "gettext.reproducible", defaultValue = "false")
+    protected boolean reproducible;
+
+    /**
+     * Keep scanned file sets and parsed .po files in memory for the next build of a long-lived JVM,
+     * like the Maven daemon. Entries are reused only while the files are unchanged.
+     */
+    @Parameter(property = "gettext.reuseState", defaultValue = "false")
+    protected boolean reuseState;
+
+    /**
+     * Restore tool outputs from a local cache shared by all builds of the machine instead of running
+     * the tools again for the same input files, tool versions and parameters.
+     */
+    @Parameter(property = "gettext.buildCache", defaultValue = "false")
+    protected boolean buildCache;
+
+    /**
+     * Directory of the build cache.
+     */
+    @Parameter(property = "gettext.buildCacheDirectory", defaultValue = "${user.home}/.m2/gettext-cache")
+    protected File buildCacheDirectory;
+
+    /**
+     * Size in megabytes the build cache is kept at, the least recently used entries are evicted first.
+     */
+    @Parameter(property = "gettext.buildCacheSize", defaultValue = "256")
+    protected long buildCacheSize;
+
+    /**
+     * Directory the complete output of the gettext tools is written to, one file per tool.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/gettext-logs")
+    protected File toolLogDirectory;
+
+    /**
+     * Number of distinct messages of the gettext tools that are logged. Repeated messages are
+     * counted, the complete output is written to the toolLogDirectory.
+     */
+    @Parameter(property = "gettext.toolOutputSummary", defaultValue = "20")
+    protected int toolOutputSummary = 20;
+
+    /**
+     * Build context of IDE builds, a context doing full builds otherwise.
+     */
+    @Component
+    protected BuildContext buildContext;
+
+    /**
+     * Creates the mojo of another goal run by this goal, taking the parameters all goals share. The
+     * caller sets the parameters of the goal itself.
+     *
+     * @param factory creates the mojo
+     * @param <T>     type of the mojo
+     * @return mojo
+     */
+    protected <T extends AbstractGettextMojo> T createGoal(Supplier<T> factory) {
+        T mojo = factory.get();
+        mojo.setLog(getLog());
+        mojo.outputDirectory = outputDirectory;
+        mojo.sourceDirectory = sourceDirectory;
+        mojo.poDirectory = poDirectory;
+        mojo.keysFile = keysFile;
+        mojo.extraArgs = extraArgs;
+        mojo.includes = includes;
+        mojo.excludes = excludes;
+        mojo.printPOTCreationDate = printPOTCreationDate;
+        mojo.reproducible = reproducible;
+        mojo.reuseState = reuseState;
+        mojo.buildCache = buildCache;
+        mojo.buildCacheDirectory = buildCacheDirectory;
+        mojo.buildCacheSize = buildCacheSize;
+        mojo.toolLogDirectory = toolLogDirectory;
+        mojo.toolOutputSummary = toolOutputSummary;
+        mojo.buildContext = buildContext;
+        return mojo;
+    }
+
+    /**
+     * Creates the build cache if it is enabled
+     *
+     * @return cache or null
+     */
+    protected OutputCache newOutputCache() {
+        return buildCache ? new OutputCache(buildCacheDirectory, buildCacheSize * 1024 * 1024) : null;
+    }
+
+    /**
+     * Starts a build cache key with the version of the tool, the goal and the extra arguments
+     *
+     * @param cache   build cache, may be null
+     * @param goal    goal
+     * @param command tool
+     * @return key or null if there is no cache or the tool version is unknown
+     */
+    protected OutputCache.Key newCacheKey(OutputCache cache, String goal, String command) {
+        if (cache == null) {
+            return null;
+        }
+        String version = OutputCache.getToolVersion(command);
+        if (version == null) {
+            getLog().debug("Unable to determine the version of %s, not using the build cache".formatted(command));
+            return null;
+        }
+        OutputCache.Key key = OutputCache.key().add(goal).add(version).add(String.valueOf(printPOTCreationDate))
+                .add(String.valueOf(reproducible));
+        for (String arg : extraArgs) {
+            key.add(arg);
+        }
+        return key;
+    }
+
+    /**
+     * Creates the collector of the output of a tool
+     *
+     * @param tool tool name, used as name of the log file
+     * @return collector
+     */
+    protected ToolOutput newToolOutput(String tool) {
+        File logFile = toolLogDirectory == null ? null : new File(toolLogDirectory, tool + ".log");
+        return new ToolOutput(logFile, toolOutputSummary);
+    }
+
+    /**
+     * Creates a tracker that refreshes the outputs it modifies in the build context
+     *
+     * @return tracker
+     */
+    protected OutputTracker newOutputTracker() {
+        return new OutputTracker(buildContext::refresh);
+    }
+
+    /**
+     * Returns true if this is not an incremental build or if files below a directory were changed or
+     * deleted since the last build
+     *
+     * @param basedir  directory
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return has changes
+     */
+    protected boolean hasDelta(File basedir, String[] includes, String[] excludes) {
+        if (!buildContext.isIncremental()) {
+            return true;
+        }
+        return getDelta(buildContext.newScanner(basedir), includes, excludes).length > 0
+                || getDelta(buildContext.newDeleteScanner(basedir), includes, excludes).length > 0;
+    }
+
+    /**
+     * Returns the files an incremental build scanner reports as changed
+     *
+     * @param scanner  scanner of the build context
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return changed files relative to the scanned directory
+     */
+    protected String[] getDelta(Scanner scanner, String[] includes, String[] excludes) {
+        scanner.setIncludes(includes);
+        if (excludes != null && excludes.length > 0) {
+            scanner.setExcludes(excludes);
+        }
+        scanner.scan();
+        return scanner.getIncludedFiles();
+    }
+
+    /**
+     * Scans a directory using the includes and excludes, if set
+     *
+     * @param basedir        directory
+     * @param defaultInclude include pattern used if no includes are set
+     * @return included files relative to the directory
+     * @throws MojoExecutionException if the directory cannot be scanned
+     */
+    protected String[] scan(File basedir, String defaultInclude) throws MojoExecutionException {
+        String[] patterns = includes != null && includes.length > 0 ? includes : new String[]{defaultInclude};
+        return scan(basedir, patterns, excludes);
+    }
+
+    /**
+     * Scans a directory, reusing an earlier scan if reuseState is set
+     *
+     * @param basedir  directory
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return included files relative to the directory
+     * @throws MojoExecutionException if the directory cannot be scanned
+     */
+    protected String[] scan(File basedir, String[] includes, String[] excludes) throws MojoExecutionException {
+        String[] files;
+        if (!reuseState) {
+            files = BuildState.scanDirectory(basedir, includes, excludes);
+        } else {
+            try {
+                files = BuildState.scan(basedir, includes, excludes);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to scan " + basedir, e);
+            }
+        }
+        if (reproducible) {
+            // the order of directory listings depends on the file system, reused scans are shared
+            files = files.clone();
+            Arrays.sort(files);
+        }
+        return files;
+    }
+
+    /**
+     * Removes the POT-Creation-Date header from a file written by a tool unless it should be printed.
+     * Reproducible builds remove the line numbers of references too, and all volatile headers from
+     * templates, whose headers are generated. The headers of .po files are maintained by translators.
+     *
+     * @param file     po or pot file
+     * @param template true for a pot file generated from sources
+     * @throws MojoExecutionException if the file cannot be rewritten
+     */
+    protected void normalize(File file, boolean template) throws MojoExecutionException {
+        if (reproducible) {
+            GettextUtils.makeReproducible(file, template ? VOLATILE_HEADERS : List.of("POT-Creation-Date"), getLog());
+        } else if (!printPOTCreationDate) {
+            GettextUtils.removePotCreationDate(file, getLog());
+        }
+    }
+
+    /**
+     * Parses a .po file, reusing an earlier result for the same content if reuseState is set
+     *
+     * @param file .po file
+     * @return catalog, must not be modified
+     * @throws IOException if the file cannot be read or parsed
+     */
+    protected Catalog parse(File file) throws IOException {
+        return reuseState ? BuildState.parse(file) : PoParser.parse(file);
+    }
 }
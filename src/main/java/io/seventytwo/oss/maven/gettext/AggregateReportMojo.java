@@ -0,0 +1,366 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.doxia.sink.Sink;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.reporting.AbstractMavenReport;
+import org.apache.maven.reporting.MavenReportException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a translation status report over the po files of all projects of the reactor, as page
+ * of the site and as JSON next to it. Configured in the reporting section, the report is listed under
+ * the project reports of the site, run as goal it renders a standalone page into the outputDirectory.
+ * The po files are analyzed in parallel and in-process. Statistics are cached by the hash of the file
+ * content, so unchanged po files are not parsed again.
+ */
+@Mojo(name = "report-aggregate", aggregator = true, threadSafe = true)
+public class AggregateReportMojo extends AbstractMavenReport {
+
+    private static final String NAME = "gettext-aggregate-report";
+
+    /**
+     * The projects of the reactor.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", required = true, readonly = true)
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * PO directory. The po files of a project are searched in this directory relative to the base
+     * directory of the project.
+     */
+    @Parameter(required = true, defaultValue = "${project.build.sourceDirectory}/main/po")
+    protected File poDirectory;
+
+    /**
+     * Includes.
+     */
+    @Parameter
+    protected String[] includes = new String[0];
+
+    /**
+     * Excludes.
+     */
+    @Parameter
+    protected String[] excludes = new String[0];
+
+    /**
+     * Number of po files analyzed in parallel, 0 uses one per available processor.
+     */
+    @Parameter(required = true, defaultValue = "0")
+    protected int threads;
+
+    /**
+     * File caching the statistics of po files by the hash of their content.
+     */
+    @Parameter(required = true, defaultValue = "${project.build.directory}/gettext-report-cache.txt")
+    protected File cacheFile;
+
+    @Override
+    public String getOutputName() {
+        return NAME;
+    }
+
+    @Override
+    public String getName(Locale locale) {
+        return "Gettext Aggregate Statistics";
+    }
+
+    @Override
+    public String getDescription(Locale locale) {
+        return "Translation status of the po files of all projects.";
+    }
+
+    @Override
+    protected void executeReport(Locale locale) throws MavenReportException {
+        List<Entry> entries = new ArrayList<>();
+        for (MavenProject p : reactorProjects) {
+            File directory = getPoDirectory(p);
+            if (directory.isDirectory()) {
+                String[] patterns = includes != null && includes.length > 0 ? includes : new String[]{"**/*.po"};
+                for (String file : BuildState.scanDirectory(directory, patterns, excludes)) {
+                    entries.add(new Entry(p.getArtifactId(), new File(directory, file)));
+                }
+            }
+        }
+        getLog().info("Gathering statistics for %d po files of %d projects".formatted(entries.size(), reactorProjects.size()));
+
+        Map<String, CatalogStatistics> cache = readCache();
+        Map<String, CatalogStatistics> used = new ConcurrentHashMap<>();
+        AtomicInteger analyzed = new AtomicInteger();
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, entries.size())));
+        try {
+            List<Future<CatalogStatistics>> results = new ArrayList<>();
+            for (Entry entry : entries) {
+                results.add(executor.submit(() -> analyze(entry.file, cache, used, analyzed)));
+            }
+            for (int i = 0; i < entries.size(); i++) {
+                entries.get(i).statistics = results.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            throw new MavenReportException("Unable to analyze po files", e.getCause() instanceof Exception cause ? cause : e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MavenReportException("Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        getLog().info("Analyzed %d po files, %d unchanged".formatted(analyzed.get(), entries.size() - analyzed.get()));
+
+        Map<String, CatalogStatistics> locales = new TreeMap<>();
+        for (Entry entry : entries) {
+            locales.merge(entry.getLocale(), entry.statistics, CatalogStatistics::plus);
+        }
+        render(getSink(), entries, locales);
+        try {
+            OutputTracker tracker = new OutputTracker();
+            tracker.write(new File(getReportOutputDirectory(), NAME + ".json"), toJson(entries, locales).getBytes(StandardCharsets.UTF_8));
+            writeCache(used);
+            tracker.report(getLog());
+        } catch (IOException e) {
+            throw new MavenReportException("Unable to write report", e);
+        }
+    }
+
+    private File getPoDirectory(MavenProject p) {
+        String relative = project.getBasedir().toPath().relativize(poDirectory.toPath()).toString();
+        return new File(p.getBasedir(), relative);
+    }
+
+    private CatalogStatistics analyze(File file, Map<String, CatalogStatistics> cache,
+                                      Map<String, CatalogStatistics> used, AtomicInteger analyzed) throws IOException {
+        byte[] content = Files.readAllBytes(file.toPath());
+        String hash = hash(content);
+        CatalogStatistics statistics = cache.get(hash);
+        if (statistics == null) {
+            getLog().debug("Analyzing " + file);
+            statistics = CatalogStatistics.of(PoParser.parse(file, content));
+            analyzed.incrementAndGet();
+        }
+        used.put(hash, statistics);
+        return statistics;
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Reads the cache, one line per po file: hash, translated, fuzzy, untranslated, translator
+     */
+    private Map<String, CatalogStatistics> readCache() {
+        Map<String, CatalogStatistics> cache = new ConcurrentHashMap<>();
+        if (!cacheFile.isFile()) {
+            return cache;
+        }
+        try {
+            for (String line : Files.readAllLines(cacheFile.toPath(), StandardCharsets.UTF_8)) {
+                String[] fields = line.split("\t", -1);
+                if (fields.length == 5) {
+                    cache.put(fields[0], new CatalogStatistics(Integer.parseInt(fields[1]), Integer.parseInt(fields[2]),
+                            Integer.parseInt(fields[3]), fields[4].isEmpty() ? null : fields[4]));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            getLog().warn("Ignoring unreadable cache " + cacheFile, e);
+            cache.clear();
+        }
+        return cache;
+    }
+
+    /**
+     * Writes the statistics used by this report only, so the cache does not grow with stale entries
+     */
+    private void writeCache(Map<String, CatalogStatistics> used) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, CatalogStatistics> entry : new TreeMap<>(used).entrySet()) {
+            CatalogStatistics s = entry.getValue();
+            String translator = s.translator() == null ? "" : s.translator().replaceAll("[\t\r\n]", " ");
+            sb.append("%s\t%d\t%d\t%d\t%s\n".formatted(entry.getKey(), s.translated(), s.fuzzy(), s.untranslated(), translator));
+        }
+        new OutputTracker().write(cacheFile, sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void render(Sink sink, List<Entry> entries, Map<String, CatalogStatistics> locales) {
+        sink.head();
+        sink.title();
+        sink.text(getName(Locale.ROOT));
+        sink.title_();
+        sink.head_();
+        sink.body();
+        sink.section1();
+        sink.sectionTitle1();
+        sink.text(getName(Locale.ROOT));
+        sink.sectionTitle1_();
+
+        sink.section2();
+        sink.sectionTitle2();
+        sink.text("Locales");
+        sink.sectionTitle2_();
+        sink.table();
+        sink.tableRows(null, false);
+        headerRow(sink, "Locale", "code", "%", "Trans", "Untr", "Fuzzy");
+        for (Map.Entry<String, CatalogStatistics> entry : locales.entrySet()) {
+            sink.tableRow();
+            cell(sink, getDisplayName(entry.getKey()));
+            cell(sink, entry.getKey());
+            countCells(sink, entry.getValue());
+            sink.tableRow_();
+        }
+        sink.tableRows_();
+        sink.table_();
+        sink.section2_();
+
+        sink.section2();
+        sink.sectionTitle2();
+        sink.text("Projects");
+        sink.sectionTitle2_();
+        sink.table();
+        sink.tableRows(null, false);
+        headerRow(sink, "Project", "code", "%", "Trans", "Untr", "Fuzzy", "Translator");
+        for (Entry entry : entries) {
+            sink.tableRow();
+            cell(sink, entry.module);
+            cell(sink, entry.getLocale());
+            countCells(sink, entry.statistics);
+            cell(sink, entry.statistics.translator() == null ? "" : entry.statistics.translator());
+            sink.tableRow_();
+        }
+        sink.tableRows_();
+        sink.table_();
+        sink.section2_();
+
+        sink.section1_();
+        sink.body_();
+        sink.flush();
+        sink.close();
+    }
+
+    private static void headerRow(Sink sink, String... names) {
+        sink.tableRow();
+        for (String name : names) {
+            sink.tableHeaderCell();
+            sink.text(name);
+            sink.tableHeaderCell_();
+        }
+        sink.tableRow_();
+    }
+
+    private static void cell(Sink sink, String text) {
+        sink.tableCell();
+        sink.text(text);
+        sink.tableCell_();
+    }
+
+    private static void countCells(Sink sink, CatalogStatistics s) {
+        cell(sink, "%.0f%%".formatted(getPercentage(s)));
+        cell(sink, String.valueOf(s.translated()));
+        cell(sink, String.valueOf(s.untranslated()));
+        cell(sink, String.valueOf(s.fuzzy()));
+    }
+
+    private String toJson(List<Entry> entries, Map<String, CatalogStatistics> locales) {
+        StringBuilder sb = new StringBuilder("{\n  \"locales\": [");
+        boolean first = true;
+        for (Map.Entry<String, CatalogStatistics> entry : locales.entrySet()) {
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("    {\"locale\": ").append(json(entry.getKey()));
+            appendJsonCounts(sb, entry.getValue());
+            sb.append('}');
+        }
+        sb.append("\n  ],\n  \"files\": [");
+        first = true;
+        for (Entry entry : entries) {
+            sb.append(first ? "\n" : ",\n");
+            first = false;
+            sb.append("    {\"project\": ").append(json(entry.module))
+                    .append(", \"locale\": ").append(json(entry.getLocale()))
+                    .append(", \"file\": ").append(json(project.getBasedir().toPath().relativize(entry.file.toPath()).toString()));
+            appendJsonCounts(sb, entry.statistics);
+            sb.append(", \"translator\": ").append(entry.statistics.translator() == null ? "null" : json(entry.statistics.translator()));
+            sb.append('}');
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    private void appendJsonCounts(StringBuilder sb, CatalogStatistics s) {
+        sb.append(", \"translated\": ").append(s.translated())
+                .append(", \"fuzzy\": ").append(s.fuzzy())
+                .append(", \"untranslated\": ").append(s.untranslated())
+                .append(", \"total\": ").append(s.total());
+    }
+
+    private static float getPercentage(CatalogStatistics s) {
+        return s.total() == 0 ? 0 : s.translated() * 100f / s.total();
+    }
+
+    private static String getDisplayName(String locale) {
+        return ReportMojo.getLocale(new File(locale + ".po")).getDisplayName();
+    }
+
+    private static String json(String s) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append("\\u%04x".formatted((int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * A po file of a project with its statistics
+     */
+    private static final class Entry {
+        private final String module;
+        private final File file;
+        private CatalogStatistics statistics;
+
+        Entry(String module, File file) {
+            this.module = module;
+            this.file = file;
+        }
+
+        String getLocale() {
+            return ReportMojo.getLocale(file).toString();
+        }
+    }
+}
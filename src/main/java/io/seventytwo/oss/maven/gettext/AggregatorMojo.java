@@ -0,0 +1,276 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts the messages of all projects of the reactor in one execution. The sources of each project
+ * are extracted in parallel into a pot file of the project, which is only extracted again if the
+ * sources of the project changed. The pot files of the projects are either concatenated with msgcat
+ * into the keys.pot file of the executing project or copied to the poDirectory of each project.
+ */
+@Mojo(name = "aggregator", aggregator = true, threadSafe = true)
+public class AggregatorMojo extends AbstractGettextMojo {
+
+    /**
+     * Appended to the fingerprint of sources without messages, for which xgettext writes no pot file
+     */
+    private static final String EMPTY_MARKER = "\nempty";
+
+    /**
+     * The projects of the reactor.
+     */
+    @Parameter(defaultValue = "${reactorProjects}", required = true, readonly = true)
+    protected List<MavenProject> reactorProjects;
+
+    /**
+     * The executing project.
+     */
+    @Parameter(defaultValue = "${project}", required = true, readonly = true)
+    protected MavenProject project;
+
+    /**
+     * The encoding of the source Java files. utf-8 is a superset of ascii.
+     */
+    @Parameter(defaultValue = "UTF-8")
+    protected String encoding;
+
+    /**
+     * The keywords the xgettext parser will look for to extract messages. The default value works
+     * with the Gettext Commons library.
+     */
+    @Parameter(required = true, defaultValue = "-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k")
+    protected String keywords;
+
+    /**
+     * The xgettext command.
+     */
+    @Parameter(required = true, defaultValue = "xgettext")
+    protected String xgettextCmd;
+
+    /**
+     * The msgcat command.
+     */
+    @Parameter(required = true, defaultValue = "msgcat")
+    protected String msgcatCmd;
+
+    /**
+     * Sort extracted messages, can be "output" or "by-file"
+     */
+    @Parameter(required = true, defaultValue = "by-file")
+    protected String sort;
+
+    /**
+     * Do not break long message lines, longer than the output page width, into several lines
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean nowrap;
+
+    /**
+     * Write a keys.pot file into the poDirectory of each project instead of one combined keys.pot file
+     * into the poDirectory of the executing project. The poDirectory of a project is the poDirectory
+     * of the executing project relative to the base directory of the project.
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean perModule;
+
+    /**
+     * Number of projects extracted in parallel, 0 uses one per available processor.
+     */
+    @Parameter(required = true, defaultValue = "0")
+    protected int threads;
+
+    /**
+     * Directory for the pot files and source fingerprints of the projects.
+     */
+    @Parameter(required = true, defaultValue = "${project.build.directory}/gettext-aggregator")
+    protected File cacheDirectory;
+
+    public void execute() throws MojoExecutionException {
+        List<MavenProject> projects = new ArrayList<>();
+        for (MavenProject reactorProject : reactorProjects) {
+            if (new File(reactorProject.getBuild().getSourceDirectory()).isDirectory()) {
+                projects.add(reactorProject);
+            }
+        }
+        getLog().info("Extracting messages of %d projects".formatted(projects.size()));
+        if (!cacheDirectory.isDirectory() && !cacheDirectory.mkdirs()) {
+            throw new MojoExecutionException("Unable to create directory " + cacheDirectory);
+        }
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, projects.size())));
+        List<Future<File>> results = new ArrayList<>();
+        ToolOutput output = newToolOutput("xgettext");
+        try {
+            for (MavenProject p : projects) {
+                results.add(executor.submit(() -> extract(p, output)));
+            }
+            List<File> potFiles = new ArrayList<>();
+            for (Future<File> result : results) {
+                potFiles.add(result.get());
+            }
+            output.report(getLog());
+            OutputTracker tracker = newOutputTracker();
+            if (perModule) {
+                for (int i = 0; i < projects.size(); i++) {
+                    if (potFiles.get(i).exists()) {
+                        File target = new File(getPoDirectory(projects.get(i)), keysFile);
+                        tracker.write(target, Files.readAllBytes(potFiles.get(i).toPath()));
+                    }
+                }
+            } else {
+                concatenate(potFiles.stream().filter(File::exists).toList(), tracker);
+            }
+            tracker.report(getLog());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof MojoExecutionException mee) {
+                throw mee;
+            }
+            throw new MojoExecutionException("Unable to extract messages", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write pot files", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Extracts the messages of a project into its pot file in the cache directory, unless the
+     * fingerprint of its sources is unchanged.
+     */
+    private File extract(MavenProject p, ToolOutput output) throws MojoExecutionException, IOException {
+        String name = p.getGroupId() + "_" + p.getArtifactId();
+        File potFile = new File(cacheDirectory, name + ".pot");
+        File fingerprintFile = new File(cacheDirectory, name + ".fingerprint");
+        File sources = new File(p.getBuild().getSourceDirectory());
+        String[] files = scan(sources, "**/*.java");
+        String fingerprint = fingerprint(sources, files);
+        // xgettext does not write a file for sources without messages, which is marked as empty
+        if (fingerprintFile.exists()) {
+            String recorded = Files.readString(fingerprintFile.toPath(), StandardCharsets.UTF_8);
+            if (recorded.equals(potFile.exists() ? fingerprint : fingerprint + EMPTY_MARKER)) {
+                getLog().info("Sources of %s unchanged".formatted(p.getArtifactId()));
+                return potFile;
+            }
+        }
+        Files.deleteIfExists(fingerprintFile.toPath());
+        Files.deleteIfExists(potFile.toPath());
+        GettextMojo mojo = createGettextMojo(sources, name + ".pot");
+        mojo.sharedToolOutput = output;
+        mojo.extract();
+        // a failed extraction is retried by the next build
+        if (!mojo.failed) {
+            Files.writeString(fingerprintFile.toPath(), potFile.exists() ? fingerprint : fingerprint + EMPTY_MARKER, StandardCharsets.UTF_8);
+        }
+        return potFile;
+    }
+
+    private GettextMojo createGettextMojo(File sources, String potFile) {
+        GettextMojo mojo = createGoal(GettextMojo::new);
+        mojo.sourceDirectory = sources;
+        mojo.poDirectory = cacheDirectory;
+        mojo.keysFile = potFile;
+        mojo.encoding = encoding;
+        mojo.keywords = keywords;
+        mojo.xgettextCmd = xgettextCmd;
+        mojo.sort = sort;
+        mojo.nowrap = nowrap;
+        mojo.msgcatCmd = msgcatCmd;
+        mojo.gitCmd = "git";
+        return mojo;
+    }
+
+    /**
+     * Hashes the names, sizes and timestamps of the sources together with the xgettext options
+     */
+    String fingerprint(File sources, String[] files) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        String options = String.join("\n", xgettextCmd, keywords, encoding, sort, String.valueOf(nowrap),
+                String.valueOf(printPOTCreationDate), String.valueOf(reproducible), String.join(" ", extraArgs));
+        digest.update(options.getBytes(StandardCharsets.UTF_8));
+        String[] sorted = files.clone();
+        Arrays.sort(sorted);
+        for (String file : sorted) {
+            File source = new File(sources, file);
+            digest.update("\n%s\t%d\t%d".formatted(file, source.length(), source.lastModified()).getBytes(StandardCharsets.UTF_8));
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    private File getPoDirectory(MavenProject p) {
+        String relative = project.getBasedir().toPath().relativize(poDirectory.toPath()).toString();
+        return new File(p.getBasedir(), relative);
+    }
+
+    private void concatenate(List<File> potFiles, OutputTracker tracker) throws MojoExecutionException, IOException {
+        File target = new File(poDirectory, keysFile);
+        if (potFiles.isEmpty()) {
+            getLog().warn("No messages found, keeping " + target);
+            return;
+        }
+        File tempFile = tracker.newTempFile(target);
+        try {
+            Commandline cl = new Commandline();
+            cl.setExecutable(msgcatCmd);
+            cl.createArg().setValue("--use-first");
+            if (nowrap) {
+                cl.createArg().setValue("--no-wrap");
+            }
+            cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
+            cl.createArg().setValue("-o");
+            cl.createArg().setFile(tempFile);
+            for (File potFile : potFiles) {
+                cl.createArg().setFile(potFile);
+            }
+            getLog().debug("Executing: " + cl);
+            ToolOutput output = newToolOutput("msgcat");
+            ToolOutput.Job job = output.newJob(keysFile);
+            int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+            job.finish(exitCode);
+            output.report(getLog());
+            if (exitCode != 0) {
+                getLog().warn("msgcat failed, keeping the existing %s".formatted(keysFile));
+                return;
+            }
+            if (tempFile.length() == 0) {
+                getLog().warn("msgcat did not write %s, keeping the existing file".formatted(keysFile));
+                return;
+            }
+            normalize(tempFile, true);
+            tracker.commit(tempFile, target);
+        } catch (CommandLineException e) {
+            throw new MojoExecutionException("Could not execute " + msgcatCmd + ".", e);
+        } finally {
+            tempFile.delete();
+        }
+    }
+}
@@ -4,13 +4,12 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
+import java.io.IOException;
 
 /**
  * Invokes the gettext:gettext goal and invokes msgattrib to update po files.
@@ -27,40 +26,55 @@ public class AttribMojo extends AbstractGettextMojo {
     public void execute() throws MojoExecutionException {
         getLog().info("Invoking msgattrib for po files in '%s'.".formatted(poDirectory.getAbsolutePath()));
 
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(poDirectory);
-        if (includes != null && includes.length > 0) {
-            ds.setIncludes(includes);
-        } else {
-            ds.setIncludes(new String[]{"**/*.po"});
-        }
-        if (excludes != null && excludes.length > 0) {
-            ds.setExcludes(excludes);
-        }
-        ds.scan();
-        String[] files = ds.getIncludedFiles();
+        OutputTracker tracker = newOutputTracker();
+        ToolOutput output = newToolOutput("msgattrib");
+        String[] files = scan(poDirectory, "**/*.po");
         for (String file : files) {
             getLog().info("Processing %s".formatted(file));
+            File poFile = new File(poDirectory, file);
+            File tempFile;
+            try {
+                tempFile = tracker.newTempFile(poFile);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to create temp file for " + poFile, e);
+            }
             Commandline cl = new Commandline();
             cl.setExecutable(msgattribCmd);
             for (String arg : extraArgs) {
                 cl.createArg().setValue(arg);
             }
             cl.createArg().setValue("-o");
-            cl.createArg().setFile(new File(poDirectory, file));
-            cl.createArg().setFile(new File(poDirectory, file));
+            cl.createArg().setFile(tempFile);
+            cl.createArg().setFile(poFile);
 
             getLog().debug("Executing: %s".formatted(cl.toString()));
-            StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-            StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
-            try {
-                CommandLineUtils.executeCommandLine(cl, out, err);
+            ToolOutput.Job job = output.newJob(file);
+            // modules of a parallel build may share the poDirectory
+            try (CatalogLock lock = CatalogLock.acquire(poFile, getLog())) {
+                int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+                job.finish(exitCode);
+                if (exitCode != 0) {
+                    getLog().warn("msgattrib failed, keeping the existing %s".formatted(file));
+                    continue;
+                }
+                if (tempFile.length() == 0) {
+                    getLog().warn("msgattrib did not write %s, keeping the existing file".formatted(file));
+                    continue;
+                }
+                normalize(tempFile, false);
+                if (lock.isModified()) {
+                    throw new MojoExecutionException("%s was modified by another process while updating it, run the build again".formatted(poFile));
+                }
+                tracker.commit(tempFile, poFile);
             } catch (CommandLineException e) {
                 getLog().error("Could not execute " + msgattribCmd + ".", e);
-            }
-            if (!printPOTCreationDate) {
-                GettextUtils.removePotCreationDate(new File(poDirectory, file), getLog());
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to update " + poFile, e);
+            } finally {
+                tempFile.delete();
             }
         }
+        output.report(getLog());
+        tracker.report(getLog());
     }
 }
@@ -0,0 +1,159 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * State kept in memory across builds while the plugin class loader lives, like in the Maven daemon.
+ * Both caches are bounded and evict the least recently used entries. Scanned file sets are reused as
+ * long as the timestamps of all scanned directories are unchanged, parsed catalogs as long as the
+ * hash of the file content is unchanged. Cached catalogs are shared and must not be modified.
+ */
+public final class BuildState {
+
+    private static final int MAX_SCANS = 64;
+    private static final int MAX_CATALOGS = 128;
+
+    private static final Map<String, Scan> SCANS = lru(MAX_SCANS);
+    private static final Map<Path, ParsedCatalog> CATALOGS = lru(MAX_CATALOGS);
+
+    private BuildState() {
+    }
+
+    /**
+     * Scans a directory, without reusing anything
+     *
+     * @param basedir  directory
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return included files relative to the directory
+     */
+    public static String[] scanDirectory(File basedir, String[] includes, String[] excludes) {
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(basedir);
+        ds.setIncludes(includes);
+        if (excludes != null && excludes.length > 0) {
+            ds.setExcludes(excludes);
+        }
+        ds.scan();
+        return ds.getIncludedFiles();
+    }
+
+    /**
+     * Scans a directory or returns the result of an earlier scan if no directory below it changed
+     *
+     * @param basedir  directory
+     * @param includes include patterns
+     * @param excludes exclude patterns
+     * @return included files relative to the directory
+     * @throws IOException if the directories cannot be read
+     */
+    public static String[] scan(File basedir, String[] includes, String[] excludes) throws IOException {
+        String key = basedir.getAbsolutePath() + '\n' + String.join(",", includes) + '\n'
+                + (excludes == null ? "" : String.join(",", excludes));
+        Scan scan = SCANS.get(key);
+        if (scan != null && scan.isValid()) {
+            return scan.files().clone();
+        }
+        Map<Path, FileTime> directories = getDirectoryTimes(basedir.toPath());
+        String[] files = scanDirectory(basedir, includes, excludes);
+        SCANS.put(key, new Scan(directories, files));
+        return files.clone();
+    }
+
+    /**
+     * Parses a po file or returns the catalog parsed earlier from the same content
+     *
+     * @param file po file
+     * @return shared catalog, must not be modified
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static Catalog parse(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath();
+        byte[] content = Files.readAllBytes(path);
+        byte[] hash = hash(content);
+        ParsedCatalog parsed = CATALOGS.get(path);
+        if (parsed != null && Arrays.equals(parsed.hash(), hash)) {
+            return parsed.catalog();
+        }
+        Catalog catalog = PoParser.parse(file, content);
+        CATALOGS.put(path, new ParsedCatalog(hash, catalog));
+        return catalog;
+    }
+
+    /**
+     * Drops all kept state
+     */
+    public static void clear() {
+        SCANS.clear();
+        CATALOGS.clear();
+    }
+
+    private static Map<Path, FileTime> getDirectoryTimes(Path root) throws IOException {
+        Map<Path, FileTime> times = new HashMap<>();
+        if (!Files.isDirectory(root)) {
+            return times;
+        }
+        try (Stream<Path> walk = Files.walk(root)) {
+            List<Path> directories = walk.filter(Files::isDirectory).toList();
+            for (Path directory : directories) {
+                times.put(directory, Files.getLastModifiedTime(directory));
+            }
+        }
+        return times;
+    }
+
+    private static byte[] hash(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static <K, V> Map<K, V> lru(int maxEntries) {
+        return Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    /**
+     * Result of a scan with the timestamps of all directories below the scanned directory. Adding,
+     * removing or renaming an entry changes the timestamp of its directory.
+     */
+    private record Scan(Map<Path, FileTime> directories, String[] files) {
+
+        boolean isValid() {
+            for (Map.Entry<Path, FileTime> entry : directories.entrySet()) {
+                try {
+                    if (!entry.getValue().equals(Files.getLastModifiedTime(entry.getKey()))) {
+                        return false;
+                    }
+                } catch (IOException e) {
+                    return false;
+                }
+            }
+            return !directories.isEmpty();
+        }
+    }
+
+    private record ParsedCatalog(byte[] hash, Catalog catalog) {
+    }
+}
@@ -0,0 +1,300 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * In-memory representation of a po or pot file. Catalogs of a whole reactor are held in memory at
+ * once, so messages are not kept as objects: their strings are stored once in a UTF-8
+ * {@link Utf8StringPool} and each message is a record of string ids in an int array. Messages are
+ * decoded into {@link Message} objects when they are read, changes to them are not written back.
+ */
+public class Catalog implements Iterable<Message> {
+
+    private static final int OBSOLETE = 1;
+    // record layout: flags, line number, msgctxt, msgid, msgid_plural, then the lists
+    private static final int FIRST_LIST = 5;
+
+    private final File file;
+    private final Utf8StringPool strings = new Utf8StringPool();
+    private int[] records = new int[256];
+    private int recordsLength;
+    private int[] starts = new int[16];
+    private int size;
+    // open addressing index of the non-obsolete messages by key, slots hold the message index + 1
+    private int[] keySlots = new int[16];
+    private int[] keyHashes = new int[16];
+    private int keyCount;
+
+    /**
+     * Ctor
+     *
+     * @param file file the catalog was read from, may be null
+     */
+    public Catalog(File file) {
+        this.file = file;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Adds a copy of a message
+     *
+     * @param message message
+     */
+    public void add(Message message) {
+        if (size == starts.length) {
+            starts = Arrays.copyOf(starts, Math.max(16, size * 2));
+        }
+        starts[size] = recordsLength;
+        append(message.isObsolete() ? OBSOLETE : 0);
+        append(message.getLineNumber());
+        append(strings.add(message.getMsgctxt()));
+        append(strings.add(message.getMsgid()));
+        append(strings.add(message.getMsgidPlural()));
+        appendList(message.getMsgstr());
+        appendList(message.getTranslatorComments());
+        appendList(message.getExtractedComments());
+        appendList(message.getReferences());
+        appendList(message.getFlags());
+        appendList(message.getPrevious());
+        if (!message.isObsolete()) {
+            index(message.getKey(), size);
+        }
+        size++;
+    }
+
+    /**
+     * Returns a message
+     *
+     * @param index index of the message
+     * @return decoded message
+     */
+    public Message get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int pos = starts[index];
+        Message message = new Message();
+        message.setObsolete((records[pos] & OBSOLETE) != 0);
+        message.setLineNumber(records[pos + 1]);
+        message.setMsgctxt(strings.get(records[pos + 2]));
+        message.setMsgid(strings.get(records[pos + 3]));
+        message.setMsgidPlural(strings.get(records[pos + 4]));
+        pos += FIRST_LIST;
+        pos = readList(pos, message.getMsgstr());
+        pos = readList(pos, message.getTranslatorComments());
+        pos = readList(pos, message.getExtractedComments());
+        pos = readList(pos, message.getReferences());
+        pos = readList(pos, message.getFlags());
+        readList(pos, message.getPrevious());
+        return message;
+    }
+
+    /**
+     * Returns the index of the first non-obsolete message with a key
+     *
+     * @param key msgid, prefixed by msgctxt and {@link Message#CONTEXT_SEPARATOR} if present
+     * @return index or -1
+     */
+    public int indexOf(String key) {
+        int hash = Utf8StringPool.mix(key.hashCode());
+        int mask = keySlots.length - 1;
+        for (int slot = hash & mask; keySlots[slot] != 0; slot = (slot + 1) & mask) {
+            if (keyHashes[slot] == hash && key.equals(getKey(keySlots[slot] - 1))) {
+                return keySlots[slot] - 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the messages as read-only list, decoding each message when it is read
+     *
+     * @return messages
+     */
+    public List<Message> getMessages() {
+        return new AbstractList<>() {
+            public Message get(int index) {
+                return Catalog.this.get(index);
+            }
+
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Iterator<Message> iterator() {
+        return getMessages().iterator();
+    }
+
+    /**
+     * Releases the unused capacity, once all messages are added
+     */
+    public void trimToSize() {
+        records = Arrays.copyOf(records, recordsLength);
+        starts = Arrays.copyOf(starts, size);
+        strings.trimToSize();
+    }
+
+    /**
+     * Returns the header entry
+     *
+     * @return header or null
+     */
+    public Message getHeader() {
+        int index = indexOf("");
+        return index < 0 ? null : get(index);
+    }
+
+    /**
+     * Returns the value of a header field like "Plural-Forms"
+     *
+     * @param name field name
+     * @return value or null
+     */
+    public String getHeaderField(String name) {
+        Message header = getHeader();
+        if (header == null || header.getMsgstr().isEmpty()) {
+            return null;
+        }
+        for (String line : header.getMsgstr().get(0).split("\n")) {
+            int colon = line.indexOf(':');
+            if (colon > 0 && line.substring(0, colon).trim().equalsIgnoreCase(name)) {
+                return line.substring(colon + 1).trim();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns a copy of the catalog whose header lacks some fields. The catalog is not changed, as it
+     * may be shared with later builds.
+     *
+     * @param names field names
+     * @return copy
+     */
+    public Catalog withoutHeaderFields(Collection<String> names) {
+        Catalog copy = new Catalog(file);
+        for (Message message : this) {
+            if (!message.isHeader() || message.getMsgstr().isEmpty()) {
+                copy.add(message);
+                continue;
+            }
+            StringBuilder sb = new StringBuilder();
+            for (String line : message.getMsgstr().get(0).split("(?<=\n)")) {
+                int colon = line.indexOf(':');
+                String name = colon > 0 ? line.substring(0, colon).trim() : null;
+                if (names.stream().noneMatch(n -> n.equalsIgnoreCase(name))) {
+                    sb.append(line);
+                }
+            }
+            Message header = message.copy();
+            header.getMsgstr().set(0, sb.toString());
+            copy.add(header);
+        }
+        return copy;
+    }
+
+    /**
+     * Returns the charset declared in the Content-Type header, UTF-8 if none is declared
+     *
+     * @return charset
+     */
+    public Charset getCharset() {
+        String contentType = getHeaderField("Content-Type");
+        int index = contentType == null ? -1 : contentType.indexOf("charset=");
+        if (index >= 0) {
+            try {
+                return Charset.forName(contentType.substring(index + 8).strip());
+            } catch (IllegalArgumentException ignored) {
+                // CHARSET placeholder of fresh pot files
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    /**
+     * Returns the parsed Plural-Forms header, germanic plural if absent
+     *
+     * @return plural forms
+     */
+    public PluralForms getPluralForms() {
+        String value = getHeaderField("Plural-Forms");
+        return value == null ? PluralForms.DEFAULT : PluralForms.parse(value);
+    }
+
+    private String getKey(int index) {
+        int pos = starts[index];
+        String msgctxt = strings.get(records[pos + 2]);
+        String msgid = strings.get(records[pos + 3]);
+        return msgctxt == null ? msgid : msgctxt + Message.CONTEXT_SEPARATOR + msgid;
+    }
+
+    private void index(String key, int index) {
+        int hash = Utf8StringPool.mix(key.hashCode());
+        int mask = keySlots.length - 1;
+        int slot = hash & mask;
+        while (keySlots[slot] != 0) {
+            if (keyHashes[slot] == hash && key.equals(getKey(keySlots[slot] - 1))) {
+                // duplicates keep the first message
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keySlots[slot] = index + 1;
+        keyHashes[slot] = hash;
+        if (++keyCount * 2 > keySlots.length) {
+            int[] oldSlots = keySlots;
+            int[] oldHashes = keyHashes;
+            keySlots = new int[oldSlots.length * 2];
+            keyHashes = new int[oldSlots.length * 2];
+            mask = keySlots.length - 1;
+            for (int i = 0; i < oldSlots.length; i++) {
+                if (oldSlots[i] != 0) {
+                    slot = oldHashes[i] & mask;
+                    while (keySlots[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keySlots[slot] = oldSlots[i];
+                    keyHashes[slot] = oldHashes[i];
+                }
+            }
+        }
+    }
+
+    private void append(int value) {
+        if (recordsLength == records.length) {
+            records = Arrays.copyOf(records, Math.max(16, recordsLength * 2));
+        }
+        records[recordsLength++] = value;
+    }
+
+    private void appendList(List<String> values) {
+        append(values.size());
+        for (String value : values) {
+            append(strings.add(value));
+        }
+    }
+
+    private int readList(int pos, List<String> values) {
+        int count = records[pos++];
+        for (int i = 0; i < count; i++) {
+            values.add(strings.get(records[pos++]));
+        }
+        return pos;
+    }
+}
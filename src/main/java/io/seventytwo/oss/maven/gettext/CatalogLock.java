@@ -0,0 +1,139 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Exclusive lock of a file that is read, updated and replaced, like a .po file merged by several
+ * modules of a parallel build that share a poDirectory. Threads of the same JVM are serialized by an
+ * in-memory lock, other processes by a lock on the sidecar file ".&lt;name&gt;.lock", which is kept,
+ * as deleting it would let two processes lock different files. The lock remembers the state of the
+ * file when it was acquired, so a modification by a process that does not lock can be detected
+ * before the file is replaced.
+ */
+public final class CatalogLock implements AutoCloseable {
+
+    /**
+     * A FileLock is held by the JVM, a second lock of the same file in the JVM would fail
+     */
+    private static final Map<Path, ReentrantLock> LOCKS = new ConcurrentHashMap<>();
+
+    private final Path file;
+    private final ReentrantLock lock;
+    private final FileChannel channel;
+    private final State state;
+
+    private CatalogLock(Path file, ReentrantLock lock, FileChannel channel) throws IOException {
+        this.file = file;
+        this.lock = lock;
+        this.channel = channel;
+        this.state = readState(file);
+    }
+
+    /**
+     * Locks a file, waiting until no other thread or process holds the lock
+     *
+     * @param file file to lock, does not need to exist
+     * @return lock, to be closed
+     * @throws IOException if the lock file cannot be created or locked
+     */
+    public static CatalogLock acquire(File file) throws IOException {
+        return acquire(file, null);
+    }
+
+    /**
+     * Locks a file, waiting until no other thread or process holds the lock
+     *
+     * @param file file to lock, does not need to exist
+     * @param log  log to tell about waiting for another build, may be null
+     * @return lock, to be closed
+     * @throws IOException if the lock file cannot be created or locked
+     */
+    public static CatalogLock acquire(File file, Log log) throws IOException {
+        Path dir = file.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(dir);
+        Path path = dir.toRealPath().resolve(file.getName());
+        ReentrantLock lock = LOCKS.computeIfAbsent(path, p -> new ReentrantLock());
+        if (!lock.tryLock()) {
+            if (log != null) {
+                log.info("Waiting for another module to release %s".formatted(file.getName()));
+            }
+            lock.lock();
+        }
+        if (lock.getHoldCount() > 1) {
+            // the thread holds the file lock already
+            return new CatalogLock(path, lock, null);
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(dir.resolve("." + file.getName() + ".lock"),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock fileLock = channel.tryLock();
+            if (fileLock == null) {
+                if (log != null) {
+                    log.info("Waiting for another build to release %s".formatted(file.getName()));
+                }
+                channel.lock();
+            }
+            return new CatalogLock(path, lock, channel);
+        } catch (IOException | RuntimeException e) {
+            if (channel != null) {
+                channel.close();
+            }
+            lock.unlock();
+            throw e;
+        }
+    }
+
+    private static State readState(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        // an atomic replace changes the file key, an edit in place the size or modification time
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        return new State(attributes.size(), attributes.lastModifiedTime(), attributes.fileKey());
+    }
+
+    /**
+     * Returns true if the file was created, modified, replaced or deleted since it was locked
+     *
+     * @return modified
+     * @throws IOException if the file attributes cannot be read
+     */
+    public boolean isModified() throws IOException {
+        return !Objects.equals(state, readState(file));
+    }
+
+    /**
+     * Releases the lock
+     *
+     * @throws IOException if the lock file cannot be closed
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel != null) {
+                // closing the channel releases the file lock
+                channel.close();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private record State(long size, FileTime modified, Object fileKey) {
+    }
+}
@@ -0,0 +1,59 @@
+package io.seventytwo.oss.maven.gettext;
+
+/**
+ * Translation status of a catalog, counted like msgfmt --statistics does. The header and obsolete
+ * messages are not counted, fuzzy messages only if they are translated.
+ *
+ * @param translated   translated messages
+ * @param fuzzy        fuzzy translations
+ * @param untranslated untranslated messages
+ * @param translator   Last-Translator header field, may be null
+ */
+public record CatalogStatistics(int translated, int fuzzy, int untranslated, String translator) {
+
+    /**
+     * Counts the messages of a catalog
+     *
+     * @param catalog catalog
+     * @return statistics
+     */
+    public static CatalogStatistics of(Catalog catalog) {
+        int translated = 0;
+        int fuzzy = 0;
+        int untranslated = 0;
+        for (Message message : catalog) {
+            if (message.isHeader() || message.isObsolete()) {
+                continue;
+            }
+            if (!message.isTranslated()) {
+                untranslated++;
+            } else if (message.isFuzzy()) {
+                fuzzy++;
+            } else {
+                translated++;
+            }
+        }
+        return new CatalogStatistics(translated, fuzzy, untranslated, catalog.getHeaderField("Last-Translator"));
+    }
+
+    /**
+     * Returns the number of counted messages
+     *
+     * @return total
+     */
+    public int total() {
+        return translated + fuzzy + untranslated;
+    }
+
+    /**
+     * Adds the counts of other statistics, keeping the translator only if both agree
+     *
+     * @param other statistics
+     * @return sum
+     */
+    public CatalogStatistics plus(CatalogStatistics other) {
+        String sameTranslator = translator != null && translator.equals(other.translator) ? translator : null;
+        return new CatalogStatistics(translated + other.translated, fuzzy + other.fuzzy,
+                untranslated + other.untranslated, sameTranslator);
+    }
+}
@@ -0,0 +1,290 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * Checks a parsed catalog like msgfmt --check does: the number of plural forms against the
+ * Plural-Forms header, the placeholders of java-format and c-format messages, leading and trailing
+ * newlines and duplicate messages. Problems are reported as "file:line: message".
+ */
+public class CatalogValidator {
+
+    private final Catalog catalog;
+    private final List<String> problems = new ArrayList<>();
+
+    private CatalogValidator(Catalog catalog) {
+        this.catalog = catalog;
+    }
+
+    /**
+     * Validates a catalog
+     *
+     * @param catalog catalog
+     * @return problems, empty if the catalog is valid
+     */
+    public static List<String> validate(Catalog catalog) {
+        CatalogValidator validator = new CatalogValidator(catalog);
+        validator.validate();
+        return validator.problems;
+    }
+
+    private void validate() {
+        PluralForms pluralForms = null;
+        Message header = catalog.getHeader();
+        try {
+            pluralForms = catalog.getPluralForms();
+        } catch (IllegalArgumentException e) {
+            report(header, e.getMessage());
+        }
+        for (int i = 0; i < catalog.size(); i++) {
+            Message message = catalog.get(i);
+            if (message.isObsolete()) {
+                continue;
+            }
+            int first = catalog.indexOf(message.getKey());
+            if (first != i) {
+                report(message, "duplicate message definition, first defined at line %d".formatted(catalog.get(first).getLineNumber()));
+            }
+            if (message.isHeader()) {
+                continue;
+            }
+            if (message.isPlural() && pluralForms != null && !message.getMsgstr().isEmpty()
+                    && message.getMsgstr().size() != pluralForms.getNplurals()) {
+                report(message, "%d plural forms, but the Plural-Forms header declares nplurals=%d"
+                        .formatted(message.getMsgstr().size(), pluralForms.getNplurals()));
+            }
+            if (message.isFuzzy()) {
+                continue;
+            }
+            for (String msgstr : message.getMsgstr()) {
+                if (!msgstr.isEmpty()) {
+                    checkNewlines(message, msgstr);
+                }
+            }
+            if (message.getFlags().contains("java-format")) {
+                checkJavaFormat(message);
+            } else if (message.getFlags().contains("c-format")) {
+                checkCFormat(message);
+            }
+        }
+    }
+
+    private void checkNewlines(Message message, String msgstr) {
+        String msgid = message.getMsgid();
+        if (msgid.startsWith("\n") != msgstr.startsWith("\n")) {
+            report(message, "msgid and msgstr do not both begin with '\\n'");
+        }
+        if (msgid.endsWith("\n") != msgstr.endsWith("\n")) {
+            report(message, "msgid and msgstr do not both end with '\\n'");
+        }
+    }
+
+    private void checkJavaFormat(Message message) {
+        Map<Integer, String> expected = javaArguments(message, message.getMsgid());
+        if (expected == null) {
+            return;
+        }
+        if (message.isPlural()) {
+            Map<Integer, String> plural = javaArguments(message, message.getMsgidPlural());
+            if (plural == null) {
+                return;
+            }
+            expected.putAll(plural);
+        }
+        List<String> msgstrs = message.getMsgstr();
+        for (int i = 0; i < msgstrs.size(); i++) {
+            if (msgstrs.get(i).isEmpty()) {
+                continue;
+            }
+            Map<Integer, String> actual = javaArguments(message, msgstrs.get(i));
+            if (actual == null) {
+                continue;
+            }
+            for (Map.Entry<Integer, String> argument : actual.entrySet()) {
+                String type = expected.get(argument.getKey());
+                if (type == null) {
+                    report(message, "%s references {%d}, which does not exist in msgid".formatted(msgstrName(message, i), argument.getKey()));
+                } else if (!type.equals(argument.getValue())) {
+                    report(message, "%s formats {%d} as '%s', msgid as '%s'".formatted(msgstrName(message, i), argument.getKey(), argument.getValue(), type));
+                }
+            }
+            // a plural form may leave out the number, as in "one file"
+            if (!message.isPlural()) {
+                for (Integer index : expected.keySet()) {
+                    if (!actual.containsKey(index)) {
+                        report(message, "%s does not reference {%d} of msgid".formatted(msgstrName(message, i), index));
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the argument indexes of a MessageFormat pattern with their format types, null if the
+     * pattern is malformed
+     */
+    private Map<Integer, String> javaArguments(Message message, String pattern) {
+        Map<Integer, String> arguments = new TreeMap<>();
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                i++;
+            } else if (c == '{' && !quoted) {
+                int end = MessagePattern.findClosingBrace(pattern, i);
+                if (end < 0) {
+                    report(message, "unbalanced '{' in java-format string: " + pattern);
+                    return null;
+                }
+                String element = pattern.substring(i + 1, end);
+                int comma = element.indexOf(',');
+                String index = (comma < 0 ? element : element.substring(0, comma)).strip();
+                if (index.isEmpty() || !index.chars().allMatch(Character::isDigit)) {
+                    report(message, "invalid argument '{%s}' in java-format string".formatted(element));
+                    return null;
+                }
+                String type = "";
+                if (comma >= 0) {
+                    String rest = element.substring(comma + 1);
+                    int second = rest.indexOf(',');
+                    type = (second < 0 ? rest : rest.substring(0, second)).strip().toLowerCase(Locale.ROOT);
+                }
+                arguments.put(Integer.parseInt(index), type);
+                i = end + 1;
+            } else {
+                i++;
+            }
+        }
+        return arguments;
+    }
+
+    private void checkCFormat(Message message) {
+        List<String> expected = cDirectives(message, message.getMsgid());
+        if (expected == null) {
+            return;
+        }
+        if (message.isPlural()) {
+            List<String> plural = cDirectives(message, message.getMsgidPlural());
+            if (plural == null) {
+                return;
+            }
+            if (plural.size() > expected.size()) {
+                expected = plural;
+            }
+        }
+        List<String> msgstrs = message.getMsgstr();
+        for (int i = 0; i < msgstrs.size(); i++) {
+            if (msgstrs.get(i).isEmpty()) {
+                continue;
+            }
+            List<String> actual = cDirectives(message, msgstrs.get(i));
+            if (actual == null) {
+                continue;
+            }
+            boolean sameCount = message.isPlural() ? actual.size() <= expected.size() : actual.size() == expected.size();
+            if (!sameCount) {
+                report(message, "%s has %d format directives, msgid has %d".formatted(msgstrName(message, i), actual.size(), expected.size()));
+                continue;
+            }
+            for (int arg = 0; arg < actual.size(); arg++) {
+                if (actual.get(arg) != null && !Objects.equals(actual.get(arg), expected.get(arg))) {
+                    report(message, "%s formats argument %d as '%s', msgid as '%s'".formatted(msgstrName(message, i), arg + 1, actual.get(arg), expected.get(arg)));
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the types of the arguments of a printf format string in argument order, null if the
+     * format string is malformed. Types are the length modifier and the conversion class.
+     */
+    private List<String> cDirectives(Message message, String format) {
+        List<String> types = new ArrayList<>();
+        int next = 0;
+        int i = 0;
+        while ((i = format.indexOf('%', i)) >= 0) {
+            int start = i++;
+            if (i < format.length() && format.charAt(i) == '%') {
+                i++;
+                continue;
+            }
+            int position = -1;
+            int digits = i;
+            while (digits < format.length() && Character.isDigit(format.charAt(digits))) {
+                digits++;
+            }
+            if (digits > i && digits < format.length() && format.charAt(digits) == '$') {
+                position = Integer.parseInt(format.substring(i, digits)) - 1;
+                i = digits + 1;
+            }
+            while (i < format.length() && "-+ #0'I".indexOf(format.charAt(i)) >= 0) {
+                i++;
+            }
+            // a '*' width or precision consumes an int argument
+            for (int part = 0; part < 2 && i < format.length(); part++) {
+                if (format.charAt(i) == '*') {
+                    setType(types, position < 0 ? next++ : -1, "int");
+                    i++;
+                }
+                while (i < format.length() && Character.isDigit(format.charAt(i))) {
+                    i++;
+                }
+                if (part == 0 && i < format.length() && format.charAt(i) == '.') {
+                    i++;
+                } else {
+                    break;
+                }
+            }
+            int lengthStart = i;
+            while (i < format.length() && "hlLqjzt".indexOf(format.charAt(i)) >= 0) {
+                i++;
+            }
+            String length = format.substring(lengthStart, i);
+            if (i >= format.length()) {
+                report(message, "incomplete format directive '%s' in c-format string".formatted(format.substring(start)));
+                return null;
+            }
+            String type = switch (format.charAt(i)) {
+                case 'd', 'i', 'o', 'u', 'x', 'X', 'c' -> "int";
+                case 'e', 'E', 'f', 'F', 'g', 'G', 'a', 'A' -> "float";
+                case 's' -> "string";
+                case 'p' -> "pointer";
+                case 'n' -> "count";
+                default -> null;
+            };
+            if (type == null) {
+                report(message, "invalid format directive '%s' in c-format string".formatted(format.substring(start, i + 1)));
+                return null;
+            }
+            setType(types, position < 0 ? next++ : position, length + type);
+            i++;
+        }
+        return types;
+    }
+
+    private static void setType(List<String> types, int index, String type) {
+        if (index < 0) {
+            return;
+        }
+        while (types.size() <= index) {
+            types.add(null);
+        }
+        types.set(index, type);
+    }
+
+    private static String msgstrName(Message message, int form) {
+        return message.isPlural() ? "msgstr[%d]".formatted(form) : "msgstr";
+    }
+
+    private void report(Message message, String problem) {
+        int line = message == null ? 1 : message.getLineNumber();
+        problems.add("%s:%d: %s".formatted(catalog.getFile(), line, problem));
+    }
+}
@@ -0,0 +1,348 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+/**
+ * Writes bundles whose messages are stored in a DEFLATE compressed resource. The messages are sorted
+ * by key and split into independently compressed blocks, so a lookup only inflates the block that
+ * may contain the key. The generated reader keeps recently used blocks in a bounded LRU cache.
+ */
+public class CompressedBundleWriter extends JavaBundleWriter {
+
+    private static final int MAGIC = 0x47545a31;
+
+    private final int blockSize;
+    private final int cacheBlocks;
+
+    /**
+     * Ctor
+     *
+     * @param targetBundle  fully qualified base name of the bundle
+     * @param escapeUnicode use unicode escapes for non-ASCII characters
+     * @param encoding      encoding of the generated sources
+     * @param blockSize     uncompressed bytes per block
+     * @param cacheBlocks   inflated blocks cached per locale at runtime
+     */
+    public CompressedBundleWriter(String targetBundle, boolean escapeUnicode, Charset encoding, int blockSize, int cacheBlocks) {
+        super(targetBundle, escapeUnicode, encoding);
+        this.blockSize = blockSize;
+        this.cacheBlocks = cacheBlocks;
+    }
+
+    /**
+     * Returns the simple name of the generated reader class
+     *
+     * @return class name
+     */
+    public String getReaderClassName() {
+        return getSimpleName() + "_Catalog";
+    }
+
+    /**
+     * Returns the name of the compressed resource of a locale
+     *
+     * @param locale Java locale
+     * @return resource file name
+     */
+    public String getResourceName(String locale) {
+        return getBundleClassName(locale) + ".gtz";
+    }
+
+    /**
+     * Writes the compressed resource of a locale
+     *
+     * @param locale     Java locale
+     * @param catalog    catalog
+     * @param outputRoot class output root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeCatalog(String locale, Catalog catalog, File outputRoot) throws IOException {
+        Map<String, Message> sorted = new TreeMap<>();
+        for (Message message : catalog) {
+            if (message.isCompiled()) {
+                sorted.put(message.getKey(), message);
+            }
+        }
+
+        List<String> firstKeys = new ArrayList<>();
+        List<byte[]> blocks = new ArrayList<>();
+        List<Integer> sizes = new ArrayList<>();
+        ByteArrayOutputStream block = new ByteArrayOutputStream(blockSize + 1024);
+        DataOutputStream out = new DataOutputStream(block);
+        for (Map.Entry<String, Message> entry : sorted.entrySet()) {
+            if (block.size() == 0) {
+                firstKeys.add(entry.getKey());
+            }
+            writeString(out, entry.getKey());
+            List<String> msgstr = entry.getValue().getMsgstr();
+            if (entry.getValue().isPlural()) {
+                out.writeInt(msgstr.size());
+                for (String s : msgstr) {
+                    writeString(out, s);
+                }
+            } else {
+                out.writeInt(0);
+                writeString(out, msgstr.get(0));
+            }
+            if (block.size() >= blockSize) {
+                sizes.add(block.size());
+                blocks.add(deflate(block.toByteArray()));
+                block.reset();
+            }
+        }
+        if (block.size() > 0) {
+            sizes.add(block.size());
+            blocks.add(deflate(block.toByteArray()));
+        }
+
+        File file = getPackageFile(outputRoot, getResourceName(locale));
+        Files.createDirectories(file.getParentFile().toPath());
+        try (OutputStream os = Files.newOutputStream(file.toPath());
+             DataOutputStream data = new DataOutputStream(new BufferedOutputStream(os))) {
+            data.writeInt(MAGIC);
+            data.writeInt(blocks.size());
+            int offset = 0;
+            for (int i = 0; i < blocks.size(); i++) {
+                writeString(data, firstKeys.get(i));
+                data.writeInt(offset);
+                data.writeInt(blocks.get(i).length);
+                data.writeInt(sizes.get(i));
+                offset += blocks.get(i).length;
+            }
+            for (byte[] compressed : blocks) {
+                data.write(compressed);
+            }
+        }
+        return file;
+    }
+
+    /**
+     * Writes the bundle class of a locale reading the compressed resource
+     *
+     * @param locale     Java locale
+     * @param catalog    catalog
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeBundle(String locale, Catalog catalog, File sourceRoot) throws IOException {
+        String className = getBundleClassName(locale);
+        StringBuilder sb = header();
+        sb.append("public class ").append(className).append(" extends java.util.ResourceBundle {\n\n");
+        sb.append("    private static final ").append(getReaderClassName()).append(" CATALOG = ")
+                .append(getReaderClassName()).append(".load(").append(className).append(".class, ");
+        appendLiteral(sb, getResourceName(locale));
+        sb.append(", ").append(cacheBlocks).append(");\n\n");
+        appendLookupMethods(sb, locale, "CATALOG.get(msgid)");
+        sb.append("""
+                    public java.util.Enumeration<String> getKeys() {
+                        return CATALOG.keys();
+                    }
+
+                """);
+        appendCommonMethods(sb, catalog);
+        sb.append("}\n");
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    /**
+     * Writes the reader class shared by the bundles of all locales
+     *
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeReader(File sourceRoot) throws IOException {
+        String className = getReaderClassName();
+        StringBuilder sb = header();
+        sb.append("final class ").append(className).append(" {\n\n");
+        sb.append("    private static final int MAGIC = 0x").append(Integer.toHexString(MAGIC)).append(";\n\n");
+        sb.append("""
+                    private final byte[] data;
+                    private final String[] firstKeys;
+                    private final int[] offsets;
+                    private final int[] lengths;
+                    private final int[] sizes;
+                    private final java.util.LinkedHashMap<Integer, java.util.HashMap<String, Object>> cache;
+
+                """);
+        sb.append("    private ").append(className).append("(byte[] data, final int cacheBlocks) throws java.io.IOException {\n");
+        sb.append("""
+                        java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(data));
+                        if (in.readInt() != MAGIC) {
+                            throw new java.io.IOException("Not a compressed catalog");
+                        }
+                        int blocks = in.readInt();
+                        firstKeys = new String[blocks];
+                        offsets = new int[blocks];
+                        lengths = new int[blocks];
+                        sizes = new int[blocks];
+                        for (int i = 0; i < blocks; i++) {
+                            firstKeys[i] = readString(in);
+                            offsets[i] = in.readInt();
+                            lengths[i] = in.readInt();
+                            sizes[i] = in.readInt();
+                        }
+                        int dataStart = data.length - in.available();
+                        for (int i = 0; i < blocks; i++) {
+                            offsets[i] += dataStart;
+                        }
+                        this.data = data;
+                        this.cache = new java.util.LinkedHashMap<Integer, java.util.HashMap<String, Object>>(16, 0.75f, true) {
+                            protected boolean removeEldestEntry(java.util.Map.Entry<Integer, java.util.HashMap<String, Object>> eldest) {
+                                return size() > cacheBlocks;
+                            }
+                        };
+                    }
+
+                """);
+        sb.append("    static ").append(className).append(" load(Class<?> owner, String resource, int cacheBlocks) {\n");
+        sb.append("""
+                        java.io.InputStream is = owner.getResourceAsStream(resource);
+                        if (is == null) {
+                            throw new java.util.MissingResourceException("Missing " + resource, owner.getName(), "");
+                        }
+                        try {
+                            java.io.ByteArrayOutputStream bytes = new java.io.ByteArrayOutputStream();
+                            byte[] buffer = new byte[8192];
+                            int n;
+                            while ((n = is.read(buffer)) > 0) {
+                                bytes.write(buffer, 0, n);
+                            }
+                """);
+        sb.append("            return new ").append(className).append("(bytes.toByteArray(), cacheBlocks);\n");
+        sb.append("""
+                        } catch (java.io.IOException e) {
+                            throw new IllegalStateException("Unable to load " + resource, e);
+                        } finally {
+                            try {
+                                is.close();
+                            } catch (java.io.IOException ignored) {
+                            }
+                        }
+                    }
+
+                    Object get(String key) {
+                        int low = 0;
+                        int high = firstKeys.length - 1;
+                        int block = -1;
+                        while (low <= high) {
+                            int mid = (low + high) >>> 1;
+                            if (firstKeys[mid].compareTo(key) <= 0) {
+                                block = mid;
+                                low = mid + 1;
+                            } else {
+                                high = mid - 1;
+                            }
+                        }
+                        return block < 0 ? null : block(block).get(key);
+                    }
+
+                    java.util.Enumeration<String> keys() {
+                        java.util.ArrayList<String> keys = new java.util.ArrayList<String>();
+                        for (int i = 0; i < firstKeys.length; i++) {
+                            keys.addAll(inflate(i).keySet());
+                        }
+                        return java.util.Collections.enumeration(keys);
+                    }
+
+                    private java.util.HashMap<String, Object> block(int index) {
+                        java.util.HashMap<String, Object> block;
+                        synchronized (cache) {
+                            block = cache.get(index);
+                        }
+                        if (block == null) {
+                            // inflate outside the lock, a concurrent miss at worst inflates the block twice
+                            block = inflate(index);
+                            synchronized (cache) {
+                                cache.put(index, block);
+                            }
+                        }
+                        return block;
+                    }
+
+                    private java.util.HashMap<String, Object> inflate(int index) {
+                        java.util.zip.Inflater inflater = new java.util.zip.Inflater();
+                        try {
+                            inflater.setInput(data, offsets[index], lengths[index]);
+                            byte[] bytes = new byte[sizes[index]];
+                            int n = 0;
+                            while (n < bytes.length && !inflater.finished()) {
+                                int inflated = inflater.inflate(bytes, n, bytes.length - n);
+                                if (inflated == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                                    throw new java.util.zip.DataFormatException("Truncated block");
+                                }
+                                n += inflated;
+                            }
+                            java.io.DataInputStream in = new java.io.DataInputStream(new java.io.ByteArrayInputStream(bytes));
+                            java.util.HashMap<String, Object> block = new java.util.HashMap<String, Object>();
+                            while (in.available() > 0) {
+                                String key = readString(in);
+                                int forms = in.readInt();
+                                if (forms == 0) {
+                                    block.put(key, readString(in));
+                                } else {
+                                    String[] values = new String[forms];
+                                    for (int i = 0; i < forms; i++) {
+                                        values[i] = readString(in);
+                                    }
+                                    block.put(key, values);
+                                }
+                            }
+                            return block;
+                        } catch (java.util.zip.DataFormatException e) {
+                            throw new IllegalStateException("Corrupt catalog block " + index, e);
+                        } catch (java.io.IOException e) {
+                            throw new IllegalStateException("Corrupt catalog block " + index, e);
+                        } finally {
+                            inflater.end();
+                        }
+                    }
+
+                    private static String readString(java.io.DataInputStream in) throws java.io.IOException {
+                        byte[] bytes = new byte[in.readInt()];
+                        in.readFully(bytes);
+                        return new String(bytes, java.nio.charset.StandardCharsets.UTF_8);
+                    }
+                }
+                """);
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] deflate(byte[] bytes) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(bytes);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            byte[] buffer = new byte[8192];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+}
@@ -1,19 +1,31 @@
 package io.seventytwo.oss.maven.gettext;
 
 import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * Generates ressource bundles.
@@ -40,7 +52,11 @@ public class DistMojo extends AbstractGettextMojo {
     protected String targetBundle;
 
     /**
-     * Output format, can be "class", "properties", or "java".
+     * Output format, can be "class", "properties", "java", "compressed" or "json". The "compressed"
+     * format is generated in-process: the messages of each locale are stored in a resource of DEFLATE
+     * compressed blocks next to a bundle class that only inflates the blocks of the keys looked up.
+     * The "json" format is generated in-process too, as a compact JSON object per locale for web
+     * frontends, with the plural rule as JavaScript expression.
      */
     @Parameter(required = true, defaultValue = "class")
     protected String outputFormat;
@@ -69,6 +85,149 @@ public class DistMojo extends AbstractGettextMojo {
     @Parameter(defaultValue = "utf-8")
     protected String encoding;
 
+    /**
+     * Generate the bundles in-process with all strings of all locales stored once in a shared
+     * string pool class the bundles of the locales refer to. Requires outputFormat "class" or "java".
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean sharedStringPool;
+
+    /**
+     * Java release bundles generated in-process are compiled for.
+     */
+    @Parameter(required = true, defaultValue = "8")
+    protected String release;
+
+    /**
+     * Uncompressed size in bytes of the independently compressed blocks of the "compressed" output
+     * format. Smaller blocks make a first lookup cheaper, larger blocks compress better.
+     */
+    @Parameter(required = true, defaultValue = "16384")
+    protected int compressionBlockSize;
+
+    /**
+     * Number of inflated blocks each bundle of the "compressed" output format keeps cached.
+     */
+    @Parameter(required = true, defaultValue = "8")
+    protected int compressionCacheBlocks;
+
+    /**
+     * Drop messages that are not part of the keys.pot file from the generated bundles. The .po files
+     * are not modified.
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean pruneWithKeysFile;
+
+    /**
+     * Drop messages from the generated bundles whose msgid is not a string constant of a class in the
+     * outputDirectory that calls one of the keyword methods. Messages referenced from sources without
+     * a class in the outputDirectory, like extraSourceFiles, are kept. Requires the goal to run after
+     * compilation, e.g. in the process-classes phase. The .po files are not modified.
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean pruneWithClasses;
+
+    /**
+     * Generate a class of int constants for the messages of the keys.pot file, e.g. FILE_NOT_FOUND,
+     * and bundles storing their translations in arrays indexed by them. A bundle then looks up a
+     * translation by array index with get(id) without hashing the msgid, the string keyed lookup of
+     * Gettext Commons keeps working. Messages not in the keys.pot file are left out of the bundles.
+     * Requires outputFormat "class" or "java".
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean messageIds;
+
+    /**
+     * Split the bundle of each locale into segments by the Java package the messages are used in,
+     * according to the references of the keys.pot file. A package is cut after this number of name
+     * segments, e.g. 2 groups com/acme/ui/Main.java into com.acme. Segments are initialized on first
+     * lookup, so only those of the packages a code path touches are loaded. Messages used in several
+     * packages share a segment. 0 generates unsegmented bundles. Requires outputFormat "class",
+     * "java" or "json", which writes a JSON file per package next to the one of the locale.
+     */
+    @Parameter(required = true, defaultValue = "0")
+    protected int segmentDepth;
+
+    /**
+     * Validate the java-format messages at build time and generate a class of them as pre-parsed
+     * patterns, with a format method that formats them without parsing a MessageFormat per call. The
+     * build fails on patterns MessageFormat rejects. The class is compiled unless outputFormat is
+     * "java".
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean precompileFormats;
+
+    /**
+     * Generate bundles that count the lookups and misses of each key and time a sample of the
+     * lookups. A generated statistics class registers the counts as MXBean and dumps them as tab
+     * separated values, e.g. to find unused and hot messages. Counting can be switched off at runtime
+     * with the system property gettext.instrumentation=false. Instruments the bundles generated
+     * in-process: with outputFormat "class" or "java" the bundles are generated with a shared string
+     * pool, the "compressed" format and messageIds and segmentDepth bundles are instrumented too.
+     */
+    @Parameter(property = "gettext.instrumentLookups", defaultValue = "false")
+    protected boolean instrumentLookups;
+
+    /**
+     * Write a gzip compressed sibling of each file of the "json" output format, for web servers
+     * serving precompressed files.
+     */
+    @Parameter(required = true, defaultValue = "true")
+    protected boolean gzipJson;
+
+    /**
+     * Number of locales generated in parallel by the "json" output format and packed in parallel into
+     * language packs, 0 uses one per available processor.
+     */
+    @Parameter(required = true, defaultValue = "0")
+    protected int threads;
+
+    /**
+     * Write the bundles of each locale into their own directory below languagePackDirectory instead of
+     * the outputDirectory, pack each into a jar and attach it to the project as language pack with the
+     * classifier languagePackClassifier followed by the locale, e.g. lang-de_CH. Deployments then
+     * depend on the language packs of the locales they use. Classes shared by all locales, like a
+     * string pool, message ids or pre-parsed formats, stay in the outputDirectory. Requires an output
+     * format other than "java".
+     */
+    @Parameter(property = "gettext.languagePacks", defaultValue = "false")
+    protected boolean languagePacks;
+
+    /**
+     * The directory the language packs are written to, one directory per locale.
+     */
+    @Parameter(required = true, defaultValue = "${project.build.directory}/gettext-language-packs")
+    protected File languagePackDirectory;
+
+    /**
+     * The classifier of the language pack jars, followed by the locale.
+     */
+    @Parameter(required = true, defaultValue = "lang-")
+    protected String languagePackClassifier;
+
+    /**
+     * The project the language packs are attached to.
+     */
+    @Parameter(defaultValue = "${project}", readonly = true)
+    protected MavenProject project;
+
+    /**
+     * Attaches the language packs to the project.
+     */
+    @Component
+    protected MavenProjectHelper projectHelper;
+
+    /**
+     * The xgettext keywords of the gettext goal, used to find the classes calling keyword methods when
+     * pruning with classes.
+     */
+    @Parameter(required = true, defaultValue = "-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k")
+    protected String keywords;
+
+    private OutputTracker tracker;
+    private OutputCache cache;
+    private ToolOutput toolOutput;
+
     public void execute() throws MojoExecutionException {
         if (!outputDirectory.exists()) {
             // create output directory if it doesn't exist
@@ -78,6 +237,165 @@ public class DistMojo extends AbstractGettextMojo {
             }
         }
 
+        if (buildContext.isIncremental()) {
+            String[] files = getChangedPoFiles();
+            if (files.length == 0) {
+                getLog().info("No .po files changed");
+            } else {
+                dist(files);
+            }
+        } else {
+            dist(getPoFiles());
+        }
+        if (languagePacks) {
+            distLanguagePacks();
+        }
+    }
+
+    /**
+     * Returns the directory the bundles are generated into
+     *
+     * @return the outputDirectory or, for language packs, a directory they are split from
+     */
+    private File getBundleDirectory() {
+        return languagePacks ? new File(languagePackDirectory, "bundles") : outputDirectory;
+    }
+
+    /**
+     * Splits the generated bundles into one directory and jar per locale and attaches the jars to the
+     * project. The jars are written in parallel, unchanged jars are kept.
+     */
+    private void distLanguagePacks() throws MojoExecutionException {
+        OutputTracker packTracker = newOutputTracker();
+        LanguagePackWriter writer = new LanguagePackWriter(packTracker, targetBundle, reproducible);
+        List<String> locales = new ArrayList<>();
+        for (String file : getPoFiles()) {
+            locales.add(getLocale(new File(poDirectory, file)));
+        }
+        File bundleDirectory = getBundleDirectory();
+        Map<String, List<Path>> files;
+        try {
+            files = writer.split(bundleDirectory, locales);
+            writer.copy(bundleDirectory, files.get(""), outputDirectory, false);
+            int deleted = writer.delete(outputDirectory, locales);
+            if (deleted > 0) {
+                getLog().info("Deleted %d bundle files of language packs from %s".formatted(deleted, outputDirectory));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to split bundles into language packs", e);
+        }
+
+        Map<String, File> jars = new TreeMap<>();
+        for (String locale : locales) {
+            if (files.get(locale).isEmpty()) {
+                getLog().warn("No bundle files of locale %s found for its language pack".formatted(locale));
+            } else {
+                jars.put(locale, new File(project.getBuild().getDirectory(),
+                        "%s-%s%s.jar".formatted(project.getBuild().getFinalName(), languagePackClassifier, locale)));
+            }
+        }
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, jars.size())));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (Map.Entry<String, File> entry : jars.entrySet()) {
+                results.add(executor.submit(() -> {
+                    File localeDirectory = new File(languagePackDirectory, entry.getKey());
+                    writer.copy(bundleDirectory, files.get(entry.getKey()), localeDirectory, true);
+                    writer.writeJar(localeDirectory, entry.getValue());
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Unable to write language packs", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        // the project is not thread-safe
+        for (Map.Entry<String, File> entry : jars.entrySet()) {
+            projectHelper.attachArtifact(project, "jar", languagePackClassifier + entry.getKey(), entry.getValue());
+        }
+        packTracker.report(getLog());
+        getLog().info("Attached %d language packs of %s".formatted(jars.size(), targetBundle));
+    }
+
+    /**
+     * Returns the .po files changed since the last incremental build. If any of them changed, all are
+     * returned when the bundles depend on each other or on other files.
+     */
+    private String[] getChangedPoFiles() throws MojoExecutionException {
+        String[] files = getDelta(buildContext.newScanner(poDirectory), new String[]{"**/*.po"}, null);
+        boolean dependsOnOthers = sharedStringPool || messageIds || precompileFormats || pruneWithClasses || instrumentLookups;
+        if ((files.length > 0 && dependsOnOthers)
+                || ((pruneWithKeysFile || messageIds || segmentDepth > 0) && buildContext.hasDelta(new File(poDirectory, keysFile)))) {
+            return getPoFiles();
+        }
+        return files;
+    }
+
+    /**
+     * Returns all .po files, relative to the poDirectory
+     *
+     * @return file names
+     * @throws MojoExecutionException if the poDirectory cannot be scanned
+     */
+    String[] getPoFiles() throws MojoExecutionException {
+        return scan(poDirectory, new String[]{"**/*.po"}, null);
+    }
+
+    /**
+     * Generates the bundles of .po files. A shared string pool is generated from the given files only,
+     * so it needs all of them.
+     *
+     * @param files file names relative to the poDirectory
+     * @throws MojoExecutionException if a bundle cannot be generated
+     */
+    void dist(String[] files) throws MojoExecutionException {
+        tracker = newOutputTracker();
+        cache = newOutputCache();
+        toolOutput = newToolOutput("dist");
+        if (languagePacks && "java".equals(outputFormat)) {
+            throw new MojoExecutionException("languagePacks requires output format 'class', 'properties', 'compressed' or 'json', not 'java'.");
+        }
+        if (instrumentLookups && ("properties".equals(outputFormat) || "json".equals(outputFormat))) {
+            throw new MojoExecutionException("instrumentLookups requires output format 'class', 'java' or 'compressed', not '%s'.".formatted(outputFormat));
+        }
+        MessagePruner pruner = createPruner();
+        if (precompileFormats) {
+            distFormats(files, pruner);
+        }
+        if ("json".equals(outputFormat)) {
+            distJson(files, pruner);
+            tracker.report(getLog());
+            return;
+        }
+        if (segmentDepth > 0) {
+            distSegmented(files, pruner);
+            tracker.report(getLog());
+            return;
+        }
+        if (messageIds) {
+            distIndexed(files, pruner);
+            tracker.report(getLog());
+            return;
+        }
+        if (sharedStringPool || (instrumentLookups && !"compressed".equals(outputFormat))) {
+            distSharedPool(files, pruner);
+            tracker.report(getLog());
+            return;
+        }
+        if ("compressed".equals(outputFormat)) {
+            distCompressed(files, pruner);
+            tracker.report(getLog());
+            return;
+        }
+
         CommandlineFactory cf;
         if ("class".equals(outputFormat)) {
             cf = new MsgFmtCommandlineFactory();
@@ -86,91 +404,500 @@ public class DistMojo extends AbstractGettextMojo {
         } else if ("java".equals(outputFormat)) {
             cf = new MsgFmtSourceCommandlineFactory();
         } else {
-            throw new MojoExecutionException("Unknown output format: %s. Should be 'java', 'class' or 'properties'.".formatted(outputFormat));
+            throw new MojoExecutionException("Unknown output format: %s. Should be 'java', 'class', 'properties', 'compressed' or 'json'.".formatted(outputFormat));
         }
 
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(poDirectory);
-        ds.setIncludes(new String[]{"**/*.po"});
-        ds.scan();
-
-        String[] files = ds.getIncludedFiles();
-        for (String file : files) {
-            getLog().info("Processing " + file);
+        File filterDirectory = null;
+        if (pruner != null || reproducible) {
             try {
-                cf.init();
+                filterDirectory = Files.createTempDirectory("gettext-filtered").toFile();
             } catch (IOException e) {
-                getLog().error("Unable to prepare for processing %s".formatted(file), e);
-                throw new IllegalStateException("Unable to prepare for processing %s".formatted(file), e);
+                throw new MojoExecutionException("Unable to create temp directory", e);
             }
+        }
+        try {
+            for (String file : files) {
+                distFile(cf, file, pruner, filterDirectory);
+            }
+        } finally {
+            if (filterDirectory != null) {
+                try {
+                    FileUtils.deleteDirectory(filterDirectory);
+                } catch (IOException e) {
+                    getLog().warn("Unable to delete " + filterDirectory, e);
+                }
+            }
+        }
+        toolOutput.report(getLog());
+        tracker.report(getLog());
+        if (cache != null) {
+            cache.report(getLog());
+        }
+    }
 
-            File inputFile = new File(poDirectory, file);
-            File outputFile = cf.getOutputFile(inputFile);
+    private void distFile(CommandlineFactory cf, String file, MessagePruner pruner, File filterDirectory) throws MojoExecutionException {
+        getLog().info("Processing " + file);
 
-            if (!isNewer(inputFile, outputFile)) {
-                getLog().info("Not compiling, target is up-to-date: %s".formatted(outputFile));
-                continue;
-            }
+        File inputFile = new File(poDirectory, file);
+        File outputFile = cf.getOutputFile(inputFile);
+
+        // references may change without the .po file changing, so pruned bundles are always rebuilt
+        if (pruner == null && !isNewer(inputFile, outputFile)) {
+            getLog().info("Not compiling, target is up-to-date: %s".formatted(outputFile));
+            return;
+        }
+        if (pruner != null || reproducible) {
+            inputFile = writeFiltered(pruner, inputFile, filterDirectory);
+        }
 
-            Commandline cl = cf.createCommandline(inputFile);
+        File scratchDirectory = null;
+        try {
+            scratchDirectory = createScratchDirectory();
+            Commandline cl = cf.createCommandline(inputFile, scratchDirectory);
             for (String arg : extraArgs) {
                 cl.createArg().setValue(arg);
             }
             getLog().debug("Executing: " + cl.toString());
-            StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-            StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
+            ToolOutput.Job job = toolOutput.newJob(file);
+            String cacheKey = getCacheKey(cl.getLiteralExecutable(), inputFile);
+            if (cacheKey == null || !cache.restoreDirectory(cacheKey, scratchDirectory)) {
+                try {
+                    int ret = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+                    job.finish(ret);
+                    if (ret != 0) {
+                        getLog().warn("%s failed, keeping the existing %s".formatted(cl.getExecutable(), outputFile.getName()));
+                        return;
+                    }
+                    if (cacheKey != null) {
+                        cache.storeDirectory(cacheKey, scratchDirectory);
+                    }
+                } catch (CommandLineException e) {
+                    getLog().error("Could not execute " + cl.getExecutable() + ".", e);
+                    return;
+                }
+            }
+            cf.finish(inputFile, scratchDirectory);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to process file " + file, e);
+        } finally {
+            if (scratchDirectory != null) {
+                try {
+                    FileUtils.deleteDirectory(scratchDirectory);
+                } catch (IOException e) {
+                    getLog().warn("Unable to delete " + scratchDirectory, e);
+                }
+            }
+        }
+    }
+
+    private String getCacheKey(String command, File inputFile) throws IOException {
+        OutputCache.Key key = newCacheKey(cache, "dist", command);
+        if (key == null) {
+            return null;
+        }
+        return key.add(outputFormat).add(targetBundle).add(javaVersion).add(getLocale(inputFile))
+                .addContent(inputFile).build();
+    }
+
+    /**
+     * Creates a scratch directory for a single job next to the output directory. The tools write into
+     * it and changed results are then moved atomically into the output directory.
+     */
+    private File createScratchDirectory() throws IOException {
+        File parent = outputDirectory.getAbsoluteFile().getParentFile();
+        return Files.createTempDirectory(parent.toPath(), ".gettext-").toFile();
+    }
+
+    private void distSharedPool(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        if (!"class".equals(outputFormat) && !"java".equals(outputFormat)) {
+            throw new MojoExecutionException("sharedStringPool requires output format 'class' or 'java', not '%s'.".formatted(outputFormat));
+        }
+        Charset charset = Charset.forName(encoding);
+        JavaBundleWriter writer = new JavaBundleWriter(targetBundle, escapeUnicode, charset);
+        writer.setInstrumented(instrumentLookups);
+        boolean compile = "class".equals(outputFormat);
+
+        // every bundle refers to the pool, so all locales are regenerated together
+        File poolFile = writer.getPackageFile(getBundleDirectory(), writer.getPoolClassName() + (compile ? ".class" : ".java"));
+        if (isUpToDate(files, poolFile, pruner)) {
+            return;
+        }
+
+        Map<String, Catalog> catalogs = readCatalogs(files, pruner);
+        StringPool pool = new StringPool();
+        for (Catalog catalog : catalogs.values()) {
+            JavaBundleWriter.addToPool(pool, catalog);
+        }
+        generateSources(compile, charset, (sourceRoot, classRoot) -> {
+            List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+            if (instrumentLookups) {
+                sources.add(writer.writeStats(sourceRoot));
+            }
+            for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+                sources.add(writer.writeBundle(entry.getKey(), entry.getValue(), pool, sourceRoot));
+            }
+            return sources;
+        });
+        getLog().info("Shared string pool of %s holds %d unique strings for %d locales".formatted(targetBundle, pool.size(), catalogs.size()));
+    }
+
+    private void distFormats(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        Charset charset = Charset.forName(encoding);
+        MessageFormatWriter writer = new MessageFormatWriter(targetBundle, escapeUnicode, charset);
+        boolean compile = !"java".equals(outputFormat);
+
+        // the class holds the patterns of all locales
+        File formatsFile = writer.getPackageFile(getBundleDirectory(), writer.getFormatsClassName() + (compile ? ".class" : ".java"));
+        if (isUpToDate(files, formatsFile, pruner)) {
+            return;
+        }
+
+        Map<String, Catalog> catalogs = readCatalogs(files, pruner);
+        Map<String, Map<String, List<MessagePattern>>> patterns = new TreeMap<>();
+        List<String> errors = new ArrayList<>();
+        int count = 0;
+        for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+            Map<String, List<MessagePattern>> parsed = MessageFormatWriter.parse(entry.getValue(), entry.getKey(), errors);
+            patterns.put(entry.getKey(), parsed);
+            count += parsed.size();
+        }
+        if (!errors.isEmpty()) {
+            errors.forEach(getLog()::error);
+            throw new MojoExecutionException("Found %d invalid java-format strings".formatted(errors.size()));
+        }
+        generateSources(compile, charset, (sourceRoot, classRoot) -> List.of(writer.write(patterns, catalogs, sourceRoot)));
+        getLog().info("Pre-parsed %d java-format messages of %s for %d locales".formatted(count, targetBundle, catalogs.size()));
+    }
+
+    private void distSegmented(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        if (!"class".equals(outputFormat) && !"java".equals(outputFormat)) {
+            throw new MojoExecutionException("segmentDepth requires output format 'class' or 'java', not '%s'.".formatted(outputFormat));
+        }
+        if (sharedStringPool || messageIds) {
+            throw new MojoExecutionException("segmentDepth cannot be combined with sharedStringPool or messageIds.");
+        }
+        File potFile = new File(poDirectory, keysFile);
+        Catalog keys;
+        try {
+            keys = parse(potFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + potFile, e);
+        }
+        Charset charset = Charset.forName(encoding);
+        SegmentedBundleWriter writer = new SegmentedBundleWriter(targetBundle, escapeUnicode, charset, new MessagePackages(keys, segmentDepth));
+        writer.setInstrumented(instrumentLookups);
+        boolean compile = "class".equals(outputFormat);
+
+        // the segments depend on the references of the keys file
+        List<String> changed = new ArrayList<>();
+        for (String file : files) {
+            File inputFile = new File(poDirectory, file);
+            File outputFile = writer.getPackageFile(getBundleDirectory(), writer.getBundleClassName(getLocale(inputFile)) + (compile ? ".class" : ".java"));
+            if (pruner == null && !isNewer(inputFile, outputFile) && !isNewer(potFile, outputFile)) {
+                getLog().info("Not compiling, target is up-to-date: %s".formatted(outputFile));
+            } else {
+                changed.add(file);
+            }
+        }
+        if (changed.isEmpty()) {
+            return;
+        }
+
+        Map<String, Catalog> catalogs = readCatalogs(changed.toArray(new String[0]), pruner);
+        generateSources(compile, charset, (sourceRoot, classRoot) -> {
+            List<File> sources = new ArrayList<>();
+            if (instrumentLookups) {
+                sources.add(writer.writeStats(sourceRoot));
+            }
+            for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+                SegmentedBundleWriter.Result result = writer.writeBundle(entry.getKey(), entry.getValue(), sourceRoot);
+                getLog().info("Split locale %s of %s into %d segments".formatted(entry.getKey(), targetBundle, result.segments()));
+                sources.add(result.file());
+            }
+            return sources;
+        });
+    }
+
+    private void distIndexed(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        if (!"class".equals(outputFormat) && !"java".equals(outputFormat)) {
+            throw new MojoExecutionException("messageIds requires output format 'class' or 'java', not '%s'.".formatted(outputFormat));
+        }
+        File potFile = new File(poDirectory, keysFile);
+        Catalog keys;
+        try {
+            keys = parse(potFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + potFile, e);
+        }
+        Charset charset = Charset.forName(encoding);
+        IndexedBundleWriter writer = new IndexedBundleWriter(targetBundle, escapeUnicode, charset, keys);
+        writer.setInstrumented(instrumentLookups);
+        boolean compile = "class".equals(outputFormat);
+
+        // the IDs are assigned from the keys file and every bundle refers to them and the pool
+        File idsFile = writer.getPackageFile(getBundleDirectory(), writer.getIdsClassName() + (compile ? ".class" : ".java"));
+        if (!isNewer(potFile, idsFile) && isUpToDate(files, idsFile, pruner)) {
+            return;
+        }
+
+        Map<String, Catalog> catalogs = readCatalogs(files, pruner);
+        StringPool pool = new StringPool();
+        writer.addKeysToPool(pool);
+        for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+            writer.addTranslationsToPool(pool, entry.getValue());
+            int unknown = writer.countUnknown(entry.getValue());
+            if (unknown > 0) {
+                getLog().warn("%d messages of locale %s are not in %s and have no ID".formatted(unknown, entry.getKey(), keysFile));
+            }
+        }
+        generateSources(compile, charset, (sourceRoot, classRoot) -> {
+            List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+            if (instrumentLookups) {
+                sources.add(writer.writeStats(sourceRoot));
+            }
+            sources.add(writer.writeIds(pool, sourceRoot));
+            sources.add(writer.writeBase(sourceRoot));
+            for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+                sources.add(writer.writeBundle(entry.getKey(), entry.getValue(), pool, sourceRoot));
+            }
+            return sources;
+        });
+        getLog().info("Generated %d message IDs of %s for %d locales".formatted(writer.size(), targetBundle, catalogs.size()));
+    }
+
+    private void distCompressed(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        Charset charset = Charset.forName(encoding);
+        CompressedBundleWriter writer = new CompressedBundleWriter(targetBundle, escapeUnicode, charset,
+                compressionBlockSize, compressionCacheBlocks);
+        writer.setInstrumented(instrumentLookups);
+
+        // the reader class is shared, so all locales are regenerated together
+        File readerFile = writer.getPackageFile(getBundleDirectory(), writer.getReaderClassName() + ".class");
+        if (isUpToDate(files, readerFile, pruner)) {
+            return;
+        }
+
+        Map<String, Catalog> catalogs = readCatalogs(files, pruner);
+        generateSources(true, charset, (sourceRoot, classRoot) -> {
+            List<File> sources = new ArrayList<>();
+            if (instrumentLookups) {
+                sources.add(writer.writeStats(sourceRoot));
+            }
+            sources.add(writer.writeReader(sourceRoot));
+            for (Map.Entry<String, Catalog> entry : catalogs.entrySet()) {
+                File catalogFile = writer.writeCatalog(entry.getKey(), entry.getValue(), classRoot);
+                getLog().debug("Wrote %s with %d bytes".formatted(catalogFile, catalogFile.length()));
+                sources.add(writer.writeBundle(entry.getKey(), entry.getValue(), sourceRoot));
+            }
+            return sources;
+        });
+    }
+
+    private void distJson(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        if (sharedStringPool || messageIds) {
+            throw new MojoExecutionException("Output format 'json' cannot be combined with sharedStringPool or messageIds.");
+        }
+        File potFile = new File(poDirectory, keysFile);
+        MessagePackages packages = null;
+        if (segmentDepth > 0) {
             try {
-                CommandLineUtils.executeCommandLine(cl, out, err);
-            } catch (CommandLineException e) {
-                getLog().error("Could not execute " + cl.getExecutable() + ".", e);
+                packages = new MessagePackages(parse(potFile), segmentDepth);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to read " + potFile, e);
+            }
+        }
+        JsonCatalogWriter writer = new JsonCatalogWriter(tracker, packages, gzipJson);
+        boolean split = packages != null;
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, files.length)));
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (String file : files) {
+                results.add(executor.submit(() -> {
+                    distJson(writer, file, pruner, split ? potFile : null);
+                    return null;
+                }));
             }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Unable to write JSON catalogs", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Writes the JSON files of a locale unless they are newer than the .po file and the keys file
+     * splitting them
+     */
+    private void distJson(JsonCatalogWriter writer, String file, MessagePruner pruner, File potFile) throws IOException {
+        File inputFile = new File(poDirectory, file);
+        String locale = getLocale(inputFile);
+        File outputFile = new File(getBundleDirectory(), "%s_%s.json".formatted(targetBundle.replace('.', File.separatorChar), locale));
+        if (pruner == null && !isNewer(inputFile, outputFile) && (potFile == null || !isNewer(potFile, outputFile))) {
+            getLog().info("Not writing, target is up-to-date: %s".formatted(outputFile));
+            return;
+        }
+        getLog().info("Processing " + file);
+        List<File> written = writer.write(filter(pruner, parse(inputFile)), locale, outputFile);
+        getLog().debug("Wrote %d JSON files of locale %s".formatted(written.size(), locale));
+    }
+
+    private boolean isUpToDate(String[] files, File target, MessagePruner pruner) {
+        // references may change without the .po files changing, so pruned bundles are always rebuilt
+        boolean upToDate = pruner == null && target.exists();
+        for (String file : files) {
+            upToDate &= !isNewer(new File(poDirectory, file), target);
+        }
+        if (upToDate) {
+            getLog().info("Not compiling, target is up-to-date: %s".formatted(target));
+        }
+        return upToDate;
+    }
+
+    private Map<String, Catalog> readCatalogs(String[] files, MessagePruner pruner) throws MojoExecutionException {
+        Arrays.sort(files);
+        Map<String, Catalog> catalogs = new TreeMap<>();
+        for (String file : files) {
+            getLog().info("Processing " + file);
+            File inputFile = new File(poDirectory, file);
             try {
-                cf.finish();
+                catalogs.put(getLocale(inputFile), filter(pruner, parse(inputFile)));
             } catch (IOException e) {
-                getLog().error("Unable to process file " + file, e);
-                throw new IllegalStateException("Unable to process file " + file, e);
+                throw new MojoExecutionException("Unable to read " + inputFile, e);
             }
-            if (!escapeUnicode && "java".equals(outputFormat)) {
-                GettextUtils.unescapeUnicode(outputFile, encoding, getLog());
+        }
+        return catalogs;
+    }
+
+    /**
+     * Generates sources and, if compiling, class files into a scratch directory, then commits the
+     * changed sources or classes to the output directory.
+     */
+    private void generateSources(boolean compile, Charset charset, SourceGenerator generator) throws MojoExecutionException {
+        File scratchDirectory = null;
+        try {
+            scratchDirectory = createScratchDirectory();
+            File sourceRoot = new File(scratchDirectory, "sources");
+            File classRoot = new File(scratchDirectory, "classes");
+            Files.createDirectories(classRoot.toPath());
+            List<File> sources = generator.generate(sourceRoot, classRoot);
+            if (compile) {
+                JavaSourceCompiler.compile(sources, classRoot, charset, release, getLog());
+                tracker.commitDirectory(classRoot, getBundleDirectory());
+            } else {
+                tracker.commitDirectory(sourceRoot, getBundleDirectory());
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write bundle sources", e);
+        } finally {
+            if (scratchDirectory != null) {
+                try {
+                    FileUtils.deleteDirectory(scratchDirectory);
+                } catch (IOException e) {
+                    getLog().warn("Unable to delete " + scratchDirectory, e);
+                }
             }
         }
     }
 
+    private MessagePruner createPruner() throws MojoExecutionException {
+        if (!pruneWithKeysFile && !pruneWithClasses) {
+            return null;
+        }
+        MessagePruner pruner = new MessagePruner();
+        File potFile = new File(poDirectory, keysFile);
+        try {
+            if (pruneWithKeysFile) {
+                pruner.addKeysFile(parse(potFile));
+            }
+            if (pruneWithClasses) {
+                int classes = pruner.addClasses(outputDirectory, MessagePruner.parseKeywords(keywords));
+                getLog().info("Found %d classes calling gettext keywords in %s".formatted(classes, outputDirectory));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to collect message references", e);
+        }
+        return pruner;
+    }
+
+    private Catalog prune(MessagePruner pruner, Catalog catalog) {
+        Catalog pruned = pruner.prune(catalog);
+        getLog().info("Pruned %d of %d messages from %s".formatted(catalog.size() - pruned.size(), catalog.size(), catalog.getFile().getName()));
+        return pruned;
+    }
+
+    /**
+     * Drops unreferenced messages if pruning and the volatile headers if reproducible
+     */
+    private Catalog filter(MessagePruner pruner, Catalog catalog) {
+        if (pruner != null) {
+            catalog = prune(pruner, catalog);
+        }
+        if (reproducible) {
+            catalog = catalog.withoutHeaderFields(VOLATILE_HEADERS);
+        }
+        return catalog;
+    }
+
+    private File writeFiltered(MessagePruner pruner, File inputFile, File filterDirectory) throws MojoExecutionException {
+        File filteredFile = new File(filterDirectory, inputFile.getName());
+        try {
+            new PoWriter(false).write(filter(pruner, parse(inputFile)), filteredFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to filter " + inputFile, e);
+        }
+        return filteredFile;
+    }
+
     private boolean isNewer(File inputFile, File outputFile) {
         return inputFile.lastModified() > outputFile.lastModified();
     }
 
-    private interface CommandlineFactory {
-        Commandline createCommandline(File file);
+    private String getLocale(File file) {
+        String locale = file.getName().substring(0, file.getName().lastIndexOf('.'));
+        return GettextUtils.getJavaLocale(locale);
+    }
+
+    private interface SourceGenerator {
+        List<File> generate(File sourceRoot, File classRoot) throws IOException;
+    }
 
-        File getOutputFile(File input);
+    private abstract class CommandlineFactory {
+        public abstract Commandline createCommandline(File file, File scratchDirectory);
 
-        void init() throws IOException;
+        public abstract File getOutputFile(File input);
 
-        void finish() throws IOException;
+        /**
+         * Commits the results the tool wrote into the scratch directory
+         */
+        public void finish(File input, File scratchDirectory) throws IOException {
+            tracker.commitDirectory(scratchDirectory, getBundleDirectory());
+        }
     }
 
-    private class MsgFmtCommandlineFactory implements CommandlineFactory {
+    private class MsgFmtCommandlineFactory extends CommandlineFactory {
 
         protected String outputExtension() {
             return ".class";
         }
 
         public File getOutputFile(File input) {
-            String locale = getLocale(input);
-            return new File(outputDirectory, "%s_%s%s".formatted(targetBundle.replace('.', File.separatorChar), locale, outputExtension()));
+            return getOutputFile(getBundleDirectory(), input);
         }
 
-        private String getLocale(File file) {
-            String locale = file.getName().substring(0, file.getName().lastIndexOf('.'));
-            return GettextUtils.getJavaLocale(locale);
-        }
-
-        protected File getOutputDirectory() {
-            return outputDirectory;
+        protected File getOutputFile(File root, File input) {
+            String locale = getLocale(input);
+            return new File(root, "%s_%s%s".formatted(targetBundle.replace('.', File.separatorChar), locale, outputExtension()));
         }
 
-        public Commandline createCommandline(File file) {
+        public Commandline createCommandline(File file, File scratchDirectory) {
             Commandline cl = new Commandline();
             cl.setExecutable(msgfmtCmd);
 
@@ -181,7 +908,7 @@ public class DistMojo extends AbstractGettextMojo {
             }
 
             cl.createArg().setValue("-d");
-            cl.createArg().setFile(getOutputDirectory());
+            cl.createArg().setFile(scratchDirectory);
             cl.createArg().setValue("-r");
             cl.createArg().setValue(targetBundle);
             cl.createArg().setValue("-l");
@@ -189,18 +916,14 @@ public class DistMojo extends AbstractGettextMojo {
             cl.createArg().setFile(file);
             return cl;
         }
-
-        @Override
-        public void init() throws IOException {
-        }
-
-        @Override
-        public void finish() throws IOException {
-        }
     }
 
+    /**
+     * msgfmt writes the source into a scratch directory of the job. From there it is committed to its
+     * final location, or, when unescaping, streamed through the unescaper into a sibling of the final
+     * file that is committed, so the source is written only once and no other job sees a partial file.
+     */
     private class MsgFmtSourceCommandlineFactory extends MsgFmtCommandlineFactory {
-        private File tmpOutDir;
 
         @Override
         protected String outputExtension() {
@@ -208,51 +931,47 @@ public class DistMojo extends AbstractGettextMojo {
         }
 
         @Override
-        public void init() throws IOException {
-            super.init();
-            try {
-                tmpOutDir = Files.createTempDirectory(msgfmtCmd + sourceLocale).toFile();
-            } catch (IOException e) {
-                getLog().error("Unable to create temp directory", e);
-                throw new IllegalStateException("Unable to create temp directory", e);
-            }
-        }
-
-        @Override
-        protected File getOutputDirectory() {
-            return tmpOutDir;
-        }
-
-        @Override
-        public Commandline createCommandline(File file) {
-            Commandline cl = super.createCommandline(file);
+        public Commandline createCommandline(File file, File scratchDirectory) {
+            Commandline cl = super.createCommandline(file, scratchDirectory);
             cl.createArg().setValue("--source");
             return cl;
         }
 
         @Override
-        public void finish() throws IOException {
-            getLog().debug("Copying java files from " + getOutputDirectory() + " to " + super.getOutputDirectory());
-            FileUtils.copyDirectoryStructure(getOutputDirectory(), super.getOutputDirectory());
-            FileUtils.deleteDirectory(getOutputDirectory());
+        public void finish(File input, File scratchDirectory) throws IOException {
+            File generated = getOutputFile(scratchDirectory, input);
+            File outputFile = getOutputFile(input);
+            if (!generated.exists()) {
+                throw new IOException("msgfmt did not generate " + generated);
+            }
+            if (escapeUnicode) {
+                super.finish(input, scratchDirectory);
+            } else {
+                getLog().info("Unescaping unicode in " + outputFile.getName());
+                File tmp = tracker.newTempFile(outputFile);
+                GettextUtils.unescapeUnicode(generated, tmp, encoding);
+                tracker.commit(tmp, outputFile);
+            }
         }
     }
 
-    private class MsgCatCommandlineFactory implements CommandlineFactory {
+    private class MsgCatCommandlineFactory extends CommandlineFactory {
 
         public File getOutputFile(File input) {
+            return getOutputFile(getBundleDirectory(), input);
+        }
+
+        private File getOutputFile(File root, File input) {
             String basepath = targetBundle.replace('.', File.separatorChar);
-            String locale = input.getName().substring(0, input.getName().lastIndexOf('.'));
-            locale = GettextUtils.getJavaLocale(locale);
-            return new File(outputDirectory, "%s_%s.properties".formatted(basepath, locale));
+            return new File(root, "%s_%s.properties".formatted(basepath, getLocale(input)));
         }
 
-        public Commandline createCommandline(File file) {
+        public Commandline createCommandline(File file, File scratchDirectory) {
             Commandline cl = new Commandline();
 
-            File outputFile = getOutputFile(file);
+            File outputFile = getOutputFile(scratchDirectory, file);
             File parent = outputFile.getParentFile();
-            if (parent.exists()) {
+            if (!parent.exists()) {
                 if (!parent.mkdirs()) {
                     throw new RuntimeException("Directory could not be created: %s".formatted(parent.getAbsolutePath()));
                 }
@@ -268,14 +987,6 @@ public class DistMojo extends AbstractGettextMojo {
 
             return cl;
         }
-
-        @Override
-        public void init() {
-        }
-
-        @Override
-        public void finish() {
-        }
     }
 
 }
@@ -5,21 +5,21 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.StringUtils;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Invokes xgettext to extract messages from source code and store them in the keys.pot file.
@@ -77,7 +77,86 @@ public class GettextMojo extends AbstractGettextMojo {
     @Parameter
     protected FileSet extraSourceFiles = new FileSet();
 
+    /**
+     * Extract only the sources changed since this git ref, e.g. origin/main, and patch their messages
+     * into the existing keys file. Changes are taken from the local working tree relative to the merge
+     * base of the ref and HEAD, including uncommitted and untracked sources. All sources are extracted
+     * if the keys file does not exist, extraSourceFiles are configured or git cannot tell the changes.
+     * Meant for quick local builds, the keys file of a release should be extracted from all sources.
+     */
+    @Parameter(property = "gettext.changedSince")
+    protected String changedSince;
+
+    /**
+     * The msgcat command formatting the keys.pot file patched with the messages of changed sources.
+     */
+    @Parameter(required = true, defaultValue = "msgcat")
+    protected String msgcatCmd;
+
+    /**
+     * The git command used to find the changed sources.
+     */
+    @Parameter(required = true, defaultValue = "git")
+    protected String gitCmd;
+
+    /**
+     * Collector of the xgettext output shared by several extractions, which report it themselves.
+     */
+    ToolOutput sharedToolOutput;
+
+    /**
+     * Set if xgettext failed or could not be executed in the last extraction.
+     */
+    boolean failed;
+
     public void execute() throws MojoExecutionException {
+        if (!hasSourceDelta()) {
+            getLog().info("No sources changed, keeping " + keysFile);
+            return;
+        }
+        extract();
+    }
+
+    /**
+     * Returns true if this is not an incremental build or if sources changed since the last build
+     */
+    private boolean hasSourceDelta() {
+        String[] patterns = includes != null && includes.length > 0 ? includes : new String[]{"**/*.java"};
+        if (hasDelta(sourceDirectory, patterns, excludes)) {
+            return true;
+        }
+        if (extraSourceFiles.getDirectory() == null) {
+            return false;
+        }
+        List<String> extraIncludes = extraSourceFiles.getIncludes();
+        return hasDelta(new File(extraSourceFiles.getDirectory()),
+                extraIncludes.isEmpty() ? new String[]{"**"} : extraIncludes.toArray(new String[0]),
+                extraSourceFiles.getExcludes().toArray(new String[0]));
+    }
+
+    /**
+     * Extracts the messages of all sources, or of the sources changed since changedSince, into the
+     * keys.pot file
+     *
+     * @return true if the keys.pot file changed
+     * @throws MojoExecutionException if the keys.pot file cannot be written
+     */
+    boolean extract() throws MojoExecutionException {
+        return extract(null);
+    }
+
+    /**
+     * Extracts the messages of the changed sources into the keys.pot file, patching it, or of all
+     * sources if it cannot be patched
+     *
+     * @param changedFiles sources changed since the keys.pot file was written, relative to the source
+     *                     directory with / as separator, null to extract all sources or the sources
+     *                     changed since changedSince
+     * @return true if the keys.pot file changed
+     * @throws MojoExecutionException if the keys.pot file cannot be written
+     */
+    boolean extract(Set<String> changedFiles) throws MojoExecutionException {
+        failed = false;
         getLog().info("Invoking xgettext for Java files in '%s'.".formatted(sourceDirectory.getAbsolutePath()));
 
         if (!poDirectory.exists()) {
@@ -88,45 +167,46 @@ public class GettextMojo extends AbstractGettextMojo {
             }
         }
 
-        Commandline cl = new Commandline();
-        cl.setExecutable(xgettextCmd);
-        for (String arg : extraArgs) {
-            cl.createArg().setValue(arg);
-        }
-        cl.createArg().setValue("--from-code=" + encoding);
         File messagesPotFile = new File(poDirectory, keysFile);
-        cl.createArg().setValue("--output=" + messagesPotFile.getAbsolutePath());
-        cl.createArg().setValue("--language=Java");
-        if (nowrap) {
-            cl.createArg().setValue("--no-wrap");
+        if (changedFiles == null) {
+            changedFiles = findChangedFiles(messagesPotFile);
+        } else if (!canPatch(messagesPotFile)) {
+            changedFiles = null;
         }
-        cl.createArg().setLine(keywords);
-        cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
-        cl.setWorkingDirectory(sourceDirectory.getAbsolutePath());
-
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(sourceDirectory);
-        if (includes != null && includes.length > 0) {
-            ds.setIncludes(includes);
-        } else {
-            ds.setIncludes(new String[]{"**/*.java"});
+        if (changedFiles != null) {
+            Boolean changed = extractChanged(messagesPotFile, changedFiles);
+            if (changed != null) {
+                return changed;
+            }
         }
-        if (excludes != null && excludes.length > 0) {
-            ds.setExcludes(excludes);
+
+        OutputTracker tracker = newOutputTracker();
+        File tempPotFile;
+        try {
+            tempPotFile = tracker.newTempFile(messagesPotFile);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to create temp file for " + messagesPotFile, e);
         }
-        ds.scan();
-        String[] files = ds.getIncludedFiles();
+        Commandline cl = createCommandline(tempPotFile);
+
+        String[] files = scan(sourceDirectory, "**/*.java");
         List<String> fileNameList = Collections.emptyList();
         if (extraSourceFiles.getDirectory() != null) {
             try {
                 fileNameList = FileUtils.getFileNames(new File(extraSourceFiles.getDirectory()),
                         StringUtils.join(extraSourceFiles.getIncludes().iterator(), ","),
                         StringUtils.join(extraSourceFiles.getExcludes().iterator(), ","), false);
+                if (reproducible) {
+                    Collections.sort(fileNameList);
+                }
             } catch (IOException e) {
                 throw new MojoExecutionException("error finding extra source files", e);
             }
         }
 
+        OutputCache cache = newOutputCache();
+        String cacheKey = getCacheKey(cache, files, fileNameList);
+
         File file = createListFile(files, fileNameList);
         if (file != null) {
             cl.createArg().setValue("--files-from=" + file.getAbsolutePath());
@@ -137,22 +217,243 @@ public class GettextMojo extends AbstractGettextMojo {
         }
 
         getLog().debug("Executing: %s".formatted(cl.toString()));
-        StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-        StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
+        ToolOutput output = sharedToolOutput != null ? sharedToolOutput : newToolOutput("xgettext");
+        ToolOutput.Job job = output.newJob(keysFile);
         try {
-            CommandLineUtils.executeCommandLine(cl, out, err);
+            boolean restored = cacheKey != null && cache.restoreFile(cacheKey, tempPotFile);
+            if (!restored) {
+                int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+                job.finish(exitCode);
+                if (exitCode != 0) {
+                    getLog().warn("xgettext failed, keeping the existing %s".formatted(messagesPotFile.getName()));
+                    failed = true;
+                    return false;
+                }
+            }
+            // xgettext does not write a file if it found no messages
+            if (tempPotFile.length() == 0) {
+                getLog().warn("xgettext did not write %s, keeping the existing file".formatted(messagesPotFile.getName()));
+                return false;
+            }
+            if (!restored) {
+                normalize(tempPotFile, true);
+                if (cacheKey != null) {
+                    cache.storeFile(cacheKey, tempPotFile);
+                }
+            }
+            boolean changed = tracker.commit(tempPotFile, messagesPotFile);
+            tracker.report(getLog());
+            return changed;
         } catch (CommandLineException e) {
             getLog().error("Could not execute " + xgettextCmd + ".", e);
+            failed = true;
+            return false;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + messagesPotFile, e);
+        } finally {
+            tempPotFile.delete();
+            if (output != sharedToolOutput) {
+                output.report(getLog());
+            }
+            if (cache != null) {
+                cache.report(getLog());
+            }
+            // the JVM may serve many builds, like in the Maven daemon, so deleteOnExit would leak
+            if (file != null) {
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Creates the xgettext command line without the source files
+     *
+     * @param output file xgettext writes
+     * @return command line
+     */
+    private Commandline createCommandline(File output) {
+        Commandline cl = new Commandline();
+        cl.setExecutable(xgettextCmd);
+        for (String arg : extraArgs) {
+            cl.createArg().setValue(arg);
+        }
+        cl.createArg().setValue("--from-code=" + encoding);
+        cl.createArg().setValue("--output=" + output.getAbsolutePath());
+        cl.createArg().setValue("--language=Java");
+        if (nowrap) {
+            cl.createArg().setValue("--no-wrap");
+        }
+        cl.createArg().setLine(keywords);
+        cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
+        cl.setWorkingDirectory(sourceDirectory.getAbsolutePath());
+        return cl;
+    }
+
+    /**
+     * Returns the sources changed since changedSince if the keys.pot file can be patched with them
+     *
+     * @param messagesPotFile keys.pot file
+     * @return paths relative to the source directory with / as separator, null to extract all sources
+     */
+    private Set<String> findChangedFiles(File messagesPotFile) {
+        if (changedSince == null || changedSince.isBlank() || !canPatch(messagesPotFile)) {
+            return null;
+        }
+        Set<String> changedFiles = new GitChanges(gitCmd, sourceDirectory, getLog()).changedSince(changedSince);
+        if (changedFiles == null) {
+            getLog().info("Unable to find the sources changed since %s in git, extracting all sources".formatted(changedSince));
+        }
+        return changedFiles;
+    }
+
+    /**
+     * Returns true if the keys.pot file can be patched with the messages of changed sources
+     */
+    private boolean canPatch(File messagesPotFile) {
+        if (!messagesPotFile.exists()) {
+            getLog().info("%s does not exist yet, extracting all sources".formatted(messagesPotFile.getName()));
+            return false;
+        }
+        if (extraSourceFiles.getDirectory() != null) {
+            getLog().info("Changed sources cannot be extracted with extraSourceFiles, extracting all sources");
+            return false;
         }
-        if (!printPOTCreationDate) {
-            GettextUtils.removePotCreationDate(messagesPotFile, getLog());
+        return true;
+    }
+
+    /**
+     * Extracts the messages of the changed sources and patches them into the existing keys.pot file.
+     * Sources outside the includes are ignored, deleted sources only lose their references. The
+     * patched file is written by msgcat, so it is formatted like a full extraction.
+     *
+     * @param messagesPotFile keys.pot file
+     * @param changedFiles    changed sources
+     * @return true if the keys.pot file changed, null if it was not patched and all sources must be
+     * extracted
+     * @throws MojoExecutionException if the keys.pot file cannot be read or written
+     */
+    private Boolean extractChanged(File messagesPotFile, Set<String> changedFiles) throws MojoExecutionException {
+        List<String> files = new ArrayList<>();
+        for (String name : scan(sourceDirectory, "**/*.java")) {
+            if (changedFiles.contains(name.replace(File.separatorChar, '/'))) {
+                files.add(name);
+            }
+        }
+        getLog().info("Extracting %d changed sources".formatted(files.size()));
+
+        OutputTracker tracker = newOutputTracker();
+        File extractedFile = null;
+        File patchedFile = null;
+        File tempPotFile = null;
+        ToolOutput output = sharedToolOutput != null ? sharedToolOutput : newToolOutput("xgettext");
+        String tool = xgettextCmd;
+        try {
+            Catalog extracted = new Catalog(messagesPotFile);
+            if (!files.isEmpty()) {
+                extractedFile = Files.createTempFile(poDirectory.toPath(), "." + keysFile + ".", ".tmp").toFile();
+                Commandline cl = createCommandline(extractedFile);
+                for (String name : files) {
+                    cl.createArg().setValue(toUnixPath(name));
+                }
+                getLog().debug("Executing: %s".formatted(cl.toString()));
+                ToolOutput.Job job = output.newJob(keysFile);
+                int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+                job.finish(exitCode);
+                if (exitCode != 0) {
+                    // patching with nothing extracted would drop the messages of the changed sources
+                    getLog().warn("xgettext failed on the changed sources, extracting all sources");
+                    return null;
+                }
+                // xgettext does not write a file if it found no messages
+                if (extractedFile.length() > 0) {
+                    normalize(extractedFile, true);
+                    extracted = PoParser.parse(extractedFile);
+                }
+            }
+
+            KeysPatcher.Result result = new KeysPatcher(changedFiles, "by-file".equalsIgnoreCase(sort))
+                    .patch(parse(messagesPotFile), extracted);
+            if (result == null) {
+                getLog().info("Messages of the changed sources are used in other sources too, extracting all sources");
+                return null;
+            }
+            getLog().info("Patched %s: %d messages added, %d removed".formatted(messagesPotFile.getName(),
+                    result.added(), result.removed()));
+            patchedFile = Files.createTempFile(poDirectory.toPath(), "." + keysFile + ".", ".tmp").toFile();
+            new PoWriter(false).write(result.catalog(), patchedFile);
+
+            tool = msgcatCmd;
+            tempPotFile = tracker.newTempFile(messagesPotFile);
+            Commandline cl = new Commandline();
+            cl.setExecutable(msgcatCmd);
+            cl.createArg().setValue("--use-first");
+            if (nowrap) {
+                cl.createArg().setValue("--no-wrap");
+            }
+            cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
+            cl.createArg().setValue("-o");
+            cl.createArg().setFile(tempPotFile);
+            cl.createArg().setFile(patchedFile);
+            getLog().debug("Executing: %s".formatted(cl.toString()));
+            ToolOutput msgcatOutput = newToolOutput("msgcat");
+            ToolOutput.Job job = msgcatOutput.newJob(keysFile);
+            int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+            job.finish(exitCode);
+            msgcatOutput.report(getLog());
+            if (exitCode != 0 || tempPotFile.length() == 0) {
+                getLog().warn("msgcat failed on the patched %s, extracting all sources".formatted(keysFile));
+                return null;
+            }
+            normalize(tempPotFile, true);
+            boolean changed = tracker.commit(tempPotFile, messagesPotFile);
+            tracker.report(getLog());
+            return changed;
+        } catch (CommandLineException e) {
+            getLog().error("Could not execute " + tool + ".", e);
+            return null;
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to patch " + messagesPotFile, e);
+        } finally {
+            if (extractedFile != null) {
+                extractedFile.delete();
+            }
+            if (patchedFile != null) {
+                patchedFile.delete();
+            }
+            if (tempPotFile != null) {
+                tempPotFile.delete();
+            }
+            if (output != sharedToolOutput) {
+                output.report(getLog());
+            }
+        }
+    }
+
+    /**
+     * Builds the build cache key from the options and the names and contents of all sources
+     */
+    private String getCacheKey(OutputCache cache, String[] files, List<String> extraFiles) throws MojoExecutionException {
+        OutputCache.Key key = newCacheKey(cache, "gettext", xgettextCmd);
+        if (key == null) {
+            return null;
+        }
+        key.add(encoding).add(keywords).add(sort).add(String.valueOf(nowrap));
+        try {
+            for (String name : files) {
+                key.add(name).addContent(new File(sourceDirectory, name));
+            }
+            for (String name : extraFiles) {
+                key.add(name).addContent(new File(extraSourceFiles.getDirectory(), name));
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read sources", e);
         }
+        return key.build();
     }
 
     private File createListFile(String[] files, List<String> fileList) {
         try {
             File listFile = File.createTempFile("maven", null);
-            listFile.deleteOnExit();
 
             try (BufferedWriter writer = new BufferedWriter(new FileWriter(listFile))) {
                 for (String file : files) {
@@ -2,29 +2,40 @@ package io.seventytwo.oss.maven.gettext;
 
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.logging.Log;
-import org.codehaus.plexus.util.FileUtils;
 import org.codehaus.plexus.util.IOUtil;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.io.InputStreamReader;
 import java.io.OutputStreamWriter;
+import java.io.Reader;
 import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.regex.Pattern;
 
 /**
  * Utility class
  */
 public class GettextUtils {
 
+    private static final Pattern REFERENCE_LINE = Pattern.compile(":\\d+$");
+
     /**
      * Handels the locale string and returns the correct representation
      *
@@ -129,18 +140,79 @@ public class GettextUtils {
                 }
             }
         }
-        OutputStream os = null;
+        byte[] result = new byte[contents.length - (headerEnd - headerStart)];
+        System.arraycopy(contents, 0, result, 0, headerStart);
+        System.arraycopy(contents, headerEnd, result, headerStart, contents.length - headerEnd);
         try {
-            os = new FileOutputStream(file);
-            os.write(contents, 0, headerStart);
-            os.write(contents, headerEnd, contents.length - headerEnd);
+            replace(file, result);
         } catch (IOException e) {
             throw new MojoExecutionException("Unable to write " + file, e);
-        } finally {
-            IOUtil.close(os);
         }
     }
 
+    /**
+     * Makes a po or pot file written by a tool reproducible: header fields that change between runs
+     * are removed, and the line numbers of source references, so that edits elsewhere in a source do
+     * not change the file. References to the same source are merged.
+     *
+     * @param file         po or pot file
+     * @param headerFields names of the header fields to remove
+     * @param log          log
+     * @throws MojoExecutionException if the file cannot be rewritten
+     */
+    static void makeReproducible(File file, Collection<String> headerFields, Log log) throws MojoExecutionException {
+        log.debug("Normalizing %s".formatted(file.getName()));
+        // the patterns are ascii, so latin-1 keeps the bytes of any charset the tools write
+        String contents;
+        try {
+            contents = Files.readString(file.toPath(), StandardCharsets.ISO_8859_1);
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to read " + file, e);
+        }
+        StringBuilder sb = new StringBuilder(contents.length());
+        boolean header = true;
+        boolean removingField = false;
+        Set<String> references = new HashSet<>();
+        for (String line : contents.split("(?<=\n)")) {
+            String trimmed = line.strip();
+            if (trimmed.isEmpty()) {
+                header = false;
+                references.clear();
+            } else if (removingField || (header && isHeaderField(trimmed, headerFields))) {
+                // a long field may be wrapped into several strings, the last one ends the field
+                removingField = !trimmed.endsWith("\\n\"");
+                continue;
+            } else if (trimmed.startsWith("#:")) {
+                StringBuilder refs = new StringBuilder();
+                for (String reference : trimmed.substring(2).trim().split("\\s+")) {
+                    String source = REFERENCE_LINE.matcher(reference).replaceFirst("");
+                    if (references.add(source)) {
+                        refs.append(' ').append(source);
+                    }
+                }
+                if (refs.length() > 0) {
+                    sb.append("#:").append(refs).append(line.endsWith("\r\n") ? "\r\n" : "\n");
+                }
+                continue;
+            }
+            sb.append(line);
+        }
+        try {
+            replace(file, sb.toString().getBytes(StandardCharsets.ISO_8859_1));
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to write " + file, e);
+        }
+    }
+
+    private static boolean isHeaderField(String line, Collection<String> names) {
+        for (String name : names) {
+            if (line.regionMatches(true, 0, "\"" + name + ":", 0, name.length() + 2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Unescape Unicode
      *
@@ -152,28 +224,88 @@ public class GettextUtils {
     public static void unescapeUnicode(File file, String encoding, Log log) throws MojoExecutionException {
         log.info("Unescaping unicode in " + file.getName());
 
-        String contents;
         try {
-            contents = FileUtils.fileRead(file, encoding);
+            File tmp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), "." + file.getName() + ".", ".tmp").toFile();
+            unescapeUnicode(file, tmp, encoding);
+            moveAtomically(tmp.toPath(), file.toPath());
         } catch (IOException e) {
-            throw new MojoExecutionException("Unable to load " + file.getName(), e);
-        }
-        try (FileOutputStream os = new FileOutputStream(file);
-             Writer w = new BufferedWriter(new OutputStreamWriter(os, encoding))) {
-            int length = contents.length();
-            for (int i = 0; i < length; i++) {
-                char c = contents.charAt(i);
-                if (c == '\\'
-                        && i + 1 < length && contents.charAt(i + 1) == 'u') {
-                    String code = contents.substring(i + 2, i + 6);
-                    w.write(Integer.parseInt(code, 16));
-                    i += 5;
-                } else {
-                    w.append(c);
+            throw new MojoExecutionException("Unable to unescape " + file, e);
+        }
+    }
+
+    /**
+     * Unescapes the unicode escapes of a Java source while streaming it into another file. Escaped
+     * backslashes are kept, so "\\u0041" is not mistaken for an escape.
+     *
+     * @param source   input file
+     * @param target   output file
+     * @param encoding encoding of both files
+     * @throws IOException Problem with file handling
+     */
+    public static void unescapeUnicode(File source, File target, String encoding) throws IOException {
+        try (Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(source), encoding));
+             Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), encoding))) {
+            int c;
+            while ((c = r.read()) != -1) {
+                if (c != '\\') {
+                    w.write(c);
+                    continue;
+                }
+                r.mark(6);
+                int next = r.read();
+                if (next != 'u') {
+                    // keep escaped backslashes together, so they cannot start an escape
+                    w.write(c);
+                    if (next != -1) {
+                        w.write(next);
+                    }
+                    continue;
                 }
+                char[] code = new char[4];
+                int n = r.read(code);
+                if (n == 4) {
+                    try {
+                        w.write(Integer.parseInt(new String(code), 16));
+                        continue;
+                    } catch (NumberFormatException ignored) {
+                        // not an escape, copied as is below
+                    }
+                }
+                r.reset();
+                w.write(c);
             }
-        } catch (IOException e) {
-            throw new MojoExecutionException("Unable to write " + file, e);
+        }
+    }
+
+    /**
+     * Replaces the content of a file atomically, so a concurrent reader never sees a partial file
+     *
+     * @param file     file to replace
+     * @param contents new content
+     * @throws IOException if the file cannot be written
+     */
+    static void replace(File file, byte[] contents) throws IOException {
+        Path tmp = Files.createTempFile(file.getAbsoluteFile().getParentFile().toPath(), "." + file.getName() + ".", ".tmp");
+        try {
+            Files.write(tmp, contents);
+            moveAtomically(tmp, file.toPath());
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+    }
+
+    /**
+     * Moves a file, replacing the target atomically if the file system supports it.
+     *
+     * @param source file to move
+     * @param target target file
+     * @throws IOException if the file cannot be moved
+     */
+    public static void moveAtomically(Path source, Path target) throws IOException {
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
         }
     }
 }
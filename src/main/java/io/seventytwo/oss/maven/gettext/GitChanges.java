@@ -0,0 +1,93 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import java.io.File;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds the files of a directory changed in the working tree of the local git repository since a
+ * base ref, by running the git executable. Only the local repository is read, nothing is fetched.
+ */
+public class GitChanges {
+
+    private final String gitCmd;
+    private final File directory;
+    private final Log log;
+
+    /**
+     * Ctor
+     *
+     * @param gitCmd    git command
+     * @param directory directory inside the working tree
+     * @param log       log
+     */
+    public GitChanges(String gitCmd, File directory, Log log) {
+        this.gitCmd = gitCmd;
+        this.directory = directory;
+        this.log = log;
+    }
+
+    /**
+     * Returns the files below the directory that differ between the merge base of the ref and HEAD
+     * and the working tree, including uncommitted, deleted and untracked files. Renamed files are
+     * returned with their old and new names.
+     *
+     * @param ref base ref, e.g. origin/main
+     * @return paths relative to the directory with / as separator, null if the ref is not available
+     * or the directory is not in a git working tree
+     */
+    public Set<String> changedSince(String ref) {
+        String base = git("merge-base", ref, "HEAD");
+        if (base == null || base.isBlank()) {
+            return null;
+        }
+        String diff = git("diff", "--name-only", "--no-renames", "--relative", "-z", base.strip(), "--");
+        String untracked = git("ls-files", "--others", "--exclude-standard", "-z");
+        if (diff == null || untracked == null) {
+            return null;
+        }
+        Set<String> files = new TreeSet<>();
+        for (String output : new String[]{diff, untracked}) {
+            for (String path : output.split("\0")) {
+                // the consumer appends a line separator to the output, which ends up as last path
+                if (!path.isBlank()) {
+                    files.add(path);
+                }
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Runs git in the directory
+     *
+     * @return output, null if git failed
+     */
+    private String git(String... args) {
+        Commandline cl = new Commandline();
+        cl.setExecutable(gitCmd);
+        cl.setWorkingDirectory(directory);
+        for (String arg : args) {
+            cl.createArg().setValue(arg);
+        }
+        log.debug("Executing: " + cl);
+        CommandLineUtils.StringStreamConsumer out = new CommandLineUtils.StringStreamConsumer();
+        CommandLineUtils.StringStreamConsumer err = new CommandLineUtils.StringStreamConsumer();
+        try {
+            int exitCode = CommandLineUtils.executeCommandLine(cl, out, err);
+            if (exitCode != 0) {
+                log.debug("git %s failed with exit code %d: %s".formatted(args[0], exitCode, err.getOutput().strip()));
+                return null;
+            }
+            return out.getOutput();
+        } catch (CommandLineException e) {
+            log.debug("Could not execute " + gitCmd, e);
+            return null;
+        }
+    }
+}
@@ -0,0 +1,513 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Writes bundles whose translations are stored in arrays indexed by dense int IDs. The IDs are
+ * assigned to the messages of the keys file in file order and generated as constants, so hot code can
+ * look up a translation by array index instead of hashing the msgid. The bundles still implement the
+ * string keyed lookup of Gettext Commons. Strings are kept in a string pool shared by all locales.
+ */
+public class IndexedBundleWriter extends JavaBundleWriter {
+
+    private static final int PLURAL_FLAG = 0x8000;
+    private static final int MAX_NAME_WORDS = 8;
+    private static final int MAX_NAME_LENGTH = 60;
+    private static final int MAX_COMMENT_LENGTH = 80;
+
+    private final List<Message> messages = new ArrayList<>();
+    private final Map<String, Integer> ids = new HashMap<>();
+
+    /**
+     * Ctor
+     *
+     * @param targetBundle  fully qualified base name of the bundle
+     * @param escapeUnicode use unicode escapes for non-ASCII characters
+     * @param encoding      encoding of the generated sources
+     * @param keys          keys file assigning the IDs
+     */
+    public IndexedBundleWriter(String targetBundle, boolean escapeUnicode, Charset encoding, Catalog keys) {
+        super(targetBundle, escapeUnicode, encoding);
+        for (Message message : keys) {
+            if (!message.isObsolete() && !message.isHeader() && !ids.containsKey(message.getKey())) {
+                ids.put(message.getKey(), messages.size());
+                messages.add(message);
+            }
+        }
+    }
+
+    /**
+     * Returns the simple name of the class holding the ID constants
+     *
+     * @return class name
+     */
+    public String getIdsClassName() {
+        return getSimpleName() + "_Ids";
+    }
+
+    /**
+     * Returns the simple name of the base class of the bundles
+     *
+     * @return class name
+     */
+    public String getBaseClassName() {
+        return getSimpleName() + "_Indexed";
+    }
+
+    /**
+     * Returns the number of IDs
+     *
+     * @return number of messages of the keys file
+     */
+    public int size() {
+        return messages.size();
+    }
+
+    /**
+     * Returns the number of compiled messages of a catalog the keys file does not contain. They are
+     * left out of the bundle.
+     *
+     * @param catalog catalog
+     * @return number of messages without ID
+     */
+    public int countUnknown(Catalog catalog) {
+        int unknown = 0;
+        for (Message message : catalog) {
+            if (message.isCompiled() && !message.isHeader() && !ids.containsKey(message.getKey())) {
+                unknown++;
+            }
+        }
+        return unknown;
+    }
+
+    /**
+     * Adds the keys and plural msgids of the keys file to the pool
+     *
+     * @param pool pool
+     */
+    public void addKeysToPool(StringPool pool) {
+        for (Message message : messages) {
+            pool.add(message.getKey());
+            if (message.isPlural()) {
+                pool.add(message.getMsgidPlural());
+            }
+        }
+    }
+
+    /**
+     * Adds the translations of the messages with ID to the pool
+     *
+     * @param pool    pool
+     * @param catalog catalog
+     */
+    public void addTranslationsToPool(StringPool pool, Catalog catalog) {
+        for (Message message : catalog) {
+            if (message.isCompiled() && ids.containsKey(message.getKey())) {
+                for (String msgstr : message.getMsgstr()) {
+                    pool.add(msgstr);
+                }
+            }
+        }
+    }
+
+    @Override
+    protected void appendPoolMethods(StringBuilder sb) {
+        sb.append("""
+
+                    /**
+                     * Decodes a string per message ID, stored as pool index of two chars, -1 for none.
+                     */
+                    static String[] strings(int size, String... data) {
+                        CharSequence sb = concat(data);
+                        String[] strings = new String[size];
+                        for (int id = 0; id < size; id++) {
+                            int index = index(sb, id * 2);
+                            strings[id] = index < 0 ? null : POOL[index];
+                        }
+                        return strings;
+                    }
+
+                    /**
+                     * Decodes the translations of a locale by message ID: form count (0 if not translated,
+                     * high bit set for plural entries) and value indexes, each index stored as two chars.
+                     */
+                    static Object[] values(int size, String... data) {
+                        CharSequence sb = concat(data);
+                        Object[] values = new Object[size];
+                        int i = 0;
+                        for (int id = 0; id < size; id++) {
+                            int forms = sb.charAt(i++);
+                            if (forms == 0) {
+                                continue;
+                            }
+                            if ((forms & 0x8000) == 0) {
+                                values[id] = POOL[index(sb, i)];
+                                i += 2;
+                            } else {
+                                String[] plural = new String[forms & 0x7fff];
+                                for (int j = 0; j < plural.length; j++, i += 2) {
+                                    plural[j] = POOL[index(sb, i)];
+                                }
+                                values[id] = plural;
+                            }
+                        }
+                        return values;
+                    }
+
+                    private static CharSequence concat(String... data) {
+                        StringBuilder sb = new StringBuilder();
+                        for (String s : data) {
+                            sb.append(s);
+                        }
+                        return sb;
+                    }
+                """);
+    }
+
+    /**
+     * Writes the class of ID constants. Each constant is named after the words of its msgctxt and
+     * msgid, e.g. FILE_NOT_FOUND for "File not found", and suffixed with a number if not unique.
+     *
+     * @param pool       pool containing the keys
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeIds(StringPool pool, File sourceRoot) throws IOException {
+        String className = getIdsClassName();
+        StringBuilder keys = new StringBuilder();
+        StringBuilder plurals = new StringBuilder();
+        for (Message message : messages) {
+            appendIndex(keys, pool.indexOf(message.getKey()));
+            appendIndex(plurals, message.isPlural() ? pool.indexOf(message.getMsgidPlural()) : -1);
+        }
+
+        StringBuilder sb = header();
+        sb.append("/**\n * IDs of the messages of the bundle ").append(getSimpleName()).append(".\n */\n");
+        sb.append("public final class ").append(className).append(" {\n\n");
+        sb.append("    /**\n     * Number of messages\n     */\n");
+        sb.append("    public static final int COUNT = ").append(messages.size()).append(";\n\n");
+        // the other fields of the class
+        Set<String> names = new HashSet<>(Set.of("COUNT", "KEYS", "PLURAL_KEYS", "IDS"));
+        for (int id = 0; id < messages.size(); id++) {
+            Message message = messages.get(id);
+            sb.append("    /**\n     * ");
+            appendComment(sb, message);
+            sb.append("\n     */\n");
+            sb.append("    public static final int ").append(uniqueName(names, message)).append(" = ").append(id).append(";\n\n");
+        }
+        sb.append("    static final String[] KEYS = ").append(getPoolClassName()).append(".strings(COUNT");
+        appendData(sb, keys);
+        sb.append(");\n\n");
+        sb.append("    static final String[] PLURAL_KEYS = ").append(getPoolClassName()).append(".strings(COUNT");
+        appendData(sb, plurals);
+        sb.append(");\n\n");
+        sb.append("    private static final java.util.HashMap<String, Integer> IDS = new java.util.HashMap<>(COUNT * 4 / 3 + 1);\n\n");
+        sb.append("    static {\n        for (int id = 0; id < COUNT; id++) {\n            IDS.put(KEYS[id], id);\n        }\n    }\n\n");
+        sb.append("    private ").append(className).append("() {\n    }\n\n");
+        sb.append("""
+                    /**
+                     * Returns the ID of a message
+                     *
+                     * @param key msgid, prefixed by msgctxt and \\u0004 if present
+                     * @return ID, -1 if the message has none
+                     */
+                    public static int idOf(String key) {
+                        Integer id = IDS.get(key);
+                        return id == null ? -1 : id;
+                    }
+
+                    /**
+                     * Returns the msgid of a message, without msgctxt
+                     *
+                     * @param id ID
+                     * @return msgid
+                     */
+                    public static String msgid(int id) {
+                        String key = KEYS[id];
+                        return key.substring(key.indexOf('\\u0004') + 1);
+                    }
+
+                    /**
+                     * Returns the msgid_plural of a message
+                     *
+                     * @param id ID
+                     * @return msgid_plural, null if the message has no plural form
+                     */
+                    public static String msgidPlural(int id) {
+                        return PLURAL_KEYS[id];
+                    }
+                }
+                """);
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    /**
+     * Writes the base class of the bundles, providing the lookups by ID and by key
+     *
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeBase(File sourceRoot) throws IOException {
+        String ids = getIdsClassName();
+        StringBuilder sb = header();
+        sb.append("""
+                /**
+                 * Bundle whose translations are looked up by the IDs of %1$s.
+                 */
+                public abstract class %2$s extends java.util.ResourceBundle {
+
+                %3$s
+
+                    /**
+                     * Returns the translation of a message
+                     *
+                     * @param id ID
+                     * @return translation, the msgid if not translated
+                     */
+                    public final String get(int id) {
+                        Object value = value(id);
+                        if (value instanceof String[]) {
+                            return ((String[]) value)[0];
+                        }
+                        return value != null ? (String) value : %1$s.msgid(id);
+                    }
+
+                    /**
+                     * Returns the plural form of a message for a number
+                     *
+                     * @param id ID
+                     * @param n  number
+                     * @return translation, the msgid or msgid_plural if not translated
+                     */
+                    public final String get(int id, long n) {
+                        Object value = value(id);
+                        if (value instanceof String[]) {
+                            String[] forms = (String[]) value;
+                            long form = pluralIndex(n);
+                            if (form >= 0 && form < forms.length) {
+                                return forms[(int) form];
+                            }
+                        } else if (value != null) {
+                            return (String) value;
+                        }
+                        String plural = %1$s.msgidPlural(id);
+                        return n == 1 || plural == null ? %1$s.msgid(id) : plural;
+                    }
+
+                    /**
+                     * Returns the translation of a message, a String[] for plural messages
+                     *
+                     * @param id ID
+                     * @return translation, null if not translated
+                     */
+                    public final Object lookup(int id) {
+                        return value(id);
+                    }
+
+                    public Object lookup(String msgid) {
+                        int id = %1$s.idOf(msgid);
+                        if (id >= 0) {
+                            return value(id);
+                        }
+                %4$s        return null;
+                    }
+
+                    public Object handleGetObject(String msgid) throws java.util.MissingResourceException {
+                        Object value = lookup(msgid);
+                        return value instanceof String[] ? ((String[]) value)[0] : value;
+                    }
+
+                    public java.util.Enumeration<String> getKeys() {
+                        java.util.List<String> keys = new java.util.ArrayList<>();
+                        for (int id = 0; id < values.length; id++) {
+                            if (values[id] != null) {
+                                keys.add(%1$s.KEYS[id]);
+                            }
+                        }
+                        return java.util.Collections.enumeration(keys);
+                    }
+
+                    protected abstract long pluralIndex(long n);
+                }
+                """.formatted(ids, getBaseClassName(), isInstrumented() ? instrumentedValues() : values(), isInstrumented() ? """
+                        if (%s.ENABLED) {
+                            stats.count(msgid, true, 0L);
+                        }
+                """.formatted(getStatsClassName()) : ""));
+        return write(getSourceFile(sourceRoot, getBaseClassName()), sb);
+    }
+
+    private String values() {
+        return """
+                    private final Object[] values;
+
+                    protected %1$s(Object[] values) {
+                        this.values = values;
+                    }
+
+                    private Object value(int id) {
+                        return values[id];
+                    }
+                """.formatted(getBaseClassName());
+    }
+
+    /**
+     * Counts the lookups in the statistics of the locale passed by the bundle
+     */
+    private String instrumentedValues() {
+        return """
+                    private final Object[] values;
+                    private final %2$s stats;
+
+                    protected %1$s(Object[] values, %2$s stats) {
+                        this.values = values;
+                        this.stats = stats;
+                    }
+
+                    private Object value(int id) {
+                        if (!%2$s.ENABLED) {
+                            return values[id];
+                        }
+                        long start = %2$s.start();
+                        Object value = values[id];
+                        stats.count(%3$s.KEYS[id], value == null, start);
+                        return value;
+                    }
+                """.formatted(getBaseClassName(), getStatsClassName(), getIdsClassName());
+    }
+
+    /**
+     * Writes the bundle class of a locale. Messages without ID are left out.
+     *
+     * @param locale     Java locale
+     * @param catalog    catalog of the locale
+     * @param pool       pool containing all translations of the catalog
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    @Override
+    public File writeBundle(String locale, Catalog catalog, StringPool pool, File sourceRoot) throws IOException {
+        Message[] translated = new Message[messages.size()];
+        for (Message message : catalog) {
+            Integer id = ids.get(message.getKey());
+            if (id != null && message.isCompiled() && translated[id] == null) {
+                translated[id] = message;
+            }
+        }
+        StringBuilder data = new StringBuilder();
+        for (Message message : translated) {
+            if (message == null) {
+                data.append((char) 0);
+            } else if (message.isPlural()) {
+                data.append((char) (PLURAL_FLAG | message.getMsgstr().size()));
+                for (String s : message.getMsgstr()) {
+                    appendIndex(data, pool.indexOf(s));
+                }
+            } else {
+                data.append((char) 1);
+                appendIndex(data, pool.indexOf(message.getMsgstr().get(0)));
+            }
+        }
+
+        String className = getBundleClassName(locale);
+        StringBuilder sb = header();
+        sb.append("public class ").append(className).append(" extends ").append(getBaseClassName()).append(" {\n\n");
+        sb.append("    private static final Object[] VALUES = ").append(getPoolClassName())
+                .append(".values(").append(getIdsClassName()).append(".COUNT");
+        appendData(sb, data);
+        sb.append(");\n\n");
+        if (isInstrumented()) {
+            appendStatsField(sb, locale);
+            sb.append("    public ").append(className).append("() {\n        super(VALUES, STATS);\n        STATS.setBundle(this);\n    }\n\n");
+        } else {
+            sb.append("    public ").append(className).append("() {\n        super(VALUES);\n    }\n\n");
+        }
+        sb.append("""
+                    protected long pluralIndex(long n) {
+                        return pluralEval(n);
+                    }
+
+                """);
+        appendCommonMethods(sb, catalog);
+        sb.append("}\n");
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    /**
+     * Returns the constant name of a message, e.g. MENU__OPEN_FILE for msgctxt "menu" and msgid
+     * "Open file..."
+     */
+    static String constantName(Message message) {
+        StringBuilder sb = new StringBuilder();
+        if (message.getMsgctxt() != null) {
+            appendWords(sb, message.getMsgctxt());
+            if (!sb.isEmpty()) {
+                sb.append("__");
+            }
+        }
+        appendWords(sb, message.getMsgid());
+        if (sb.isEmpty() || sb.toString().endsWith("__")) {
+            sb.append("MESSAGE");
+        }
+        if (Character.isDigit(sb.charAt(0))) {
+            sb.insert(0, '_');
+        }
+        return sb.toString();
+    }
+
+    private static void appendWords(StringBuilder sb, String text) {
+        int words = 0;
+        int start = sb.length();
+        for (String word : text.split("[^A-Za-z0-9]+")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            if (words == MAX_NAME_WORDS || sb.length() - start + word.length() > MAX_NAME_LENGTH) {
+                break;
+            }
+            if (words++ > 0) {
+                sb.append('_');
+            }
+            sb.append(word.toUpperCase());
+        }
+    }
+
+    private static String uniqueName(Set<String> names, Message message) {
+        String name = constantName(message);
+        String unique = name;
+        for (int i = 2; !names.add(unique); i++) {
+            unique = name + "_" + i;
+        }
+        return unique;
+    }
+
+    /**
+     * Appends the msgid, and msgctxt if present, as escaped and shortened literals to a doc comment
+     */
+    private void appendComment(StringBuilder sb, Message message) {
+        appendLiteral(sb, shorten(message.getMsgid()));
+        if (message.getMsgctxt() != null) {
+            sb.append(" in context ");
+            appendLiteral(sb, shorten(message.getMsgctxt()));
+        }
+    }
+
+    private static String shorten(String s) {
+        if (s.length() > MAX_COMMENT_LENGTH) {
+            s = s.substring(0, MAX_COMMENT_LENGTH) + "...";
+        }
+        // must not end the comment
+        return s.replace("*/", "* /");
+    }
+}
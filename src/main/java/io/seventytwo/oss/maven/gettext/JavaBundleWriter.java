@@ -0,0 +1,736 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Writes Java sources of resource bundles whose strings live in a string pool shared by all
+ * locales of a bundle. The generated classes are compatible with the classes msgfmt generates,
+ * i.e. they provide lookup, pluralEval and getParent for Gettext Commons.
+ */
+public class JavaBundleWriter {
+
+    /**
+     * Strings per pool holder class, keeps the constant pool of each class below its limit
+     */
+    private static final int STRINGS_PER_CLASS = 16384;
+
+    /**
+     * Assignments per method, keeps each method below the 64k bytecode limit
+     */
+    private static final int STRINGS_PER_METHOD = 2048;
+
+    /**
+     * Chars per encoded data literal, keeps each literal below the 64k class file limit
+     */
+    private static final int CHARS_PER_LITERAL = 16000;
+
+    private static final int PLURAL_FLAG = 0x8000;
+
+    private final String packageName;
+    private final String simpleName;
+    private final boolean escapeUnicode;
+    private final Charset encoding;
+    private final CharsetEncoder encoder;
+    private final String targetBundle;
+    private boolean instrumented;
+
+    /**
+     * Ctor
+     *
+     * @param targetBundle  fully qualified base name of the bundle
+     * @param escapeUnicode use unicode escapes for non-ASCII characters
+     * @param encoding      encoding of the generated sources
+     */
+    public JavaBundleWriter(String targetBundle, boolean escapeUnicode, Charset encoding) {
+        int dot = targetBundle.lastIndexOf('.');
+        this.packageName = dot < 0 ? null : targetBundle.substring(0, dot);
+        this.simpleName = targetBundle.substring(dot + 1);
+        this.targetBundle = targetBundle;
+        this.escapeUnicode = escapeUnicode;
+        this.encoding = encoding;
+        this.encoder = encoding.newEncoder();
+    }
+
+    /**
+     * Returns the simple name of the class holding the shared pool
+     *
+     * @return class name
+     */
+    public String getPoolClassName() {
+        return simpleName + "_Strings";
+    }
+
+    /**
+     * Returns the simple name of the class holding the lookup statistics of instrumented bundles
+     *
+     * @return class name
+     */
+    public String getStatsClassName() {
+        return simpleName + "_Stats";
+    }
+
+    /**
+     * Generates bundles that count their lookups in the statistics class
+     *
+     * @param instrumented true to instrument the bundles
+     */
+    public void setInstrumented(boolean instrumented) {
+        this.instrumented = instrumented;
+    }
+
+    public boolean isInstrumented() {
+        return instrumented;
+    }
+
+    /**
+     * Returns the simple class name of a locale's bundle
+     *
+     * @param locale Java locale
+     * @return class name
+     */
+    public String getBundleClassName(String locale) {
+        return simpleName + "_" + locale;
+    }
+
+    /**
+     * Returns the source file of a class of the bundle's package
+     *
+     * @param sourceRoot source root
+     * @param className  simple class name
+     * @return source file
+     */
+    public File getSourceFile(File sourceRoot, String className) {
+        return getPackageFile(sourceRoot, className + ".java");
+    }
+
+    /**
+     * Returns a file in the directory of the bundle's package
+     *
+     * @param root     source or class output root
+     * @param fileName file name
+     * @return file
+     */
+    public File getPackageFile(File root, String fileName) {
+        File dir = packageName == null ? root : new File(root, packageName.replace('.', File.separatorChar));
+        return new File(dir, fileName);
+    }
+
+    /**
+     * Adds the keys and translations of the compiled messages of a catalog to the pool
+     *
+     * @param pool    pool
+     * @param catalog catalog
+     */
+    public static void addToPool(StringPool pool, Catalog catalog) {
+        for (Message message : catalog) {
+            if (message.isCompiled()) {
+                pool.add(message.getKey());
+                for (String msgstr : message.getMsgstr()) {
+                    pool.add(msgstr);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the pool holder classes
+     *
+     * @param pool       pool
+     * @param sourceRoot source root
+     * @return written files
+     * @throws IOException if a file cannot be written
+     */
+    public List<File> writePool(StringPool pool, File sourceRoot) throws IOException {
+        List<File> files = new ArrayList<>();
+        List<String> strings = pool.getStrings();
+        int chunks = (strings.size() + STRINGS_PER_CLASS - 1) / STRINGS_PER_CLASS;
+
+        StringBuilder sb = header();
+        sb.append("final class ").append(getPoolClassName()).append(" {\n\n");
+        sb.append("    static final String[] POOL = new String[").append(strings.size()).append("];\n\n");
+        sb.append("    static {\n");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            sb.append("        ").append(getPoolClassName()).append(chunk).append(".fill(POOL);\n");
+        }
+        sb.append("    }\n\n");
+        sb.append("    private ").append(getPoolClassName()).append("() {\n    }\n\n");
+        sb.append("""
+                    /**
+                     * Decodes the entries of a bundle: key index, form count (high bit set for plural
+                     * entries) and value indexes, each index stored as two chars.
+                     */
+                    static java.util.HashMap<String, Object> table(int size, String... data) {
+                        java.util.HashMap<String, Object> table = new java.util.HashMap<>(size * 4 / 3 + 1);
+                        StringBuilder sb = new StringBuilder();
+                        for (String s : data) {
+                            sb.append(s);
+                        }
+                        int i = 0;
+                        while (i < sb.length()) {
+                            String key = POOL[index(sb, i)];
+                            int forms = sb.charAt(i + 2);
+                            i += 3;
+                            if ((forms & 0x8000) == 0) {
+                                table.put(key, POOL[index(sb, i)]);
+                                i += 2;
+                            } else {
+                                String[] values = new String[forms & 0x7fff];
+                                for (int j = 0; j < values.length; j++, i += 2) {
+                                    values[j] = POOL[index(sb, i)];
+                                }
+                                table.put(key, values);
+                            }
+                        }
+                        return table;
+                    }
+
+                    private static int index(CharSequence data, int i) {
+                        return data.charAt(i) << 16 | data.charAt(i + 1);
+                    }
+                """);
+        appendPoolMethods(sb);
+        sb.append("}\n");
+        files.add(write(getSourceFile(sourceRoot, getPoolClassName()), sb));
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * STRINGS_PER_CLASS;
+            int to = Math.min(strings.size(), from + STRINGS_PER_CLASS);
+            String className = getPoolClassName() + chunk;
+            sb = header();
+            sb.append("final class ").append(className).append(" {\n\n");
+            sb.append("    private ").append(className).append("() {\n    }\n\n");
+            sb.append("    static void fill(String[] p) {\n");
+            for (int start = from; start < to; start += STRINGS_PER_METHOD) {
+                sb.append("        fill").append(start).append("(p);\n");
+            }
+            sb.append("    }\n");
+            for (int start = from; start < to; start += STRINGS_PER_METHOD) {
+                sb.append("\n    private static void fill").append(start).append("(String[] p) {\n");
+                for (int i = start; i < Math.min(to, start + STRINGS_PER_METHOD); i++) {
+                    sb.append("        p[").append(i).append("] = ");
+                    appendLiteral(sb, strings.get(i));
+                    sb.append(";\n");
+                }
+                sb.append("    }\n");
+            }
+            sb.append("}\n");
+            files.add(write(getSourceFile(sourceRoot, className), sb));
+        }
+        return files;
+    }
+
+    /**
+     * Appends further static methods decoding data of the generated classes to the pool class
+     *
+     * @param sb pool class source
+     */
+    protected void appendPoolMethods(StringBuilder sb) {
+    }
+
+    /**
+     * Writes the bundle class of a locale referencing the pool
+     *
+     * @param locale     Java locale
+     * @param catalog    catalog of the locale
+     * @param pool       pool containing all strings of the catalog
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeBundle(String locale, Catalog catalog, StringPool pool, File sourceRoot) throws IOException {
+        String className = getBundleClassName(locale);
+        StringBuilder data = new StringBuilder();
+        int size = 0;
+        for (Message message : catalog) {
+            if (!message.isCompiled()) {
+                continue;
+            }
+            size++;
+            appendIndex(data, pool.indexOf(message.getKey()));
+            List<String> msgstr = message.getMsgstr();
+            if (message.isPlural()) {
+                data.append((char) (PLURAL_FLAG | msgstr.size()));
+                for (String s : msgstr) {
+                    appendIndex(data, pool.indexOf(s));
+                }
+            } else {
+                data.append((char) 1);
+                appendIndex(data, pool.indexOf(msgstr.get(0)));
+            }
+        }
+
+        StringBuilder sb = header();
+        sb.append("public class ").append(className).append(" extends java.util.ResourceBundle {\n\n");
+        sb.append("    private static final java.util.HashMap<String, Object> TABLE = ")
+                .append(getPoolClassName()).append(".table(").append(size);
+        appendData(sb, data);
+        sb.append(");\n\n");
+        appendLookupMethods(sb, locale, "TABLE.get(msgid)");
+        sb.append("""
+                    public java.util.Enumeration<String> getKeys() {
+                        return java.util.Collections.enumeration(TABLE.keySet());
+                    }
+
+                """);
+        appendCommonMethods(sb, catalog);
+        sb.append("}\n");
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    /**
+     * Appends the pluralEval and getParent methods Gettext Commons calls reflectively
+     *
+     * @param sb      class source
+     * @param catalog catalog providing the Plural-Forms header
+     */
+    protected void appendCommonMethods(StringBuilder sb, Catalog catalog) {
+        sb.append("    public static long pluralEval(long n) {\n");
+        sb.append("        return ").append(catalog.getPluralForms().toJava()).append(";\n");
+        sb.append("""
+                    }
+
+                    public java.util.ResourceBundle getParent() {
+                        return parent;
+                    }
+                """);
+    }
+
+    /**
+     * Appends the handleGetObject and lookup methods. Instrumented bundles count each lookup, and
+     * register themselves with the statistics of their locale.
+     *
+     * @param sb     class source
+     * @param locale Java locale
+     * @param lookup expression looking up the value of the String msgid, null if not found
+     */
+    protected void appendLookupMethods(StringBuilder sb, String locale, String lookup) {
+        if (instrumented) {
+            appendStatsField(sb, locale);
+            sb.append("    {\n        STATS.setBundle(this);\n    }\n\n");
+        }
+        sb.append("""
+                    public Object handleGetObject(String msgid) throws java.util.MissingResourceException {
+                        Object value = %s;
+                        return value instanceof String[] ? ((String[]) value)[0] : value;
+                    }
+
+                    public Object lookup(String msgid) {
+                """.formatted(instrumented ? "lookup(msgid)" : lookup));
+        if (instrumented) {
+            sb.append("""
+                            if (!%1$s.ENABLED) {
+                                return %2$s;
+                            }
+                            long start = %1$s.start();
+                            Object value = %2$s;
+                            STATS.count(msgid, value == null, start);
+                            return value;
+                    """.formatted(getStatsClassName(), lookup));
+        } else {
+            sb.append("        return ").append(lookup).append(";\n");
+        }
+        sb.append("    }\n\n");
+    }
+
+    /**
+     * Appends the field holding the statistics of a locale
+     *
+     * @param sb     class source
+     * @param locale Java locale
+     */
+    protected void appendStatsField(StringBuilder sb, String locale) {
+        sb.append("    private static final ").append(getStatsClassName()).append(" STATS = ")
+                .append(getStatsClassName()).append(".forLocale(");
+        appendLiteral(sb, locale);
+        sb.append(");\n\n");
+    }
+
+    /**
+     * Writes the statistics class shared by the instrumented bundles of all locales. It counts the
+     * lookups and misses per key with LongAdders, which do not contend between threads, and times
+     * a random sample of the lookups. The statistics are registered as MXBean and can be dumped as
+     * tab separated values.
+     *
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File writeStats(File sourceRoot) throws IOException {
+        StringBuilder sb = header();
+        sb.append("""
+                /**
+                 * Lookup statistics of the instrumented bundles of %2$s. Lookups are counted unless the
+                 * system property gettext.instrumentation is "false". The statistics are registered as MXBean
+                 * io.seventytwo.gettext:type=BundleStatistics,bundle=%2$s. If the system property
+                 * gettext.instrumentation.dump names a directory, they are dumped into it at JVM exit.
+                 */
+                public final class %1$s {
+
+                    public static final boolean ENABLED = !"false".equals(System.getProperty("gettext.instrumentation"));
+
+                    /**
+                     * Distinct keys counted per locale, lookups of further keys are only counted in total
+                     */
+                    private static final int MAX_KEYS = 100000;
+
+                    /**
+                     * One in this many lookups is timed
+                     */
+                    private static final int SAMPLE_RATE = 64;
+
+                    private static final java.util.concurrent.ConcurrentHashMap<String, %1$s> LOCALES =
+                            new java.util.concurrent.ConcurrentHashMap<String, %1$s>();
+
+                    static {
+                        if (ENABLED) {
+                            register();
+                        }
+                    }
+
+                    private final java.util.concurrent.ConcurrentHashMap<String, Counter> counters =
+                            new java.util.concurrent.ConcurrentHashMap<String, Counter>();
+                    private final java.util.concurrent.atomic.LongAdder overflow = new java.util.concurrent.atomic.LongAdder();
+                    private final java.util.concurrent.atomic.LongAdder timed = new java.util.concurrent.atomic.LongAdder();
+                    private final java.util.concurrent.atomic.LongAdder timedNanos = new java.util.concurrent.atomic.LongAdder();
+                    private volatile java.util.ResourceBundle bundle;
+
+                    private %1$s() {
+                    }
+
+                    /**
+                     * Returns the statistics of a locale
+                     */
+                    public static %1$s forLocale(String locale) {
+                        %1$s stats = LOCALES.get(locale);
+                        if (stats == null) {
+                            LOCALES.putIfAbsent(locale, new %1$s());
+                            stats = LOCALES.get(locale);
+                        }
+                        return stats;
+                    }
+
+                    /**
+                     * Sets the bundle whose keys are reported as unused until looked up
+                     */
+                    public void setBundle(java.util.ResourceBundle bundle) {
+                        this.bundle = bundle;
+                    }
+
+                    /**
+                     * Returns the start time of a lookup if it is timed, 0 otherwise
+                     */
+                    public static long start() {
+                        return java.util.concurrent.ThreadLocalRandom.current().nextInt(SAMPLE_RATE) == 0 ? System.nanoTime() : 0L;
+                    }
+
+                    /**
+                     * Counts a lookup
+                     *
+                     * @param key   key looked up
+                     * @param miss  true if the bundle has no translation
+                     * @param start result of start()
+                     */
+                    public void count(String key, boolean miss, long start) {
+                        if (start != 0L) {
+                            timedNanos.add(System.nanoTime() - start);
+                            timed.increment();
+                        }
+                        Counter counter = counters.get(key);
+                        if (counter == null) {
+                            if (counters.size() >= MAX_KEYS) {
+                                overflow.increment();
+                                return;
+                            }
+                            counters.putIfAbsent(key, new Counter());
+                            counter = counters.get(key);
+                        }
+                        counter.lookups.increment();
+                        if (miss) {
+                            counter.misses.increment();
+                        }
+                    }
+
+                    public static long lookups() {
+                        long sum = 0;
+                        for (%1$s stats : LOCALES.values()) {
+                            sum += stats.overflow.sum();
+                            for (Counter counter : stats.counters.values()) {
+                                sum += counter.lookups.sum();
+                            }
+                        }
+                        return sum;
+                    }
+
+                    public static long misses() {
+                        long sum = 0;
+                        for (%1$s stats : LOCALES.values()) {
+                            for (Counter counter : stats.counters.values()) {
+                                sum += counter.misses.sum();
+                            }
+                        }
+                        return sum;
+                    }
+
+                    /**
+                     * Returns the time spent in lookups, estimated from the timed sample
+                     */
+                    public static long estimatedNanos() {
+                        double nanos = 0;
+                        for (%1$s stats : LOCALES.values()) {
+                            long timed = stats.timed.sum();
+                            if (timed > 0) {
+                                long lookups = stats.overflow.sum();
+                                for (Counter counter : stats.counters.values()) {
+                                    lookups += counter.lookups.sum();
+                                }
+                                nanos += (double) stats.timedNanos.sum() / timed * lookups;
+                            }
+                        }
+                        return (long) nanos;
+                    }
+
+                    /**
+                     * Returns the number of keys of the loaded bundles that were never looked up
+                     */
+                    public static int unusedKeys() {
+                        int unused = 0;
+                        for (%1$s stats : LOCALES.values()) {
+                            unused += stats.unused().size();
+                        }
+                        return unused;
+                    }
+
+                    private java.util.List<String> unused() {
+                        java.util.List<String> unused = new java.util.ArrayList<String>();
+                        java.util.ResourceBundle bundle = this.bundle;
+                        if (bundle != null) {
+                            for (java.util.Enumeration<String> keys = bundle.getKeys(); keys.hasMoreElements(); ) {
+                                String key = keys.nextElement();
+                                // the empty key of the header is not looked up by applications
+                                if (!key.isEmpty() && !counters.containsKey(key)) {
+                                    unused.add(key);
+                                }
+                            }
+                        }
+                        java.util.Collections.sort(unused);
+                        return unused;
+                    }
+
+                    /**
+                     * Returns the statistics as tab separated values: locale, key, lookups and misses, the most
+                     * looked up keys first, the lookups of keys beyond the limit of distinct keys as empty key,
+                     * followed by the unused keys of the loaded bundles
+                     *
+                     * @param limit maximum number of looked up keys per locale
+                     */
+                    public static String dump(int limit) {
+                        StringBuilder sb = new StringBuilder("locale\\tkey\\tlookups\\tmisses\\n");
+                        for (String locale : new java.util.TreeSet<String>(LOCALES.keySet())) {
+                            %1$s stats = LOCALES.get(locale);
+                            java.util.List<java.util.Map.Entry<String, Long>> entries = new java.util.ArrayList<java.util.Map.Entry<String, Long>>();
+                            for (java.util.Map.Entry<String, Counter> entry : stats.counters.entrySet()) {
+                                entries.add(new java.util.AbstractMap.SimpleEntry<String, Long>(entry.getKey(), entry.getValue().lookups.sum()));
+                            }
+                            java.util.Collections.sort(entries, new java.util.Comparator<java.util.Map.Entry<String, Long>>() {
+                                public int compare(java.util.Map.Entry<String, Long> a, java.util.Map.Entry<String, Long> b) {
+                                    int c = b.getValue().compareTo(a.getValue());
+                                    return c != 0 ? c : a.getKey().compareTo(b.getKey());
+                                }
+                            });
+                            for (java.util.Map.Entry<String, Long> entry : entries.subList(0, Math.min(limit, entries.size()))) {
+                                Counter counter = stats.counters.get(entry.getKey());
+                                append(sb, locale, entry.getKey(), entry.getValue(), counter == null ? 0 : counter.misses.sum());
+                            }
+                            if (stats.overflow.sum() > 0) {
+                                append(sb, locale, "", stats.overflow.sum(), 0);
+                            }
+                            for (String key : stats.unused()) {
+                                append(sb, locale, key, 0, 0);
+                            }
+                        }
+                        return sb.toString();
+                    }
+
+                    private static void append(StringBuilder sb, String locale, String key, long lookups, long misses) {
+                        sb.append(locale).append('\\t');
+                        for (int i = 0; i < key.length(); i++) {
+                            char c = key.charAt(i);
+                            if (c == '\\\\') {
+                                sb.append("\\\\\\\\");
+                            } else if (c < 0x20) {
+                                sb.append("\\\\u00").append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xf, 16));
+                            } else {
+                                sb.append(c);
+                            }
+                        }
+                        sb.append('\\t').append(lookups).append('\\t').append(misses).append('\\n');
+                    }
+
+                    public static void reset() {
+                        for (%1$s stats : LOCALES.values()) {
+                            stats.counters.clear();
+                            stats.overflow.reset();
+                            stats.timed.reset();
+                            stats.timedNanos.reset();
+                        }
+                    }
+
+                    private static void register() {
+                        try {
+                            javax.management.MBeanServer server = java.lang.management.ManagementFactory.getPlatformMBeanServer();
+                            javax.management.ObjectName name = new javax.management.ObjectName("io.seventytwo.gettext:type=BundleStatistics,bundle=%2$s");
+                            if (server.isRegistered(name)) {
+                                // loaded by another class loader too, like by another web application
+                                name = new javax.management.ObjectName(name + ",loader=" + Integer.toHexString(System.identityHashCode(%1$s.class.getClassLoader())));
+                            }
+                            server.registerMBean(new javax.management.StandardMBean(new Bean(), StatisticsMXBean.class, true), name);
+                        } catch (Exception e) {
+                            // JMX is optional
+                        } catch (LinkageError e) {
+                            // JMX is not available
+                        }
+                        final String directory = System.getProperty("gettext.instrumentation.dump");
+                        if (directory != null) {
+                            Runtime.getRuntime().addShutdownHook(new Thread() {
+                                public void run() {
+                                    try {
+                                        java.nio.file.Files.write(java.nio.file.Paths.get(directory, "%2$s.tsv"),
+                                                dump(Integer.MAX_VALUE).getBytes(java.nio.charset.StandardCharsets.UTF_8));
+                                    } catch (java.io.IOException e) {
+                                        System.err.println("Unable to dump the statistics of %2$s: " + e);
+                                    }
+                                }
+                            });
+                        }
+                    }
+
+                    private static final class Counter {
+                        final java.util.concurrent.atomic.LongAdder lookups = new java.util.concurrent.atomic.LongAdder();
+                        final java.util.concurrent.atomic.LongAdder misses = new java.util.concurrent.atomic.LongAdder();
+                    }
+
+                    /**
+                     * Lookup statistics of all locales
+                     */
+                    public interface StatisticsMXBean {
+                        long getLookups();
+
+                        long getMisses();
+
+                        long getEstimatedLookupNanos();
+
+                        int getUnusedKeys();
+
+                        /**
+                         * Returns the most looked up keys per locale and the unused keys as tab separated values
+                         */
+                        String dump(int limit);
+
+                        void reset();
+                    }
+
+                    private static final class Bean implements StatisticsMXBean {
+                        public long getLookups() {
+                            return lookups();
+                        }
+
+                        public long getMisses() {
+                            return misses();
+                        }
+
+                        public long getEstimatedLookupNanos() {
+                            return estimatedNanos();
+                        }
+
+                        public int getUnusedKeys() {
+                            return unusedKeys();
+                        }
+
+                        public String dump(int limit) {
+                            return %1$s.dump(limit);
+                        }
+
+                        public void reset() {
+                            %1$s.reset();
+                        }
+                    }
+                }
+                """.formatted(getStatsClassName(), targetBundle));
+        return write(getSourceFile(sourceRoot, getStatsClassName()), sb);
+    }
+
+    protected String getSimpleName() {
+        return simpleName;
+    }
+
+    /**
+     * Starts a generated source file with the package declaration
+     *
+     * @return class source
+     */
+    protected StringBuilder header() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("// Generated by gettext-maven-plugin, do not edit.\n");
+        if (packageName != null) {
+            sb.append("package ").append(packageName).append(";\n");
+        }
+        sb.append('\n');
+        return sb;
+    }
+
+    /**
+     * Appends encoded data as arguments of a decoding method, split into literals below the class
+     * file limit
+     *
+     * @param sb   class source
+     * @param data encoded data
+     */
+    protected void appendData(StringBuilder sb, CharSequence data) {
+        for (int start = 0; start < data.length(); start += CHARS_PER_LITERAL) {
+            sb.append(",\n            ");
+            appendLiteral(sb, data.subSequence(start, Math.min(data.length(), start + CHARS_PER_LITERAL)).toString());
+        }
+    }
+
+    protected static void appendIndex(StringBuilder data, int index) {
+        data.append((char) (index >>> 16)).append((char) index);
+    }
+
+    /**
+     * Appends a Java string literal. Line terminators, quotes and backslashes must not be written as
+     * unicode escapes since those are translated before the source is tokenized.
+     */
+    protected void appendLiteral(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                default -> {
+                    if (c < 0x20 || c == 0x7f || (c > 0x7f && (escapeUnicode || Character.isSurrogate(c) || !encoder.canEncode(c)))) {
+                        sb.append("\\u%04x".formatted((int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    protected File write(File file, StringBuilder contents) throws IOException {
+        Files.createDirectories(file.getParentFile().toPath());
+        Files.writeString(file.toPath(), contents, encoding);
+        return file;
+    }
+}
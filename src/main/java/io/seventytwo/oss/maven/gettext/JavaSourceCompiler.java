@@ -0,0 +1,63 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.List;
+
+/**
+ * Compiles generated bundle sources in-process with the system Java compiler.
+ */
+public class JavaSourceCompiler {
+
+    private JavaSourceCompiler() {
+    }
+
+    /**
+     * Compiles sources into an output directory
+     *
+     * @param sources         source files
+     * @param outputDirectory class output directory
+     * @param encoding        source encoding
+     * @param release         Java release the classes are compiled for
+     * @param log             log
+     * @throws MojoExecutionException if no compiler is available or compilation fails
+     */
+    public static void compile(List<File> sources, File outputDirectory, Charset encoding, String release, Log log) throws MojoExecutionException {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new MojoExecutionException("No system Java compiler available, Maven must run on a JDK to compile bundles");
+        }
+        log.debug("Compiling %d generated sources to %s".formatted(sources.size(), outputDirectory));
+
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, encoding)) {
+            List<String> options = List.of("-d", outputDirectory.getAbsolutePath(), "--release", release,
+                    "-encoding", encoding.name(), "-g:none", "-proc:none", "-implicit:none", "-nowarn", "-Xlint:-options");
+            Iterable<? extends JavaFileObject> units = fileManager.getJavaFileObjectsFromFiles(sources);
+            boolean success = compiler.getTask(null, fileManager, diagnostics, options, null, units).call();
+            if (!success) {
+                StringBuilder sb = new StringBuilder("Compilation of generated bundles failed:");
+                for (Diagnostic<? extends JavaFileObject> diagnostic : diagnostics.getDiagnostics()) {
+                    if (diagnostic.getKind() == Diagnostic.Kind.ERROR) {
+                        sb.append("\n").append(diagnostic.getSource() == null ? "" : diagnostic.getSource().getName())
+                                .append(":").append(diagnostic.getLineNumber())
+                                .append(": ").append(diagnostic.getMessage(null));
+                    }
+                }
+                throw new MojoExecutionException(sb.toString());
+            }
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to compile generated bundles", e);
+        }
+    }
+}
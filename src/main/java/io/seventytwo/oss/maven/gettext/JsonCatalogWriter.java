@@ -0,0 +1,198 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the translated messages of a catalog as a compact JSON object for web frontends, e.g.
+ * <pre>
+ * {"":{"language":"de","nplurals":2,"plural":"(n !== 1 ? 1 : 0)"},"File":"Datei","menu&#92;u0004Open":"Öffnen","{0} file":["{0} Datei","{0} Dateien"]}
+ * </pre>
+ * The key "" holds the metadata with the plural rule as JavaScript expression of n returning the
+ * index of the plural form. Messages with context are keyed by context and msgid separated by
+ * U+0004, like in .mo files, plural messages map to the array of their forms. Optionally the
+ * messages are split into one file per package they are used in, and each file gets a gzip
+ * compressed sibling for web servers serving precompressed files.
+ */
+public class JsonCatalogWriter {
+
+    private final OutputTracker tracker;
+    private final MessagePackages packages;
+    private final boolean gzip;
+
+    /**
+     * Ctor
+     *
+     * @param tracker  tracker the files are committed with
+     * @param packages packages to split the messages by, null to write one file per locale
+     * @param gzip     write a gzip compressed sibling of each file
+     */
+    public JsonCatalogWriter(OutputTracker tracker, MessagePackages packages, boolean gzip) {
+        this.tracker = tracker;
+        this.packages = packages;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Writes the catalog of a locale. When split by package, the messages used in several or unknown
+     * packages are written to the file, the others to siblings named by their package, e.g.
+     * Messages_de.com.acme.json. Siblings of packages no longer used are deleted.
+     *
+     * @param catalog catalog
+     * @param locale  Java locale
+     * @param file    JSON file of the locale
+     * @return written JSON files
+     * @throws IOException if a file cannot be written
+     */
+    public List<File> write(Catalog catalog, String locale, File file) throws IOException {
+        Map<String, List<Message>> byPackage = new LinkedHashMap<>();
+        byPackage.put("", new ArrayList<>());
+        Set<String> keys = new HashSet<>();
+        for (Message message : catalog) {
+            if (message.isCompiled() && !message.isHeader() && keys.add(message.getKey())) {
+                String packageName = packages == null ? "" : packages.get(message.getKey());
+                byPackage.computeIfAbsent(packageName, p -> new ArrayList<>()).add(message);
+            }
+        }
+
+        String metadata = "{\"language\":%s,\"nplurals\":%d,\"plural\":%s}".formatted(quote(locale),
+                catalog.getPluralForms().getNplurals(), quote(catalog.getPluralForms().toJavaScript()));
+        List<File> written = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> entry : byPackage.entrySet()) {
+            File target = getFile(file, entry.getKey());
+            File temp = tracker.newTempFile(target);
+            try (Writer out = new BufferedWriter(new OutputStreamWriter(Files.newOutputStream(temp.toPath()), StandardCharsets.UTF_8))) {
+                writeObject(out, metadata, entry.getValue());
+            }
+            if (gzip) {
+                File gzipTarget = new File(target.getPath() + ".gz");
+                File gzipTemp = tracker.newTempFile(gzipTarget);
+                try (OutputStream out = new BestGzipOutputStream(Files.newOutputStream(gzipTemp.toPath()))) {
+                    Files.copy(temp.toPath(), out);
+                }
+                tracker.commit(gzipTemp, gzipTarget);
+            }
+            tracker.commit(temp, target);
+            written.add(target);
+        }
+        deleteStale(file, written);
+        return written;
+    }
+
+    private static void writeObject(Writer out, String metadata, List<Message> messages) throws IOException {
+        out.write("{\"\":");
+        out.write(metadata);
+        for (Message message : messages) {
+            out.write(',');
+            writeString(out, message.getKey());
+            out.write(':');
+            List<String> msgstr = message.getMsgstr();
+            if (message.isPlural()) {
+                out.write('[');
+                for (int i = 0; i < msgstr.size(); i++) {
+                    if (i > 0) {
+                        out.write(',');
+                    }
+                    writeString(out, msgstr.get(i));
+                }
+                out.write(']');
+            } else {
+                writeString(out, msgstr.get(0));
+            }
+        }
+        out.write("}\n");
+    }
+
+    /**
+     * Returns the file of a package
+     *
+     * @param file        JSON file of the locale
+     * @param packageName package, empty for the messages used in several or unknown packages
+     * @return file
+     */
+    static File getFile(File file, String packageName) {
+        if (packageName.isEmpty()) {
+            return file;
+        }
+        String name = file.getName();
+        return new File(file.getParentFile(), name.substring(0, name.length() - ".json".length()) + "." + packageName + ".json");
+    }
+
+    /**
+     * Deletes the package files of a locale and compressed siblings that were not written
+     */
+    private void deleteStale(File file, List<File> written) throws IOException {
+        String prefix = file.getName().substring(0, file.getName().length() - ".json".length()) + ".";
+        File[] siblings = file.getParentFile().listFiles((dir, name) -> name.startsWith(prefix)
+                && (name.endsWith(".json") || name.endsWith(".json.gz")));
+        Set<File> keep = new HashSet<>();
+        for (File target : written) {
+            keep.add(target);
+            if (gzip) {
+                keep.add(new File(target.getPath() + ".gz"));
+            }
+        }
+        if (siblings != null) {
+            for (File sibling : siblings) {
+                if (!keep.contains(sibling)) {
+                    Files.delete(sibling.toPath());
+                }
+            }
+        }
+    }
+
+    private static String quote(String s) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        writeString(sb, s);
+        return sb.toString();
+    }
+
+    /**
+     * Writes a JSON string. U+2028 and U+2029 are escaped, so the JSON can be embedded in JavaScript.
+     */
+    static void writeString(Appendable out, String s) throws IOException {
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20 || c == 0x2028 || c == 0x2029) {
+                        out.append("\\u%04x".formatted((int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+    /**
+     * Gzip stream with the best compression, the files are compressed once and served often
+     */
+    private static final class BestGzipOutputStream extends GZIPOutputStream {
+        BestGzipOutputStream(OutputStream out) throws IOException {
+            super(out, 65536);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Patches the messages extracted from changed sources into an existing keys file, instead of
+ * extracting all sources again. References to the changed sources are replaced by the references
+ * extracted from them, messages only referenced from changed sources are removed, new messages are
+ * added. The messages are sorted like xgettext sorts them. The flags, extracted comments and plural
+ * form of a message used in changed and unchanged sources cannot be attributed to either, so unless
+ * the changed sources yield the same ones again, such messages require a full extraction.
+ */
+public class KeysPatcher {
+
+    private final Set<String> changedFiles;
+    private final boolean sortByFile;
+
+    /**
+     * Ctor
+     *
+     * @param changedFiles paths of the changed sources as they appear in references
+     * @param sortByFile   sort by file location like xgettext -F, by msgid like xgettext -s otherwise
+     */
+    public KeysPatcher(Set<String> changedFiles, boolean sortByFile) {
+        this.changedFiles = changedFiles;
+        this.sortByFile = sortByFile;
+    }
+
+    /**
+     * Patches a keys file
+     *
+     * @param keys      existing keys file
+     * @param extracted messages extracted from the changed sources that still exist
+     * @return patched keys file and the number of added and removed messages, null if a message used in
+     * changed and unchanged sources may have lost or kept flags, extracted comments or a plural form of
+     * the changed sources
+     */
+    public Result patch(Catalog keys, Catalog extracted) {
+        Message header = null;
+        Set<String> original = new HashSet<>();
+        Map<String, Message> messages = new LinkedHashMap<>();
+        Map<String, Message> shared = new HashMap<>();
+        for (Message message : keys) {
+            if (message.isHeader()) {
+                header = message;
+            } else if (!message.isObsolete()) {
+                original.add(message.getKey());
+                Message copy = message.copy();
+                boolean referenced = !copy.getReferences().isEmpty();
+                copy.getReferences().removeIf(reference -> changedFiles.contains(fileOf(reference)));
+                if (!copy.getReferences().isEmpty() && copy.getReferences().size() < message.getReferences().size()
+                        && (!copy.getFlags().isEmpty() || !copy.getExtractedComments().isEmpty() || copy.isPlural())) {
+                    shared.put(copy.getKey(), message);
+                }
+                if (!referenced || !copy.getReferences().isEmpty()) {
+                    messages.put(copy.getKey(), copy);
+                }
+            }
+        }
+        for (Message message : extracted) {
+            if (message.isHeader() || message.isObsolete()) {
+                continue;
+            }
+            Message previous = shared.remove(message.getKey());
+            if (previous != null && !sameAttributes(previous, message)) {
+                return null;
+            }
+            Message existing = messages.get(message.getKey());
+            if (existing == null) {
+                messages.put(message.getKey(), message.copy());
+                continue;
+            }
+            existing.getReferences().addAll(message.getReferences());
+            addMissing(existing.getFlags(), message.getFlags());
+            addMissing(existing.getExtractedComments(), message.getExtractedComments());
+            if (!existing.isPlural() && message.isPlural()) {
+                existing.setMsgidPlural(message.getMsgidPlural());
+                existing.getMsgstr().clear();
+                existing.getMsgstr().addAll(message.getMsgstr());
+            }
+        }
+        if (!shared.isEmpty()) {
+            // the changed sources no longer use them, their attributes may stem from either
+            return null;
+        }
+        int added = (int) messages.keySet().stream().filter(key -> !original.contains(key)).count();
+        int removed = (int) original.stream().filter(key -> !messages.containsKey(key)).count();
+
+        List<Message> sorted = new ArrayList<>(messages.values());
+        if (sortByFile) {
+            for (Message message : sorted) {
+                message.getReferences().sort(REFERENCE_ORDER);
+            }
+            sorted.sort(Comparator.comparing((Message m) -> m.getReferences().isEmpty() ? "" : m.getReferences().get(0), REFERENCE_ORDER));
+        } else {
+            sorted.sort(Comparator.comparing(Message::getMsgid)
+                    .thenComparing(m -> m.getMsgctxt() == null ? "" : m.getMsgctxt()));
+        }
+
+        Catalog patched = new Catalog(keys.getFile());
+        if (header != null) {
+            patched.add(withCharset(header, sorted));
+        }
+        sorted.forEach(patched::add);
+        return new Result(patched, added, removed);
+    }
+
+    /**
+     * xgettext declares the charset as CHARSET if all messages are ASCII and as UTF-8 otherwise
+     */
+    private static Message withCharset(Message header, List<Message> messages) {
+        boolean ascii = messages.stream().allMatch(m -> isAscii(m.getMsgid()) && (m.getMsgctxt() == null || isAscii(m.getMsgctxt()))
+                && (m.getMsgidPlural() == null || isAscii(m.getMsgidPlural())));
+        if (header.getMsgstr().isEmpty() || ascii) {
+            return header;
+        }
+        Message copy = header.copy();
+        copy.getMsgstr().set(0, copy.getMsgstr().get(0).replace("charset=CHARSET", "charset=UTF-8"));
+        return copy;
+    }
+
+    private static boolean isAscii(String s) {
+        return s.chars().allMatch(c -> c < 0x80);
+    }
+
+    /**
+     * Whether the changed sources yield the flags, extracted comments and plural form a message had, so
+     * they are the same whichever sources they stem from
+     */
+    private static boolean sameAttributes(Message previous, Message extracted) {
+        return previous.getFlags().equals(extracted.getFlags())
+                && previous.getExtractedComments().equals(extracted.getExtractedComments())
+                && Objects.equals(previous.getMsgidPlural(), extracted.getMsgidPlural());
+    }
+
+    private static void addMissing(List<String> target, List<String> values) {
+        for (String value : values) {
+            if (!target.contains(value)) {
+                target.add(value);
+            }
+        }
+    }
+
+    /**
+     * Returns the file of a reference, which is "file:line" or, in reproducible builds, "file"
+     *
+     * @param reference reference
+     * @return file
+     */
+    static String fileOf(String reference) {
+        int colon = reference.lastIndexOf(':');
+        if (colon > 0 && colon < reference.length() - 1 && reference.substring(colon + 1).chars().allMatch(Character::isDigit)) {
+            return reference.substring(0, colon);
+        }
+        return reference;
+    }
+
+    private static long lineOf(String reference) {
+        String file = fileOf(reference);
+        return file.length() == reference.length() ? 0 : Long.parseLong(reference.substring(file.length() + 1));
+    }
+
+    /**
+     * Orders references by file name, then by line number
+     */
+    private static final Comparator<String> REFERENCE_ORDER = Comparator.comparing(KeysPatcher::fileOf)
+            .thenComparingLong(KeysPatcher::lineOf);
+
+    /**
+     * A patched keys file
+     *
+     * @param catalog patched keys file
+     * @param added   number of messages added
+     * @param removed number of messages removed
+     */
+    public record Result(Catalog catalog, int added, int removed) {
+    }
+}
@@ -0,0 +1,201 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+
+/**
+ * Splits the bundles generated for all locales into one directory and jar per locale, the language
+ * packs. Files of a locale are the files in the package of the bundle whose name starts with the
+ * bundle name and the locale, like Messages_de.class, Messages_de$Segment0.class, Messages_de.gtz
+ * or Messages_de.com.acme.json.gz. All other files, like a string pool, are shared by the locales.
+ */
+public class LanguagePackWriter {
+
+    /**
+     * Entry time of reproducible jars, the earliest time zip entries can hold in every time zone
+     */
+    private static final long REPRODUCIBLE_TIME = Instant.parse("1980-01-02T00:00:00Z").toEpochMilli();
+
+    private final OutputTracker tracker;
+    private final String packagePath;
+    private final String bundleName;
+    private final boolean reproducible;
+
+    /**
+     * Ctor
+     *
+     * @param tracker      tracker the files are committed with
+     * @param targetBundle fully qualified name of the bundle
+     * @param reproducible write jars with fixed entry times
+     */
+    public LanguagePackWriter(OutputTracker tracker, String targetBundle, boolean reproducible) {
+        this.tracker = tracker;
+        int dot = targetBundle.lastIndexOf('.');
+        this.packagePath = dot < 0 ? "" : targetBundle.substring(0, dot).replace('.', '/');
+        this.bundleName = targetBundle.substring(dot + 1);
+        this.reproducible = reproducible;
+    }
+
+    /**
+     * Groups the files of a directory by locale
+     *
+     * @param directory directory holding the bundles of all locales
+     * @param locales   Java locales
+     * @return paths relative to the directory by locale, the shared files by the empty locale
+     * @throws IOException if the directory cannot be read
+     */
+    public Map<String, List<Path>> split(File directory, Collection<String> locales) throws IOException {
+        Map<String, List<Path>> files = new TreeMap<>();
+        files.put("", new ArrayList<>());
+        for (String locale : locales) {
+            files.put(locale, new ArrayList<>());
+        }
+        if (!directory.exists()) {
+            return files;
+        }
+        Path root = directory.toPath();
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path file : walk.filter(Files::isRegularFile).sorted().toList()) {
+                Path relative = root.relativize(file);
+                String locale = getLocale(relative, locales);
+                files.get(locale == null ? "" : locale).add(relative);
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the locale a file belongs to
+     *
+     * @param relative path relative to the class or resource root
+     * @param locales  Java locales
+     * @return locale, null if the file is shared
+     */
+    String getLocale(Path relative, Collection<String> locales) {
+        Path parent = relative.getParent();
+        String dir = parent == null ? "" : parent.toString().replace(File.separatorChar, '/');
+        String name = relative.getFileName().toString();
+        if (!dir.equals(packagePath) || !name.startsWith(bundleName + "_")) {
+            return null;
+        }
+        for (String locale : locales) {
+            int end = bundleName.length() + 1 + locale.length();
+            // de must not match Messages_de_CH.class
+            if (name.startsWith(locale, bundleName.length() + 1) && name.length() > end
+                    && (name.charAt(end) == '.' || name.charAt(end) == '$')) {
+                return locale;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Copies files that changed into a directory
+     *
+     * @param from          source directory
+     * @param files         paths relative to the source directory
+     * @param to            target directory
+     * @param deleteOthers  delete the files of the target directory that were not copied
+     * @return number of files deleted
+     * @throws IOException if a file cannot be copied or deleted
+     */
+    public int copy(File from, List<Path> files, File to, boolean deleteOthers) throws IOException {
+        Set<Path> copied = new HashSet<>();
+        for (Path relative : files) {
+            File target = to.toPath().resolve(relative).toFile();
+            File temp = tracker.newTempFile(target);
+            Files.copy(from.toPath().resolve(relative), temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            tracker.commit(temp, target);
+            copied.add(relative);
+        }
+        if (!deleteOthers || !to.exists()) {
+            return 0;
+        }
+        List<Path> stale;
+        try (Stream<Path> walk = Files.walk(to.toPath())) {
+            stale = walk.filter(Files::isRegularFile).filter(file -> !copied.contains(to.toPath().relativize(file))).toList();
+        }
+        for (Path file : stale) {
+            Files.delete(file);
+        }
+        return stale.size();
+    }
+
+    /**
+     * Deletes the files of the given locales from the package of the bundle in a directory, e.g. the
+     * bundles written into the class output directory before language packs were enabled
+     *
+     * @param directory class or resource root
+     * @param locales   Java locales
+     * @return number of files deleted
+     * @throws IOException if a file cannot be deleted
+     */
+    public int delete(File directory, Collection<String> locales) throws IOException {
+        File packageDirectory = new File(directory, packagePath);
+        File[] files = packageDirectory.listFiles(File::isFile);
+        int deleted = 0;
+        if (files != null) {
+            for (File file : files) {
+                if (getLocale(Path.of(packagePath, file.getName()), locales) != null) {
+                    Files.delete(file.toPath());
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Writes the files of a directory into a jar, sorted by path. Entries take the modification time
+     * of their files, so the jar only changes if a file changed, or a fixed time if reproducible.
+     *
+     * @param directory directory
+     * @param jar       jar file
+     * @return true if the jar changed
+     * @throws IOException if the jar cannot be written
+     */
+    public boolean writeJar(File directory, File jar) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory.toPath())) {
+            files = walk.filter(Files::isRegularFile).sorted().toList();
+        }
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().putValue("Created-By", "gettext-maven-plugin");
+
+        File temp = tracker.newTempFile(jar);
+        try (OutputStream os = Files.newOutputStream(temp.toPath()); JarOutputStream out = new JarOutputStream(os)) {
+            // the manifest ctor of JarOutputStream would write the current time
+            ZipEntry manifestEntry = new ZipEntry("META-INF/MANIFEST.MF");
+            manifestEntry.setTime(REPRODUCIBLE_TIME);
+            out.putNextEntry(manifestEntry);
+            manifest.write(out);
+            out.closeEntry();
+            for (Path file : files) {
+                ZipEntry entry = new ZipEntry(directory.toPath().relativize(file).toString().replace(File.separatorChar, '/'));
+                entry.setTime(reproducible ? REPRODUCIBLE_TIME : Files.getLastModifiedTime(file).toMillis());
+                out.putNextEntry(entry);
+                Files.copy(file, out);
+                out.closeEntry();
+            }
+        }
+        return tracker.commit(temp, jar);
+    }
+}
@@ -4,13 +4,19 @@ import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
-import org.codehaus.plexus.util.DirectoryScanner;
 import org.codehaus.plexus.util.cli.CommandLineException;
 import org.codehaus.plexus.util.cli.CommandLineUtils;
 import org.codehaus.plexus.util.cli.Commandline;
-import org.codehaus.plexus.util.cli.StreamConsumer;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 /**
  * Executes msmerge
@@ -25,7 +31,7 @@ public class MergeMojo extends AbstractGettextMojo {
     protected String msgmergeCmd;
 
     /**
-     * The msgmerge backup mode: none, numbered, existing, simple
+     * Backup mode for .po files that change, named like msgmerge does: none, numbered, existing, simple
      */
     @Parameter(required = true, defaultValue = "none")
     protected String backup;
@@ -36,52 +42,257 @@ public class MergeMojo extends AbstractGettextMojo {
     @Parameter(required = true, defaultValue = "by-file")
     protected String sort;
 
-    public void execute() throws MojoExecutionException {
-        getLog().info("Invoking msgmerge for po files in '%s'.".formatted(poDirectory.getAbsolutePath()));
+    /**
+     * Pre-fill new messages msgmerge left untranslated from a local translation memory of all .po
+     * files merged on this machine. Translations of the same msgid, or of a similar one, are filled in
+     * and flagged fuzzy for review. Ignored if reproducible is set, as the memory differs between
+     * machines.
+     */
+    @Parameter(property = "gettext.translationMemory", defaultValue = "false")
+    protected boolean translationMemory;
 
-        DirectoryScanner ds = new DirectoryScanner();
-        ds.setBasedir(poDirectory);
-        if (includes != null && includes.length > 0) {
-            ds.setIncludes(includes);
-        } else {
-            ds.setIncludes(new String[]{"**/*.po"});
-        }
-        if (excludes != null && excludes.length > 0) {
-            ds.setExcludes(excludes);
+    /**
+     * Directory of the translation memory, one index per language.
+     */
+    @Parameter(property = "gettext.translationMemoryDirectory", defaultValue = "${user.home}/.m2/gettext-tm")
+    protected File translationMemoryDirectory;
+
+    /**
+     * Minimum similarity in percent of the msgid of a translation memory entry to the msgid of a new
+     * message, measured by shared character trigrams. 100 pre-fills equal msgids only.
+     */
+    @Parameter(property = "gettext.translationMemorySimilarity", defaultValue = "80")
+    protected int translationMemorySimilarity;
+
+    public void execute() throws MojoExecutionException {
+        File potFile = new File(poDirectory, keysFile);
+        if (buildContext.isIncremental() && !buildContext.hasDelta(potFile)) {
+            getLog().info("%s did not change, not merging".formatted(keysFile));
+            return;
         }
-        ds.scan();
+        merge(getPoFiles());
+    }
 
-        getLog().info("Processing files in %s".formatted(poDirectory));
+    /**
+     * Returns the .po files to merge, relative to the poDirectory
+     *
+     * @return file names
+     * @throws MojoExecutionException if the poDirectory cannot be scanned
+     */
+    String[] getPoFiles() throws MojoExecutionException {
+        return scan(poDirectory, "**/*.po");
+    }
 
-        String[] files = ds.getIncludedFiles();
+    /**
+     * Merges the keys.pot file into .po files
+     *
+     * @param files file names relative to the poDirectory
+     * @return names of the files that changed
+     * @throws MojoExecutionException if a file cannot be updated
+     */
+    List<String> merge(String[] files) throws MojoExecutionException {
+        getLog().info("Invoking msgmerge for po files in '%s'.".formatted(poDirectory.getAbsolutePath()));
+
+        OutputTracker tracker = newOutputTracker();
+        OutputCache cache = newOutputCache();
+        ToolOutput output = newToolOutput("msgmerge");
+        File potFile = new File(poDirectory, keysFile);
+        if (translationMemory && reproducible) {
+            getLog().info("Not pre-filling from the translation memory in a reproducible build");
+        }
+        Map<String, TranslationMemory.Index> memories = translationMemory && !reproducible ? openTranslationMemories(files) : Map.of();
+        List<String> changed = new ArrayList<>();
         for (String fileName : files) {
             getLog().info("Processing " + fileName);
+            File file = new File(poDirectory, fileName);
+            File tempFile;
+            try {
+                tempFile = tracker.newTempFile(file);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to create temp file for " + file, e);
+            }
+
+            // msgmerge writes a temp sibling that replaces the .po file only if the content changed
             Commandline cl = new Commandline();
             cl.setExecutable(msgmergeCmd);
             for (String arg : extraArgs) {
                 cl.createArg().setValue(arg);
             }
             cl.createArg().setValue("-q");
-            cl.createArg().setValue("--backup=" + backup);
-            cl.createArg().setValue("-U");
-            File file = new File(poDirectory, fileName);
+            cl.createArg().setValue("-o");
+            cl.createArg().setFile(tempFile);
             cl.createArg().setFile(file);
-            cl.createArg().setValue(new File(poDirectory, keysFile).getAbsolutePath());
+            cl.createArg().setValue(potFile.getAbsolutePath());
             cl.createArg().setValue("by-file".equalsIgnoreCase(sort) ? "-F" : "-s");
 
             getLog().debug("Executing: " + cl.toString());
-            StreamConsumer out = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.INFO);
-            StreamConsumer err = new LoggerStreamConsumer(getLog(), LoggerStreamConsumer.WARN);
-            try {
-                CommandLineUtils.executeCommandLine(cl, out, err);
+            ToolOutput.Job job = output.newJob(fileName);
+            // modules of a parallel build may share the poDirectory
+            try (CatalogLock lock = CatalogLock.acquire(file, getLog())) {
+                String cacheKey = getCacheKey(cache, file, potFile);
+                boolean restored = cacheKey != null && cache.restoreFile(cacheKey, tempFile);
+                if (!restored) {
+                    int exitCode = CommandLineUtils.executeCommandLine(cl, job.out(), job.err());
+                    job.finish(exitCode);
+                    if (exitCode != 0) {
+                        getLog().warn("msgmerge failed, keeping the existing %s".formatted(fileName));
+                        continue;
+                    }
+                }
+                if (tempFile.length() == 0) {
+                    getLog().warn("msgmerge did not write %s, keeping the existing file".formatted(fileName));
+                    continue;
+                }
+                if (!restored) {
+                    normalize(tempFile, false);
+                    if (cacheKey != null) {
+                        cache.storeFile(cacheKey, tempFile);
+                    }
+                }
+                TranslationMemory.Index memory = memories.get(getLanguage(file));
+                if (memory != null) {
+                    int filled = prefill(tempFile, memory);
+                    if (filled > 0) {
+                        getLog().info("Pre-filled %d messages of %s from the translation memory".formatted(filled, fileName));
+                    }
+                }
+                if (lock.isModified()) {
+                    throw new MojoExecutionException("%s was modified by another process while merging, run the build again".formatted(file));
+                }
+                if (tracker.isChanged(tempFile, file)) {
+                    backup(file);
+                }
+                if (tracker.commit(tempFile, file)) {
+                    changed.add(fileName);
+                }
             } catch (CommandLineException e) {
                 getLog().error("Could not execute " + msgmergeCmd + ".", e);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to update " + file, e);
+            } finally {
+                tempFile.delete();
             }
+        }
+        output.report(getLog());
+        tracker.report(getLog());
+        if (cache != null) {
+            cache.report(getLog());
+        }
+        return changed;
+    }
 
-            if (!printPOTCreationDate) {
-                GettextUtils.removePotCreationDate(file, getLog());
+    /**
+     * Adds the .po files to the translation memories of their languages and opens them
+     */
+    private Map<String, TranslationMemory.Index> openTranslationMemories(String[] files) throws MojoExecutionException {
+        Map<String, List<File>> byLanguage = new TreeMap<>();
+        for (String fileName : files) {
+            File file = new File(poDirectory, fileName);
+            byLanguage.computeIfAbsent(getLanguage(file), l -> new ArrayList<>()).add(file);
+        }
+        Map<String, TranslationMemory.Index> memories = new HashMap<>();
+        for (Map.Entry<String, List<File>> entry : byLanguage.entrySet()) {
+            TranslationMemory memory = new TranslationMemory(translationMemoryDirectory, entry.getKey());
+            try {
+                int read = memory.update(entry.getValue());
+                TranslationMemory.Index index = memory.open();
+                getLog().debug("Translation memory %s: %d files added, %d messages".formatted(entry.getKey(), read, index.size()));
+                memories.put(entry.getKey(), index);
+            } catch (IOException e) {
+                throw new MojoExecutionException("Unable to update the translation memory in " + translationMemoryDirectory, e);
+            }
+        }
+        return memories;
+    }
+
+    private static String getLanguage(File file) {
+        return file.getName().substring(0, file.getName().lastIndexOf('.'));
+    }
+
+    /**
+     * Fills untranslated messages with translations of the memory, flagged fuzzy. Similar msgids are
+     * recorded as previous msgid, so translators see what differs. Only the filled entries are
+     * rewritten, wrapped like msgmerge wraps them with the extraArgs.
+     *
+     * @param file   .po file written by msgmerge
+     * @param memory translation memory of the language
+     * @return number of filled messages
+     * @throws IOException if the file cannot be updated
+     */
+    int prefill(File file, TranslationMemory.Index memory) throws IOException {
+        Catalog catalog = PoParser.parse(file);
+        Map<Integer, Message> filled = new HashMap<>();
+        for (int i = 0; i < catalog.size(); i++) {
+            Message message = catalog.get(i);
+            if (!message.isObsolete() && !message.isHeader() && !message.isFuzzy() && !message.isTranslated()) {
+                TranslationMemory.Match match = memory.find(message, translationMemorySimilarity / 100.0);
+                if (match != null) {
+                    message = message.copy();
+                    message.getMsgstr().clear();
+                    message.getMsgstr().addAll(match.msgstr());
+                    message.getFlags().add(0, "fuzzy");
+                    if (!match.msgid().equals(message.getMsgid())) {
+                        message.getPrevious().clear();
+                        message.getPrevious().add("msgid \"" + PoWriter.escape(match.msgid()) + "\"");
+                    }
+                    filled.put(i, message);
+                }
+            }
+        }
+        if (!filled.isEmpty()) {
+            newPoWriter().replace(catalog, filled);
+        }
+        return filled.size();
+    }
+
+    /**
+     * Creates a writer that wraps like msgmerge with the --no-wrap and --width options of the
+     * extraArgs
+     */
+    private PoWriter newPoWriter() {
+        boolean wrap = true;
+        int width = PoWriter.PAGE_WIDTH;
+        for (int i = 0; i < extraArgs.length; i++) {
+            String arg = extraArgs[i];
+            if (arg.equals("--no-wrap")) {
+                wrap = false;
+            } else if (arg.startsWith("--width=")) {
+                width = Integer.parseInt(arg.substring("--width=".length()));
+            } else if ((arg.equals("--width") || arg.equals("-w")) && i + 1 < extraArgs.length) {
+                width = Integer.parseInt(extraArgs[++i]);
+            } else if (arg.startsWith("-w")) {
+                width = Integer.parseInt(arg.substring(2));
             }
         }
+        return new PoWriter(wrap, width);
+    }
+
+    private String getCacheKey(OutputCache cache, File file, File potFile) throws IOException {
+        OutputCache.Key key = newCacheKey(cache, "merge", msgmergeCmd);
+        return key == null ? null : key.add(sort).addContent(file).addContent(potFile).build();
+    }
+
+    /**
+     * Creates a backup of a .po file that is about to change, named like msgmerge --backup does.
+     */
+    private void backup(File file) throws IOException {
+        File backupFile = switch (backup) {
+            case "simple", "never" -> new File(file.getPath() + "~");
+            case "numbered", "t" -> numberedBackup(file);
+            case "existing", "nil" -> new File(file.getPath() + ".~1~").exists() ? numberedBackup(file) : new File(file.getPath() + "~");
+            default -> null;
+        };
+        if (backupFile != null) {
+            Files.copy(file.toPath(), backupFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private File numberedBackup(File file) {
+        int number = 1;
+        while (new File("%s.~%d~".formatted(file.getPath(), number)).exists()) {
+            number++;
+        }
+        return new File("%s.~%d~".formatted(file.getPath(), number));
     }
 
 }
@@ -0,0 +1,189 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A single entry of a po or pot file.
+ */
+public class Message {
+
+    /**
+     * Separator between msgctxt and msgid used as lookup key by msgfmt and Gettext Commons
+     */
+    public static final char CONTEXT_SEPARATOR = '\u0004';
+
+    private String msgctxt;
+    private String msgid;
+    private String msgidPlural;
+    private final List<String> msgstr = new ArrayList<>(1);
+    private final List<String> translatorComments = new ArrayList<>(0);
+    private final List<String> extractedComments = new ArrayList<>(0);
+    private final List<String> references = new ArrayList<>(0);
+    private final List<String> flags = new ArrayList<>(0);
+    private final List<String> previous = new ArrayList<>(0);
+    private boolean obsolete;
+    private int lineNumber;
+
+    /**
+     * Returns the key used in generated bundles, i.e. msgid prefixed by msgctxt if present
+     *
+     * @return lookup key
+     */
+    public String getKey() {
+        return msgctxt == null ? msgid : msgctxt + CONTEXT_SEPARATOR + msgid;
+    }
+
+    /**
+     * Returns true if this is the header entry
+     *
+     * @return header entry
+     */
+    public boolean isHeader() {
+        return msgctxt == null && "".equals(msgid) && !obsolete;
+    }
+
+    /**
+     * Returns true if the entry has a plural form
+     *
+     * @return plural entry
+     */
+    public boolean isPlural() {
+        return msgidPlural != null;
+    }
+
+    /**
+     * Returns true if the entry is flagged fuzzy
+     *
+     * @return fuzzy entry
+     */
+    public boolean isFuzzy() {
+        return flags.contains("fuzzy");
+    }
+
+    /**
+     * Returns true if every msgstr of the entry is non-empty
+     *
+     * @return translated entry
+     */
+    public boolean isTranslated() {
+        if (msgstr.isEmpty()) {
+            return false;
+        }
+        for (String s : msgstr) {
+            if (s == null || s.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if msgfmt would put this entry into a compiled bundle
+     *
+     * @return compiled entry
+     */
+    public boolean isCompiled() {
+        return !obsolete && !isFuzzy() && isTranslated();
+    }
+
+    public String getMsgctxt() {
+        return msgctxt;
+    }
+
+    public void setMsgctxt(String msgctxt) {
+        this.msgctxt = msgctxt;
+    }
+
+    public String getMsgid() {
+        return msgid;
+    }
+
+    public void setMsgid(String msgid) {
+        this.msgid = msgid;
+    }
+
+    public String getMsgidPlural() {
+        return msgidPlural;
+    }
+
+    public void setMsgidPlural(String msgidPlural) {
+        this.msgidPlural = msgidPlural;
+    }
+
+    /**
+     * Returns the translations, one per plural form
+     *
+     * @return msgstr list
+     */
+    public List<String> getMsgstr() {
+        return msgstr;
+    }
+
+    public List<String> getTranslatorComments() {
+        return translatorComments;
+    }
+
+    public List<String> getExtractedComments() {
+        return extractedComments;
+    }
+
+    public List<String> getReferences() {
+        return references;
+    }
+
+    public List<String> getFlags() {
+        return flags;
+    }
+
+    /**
+     * Returns the previous msgid lines (#|) without the comment marker
+     *
+     * @return previous lines
+     */
+    public List<String> getPrevious() {
+        return previous;
+    }
+
+    public boolean isObsolete() {
+        return obsolete;
+    }
+
+    public void setObsolete(boolean obsolete) {
+        this.obsolete = obsolete;
+    }
+
+    /**
+     * Returns the line of the file the entry starts at
+     *
+     * @return line number
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    public void setLineNumber(int lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    /**
+     * Returns a copy of the entry that can be changed without changing this one
+     *
+     * @return copy
+     */
+    public Message copy() {
+        Message copy = new Message();
+        copy.msgctxt = msgctxt;
+        copy.msgid = msgid;
+        copy.msgidPlural = msgidPlural;
+        copy.msgstr.addAll(msgstr);
+        copy.translatorComments.addAll(translatorComments);
+        copy.extractedComments.addAll(extractedComments);
+        copy.references.addAll(references);
+        copy.flags.addAll(flags);
+        copy.previous.addAll(previous);
+        copy.obsolete = obsolete;
+        copy.lineNumber = lineNumber;
+        return copy;
+    }
+}
@@ -0,0 +1,358 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Writes a class holding the java-format messages of all locales as pre-parsed patterns, i.e. literal
+ * text and argument elements, and a formatter that formats them without parsing a MessageFormat per
+ * call. Patterns with date, time, choice or custom number formats are formatted by a MessageFormat
+ * that is created once per thread.
+ */
+public class MessageFormatWriter extends JavaBundleWriter {
+
+    /**
+     * Patterns per holder class, keeps the constant pool of each class below its limit
+     */
+    private static final int PATTERNS_PER_CLASS = 4096;
+
+    /**
+     * Puts per method, keeps each method below the 64k bytecode limit
+     */
+    private static final int PUTS_PER_METHOD = 500;
+
+    /**
+     * Ctor
+     *
+     * @param targetBundle  fully qualified base name of the bundle
+     * @param escapeUnicode use unicode escapes for non-ASCII characters
+     * @param encoding      encoding of the generated sources
+     */
+    public MessageFormatWriter(String targetBundle, boolean escapeUnicode, Charset encoding) {
+        super(targetBundle, escapeUnicode, encoding);
+    }
+
+    /**
+     * Returns the simple name of the formatter class
+     *
+     * @return class name
+     */
+    public String getFormatsClassName() {
+        return getSimpleName() + "_Formats";
+    }
+
+    /**
+     * Parses the translated java-format messages of a catalog
+     *
+     * @param catalog catalog
+     * @param locale  Java locale of the catalog
+     * @param errors  receives "file:line: message" for each pattern MessageFormat rejects
+     * @return parsed forms by key
+     */
+    public static Map<String, List<MessagePattern>> parse(Catalog catalog, String locale, List<String> errors) {
+        Map<String, List<MessagePattern>> patterns = new LinkedHashMap<>();
+        Locale javaLocale = Locale.forLanguageTag(locale.replace('_', '-'));
+        for (Message message : catalog) {
+            if (!message.isCompiled() || message.isHeader() || !message.getFlags().contains("java-format")) {
+                continue;
+            }
+            List<MessagePattern> forms = new ArrayList<>();
+            for (String msgstr : message.getMsgstr()) {
+                try {
+                    forms.add(MessagePattern.parse(msgstr, javaLocale));
+                } catch (IllegalArgumentException e) {
+                    errors.add("%s:%d: invalid java-format string '%s': %s".formatted(catalog.getFile(), message.getLineNumber(), msgstr, e.getMessage()));
+                }
+            }
+            if (forms.size() == message.getMsgstr().size()) {
+                patterns.putIfAbsent(message.getKey(), forms);
+            }
+        }
+        return patterns;
+    }
+
+    /**
+     * Writes the formatter class
+     *
+     * @param patterns   parsed patterns by Java locale and key
+     * @param catalogs   catalogs by Java locale, providing the Plural-Forms headers
+     * @param sourceRoot source root
+     * @return written file
+     * @throws IOException if the file cannot be written
+     */
+    public File write(Map<String, Map<String, List<MessagePattern>>> patterns, Map<String, Catalog> catalogs, File sourceRoot) throws IOException {
+        String className = getFormatsClassName();
+        StringBuilder sb = header();
+        sb.append("""
+                /**
+                 * Pre-parsed java-format messages of the bundle %1$s. Formats like MessageFormat with the
+                 * translation of the bundle's locale, falling back to the translation of the bundle and
+                 * to the msgid for messages without java-format flag.
+                 */
+                public final class %2$s {
+
+                    private static final ThreadLocal<java.util.HashMap<java.util.Locale, java.text.Format[]>> FORMATS =
+                            ThreadLocal.withInitial(java.util.HashMap::new);
+
+                    private static final ThreadLocal<java.util.IdentityHashMap<Pattern, java.text.MessageFormat>> MESSAGE_FORMATS =
+                            ThreadLocal.withInitial(java.util.IdentityHashMap::new);
+
+                    private %2$s() {
+                    }
+
+                    /**
+                     * Formats a message
+                     *
+                     * @param bundle bundle of the locale
+                     * @param key    msgid, prefixed by msgctxt and \\u0004 if present
+                     * @param args   arguments
+                     * @return formatted message
+                     */
+                    public static String format(java.util.ResourceBundle bundle, String key, Object... args) {
+                        java.util.Locale locale = bundle.getLocale();
+                        Pattern[] forms = patterns(locale).get(key);
+                        if (forms != null) {
+                            return forms[0].format(args);
+                        }
+                        String pattern;
+                        try {
+                            pattern = bundle.getString(key);
+                        } catch (java.util.MissingResourceException e) {
+                            pattern = key.substring(key.indexOf('\\u0004') + 1);
+                        }
+                        return new java.text.MessageFormat(pattern, locale).format(args);
+                    }
+
+                    /**
+                     * Formats the plural form of a message for a number
+                     *
+                     * @param bundle    bundle of the locale
+                     * @param key       msgid, prefixed by msgctxt and \\u0004 if present
+                     * @param keyPlural msgid_plural
+                     * @param n         number selecting the plural form
+                     * @param args      arguments
+                     * @return formatted message
+                     */
+                    public static String formatPlural(java.util.ResourceBundle bundle, String key, String keyPlural, long n, Object... args) {
+                        java.util.Locale locale = bundle.getLocale();
+                        Pattern[] forms = patterns(locale).get(key);
+                        if (forms != null) {
+                            long form = forms.length == 1 ? 0 : pluralEval(locale, n);
+                            if (form >= 0 && form < forms.length) {
+                                return forms[(int) form].format(args);
+                            }
+                        }
+                        String pattern = n == 1 ? key.substring(key.indexOf('\\u0004') + 1) : keyPlural;
+                        return new java.text.MessageFormat(pattern, locale).format(args);
+                    }
+
+                    private static java.text.Format cachedFormat(java.util.Locale locale, int type) {
+                        java.text.Format[] formats = FORMATS.get().computeIfAbsent(locale, l -> new java.text.Format[5]);
+                        java.text.Format format = formats[type];
+                        if (format == null) {
+                            switch (type) {
+                                case 0:
+                                    format = java.text.DateFormat.getDateTimeInstance(java.text.DateFormat.SHORT, java.text.DateFormat.SHORT, locale);
+                                    break;
+                                case 1:
+                                    format = java.text.NumberFormat.getInstance(locale);
+                                    break;
+                                case 2:
+                                    format = java.text.NumberFormat.getIntegerInstance(locale);
+                                    break;
+                                case 3:
+                                    format = java.text.NumberFormat.getPercentInstance(locale);
+                                    break;
+                                default:
+                                    format = java.text.NumberFormat.getCurrencyInstance(locale);
+                            }
+                            formats[type] = format;
+                        }
+                        return format;
+                    }
+
+                    /**
+                     * A pattern split into literal text and elements, encoded as Integer of argument index
+                     * shifted by 3 and format type: 0 none, 1 number, 2 integer, 3 percent, 4 currency.
+                     * Patterns with other formats have no parts and are formatted by MessageFormat.
+                     */
+                    private static final class Pattern {
+
+                        private final java.util.Locale locale;
+                        private final String source;
+                        private final Object[] parts;
+
+                        Pattern(java.util.Locale locale, String source, Object... parts) {
+                            this.locale = locale;
+                            this.source = source;
+                            this.parts = parts;
+                        }
+
+                        String format(Object[] args) {
+                            if (parts == null) {
+                                return MESSAGE_FORMATS.get().computeIfAbsent(this, p -> new java.text.MessageFormat(source, locale)).format(args);
+                            }
+                            StringBuilder sb = new StringBuilder(source.length() + (args == null ? 0 : 16 * args.length));
+                            for (Object part : parts) {
+                                if (part instanceof String) {
+                                    sb.append((String) part);
+                                    continue;
+                                }
+                                int element = (Integer) part;
+                                int index = element >>> 3;
+                                int type = element & 7;
+                                if (args == null || index >= args.length) {
+                                    sb.append('{').append(index).append('}');
+                                    continue;
+                                }
+                                Object arg = args[index];
+                                // MessageFormat prints null without applying the format type
+                                if (arg == null) {
+                                    sb.append("null");
+                                } else if (type != 0) {
+                                    sb.append(cachedFormat(locale, type).format(arg));
+                                } else if (arg instanceof String) {
+                                    sb.append((String) arg);
+                                } else if (arg instanceof Number) {
+                                    sb.append(cachedFormat(locale, 1).format(arg));
+                                } else if (arg instanceof java.util.Date) {
+                                    sb.append(cachedFormat(locale, 0).format(arg));
+                                } else {
+                                    sb.append(arg);
+                                }
+                            }
+                            return sb.toString();
+                        }
+                    }
+
+                """.formatted(getSimpleName(), className));
+
+        List<String> holders = new ArrayList<>();
+        for (Map.Entry<String, Map<String, List<MessagePattern>>> entry : patterns.entrySet()) {
+            holders.add(appendLocale(sb, entry.getKey(), entry.getValue(), catalogs.get(entry.getKey())));
+        }
+        List<String> locales = new ArrayList<>(patterns.keySet());
+
+        sb.append("""
+                    /**
+                     * Returns the patterns of a locale or of its language
+                     */
+                    private static java.util.Map<String, Pattern[]> patterns(java.util.Locale locale) {
+                        java.util.Map<String, Pattern[]> patterns = patterns(locale.toString());
+                        return patterns != null ? patterns : patterns(locale.getLanguage());
+                    }
+
+                    private static java.util.Map<String, Pattern[]> patterns(String locale) {
+                        switch (locale) {
+                """);
+        for (int i = 0; i < locales.size(); i++) {
+            sb.append("            case ");
+            appendLiteral(sb, locales.get(i));
+            sb.append(":\n                return ").append(holders.get(i)).append(".PATTERNS;\n");
+        }
+        sb.append("""
+                            default:
+                                return null;
+                        }
+                    }
+
+                    private static long pluralEval(java.util.Locale locale, long n) {
+                        String name = patterns(locale.toString()) != null ? locale.toString() : locale.getLanguage();
+                        switch (name) {
+                """);
+        for (int i = 0; i < locales.size(); i++) {
+            sb.append("            case ");
+            appendLiteral(sb, locales.get(i));
+            sb.append(":\n                return ").append(holders.get(i)).append(".pluralEval(n);\n");
+        }
+        sb.append("""
+                            default:
+                                return n == 1 ? 0 : 1;
+                        }
+                    }
+                }
+                """);
+        return write(getSourceFile(sourceRoot, className), sb);
+    }
+
+    /**
+     * Appends the holder class of a locale, initialized on first use
+     *
+     * @return name of the holder class
+     */
+    private String appendLocale(StringBuilder sb, String locale, Map<String, List<MessagePattern>> patterns, Catalog catalog) {
+        String holder = "Locale_" + locale.replaceAll("[^A-Za-z0-9_]", "_");
+        List<Map.Entry<String, List<MessagePattern>>> entries = new ArrayList<>(patterns.entrySet());
+        int chunks = (entries.size() + PATTERNS_PER_CLASS - 1) / PATTERNS_PER_CLASS;
+
+        sb.append("    private static final class ").append(holder).append(" {\n\n");
+        sb.append("        static final java.util.Locale LOCALE = java.util.Locale.forLanguageTag(");
+        appendLiteral(sb, locale.replace('_', '-'));
+        sb.append(");\n\n");
+        sb.append("        static final java.util.HashMap<String, Pattern[]> PATTERNS = new java.util.HashMap<>(")
+                .append(entries.size() * 4 / 3 + 1).append(");\n\n");
+        sb.append("        static {\n");
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            sb.append("            ").append(holder).append('_').append(chunk).append(".fill(PATTERNS);\n");
+        }
+        sb.append("        }\n\n");
+        sb.append("        static long pluralEval(long n) {\n");
+        sb.append("            return ").append(catalog.getPluralForms().toJava()).append(";\n");
+        sb.append("        }\n    }\n\n");
+
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * PATTERNS_PER_CLASS;
+            int to = Math.min(entries.size(), from + PATTERNS_PER_CLASS);
+            String className = holder + "_" + chunk;
+            sb.append("    private static final class ").append(className).append(" {\n\n");
+            sb.append("        static void fill(java.util.HashMap<String, Pattern[]> p) {\n");
+            for (int start = from; start < to; start += PUTS_PER_METHOD) {
+                sb.append("            fill").append(start).append("(p);\n");
+            }
+            sb.append("        }\n");
+            for (int start = from; start < to; start += PUTS_PER_METHOD) {
+                sb.append("\n        private static void fill").append(start).append("(java.util.HashMap<String, Pattern[]> p) {\n");
+                for (Map.Entry<String, List<MessagePattern>> entry : entries.subList(start, Math.min(to, start + PUTS_PER_METHOD))) {
+                    sb.append("            p.put(");
+                    appendLiteral(sb, entry.getKey());
+                    sb.append(", new Pattern[]{");
+                    List<MessagePattern> forms = entry.getValue();
+                    for (int i = 0; i < forms.size(); i++) {
+                        if (i > 0) {
+                            sb.append(", ");
+                        }
+                        appendPattern(sb, holder, forms.get(i));
+                    }
+                    sb.append("});\n");
+                }
+                sb.append("        }\n");
+            }
+            sb.append("    }\n\n");
+        }
+        return holder;
+    }
+
+    private void appendPattern(StringBuilder sb, String holder, MessagePattern pattern) {
+        sb.append("new Pattern(").append(holder).append(".LOCALE, ");
+        appendLiteral(sb, pattern.getSource());
+        if (!pattern.isSimple()) {
+            sb.append(", (Object[]) null)");
+            return;
+        }
+        for (Object part : pattern.getParts()) {
+            sb.append(", ");
+            if (part instanceof MessagePattern.Element element) {
+                sb.append(element.index() << 3 | element.type());
+            } else {
+                appendLiteral(sb, (String) part);
+            }
+        }
+        sb.append(')');
+    }
+}
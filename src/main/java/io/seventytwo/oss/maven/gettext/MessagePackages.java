@@ -0,0 +1,80 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The Java packages messages are used in, taken from the references of the keys file and cut after a
+ * number of package name segments.
+ */
+public class MessagePackages {
+
+    private static final String SOURCE_ROOT = "src/main/java/";
+
+    private final int depth;
+    private final Map<String, String> packages = new HashMap<>();
+
+    /**
+     * Ctor
+     *
+     * @param keys  keys file whose references assign the messages to packages
+     * @param depth number of package name segments kept
+     */
+    public MessagePackages(Catalog keys, int depth) {
+        this.depth = depth;
+        for (Message message : keys) {
+            if (!message.isObsolete() && !message.isHeader()) {
+                packages.putIfAbsent(message.getKey(), getPackage(message.getReferences()));
+            }
+        }
+    }
+
+    /**
+     * Returns the package a message is used in
+     *
+     * @param key key of the message
+     * @return package, empty if the message is used in several packages, has no references or is not
+     * in the keys file
+     */
+    public String get(String key) {
+        return packages.getOrDefault(key, "");
+    }
+
+    /**
+     * Returns the package a message is used in, cut after depth name segments
+     *
+     * @param references reference lines of the message
+     * @return package, empty if the message is used in several packages or has no references
+     */
+    String getPackage(List<String> references) {
+        Set<String> found = new HashSet<>();
+        for (String line : references) {
+            for (String reference : line.trim().split("\\s+")) {
+                if (!reference.isEmpty()) {
+                    found.add(packageOf(reference));
+                }
+            }
+        }
+        return found.size() == 1 ? found.iterator().next() : "";
+    }
+
+    private String packageOf(String reference) {
+        String path = reference.replace('\\', '/');
+        int colon = path.lastIndexOf(':');
+        if (colon > 0 && path.substring(colon + 1).chars().allMatch(Character::isDigit)) {
+            path = path.substring(0, colon);
+        }
+        // references of the aggregator are relative to the reactor root
+        int root = path.lastIndexOf(SOURCE_ROOT);
+        if (root >= 0) {
+            path = path.substring(root + SOURCE_ROOT.length());
+        }
+        String[] names = path.split("/");
+        int segments = Math.min(depth, names.length - 1);
+        return String.join(".", Arrays.asList(names).subList(0, Math.max(0, segments)));
+    }
+}
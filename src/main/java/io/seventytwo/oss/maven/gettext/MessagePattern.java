@@ -0,0 +1,158 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A java.text.MessageFormat pattern split into literal text and format elements, with the quoting of
+ * the literal text resolved.
+ */
+public class MessagePattern {
+
+    /**
+     * Element without format type, formatted depending on the argument's class
+     */
+    public static final int NONE = 0;
+    public static final int NUMBER = 1;
+    public static final int INTEGER = 2;
+    public static final int PERCENT = 3;
+    public static final int CURRENCY = 4;
+
+    private final String source;
+    private final List<Object> parts;
+    private final boolean simple;
+
+    private MessagePattern(String source, List<Object> parts, boolean simple) {
+        this.source = source;
+        this.parts = parts;
+        this.simple = simple;
+    }
+
+    /**
+     * Parses a pattern
+     *
+     * @param pattern pattern
+     * @param locale  locale of the pattern
+     * @return parsed pattern
+     * @throws IllegalArgumentException if MessageFormat rejects the pattern
+     */
+    public static MessagePattern parse(String pattern, Locale locale) {
+        // MessageFormat is the reference for what is valid
+        new MessageFormat(pattern, locale);
+
+        List<Object> parts = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        boolean simple = true;
+        boolean quoted = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    literal.append('\'');
+                    i += 2;
+                    continue;
+                }
+                quoted = !quoted;
+                i++;
+            } else if (c == '{' && !quoted) {
+                int end = findClosingBrace(pattern, i);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unmatched braces in the pattern.");
+                }
+                if (!literal.isEmpty()) {
+                    parts.add(literal.toString());
+                    literal.setLength(0);
+                }
+                Element element = parseElement(pattern.substring(i + 1, end));
+                simple &= element.type() >= 0;
+                parts.add(element);
+                i = end + 1;
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+        if (!literal.isEmpty()) {
+            parts.add(literal.toString());
+        }
+        return new MessagePattern(pattern, parts, simple);
+    }
+
+    private static Element parseElement(String element) {
+        String[] segments = element.split(",", 3);
+        int index = Integer.parseInt(segments[0].strip());
+        String type = segments.length > 1 ? segments[1].strip().toLowerCase(Locale.ROOT) : "";
+        String style = segments.length > 2 ? segments[2].strip().toLowerCase(Locale.ROOT) : "";
+        int code = -1;
+        if (type.isEmpty()) {
+            code = NONE;
+        } else if ("number".equals(type)) {
+            code = switch (style) {
+                case "" -> NUMBER;
+                case "integer" -> INTEGER;
+                case "percent" -> PERCENT;
+                case "currency" -> CURRENCY;
+                default -> -1;
+            };
+        }
+        return new Element(index, code);
+    }
+
+    /**
+     * Finds the brace closing a format element, skipping nested and quoted braces
+     *
+     * @param pattern pattern
+     * @param open    index of the opening brace
+     * @return index of the closing brace, -1 if there is none
+     */
+    static int findClosingBrace(String pattern, int open) {
+        int depth = 0;
+        boolean quoted = false;
+        for (int i = open; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+            } else if (!quoted && c == '{') {
+                depth++;
+            } else if (!quoted && c == '}' && --depth == 0) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    /**
+     * Returns the literal texts as String and the format elements as {@link Element}
+     *
+     * @return parts in pattern order
+     */
+    public List<Object> getParts() {
+        return parts;
+    }
+
+    /**
+     * Returns true if all elements are formatted without a format type or as a number with a
+     * predefined style. Date, time, choice and custom number formats are not simple.
+     *
+     * @return true if simple
+     */
+    public boolean isSimple() {
+        return simple;
+    }
+
+    /**
+     * A format element
+     *
+     * @param index argument index
+     * @param type  NONE, NUMBER, INTEGER, PERCENT, CURRENCY or -1 if not simple
+     */
+    public record Element(int index, int type) {
+    }
+}
@@ -0,0 +1,216 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.codehaus.plexus.util.DirectoryScanner;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * Drops messages from catalogs that are no longer referenced. References are taken from the keys.pot
+ * file and/or from the string constants of compiled classes. If both sources are used, a message
+ * must be referenced by both to be kept. Messages extracted from sources that are not compiled into
+ * the scanned classes, like the extraSourceFiles of the gettext goal, are always referenced by the
+ * classes.
+ */
+public class MessagePruner {
+
+    private static final int CLASS_MAGIC = 0xCAFEBABE;
+
+    private Set<String> potKeys;
+    private Set<String> classConstants;
+    private Set<String> classFiles;
+
+    /**
+     * Extracts the method names of xgettext keyword options like "-ktrc:1c,2 -ktr -k"
+     *
+     * @param keywords xgettext keyword options
+     * @return method names
+     */
+    public static Set<String> parseKeywords(String keywords) {
+        Set<String> names = new HashSet<>();
+        StringTokenizer t = new StringTokenizer(keywords);
+        while (t.hasMoreTokens()) {
+            String token = t.nextToken();
+            if (token.startsWith("--keyword=")) {
+                token = token.substring(10);
+            } else if (token.startsWith("-k")) {
+                token = token.substring(2);
+            } else {
+                continue;
+            }
+            int colon = token.indexOf(':');
+            String name = colon < 0 ? token : token.substring(0, colon);
+            // -k without a name only disables the default keywords
+            if (!name.isEmpty()) {
+                names.add(name.substring(name.lastIndexOf('.') + 1));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Uses the messages of a pot file as references
+     *
+     * @param pot parsed keys.pot
+     */
+    public void addKeysFile(Catalog pot) {
+        potKeys = new HashSet<>();
+        for (Message message : pot) {
+            if (!message.isObsolete()) {
+                potKeys.add(message.getKey());
+            }
+        }
+    }
+
+    /**
+     * Uses the string constants of all classes below a directory that call one of the keyword methods
+     * as references. This works on class granularity: every string literal of such a class counts as
+     * referenced, whether or not it is actually passed to a keyword method. Names of fields and methods
+     * are no references.
+     *
+     * @param classesDirectory directory with compiled classes
+     * @param keywords         names of the keyword methods
+     * @return number of classes calling a keyword method
+     * @throws IOException if a class file cannot be read
+     */
+    public int addClasses(File classesDirectory, Set<String> keywords) throws IOException {
+        classConstants = new HashSet<>();
+        classFiles = new HashSet<>();
+        if (!classesDirectory.isDirectory()) {
+            return 0;
+        }
+        DirectoryScanner ds = new DirectoryScanner();
+        ds.setBasedir(classesDirectory);
+        ds.setIncludes(new String[]{"**/*.class"});
+        ds.scan();
+        int classes = 0;
+        for (String file : ds.getIncludedFiles()) {
+            classFiles.add(file.replace(File.separatorChar, '/'));
+            try (InputStream is = new BufferedInputStream(Files.newInputStream(new File(classesDirectory, file).toPath()))) {
+                if (scanClass(new DataInputStream(is), keywords)) {
+                    classes++;
+                }
+            }
+        }
+        return classes;
+    }
+
+    /**
+     * Reads the constant pool of a class file and collects its string constants if it refers to a
+     * keyword method. Only the name and types of method references name a called method.
+     */
+    private boolean scanClass(DataInputStream in, Set<String> keywords) throws IOException {
+        if (in.readInt() != CLASS_MAGIC) {
+            return false;
+        }
+        in.readUnsignedShort(); // minor version
+        in.readUnsignedShort(); // major version
+        int count = in.readUnsignedShort();
+        String[] utf8 = new String[count];
+        List<Integer> strings = new ArrayList<>();
+        List<Integer> methodNameAndTypes = new ArrayList<>();
+        int[] nameIndexes = new int[count];
+        for (int i = 1; i < count; i++) {
+            int tag = in.readUnsignedByte();
+            switch (tag) {
+                case 1 -> utf8[i] = in.readUTF();
+                case 8 -> strings.add(in.readUnsignedShort());
+                case 12 -> {
+                    nameIndexes[i] = in.readUnsignedShort();
+                    in.readUnsignedShort();
+                }
+                case 10, 11 -> {
+                    in.readUnsignedShort();
+                    methodNameAndTypes.add(in.readUnsignedShort());
+                }
+                case 7, 16, 19, 20 -> in.readUnsignedShort();
+                case 15 -> {
+                    in.readUnsignedByte();
+                    in.readUnsignedShort();
+                }
+                case 3, 4, 9, 17, 18 -> in.readInt();
+                case 5, 6 -> {
+                    in.readLong();
+                    // 8 byte constants take two slots
+                    i++;
+                }
+                default -> throw new IOException("Unknown constant pool tag " + tag);
+            }
+        }
+        boolean callsKeyword = false;
+        for (int nameAndType : methodNameAndTypes) {
+            if (keywords.contains(utf8[nameIndexes[nameAndType]])) {
+                callsKeyword = true;
+                break;
+            }
+        }
+        if (callsKeyword) {
+            for (int index : strings) {
+                classConstants.add(utf8[index]);
+            }
+        }
+        return callsKeyword;
+    }
+
+    /**
+     * Returns true if a message is referenced by all configured sources
+     *
+     * @param message message
+     * @return referenced
+     */
+    public boolean isReferenced(Message message) {
+        if (message.isHeader()) {
+            return true;
+        }
+        if (message.isObsolete()) {
+            return false;
+        }
+        if (potKeys != null && !potKeys.contains(message.getKey())) {
+            return false;
+        }
+        if (classConstants != null && !isExtractedOutsideClasses(message)) {
+            return classConstants.contains(message.getMsgid())
+                    && (message.getMsgctxt() == null || classConstants.contains(message.getMsgctxt()));
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if a message is referenced from a source that is not a Java source or whose class
+     * is not in the scanned directory, like an extra source file
+     */
+    private boolean isExtractedOutsideClasses(Message message) {
+        for (String reference : message.getReferences()) {
+            String file = KeysPatcher.fileOf(reference);
+            if (!file.endsWith(".java") || !classFiles.contains(file.substring(0, file.length() - 5) + ".class")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns a catalog with the referenced messages only
+     *
+     * @param catalog catalog
+     * @return pruned catalog
+     */
+    public Catalog prune(Catalog catalog) {
+        Catalog pruned = new Catalog(catalog.getFile());
+        for (Message message : catalog) {
+            if (isReferenced(message)) {
+                pruned.add(message);
+            }
+        }
+        return pruned;
+    }
+}
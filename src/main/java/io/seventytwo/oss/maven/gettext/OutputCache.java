@@ -0,0 +1,292 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.FileUtils;
+import org.codehaus.plexus.util.cli.CommandLineException;
+import org.codehaus.plexus.util.cli.CommandLineUtils;
+import org.codehaus.plexus.util.cli.Commandline;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Local content-addressed cache of tool outputs, shared by all builds of a machine. An entry is a
+ * directory named by the hash of everything the output depends on: the content of the input files,
+ * the tool version and the parameters. Entries are created atomically, so concurrent builds may
+ * share the cache. The least recently used entries are evicted when the cache exceeds its size.
+ */
+public class OutputCache {
+
+    private static final String FILE_ENTRY = "file";
+    private static final Map<String, String> TOOL_VERSIONS = new ConcurrentHashMap<>();
+
+    private final File directory;
+    private final long maxBytes;
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Ctor
+     *
+     * @param directory cache directory
+     * @param maxBytes  size the cache is evicted to
+     */
+    public OutputCache(File directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the first line of the --version output of a tool, null if it cannot be determined.
+     * The version is determined once per JVM and command.
+     *
+     * @param command tool
+     * @return version
+     */
+    public static String getToolVersion(String command) {
+        String version = TOOL_VERSIONS.computeIfAbsent(command, c -> {
+            Commandline cl = new Commandline();
+            cl.setExecutable(c);
+            cl.createArg().setValue("--version");
+            StringBuilder out = new StringBuilder();
+            try {
+                int ret = CommandLineUtils.executeCommandLine(cl, line -> {
+                    if (out.length() == 0) {
+                        out.append(line);
+                    }
+                }, line -> {
+                });
+                return ret == 0 && out.length() > 0 ? out.toString() : "";
+            } catch (CommandLineException e) {
+                return "";
+            }
+        });
+        return version.isEmpty() ? null : version;
+    }
+
+    /**
+     * Starts a key
+     *
+     * @return key builder
+     */
+    public static Key key() {
+        return new Key();
+    }
+
+    /**
+     * Copies the cached file of a key to a target file
+     *
+     * @param key    key
+     * @param target target file
+     * @return true on a cache hit
+     */
+    public boolean restoreFile(String key, File target) {
+        return restore(key, entry -> Files.copy(entry.resolve(FILE_ENTRY), target.toPath(), StandardCopyOption.REPLACE_EXISTING));
+    }
+
+    /**
+     * Copies the cached files of a key into a target directory
+     *
+     * @param key    key
+     * @param target target directory
+     * @return true on a cache hit
+     */
+    public boolean restoreDirectory(String key, File target) {
+        return restore(key, entry -> FileUtils.copyDirectoryStructure(entry.toFile(), target));
+    }
+
+    /**
+     * Stores a file under a key
+     *
+     * @param key  key
+     * @param file file
+     * @throws IOException if the file cannot be stored
+     */
+    public void storeFile(String key, File file) throws IOException {
+        store(key, temp -> Files.copy(file.toPath(), temp.resolve(FILE_ENTRY)));
+    }
+
+    /**
+     * Stores the files below a directory under a key
+     *
+     * @param key    key
+     * @param source directory
+     * @throws IOException if the files cannot be stored
+     */
+    public void storeDirectory(String key, File source) throws IOException {
+        store(key, temp -> FileUtils.copyDirectoryStructure(source, temp.toFile()));
+    }
+
+    private boolean restore(String key, EntryAction action) {
+        Path entry = getEntry(key);
+        if (!Files.isDirectory(entry)) {
+            misses.incrementAndGet();
+            return false;
+        }
+        try {
+            action.apply(entry);
+            Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+            hits.incrementAndGet();
+            return true;
+        } catch (IOException e) {
+            // evicted by a concurrent build
+            misses.incrementAndGet();
+            return false;
+        }
+    }
+
+    private void store(String key, EntryAction action) throws IOException {
+        Path entry = getEntry(key);
+        if (Files.isDirectory(entry)) {
+            return;
+        }
+        Files.createDirectories(directory.toPath());
+        Path temp = Files.createTempDirectory(directory.toPath(), "." + key + ".");
+        try {
+            action.apply(temp);
+            Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (FileAlreadyExistsException e) {
+            // stored by a concurrent build
+        } catch (IOException e) {
+            if (!Files.isDirectory(entry)) {
+                throw e;
+            }
+        } finally {
+            if (Files.exists(temp)) {
+                FileUtils.deleteDirectory(temp.toFile());
+            }
+        }
+    }
+
+    private Path getEntry(String key) {
+        return directory.toPath().resolve(key);
+    }
+
+    /**
+     * Evicts the least recently used entries until the cache fits its size
+     *
+     * @throws IOException if the cache cannot be read
+     */
+    public void evict() throws IOException {
+        if (!directory.isDirectory()) {
+            return;
+        }
+        List<Path> entries;
+        try (Stream<Path> list = Files.list(directory.toPath())) {
+            entries = new ArrayList<>(list.filter(p -> !p.getFileName().toString().startsWith(".")).toList());
+        }
+        Map<Path, Long> sizes = new HashMap<>();
+        Map<Path, Long> times = new HashMap<>();
+        long total = 0;
+        for (Path entry : entries) {
+            long size = FileUtils.sizeOfDirectory(entry.toFile());
+            sizes.put(entry, size);
+            times.put(entry, Files.getLastModifiedTime(entry).toMillis());
+            total += size;
+        }
+        entries.sort(Comparator.comparing(times::get));
+        for (Path entry : entries) {
+            if (total <= maxBytes) {
+                break;
+            }
+            FileUtils.deleteDirectory(entry.toFile());
+            total -= sizes.get(entry);
+        }
+    }
+
+    /**
+     * Evicts entries and logs the hits and misses
+     *
+     * @param log log
+     */
+    public void report(Log log) {
+        try {
+            evict();
+        } catch (IOException e) {
+            log.warn("Unable to evict build cache entries in " + directory, e);
+        }
+        if (hits.get() + misses.get() > 0) {
+            log.info("Build cache: %d hits, %d misses".formatted(hits.get(), misses.get()));
+        }
+    }
+
+    /**
+     * Builds a key from values and file contents
+     */
+    public static final class Key {
+
+        private final MessageDigest digest;
+
+        private Key() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        /**
+         * Adds a value
+         *
+         * @param value value, may be null
+         * @return this
+         */
+        public Key add(String value) {
+            byte[] bytes = String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+            // length prefix, so adjacent values cannot be confused
+            digest.update(Integer.toString(bytes.length).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) ':');
+            digest.update(bytes);
+            return this;
+        }
+
+        /**
+         * Adds the content of a file
+         *
+         * @param file file
+         * @return this
+         * @throws IOException if the file cannot be read
+         */
+        public Key addContent(File file) throws IOException {
+            return add(HexFormat.of().formatHex(hash(Files.readAllBytes(file.toPath()))));
+        }
+
+        /**
+         * Returns the key
+         *
+         * @return hex encoded hash
+         */
+        public String build() {
+            return HexFormat.of().formatHex(digest.digest());
+        }
+
+        private static byte[] hash(byte[] content) {
+            try {
+                return MessageDigest.getInstance("SHA-256").digest(content);
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private interface EntryAction {
+        void apply(Path entry) throws IOException;
+    }
+}
@@ -0,0 +1,160 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Replaces output files only if their content changed. Outputs are first written to a temp sibling of
+ * the target, which is compared with the existing target, size first, then byte by byte, and either
+ * moved atomically over the target or discarded. Unchanged outputs keep their timestamps, so they do
+ * not trigger downstream recompiles, resource copies or repackaging.
+ */
+public class OutputTracker {
+
+    private final AtomicInteger written = new AtomicInteger();
+    private final AtomicInteger modified = new AtomicInteger();
+    private final Consumer<File> onModified;
+
+    /**
+     * Ctor
+     */
+    public OutputTracker() {
+        this(file -> {
+        });
+    }
+
+    /**
+     * Ctor
+     *
+     * @param onModified called with each target that was modified
+     */
+    public OutputTracker(Consumer<File> onModified) {
+        this.onModified = onModified;
+    }
+
+    /**
+     * Creates an empty temp sibling of a target file
+     *
+     * @param target target file
+     * @return temp file in the directory of the target
+     * @throws IOException if the file cannot be created
+     */
+    public File newTempFile(File target) throws IOException {
+        Path dir = target.getAbsoluteFile().getParentFile().toPath();
+        Files.createDirectories(dir);
+        return Files.createTempFile(dir, "." + target.getName() + ".", ".tmp").toFile();
+    }
+
+    /**
+     * Replaces the target with the temp file if the content differs, deletes the temp file otherwise
+     *
+     * @param temp   temp file with the new content
+     * @param target target file
+     * @return true if the target was modified
+     * @throws IOException if the files cannot be compared or moved
+     */
+    public boolean commit(File temp, File target) throws IOException {
+        written.incrementAndGet();
+        if (!isChanged(temp, target)) {
+            Files.delete(temp.toPath());
+            return false;
+        }
+        Files.createDirectories(target.toPath().toAbsolutePath().getParent());
+        GettextUtils.moveAtomically(temp.toPath(), target.toPath());
+        modified.incrementAndGet();
+        onModified.accept(target);
+        return true;
+    }
+
+    /**
+     * Returns true if the target does not exist or its content differs from the temp file
+     *
+     * @param temp   temp file with the new content
+     * @param target target file
+     * @return changed
+     * @throws IOException if the files cannot be compared
+     */
+    public boolean isChanged(File temp, File target) throws IOException {
+        Path targetPath = target.toPath();
+        Path tempPath = temp.toPath();
+        return !Files.isRegularFile(targetPath)
+                || Files.size(targetPath) != Files.size(tempPath)
+                || Files.mismatch(targetPath, tempPath) != -1L;
+    }
+
+    /**
+     * Writes contents to a target file if they differ from its current content
+     *
+     * @param target   target file
+     * @param contents new content
+     * @return true if the target was modified
+     * @throws IOException if the file cannot be written
+     */
+    public boolean write(File target, byte[] contents) throws IOException {
+        File temp = newTempFile(target);
+        Files.write(temp.toPath(), contents);
+        return commit(temp, target);
+    }
+
+    /**
+     * Commits all files below a scratch directory to the same relative paths below a target directory
+     *
+     * @param scratchDirectory directory with new outputs
+     * @param targetDirectory  target directory
+     * @return committed target files
+     * @throws IOException if a file cannot be committed
+     */
+    public List<File> commitDirectory(File scratchDirectory, File targetDirectory) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(scratchDirectory.toPath())) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        List<File> targets = new ArrayList<>(files.size());
+        for (Path file : files) {
+            File target = targetDirectory.toPath().resolve(scratchDirectory.toPath().relativize(file)).toFile();
+            // move into a sibling first, a move across file systems would not be atomic
+            File temp = newTempFile(target);
+            Files.move(file, temp.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            commit(temp, target);
+            targets.add(target);
+        }
+        return targets;
+    }
+
+    /**
+     * Returns the number of outputs committed
+     *
+     * @return written files
+     */
+    public int getWritten() {
+        return written.get();
+    }
+
+    /**
+     * Returns the number of outputs that actually changed
+     *
+     * @return modified files
+     */
+    public int getModified() {
+        return modified.get();
+    }
+
+    /**
+     * Logs how many of the written outputs changed
+     *
+     * @param log log
+     */
+    public void report(Log log) {
+        log.info("%d of %d output files changed".formatted(getModified(), getWritten()));
+    }
+}
@@ -0,0 +1,334 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parsed Plural-Forms header. The C expression of the header is compiled into a small syntax tree
+ * that can be evaluated or translated into Java or JavaScript source.
+ */
+public class PluralForms {
+
+    private static final Pattern HEADER_PATTERN = Pattern.compile("nplurals\\s*=\\s*(\\d+)\\s*;\\s*plural\\s*=\\s*([^;]+);?");
+
+    /**
+     * Germanic plural used when a catalog has no Plural-Forms header
+     */
+    public static final PluralForms DEFAULT = parse("nplurals=2; plural=(n != 1);");
+
+    private final int nplurals;
+    private final String expression;
+    private final Expr expr;
+
+    private PluralForms(int nplurals, String expression, Expr expr) {
+        this.nplurals = nplurals;
+        this.expression = expression;
+        this.expr = expr;
+    }
+
+    /**
+     * Parses the value of a Plural-Forms header
+     *
+     * @param header header value, e.g. "nplurals=2; plural=(n != 1);"
+     * @return plural forms
+     * @throws IllegalArgumentException if the header is malformed
+     */
+    public static PluralForms parse(String header) {
+        Matcher m = HEADER_PATTERN.matcher(header.strip());
+        if (!m.matches()) {
+            throw new IllegalArgumentException("Invalid Plural-Forms header: " + header);
+        }
+        String expression = m.group(2).strip();
+        Parser parser = new Parser(expression);
+        Expr expr = parser.parseTernary();
+        if (parser.pos < expression.length()) {
+            throw new IllegalArgumentException("Unexpected '%s' in plural expression: %s".formatted(expression.substring(parser.pos), expression));
+        }
+        return new PluralForms(Integer.parseInt(m.group(1)), expression, expr);
+    }
+
+    public int getNplurals() {
+        return nplurals;
+    }
+
+    /**
+     * Returns the plural expression as written in the header
+     *
+     * @return C expression
+     */
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * Evaluates the plural expression
+     *
+     * @param n number
+     * @return index of the plural form
+     */
+    public long evaluate(long n) {
+        return expr.eval(n);
+    }
+
+    /**
+     * Returns a Java expression of type long depending on a long variable named n
+     *
+     * @return Java source
+     */
+    public String toJava() {
+        return expr.numeric();
+    }
+
+    /**
+     * Returns a JavaScript expression of type number depending on an integer variable named n
+     *
+     * @return JavaScript source
+     */
+    public String toJavaScript() {
+        return expr.jsNumeric();
+    }
+
+    private interface Expr {
+        long eval(long n);
+
+        boolean isBoolean();
+
+        String java();
+
+        String js();
+
+        default String jsNumeric() {
+            return isBoolean() ? "(" + js() + " ? 1 : 0)" : js();
+        }
+
+        default String jsBool() {
+            return isBoolean() ? js() : "(" + js() + " !== 0)";
+        }
+
+        default String numeric() {
+            return isBoolean() ? "(" + java() + " ? 1L : 0L)" : java();
+        }
+
+        default String bool() {
+            return isBoolean() ? java() : "(" + java() + " != 0L)";
+        }
+    }
+
+    private record Variable() implements Expr {
+        public long eval(long n) {
+            return n;
+        }
+
+        public boolean isBoolean() {
+            return false;
+        }
+
+        public String java() {
+            return "n";
+        }
+
+        public String js() {
+            return "n";
+        }
+    }
+
+    private record Constant(long value) implements Expr {
+        public long eval(long n) {
+            return value;
+        }
+
+        public boolean isBoolean() {
+            return false;
+        }
+
+        public String java() {
+            return value + "L";
+        }
+
+        public String js() {
+            return String.valueOf(value);
+        }
+    }
+
+    private record Not(Expr operand) implements Expr {
+        public long eval(long n) {
+            return operand.eval(n) == 0 ? 1 : 0;
+        }
+
+        public boolean isBoolean() {
+            return true;
+        }
+
+        public String java() {
+            return "!" + operand.bool();
+        }
+
+        public String js() {
+            return "!" + operand.jsBool();
+        }
+    }
+
+    private record Ternary(Expr condition, Expr then, Expr otherwise) implements Expr {
+        public long eval(long n) {
+            return condition.eval(n) != 0 ? then.eval(n) : otherwise.eval(n);
+        }
+
+        public boolean isBoolean() {
+            return false;
+        }
+
+        public String java() {
+            return "(" + condition.bool() + " ? " + then.numeric() + " : " + otherwise.numeric() + ")";
+        }
+
+        public String js() {
+            return "(" + condition.jsBool() + " ? " + then.jsNumeric() + " : " + otherwise.jsNumeric() + ")";
+        }
+    }
+
+    private record Binary(String operator, Expr left, Expr right) implements Expr {
+        public long eval(long n) {
+            long l = left.eval(n);
+            // && and || short-circuit like in C
+            if (operator.equals("&&")) {
+                return l != 0 && right.eval(n) != 0 ? 1 : 0;
+            }
+            if (operator.equals("||")) {
+                return l != 0 || right.eval(n) != 0 ? 1 : 0;
+            }
+            long r = right.eval(n);
+            return switch (operator) {
+                case "==" -> l == r ? 1 : 0;
+                case "!=" -> l != r ? 1 : 0;
+                case "<" -> l < r ? 1 : 0;
+                case ">" -> l > r ? 1 : 0;
+                case "<=" -> l <= r ? 1 : 0;
+                case ">=" -> l >= r ? 1 : 0;
+                case "+" -> l + r;
+                case "-" -> l - r;
+                case "*" -> l * r;
+                case "/" -> r == 0 ? 0 : l / r;
+                case "%" -> r == 0 ? 0 : l % r;
+                default -> throw new IllegalStateException(operator);
+            };
+        }
+
+        public boolean isBoolean() {
+            return switch (operator) {
+                case "&&", "||", "==", "!=", "<", ">", "<=", ">=" -> true;
+                default -> false;
+            };
+        }
+
+        public String java() {
+            if (operator.equals("&&") || operator.equals("||")) {
+                return "(" + left.bool() + " " + operator + " " + right.bool() + ")";
+            }
+            return "(" + left.numeric() + " " + operator + " " + right.numeric() + ")";
+        }
+
+        public String js() {
+            return switch (operator) {
+                case "&&", "||" -> "(" + left.jsBool() + " " + operator + " " + right.jsBool() + ")";
+                // integer division like in C
+                case "/" -> "Math.trunc(" + left.jsNumeric() + " / " + right.jsNumeric() + ")";
+                case "==" -> "(" + left.jsNumeric() + " === " + right.jsNumeric() + ")";
+                case "!=" -> "(" + left.jsNumeric() + " !== " + right.jsNumeric() + ")";
+                default -> "(" + left.jsNumeric() + " " + operator + " " + right.jsNumeric() + ")";
+            };
+        }
+    }
+
+    private static class Parser {
+
+        private static final String[][] LEVELS = {
+                {"||"}, {"&&"}, {"==", "!="}, {"<=", ">=", "<", ">"}, {"+", "-"}, {"*", "/", "%"}
+        };
+
+        private final String s;
+        private int pos;
+
+        Parser(String s) {
+            this.s = s;
+        }
+
+        Expr parseTernary() {
+            Expr condition = parseBinary(0);
+            if (accept("?")) {
+                Expr then = parseTernary();
+                expect(":");
+                Expr otherwise = parseTernary();
+                return new Ternary(condition, then, otherwise);
+            }
+            return condition;
+        }
+
+        private Expr parseBinary(int level) {
+            if (level == LEVELS.length) {
+                return parseUnary();
+            }
+            Expr left = parseBinary(level + 1);
+            outer:
+            while (true) {
+                for (String operator : LEVELS[level]) {
+                    // do not mistake the first char of && or || for another operator
+                    if (lookingAt(operator) && !(operator.length() == 1 && (lookingAt(operator + operator) || lookingAt(operator + "=")))) {
+                        pos += operator.length();
+                        left = new Binary(operator, left, parseBinary(level + 1));
+                        continue outer;
+                    }
+                }
+                return left;
+            }
+        }
+
+        private Expr parseUnary() {
+            if (accept("!")) {
+                return new Not(parseUnary());
+            }
+            if (accept("(")) {
+                Expr expr = parseTernary();
+                expect(")");
+                return expr;
+            }
+            skipWhitespace();
+            if (pos < s.length() && s.charAt(pos) == 'n') {
+                pos++;
+                return new Variable();
+            }
+            int start = pos;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            if (start == pos) {
+                throw new IllegalArgumentException("Unexpected character at %d in plural expression: %s".formatted(pos, s));
+            }
+            return new Constant(Long.parseLong(s.substring(start, pos)));
+        }
+
+        private boolean lookingAt(String token) {
+            skipWhitespace();
+            return s.startsWith(token, pos);
+        }
+
+        private boolean accept(String token) {
+            if (lookingAt(token)) {
+                pos += token.length();
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(String token) {
+            if (!accept(token)) {
+                throw new IllegalArgumentException("Expected '%s' at %d in plural expression: %s".formatted(token, pos, s));
+            }
+        }
+
+        private void skipWhitespace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+}
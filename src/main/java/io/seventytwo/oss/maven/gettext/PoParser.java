@@ -0,0 +1,316 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Parses po and pot files into a {@link Catalog}.
+ */
+public class PoParser {
+
+    private static final int HEAD_SIZE = 4096;
+    private static final Pattern CHARSET_PATTERN = Pattern.compile("charset=([\\w.:-]+)");
+
+    private static final int NONE = 0;
+    private static final int MSGCTXT = 1;
+    private static final int MSGID = 2;
+    private static final int MSGID_PLURAL = 3;
+    private static final int MSGSTR = 4;
+
+    private final File file;
+    private Catalog catalog;
+    private Message current;
+    private int field;
+    private int form;
+    private int lineNumber;
+
+    private PoParser(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Parses a po or pot file. The encoding is taken from the Content-Type header. The file is read
+     * line by line, so only the catalog is held in memory.
+     *
+     * @param file file
+     * @return catalog
+     * @throws IOException if the file cannot be read or has a syntax error
+     */
+    public static Catalog parse(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return parse(file, in);
+        }
+    }
+
+    /**
+     * Parses the contents of a po or pot file.
+     *
+     * @param file     file used for diagnostics
+     * @param contents file contents
+     * @return catalog
+     * @throws IOException on syntax errors
+     */
+    public static Catalog parse(File file, byte[] contents) throws IOException {
+        return parse(file, new ByteArrayInputStream(contents));
+    }
+
+    /**
+     * Parses a po or pot file from a stream. The encoding is taken from the Content-Type header.
+     *
+     * @param file file used for diagnostics
+     * @param in   stream, not closed
+     * @return catalog
+     * @throws IOException if the stream cannot be read or has a syntax error
+     */
+    public static Catalog parse(File file, InputStream in) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(in, HEAD_SIZE);
+        buffered.mark(HEAD_SIZE);
+        Charset charset = detectCharset(buffered.readNBytes(HEAD_SIZE));
+        buffered.reset();
+        return new PoParser(file).parseLines(new BufferedReader(new InputStreamReader(buffered, charset)));
+    }
+
+    /**
+     * Detects the charset declared in the Content-Type header, UTF-8 if none is declared.
+     *
+     * @param contents file contents
+     * @return charset
+     */
+    static Charset detectCharset(byte[] contents) {
+        // the header is ASCII in all charsets gettext supports
+        String head = new String(contents, 0, Math.min(contents.length, HEAD_SIZE), StandardCharsets.ISO_8859_1);
+        Matcher m = CHARSET_PATTERN.matcher(head);
+        if (m.find()) {
+            try {
+                return Charset.forName(m.group(1));
+            } catch (IllegalArgumentException ignored) {
+                // CHARSET placeholder of fresh pot files
+            }
+        }
+        return StandardCharsets.UTF_8;
+    }
+
+    private Catalog parseLines(BufferedReader reader) throws IOException {
+        catalog = new Catalog(file);
+        String line;
+        for (lineNumber = 1; (line = reader.readLine()) != null; lineNumber++) {
+            parseLine(line.strip());
+        }
+        finishMessage();
+        catalog.trimToSize();
+        return catalog;
+    }
+
+    private void parseLine(String line) throws IOException {
+        if (line.isEmpty()) {
+            return;
+        }
+        if (line.startsWith("#~")) {
+            String rest = line.substring(2).strip();
+            if (rest.startsWith("|")) {
+                startMessageIfComplete();
+                current.getPrevious().add(rest.substring(1).strip());
+                return;
+            }
+            if (rest.isEmpty()) {
+                return;
+            }
+            if (rest.startsWith("msgctxt") || rest.startsWith("msgid ")) {
+                startMessageIfComplete();
+            }
+            current().setObsolete(true);
+            parseKeywordLine(rest);
+            return;
+        }
+        if (line.startsWith("#")) {
+            startMessageIfComplete();
+            String text = line.length() > 2 ? line.substring(2) : "";
+            char kind = line.length() > 1 ? line.charAt(1) : ' ';
+            switch (kind) {
+                case ',' -> {
+                    for (String flag : text.split(",")) {
+                        if (!flag.isBlank()) {
+                            current.getFlags().add(flag.strip());
+                        }
+                    }
+                }
+                case ':' -> {
+                    for (String reference : text.strip().split("\\s+")) {
+                        if (!reference.isEmpty()) {
+                            current.getReferences().add(reference);
+                        }
+                    }
+                }
+                case '.' -> current.getExtractedComments().add(text.strip());
+                case '|' -> current.getPrevious().add(text.strip());
+                default -> current.getTranslatorComments().add(line.length() > 1 ? line.substring(line.charAt(1) == ' ' ? 2 : 1) : "");
+            }
+            return;
+        }
+        parseKeywordLine(line);
+    }
+
+    private void parseKeywordLine(String line) throws IOException {
+        if (line.startsWith("\"")) {
+            appendToField(unquote(line));
+            return;
+        }
+        int space = line.indexOf(' ');
+        if (space < 0) {
+            throw syntaxError("Missing string after keyword");
+        }
+        String keyword = line.substring(0, space);
+        String value = unquote(line.substring(space + 1).strip());
+        if (keyword.equals("msgctxt")) {
+            startMessageIfComplete();
+            current().setMsgctxt(value);
+            field = MSGCTXT;
+        } else if (keyword.equals("msgid")) {
+            if (field != MSGCTXT) {
+                startMessageIfComplete();
+            }
+            current().setMsgid(value);
+            field = MSGID;
+        } else if (keyword.equals("msgid_plural")) {
+            requireField(MSGID, keyword);
+            current.setMsgidPlural(value);
+            field = MSGID_PLURAL;
+        } else if (keyword.equals("msgstr")) {
+            requireField(MSGID, keyword);
+            current.getMsgstr().add(value);
+            form = 0;
+            field = MSGSTR;
+        } else if (keyword.startsWith("msgstr[") && keyword.endsWith("]")) {
+            if (field != MSGSTR) {
+                requireField(MSGID_PLURAL, keyword);
+            }
+            try {
+                form = Integer.parseInt(keyword.substring(7, keyword.length() - 1));
+            } catch (NumberFormatException e) {
+                throw syntaxError("Invalid plural index in " + keyword);
+            }
+            if (form != current.getMsgstr().size()) {
+                throw syntaxError("Plural form %s out of sequence".formatted(keyword));
+            }
+            current.getMsgstr().add(value);
+            field = MSGSTR;
+        } else {
+            throw syntaxError("Unknown keyword " + keyword);
+        }
+    }
+
+    private void requireField(int expected, String keyword) throws IOException {
+        if (current == null || field < expected || current.getMsgid() == null) {
+            throw syntaxError(keyword + " without preceding msgid");
+        }
+    }
+
+    private void appendToField(String value) throws IOException {
+        switch (field) {
+            case MSGCTXT -> current.setMsgctxt(current.getMsgctxt() + value);
+            case MSGID -> current.setMsgid(current.getMsgid() + value);
+            case MSGID_PLURAL -> current.setMsgidPlural(current.getMsgidPlural() + value);
+            case MSGSTR -> {
+                List<String> msgstr = current.getMsgstr();
+                msgstr.set(form, msgstr.get(form) + value);
+            }
+            default -> throw syntaxError("String without keyword");
+        }
+    }
+
+    private Message current() {
+        if (current == null) {
+            current = new Message();
+            current.setLineNumber(lineNumber);
+        }
+        return current;
+    }
+
+    private void startMessageIfComplete() {
+        if (field == MSGSTR) {
+            finishMessage();
+        }
+        current();
+    }
+
+    private void finishMessage() {
+        if (current != null && current.getMsgid() != null) {
+            catalog.add(current);
+        }
+        current = null;
+        field = NONE;
+    }
+
+    private String unquote(String s) throws IOException {
+        if (s.length() < 2 || !s.startsWith("\"") || !s.endsWith("\"")) {
+            throw syntaxError("Invalid string literal");
+        }
+        return unescape(s.substring(1, s.length() - 1));
+    }
+
+    private String unescape(String s) throws IOException {
+        if (s.indexOf('\\') < 0) {
+            return s;
+        }
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (++i == s.length()) {
+                throw syntaxError("Trailing backslash in string");
+            }
+            c = s.charAt(i);
+            switch (c) {
+                case 'n' -> sb.append('\n');
+                case 't' -> sb.append('\t');
+                case 'r' -> sb.append('\r');
+                case 'a' -> sb.append('\u0007');
+                case 'b' -> sb.append('\b');
+                case 'f' -> sb.append('\f');
+                case 'v' -> sb.append('\u000b');
+                case 'x' -> {
+                    int end = i + 1;
+                    while (end < s.length() && end < i + 3 && Character.digit(s.charAt(end), 16) >= 0) {
+                        end++;
+                    }
+                    if (end == i + 1) {
+                        throw syntaxError("Invalid hex escape");
+                    }
+                    sb.append((char) Integer.parseInt(s.substring(i + 1, end), 16));
+                    i = end - 1;
+                }
+                default -> {
+                    if (c >= '0' && c <= '7') {
+                        int end = i;
+                        while (end < s.length() && end < i + 3 && s.charAt(end) >= '0' && s.charAt(end) <= '7') {
+                            end++;
+                        }
+                        sb.append((char) Integer.parseInt(s.substring(i, end), 8));
+                        i = end - 1;
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        return sb.toString();
+    }
+
+    private IOException syntaxError(String message) {
+        return new IOException("%s:%d: %s".formatted(file, lineNumber, message));
+    }
+}
@@ -0,0 +1,226 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes a {@link Catalog} in the po file format, wrapping lines the way the gettext tools do.
+ */
+public class PoWriter {
+
+    /**
+     * Default page width of the gettext tools
+     */
+    static final int PAGE_WIDTH = 79;
+
+    private final boolean wrap;
+    private final int width;
+
+    /**
+     * Ctor
+     *
+     * @param wrap break long strings into several lines like the gettext tools do
+     */
+    public PoWriter(boolean wrap) {
+        this(wrap, PAGE_WIDTH);
+    }
+
+    /**
+     * Ctor
+     *
+     * @param wrap  break long strings into several lines like the gettext tools do
+     * @param width page width, like the --width option of the gettext tools
+     */
+    public PoWriter(boolean wrap, int width) {
+        this.wrap = wrap;
+        this.width = width;
+    }
+
+    /**
+     * Writes a catalog using the charset declared in its header
+     *
+     * @param catalog catalog
+     * @param file    target file
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Catalog catalog, File file) throws IOException {
+        try (OutputStream os = Files.newOutputStream(file.toPath())) {
+            write(catalog, os);
+        }
+    }
+
+    /**
+     * Writes a catalog using the charset declared in its header
+     *
+     * @param catalog catalog
+     * @param os      target stream, not closed
+     * @throws IOException if writing fails
+     */
+    public void write(Catalog catalog, OutputStream os) throws IOException {
+        Writer w = new BufferedWriter(new OutputStreamWriter(os, catalog.getCharset()));
+        boolean first = true;
+        for (Message message : catalog) {
+            if (!first) {
+                w.write('\n');
+            }
+            first = false;
+            writeMessage(w, message);
+        }
+        w.flush();
+    }
+
+    /**
+     * Replaces messages of a po file, keeping all other lines byte for byte
+     *
+     * @param catalog      catalog parsed from the file, with line numbers
+     * @param replacements replacing messages by their index in the catalog
+     * @throws IOException if the file cannot be read or written
+     */
+    public void replace(Catalog catalog, Map<Integer, Message> replacements) throws IOException {
+        File file = catalog.getFile();
+        String text = new String(Files.readAllBytes(file.toPath()), catalog.getCharset());
+        List<Integer> lineStarts = new ArrayList<>();
+        lineStarts.add(0);
+        for (int i = text.indexOf('\n'); i >= 0; i = text.indexOf('\n', i + 1)) {
+            lineStarts.add(i + 1);
+        }
+        StringBuilder sb = new StringBuilder(text.length() + 256);
+        int copied = 0;
+        for (Map.Entry<Integer, Message> entry : new TreeMap<>(replacements).entrySet()) {
+            int index = entry.getKey();
+            int firstLine = catalog.get(index).getLineNumber() - 1;
+            int nextLine = index + 1 < catalog.size() ? catalog.get(index + 1).getLineNumber() - 1 : lineStarts.size();
+            // the blank lines separating the entries are kept
+            int end = lineStarts.get(firstLine);
+            for (int line = firstLine; line < nextLine; line++) {
+                int lineEnd = line + 1 < lineStarts.size() ? lineStarts.get(line + 1) : text.length();
+                if (!text.substring(lineStarts.get(line), lineEnd).isBlank()) {
+                    end = lineEnd;
+                }
+            }
+            sb.append(text, copied, lineStarts.get(firstLine));
+            StringWriter w = new StringWriter();
+            writeMessage(w, entry.getValue());
+            sb.append(w);
+            if (end > 0 && text.charAt(end - 1) != '\n') {
+                // the last entry of a file without trailing newline
+                sb.setLength(sb.length() - 1);
+            }
+            copied = end;
+        }
+        sb.append(text, copied, text.length());
+        Files.write(file.toPath(), sb.toString().getBytes(catalog.getCharset()));
+    }
+
+    private void writeMessage(Writer w, Message message) throws IOException {
+        for (String comment : message.getTranslatorComments()) {
+            w.write(comment.isEmpty() ? "#\n" : "# " + comment + "\n");
+        }
+        for (String comment : message.getExtractedComments()) {
+            w.write("#. " + comment + "\n");
+        }
+        writeReferences(w, message.getReferences());
+        if (!message.getFlags().isEmpty()) {
+            w.write("#, " + String.join(", ", message.getFlags()) + "\n");
+        }
+        String prefix = message.isObsolete() ? "#~ " : "";
+        for (String previous : message.getPrevious()) {
+            w.write(prefix.isEmpty() ? "#| " + previous + "\n" : "#~| " + previous + "\n");
+        }
+        if (message.getMsgctxt() != null) {
+            writeString(w, prefix, "msgctxt", message.getMsgctxt());
+        }
+        writeString(w, prefix, "msgid", message.getMsgid());
+        if (message.isPlural()) {
+            writeString(w, prefix, "msgid_plural", message.getMsgidPlural());
+            List<String> msgstr = message.getMsgstr();
+            for (int i = 0; i < msgstr.size(); i++) {
+                writeString(w, prefix, "msgstr[" + i + "]", msgstr.get(i));
+            }
+        } else {
+            writeString(w, prefix, "msgstr", message.getMsgstr().isEmpty() ? "" : message.getMsgstr().get(0));
+        }
+    }
+
+    private void writeReferences(Writer w, List<String> references) throws IOException {
+        if (references.isEmpty()) {
+            return;
+        }
+        StringBuilder line = new StringBuilder("#:");
+        for (String reference : references) {
+            if (wrap && line.length() > 2 && line.length() + 1 + reference.length() > width) {
+                w.write(line.append('\n').toString());
+                line.setLength(0);
+                line.append("#:");
+            }
+            line.append(' ').append(reference);
+        }
+        w.write(line.append('\n').toString());
+    }
+
+    private void writeString(Writer w, String prefix, String keyword, String value) throws IOException {
+        String escaped = escape(value);
+        String single = prefix + keyword + " \"" + escaped + "\"";
+        int newline = escaped.indexOf("\\n");
+        boolean multiline = newline >= 0 && newline + 2 < escaped.length();
+        if (!multiline && (!wrap || single.length() <= width)) {
+            w.write(single + "\n");
+            return;
+        }
+        w.write(prefix + keyword + " \"\"\n");
+        for (String line : split(escaped, width - prefix.length() - 2)) {
+            w.write(prefix + "\"" + line + "\"\n");
+        }
+    }
+
+    /**
+     * Splits an escaped string after each \n and, if wrapping, after the last space fitting the width
+     */
+    private List<String> split(String escaped, int width) {
+        List<String> lines = new ArrayList<>();
+        int start = 0;
+        while (start < escaped.length()) {
+            int newline = escaped.indexOf("\\n", start);
+            int end = newline < 0 ? escaped.length() : newline + 2;
+            if (wrap && end - start > width) {
+                int space = escaped.lastIndexOf(' ', start + width - 1);
+                if (space >= start) {
+                    end = space + 1;
+                }
+            }
+            lines.add(escaped.substring(start, end));
+            start = end;
+        }
+        return lines;
+    }
+
+    static String escape(String s) {
+        StringBuilder sb = new StringBuilder(s.length() + 8);
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '\n' -> sb.append("\\n");
+                case '\t' -> sb.append("\\t");
+                case '\r' -> sb.append("\\r");
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\u0007' -> sb.append("\\a");
+                case '\b' -> sb.append("\\b");
+                case '\f' -> sb.append("\\f");
+                case '\u000b' -> sb.append("\\v");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+}
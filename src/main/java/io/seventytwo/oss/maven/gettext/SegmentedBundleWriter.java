@@ -0,0 +1,220 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Writes bundles split into segments by the Java package the messages are used in, taken from the
+ * references of the keys file. Each segment is a nested class whose table is only initialized on the
+ * first lookup of one of its messages. The bundle class itself holds a sorted index of the key hash
+ * codes and their segments only, so a code path loads just the segments of the packages it touches.
+ * The generated classes are compatible with the classes msgfmt generates.
+ */
+public class SegmentedBundleWriter extends JavaBundleWriter {
+
+    /**
+     * Messages per segment, keeps the constant pool of each segment class below its limit
+     */
+    private static final int MESSAGES_PER_SEGMENT = 4096;
+
+    /**
+     * Puts per method, keeps each method below the 64k bytecode limit
+     */
+    private static final int PUTS_PER_METHOD = 1000;
+
+    private final MessagePackages packages;
+
+    /**
+     * Ctor
+     *
+     * @param targetBundle  fully qualified base name of the bundle
+     * @param escapeUnicode use unicode escapes for non-ASCII characters
+     * @param encoding      encoding of the generated sources
+     * @param packages      packages the messages are used in
+     */
+    public SegmentedBundleWriter(String targetBundle, boolean escapeUnicode, Charset encoding, MessagePackages packages) {
+        super(targetBundle, escapeUnicode, encoding);
+        this.packages = packages;
+    }
+
+    /**
+     * Writes the bundle class of a locale with its segments as nested classes
+     *
+     * @param locale     Java locale
+     * @param catalog    catalog of the locale
+     * @param sourceRoot source root
+     * @return number of segments and written file
+     * @throws IOException if the file cannot be written
+     */
+    public Result writeBundle(String locale, Catalog catalog, File sourceRoot) throws IOException {
+        // the header and messages not in the keys file are used in unknown packages, like those used in several
+        Map<String, List<Message>> byPackage = new TreeMap<>();
+        Set<String> keys = new HashSet<>();
+        for (Message message : catalog) {
+            if (message.isCompiled() && keys.add(message.getKey())) {
+                byPackage.computeIfAbsent(packages.get(message.getKey()), p -> new ArrayList<>()).add(message);
+            }
+        }
+        List<String> segmentPackages = new ArrayList<>();
+        List<List<Message>> segments = new ArrayList<>();
+        for (Map.Entry<String, List<Message>> entry : byPackage.entrySet()) {
+            List<Message> messages = entry.getValue();
+            for (int from = 0; from < messages.size(); from += MESSAGES_PER_SEGMENT) {
+                segmentPackages.add(entry.getKey());
+                segments.add(messages.subList(from, Math.min(messages.size(), from + MESSAGES_PER_SEGMENT)));
+            }
+        }
+
+        // sorted by hash, an entry per hash and segment
+        List<long[]> index = new ArrayList<>();
+        for (int segment = 0; segment < segments.size(); segment++) {
+            Set<Integer> hashes = new HashSet<>();
+            for (Message message : segments.get(segment)) {
+                int hash = message.getKey().hashCode();
+                if (hashes.add(hash)) {
+                    index.add(new long[]{hash, segment});
+                }
+            }
+        }
+        index.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        StringBuilder data = new StringBuilder();
+        for (long[] entry : index) {
+            appendIndex(data, (int) entry[0]);
+            data.append((char) entry[1]);
+        }
+
+        String className = getBundleClassName(locale);
+        StringBuilder sb = header();
+        sb.append("public class ").append(className).append(" extends java.util.ResourceBundle {\n\n");
+        sb.append("    private static final int SIZE = ").append(index.size()).append(";\n");
+        sb.append("    private static final int SEGMENTS = ").append(segments.size()).append(";\n\n");
+        sb.append("    /**\n     * String hash codes of the keys, sorted\n     */\n");
+        sb.append("    private static final int[] HASHES = new int[SIZE];\n\n");
+        sb.append("    /**\n     * Segment of each hash code\n     */\n");
+        sb.append("    private static final char[] SEGMENT_OF = new char[SIZE];\n\n");
+        sb.append("    static {\n        decode(SIZE");
+        appendData(sb, data);
+        sb.append(");\n    }\n\n");
+        sb.append("""
+                    private static void decode(int size, String... data) {
+                        StringBuilder sb = new StringBuilder();
+                        for (String s : data) {
+                            sb.append(s);
+                        }
+                        for (int i = 0; i < size; i++) {
+                            HASHES[i] = sb.charAt(i * 3) << 16 | sb.charAt(i * 3 + 1);
+                            SEGMENT_OF[i] = sb.charAt(i * 3 + 2);
+                        }
+                    }
+
+                    /**
+                     * Returns the table of a segment, initializing its class on first use
+                     */
+                    private static java.util.HashMap<String, Object> segment(int segment) {
+                        switch (segment) {
+                """);
+        for (int segment = 0; segment < segments.size(); segment++) {
+            sb.append("            case ").append(segment).append(":\n");
+            sb.append("                return Segment").append(segment).append(".TABLE;\n");
+        }
+        sb.append("""
+                            default:
+                                throw new IllegalArgumentException("No segment " + segment);
+                        }
+                    }
+
+                    private static Object find(String msgid) {
+                        int hash = msgid.hashCode();
+                        int i = java.util.Arrays.binarySearch(HASHES, hash);
+                        if (i < 0) {
+                            return null;
+                        }
+                        while (i > 0 && HASHES[i - 1] == hash) {
+                            i--;
+                        }
+                        for (; i < SIZE && HASHES[i] == hash; i++) {
+                            Object value = segment(SEGMENT_OF[i]).get(msgid);
+                            if (value != null) {
+                                return value;
+                            }
+                        }
+                        return null;
+                    }
+
+                """);
+        appendLookupMethods(sb, locale, "find(msgid)");
+        sb.append("""
+                    /**
+                     * Returns all keys, which initializes all segments
+                     */
+                    public java.util.Enumeration<String> getKeys() {
+                        java.util.List<String> keys = new java.util.ArrayList<>();
+                        for (int segment = 0; segment < SEGMENTS; segment++) {
+                            keys.addAll(segment(segment).keySet());
+                        }
+                        return java.util.Collections.enumeration(keys);
+                    }
+
+                """);
+        appendCommonMethods(sb, catalog);
+        for (int segment = 0; segment < segments.size(); segment++) {
+            appendSegment(sb, segment, segmentPackages.get(segment), segments.get(segment));
+        }
+        sb.append("}\n");
+        return new Result(segments.size(), write(getSourceFile(sourceRoot, className), sb));
+    }
+
+    private void appendSegment(StringBuilder sb, int segment, String packageName, List<Message> messages) {
+        sb.append("\n    /**\n     * ");
+        sb.append(packageName.isEmpty() ? "Messages used in several or unknown packages" : "Messages used in " + packageName);
+        sb.append("\n     */\n");
+        sb.append("    private static final class Segment").append(segment).append(" {\n\n");
+        sb.append("        static final java.util.HashMap<String, Object> TABLE = new java.util.HashMap<>(")
+                .append(messages.size() * 4 / 3 + 1).append(");\n\n");
+        sb.append("        static {\n");
+        for (int start = 0; start < messages.size(); start += PUTS_PER_METHOD) {
+            sb.append("            fill").append(start).append("();\n");
+        }
+        sb.append("        }\n");
+        for (int start = 0; start < messages.size(); start += PUTS_PER_METHOD) {
+            sb.append("\n        private static void fill").append(start).append("() {\n");
+            for (Message message : messages.subList(start, Math.min(messages.size(), start + PUTS_PER_METHOD))) {
+                sb.append("            TABLE.put(");
+                appendLiteral(sb, message.getKey());
+                sb.append(", ");
+                if (message.isPlural()) {
+                    sb.append("new String[]{");
+                    List<String> msgstr = message.getMsgstr();
+                    for (int i = 0; i < msgstr.size(); i++) {
+                        if (i > 0) {
+                            sb.append(", ");
+                        }
+                        appendLiteral(sb, msgstr.get(i));
+                    }
+                    sb.append('}');
+                } else {
+                    appendLiteral(sb, message.getMsgstr().get(0));
+                }
+                sb.append(");\n");
+            }
+            sb.append("        }\n");
+        }
+        sb.append("    }\n");
+    }
+
+    /**
+     * A written bundle
+     *
+     * @param segments number of segments
+     * @param file     source file
+     */
+    public record Result(int segments, File file) {
+    }
+}
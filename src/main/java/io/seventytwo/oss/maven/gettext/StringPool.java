@@ -0,0 +1,54 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns a stable index to every distinct string, in order of first use.
+ */
+public class StringPool {
+
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    /**
+     * Adds a string unless already present
+     *
+     * @param s string
+     * @return index of the string
+     */
+    public int add(String s) {
+        Integer index = indexes.get(s);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(s, index);
+            strings.add(s);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the index of a string
+     *
+     * @param s string
+     * @return index
+     * @throws IllegalArgumentException if the string is not pooled
+     */
+    public int indexOf(String s) {
+        Integer index = indexes.get(s);
+        if (index == null) {
+            throw new IllegalArgumentException("String not pooled: " + s);
+        }
+        return index;
+    }
+
+    public List<String> getStrings() {
+        return strings;
+    }
+
+    public int size() {
+        return strings.size();
+    }
+}
@@ -0,0 +1,191 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.Log;
+import org.codehaus.plexus.util.cli.StreamConsumer;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * Collects the output of tool runs instead of logging every line. The lines of each run are buffered
+ * in a job, so runs on several threads do not interleave. The report writes the complete output of
+ * all jobs, in the order they were created, to a log file and logs a bounded summary that counts
+ * repeated messages by category, i.e. without file, line and quoted text.
+ */
+public class ToolOutput {
+
+    private static final Pattern LOCATION = Pattern.compile("^\\S+?:\\d+:(\\d+:)?\\s*");
+    private static final Pattern TOOL = Pattern.compile("^(xgettext|msgmerge|msgfmt|msgcat|msgattrib)(\\.exe)?:\\s*");
+    private static final Pattern QUOTED = Pattern.compile("\"[^\"]*\"|'[^']*'|«[^»]*»|`[^']*'|“[^”]*”|‘[^’]*’");
+    private static final Pattern NUMBER = Pattern.compile("\\d+");
+
+    private final File logFile;
+    private final int summaryLines;
+    private final List<Job> jobs = new ArrayList<>();
+
+    /**
+     * Ctor
+     *
+     * @param logFile      file the complete output is written to, null to write none
+     * @param summaryLines number of categories and failure lines logged
+     */
+    public ToolOutput(File logFile, int summaryLines) {
+        this.logFile = logFile;
+        this.summaryLines = summaryLines;
+    }
+
+    /**
+     * Starts collecting the output of a tool run
+     *
+     * @param name name of the job in the log file, e.g. the processed file
+     * @return job
+     */
+    public synchronized Job newJob(String name) {
+        Job job = new Job(name);
+        jobs.add(job);
+        return job;
+    }
+
+    /**
+     * Writes the log file and logs the summary. Output of the tools on stdout is summarized at info
+     * level, on stderr at warn level. The stderr lines of failed jobs are logged as errors.
+     *
+     * @param log log
+     */
+    public synchronized void report(Log log) {
+        Map<String, Integer> infos = new LinkedHashMap<>();
+        Map<String, Integer> warnings = new LinkedHashMap<>();
+        int lines = 0;
+        for (Job job : jobs) {
+            synchronized (job) {
+                for (Line line : job.lines) {
+                    (line.error ? warnings : infos).merge(categorize(line.text), 1, Integer::sum);
+                    lines++;
+                }
+                if (job.exitCode != 0) {
+                    log.error("%s failed with exit code %d".formatted(job.name, job.exitCode));
+                    job.lines.stream().filter(l -> l.error).limit(summaryLines).forEach(l -> log.error(l.text));
+                }
+            }
+        }
+        if (lines == 0) {
+            return;
+        }
+        boolean written = write(log);
+        int logged = summarize(infos, log::info, summaryLines);
+        logged += summarize(warnings, log::warn, summaryLines - logged);
+        int categories = infos.size() + warnings.size();
+        if (logged < categories || written) {
+            log.info("%d lines of tool output in %d categories%s".formatted(lines, categories,
+                    written ? ", see " + logFile : ""));
+        }
+    }
+
+    private static int summarize(Map<String, Integer> counts, Consumer<String> log, int limit) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+        // most frequent first, first seen first among equally frequent
+        entries.sort(Map.Entry.<String, Integer>comparingByValue(Comparator.reverseOrder()));
+        int logged = 0;
+        for (Map.Entry<String, Integer> entry : entries) {
+            if (logged >= limit) {
+                break;
+            }
+            log.accept(entry.getValue() > 1 ? "%s (%d times)".formatted(entry.getKey(), entry.getValue()) : entry.getKey());
+            logged++;
+        }
+        return logged;
+    }
+
+    private boolean write(Log log) {
+        if (logFile == null) {
+            return false;
+        }
+        try {
+            Files.createDirectories(logFile.getAbsoluteFile().getParentFile().toPath());
+            try (BufferedWriter w = Files.newBufferedWriter(logFile.toPath(), StandardCharsets.UTF_8)) {
+                for (Job job : jobs) {
+                    synchronized (job) {
+                        w.write("==> %s (exit code %d) <==\n".formatted(job.name, job.exitCode));
+                        for (Line line : job.lines) {
+                            w.write(line.text);
+                            w.write('\n');
+                        }
+                    }
+                }
+            }
+            return true;
+        } catch (IOException e) {
+            log.warn("Unable to write " + logFile, e);
+            return false;
+        }
+    }
+
+    /**
+     * Reduces a line to its category by removing the location, the tool name, quoted text and numbers
+     */
+    static String categorize(String line) {
+        String category = LOCATION.matcher(line.strip()).replaceFirst("");
+        category = TOOL.matcher(category).replaceFirst("");
+        category = QUOTED.matcher(category).replaceAll("\"...\"");
+        return NUMBER.matcher(category).replaceAll("N");
+    }
+
+    private record Line(String text, boolean error) {
+    }
+
+    /**
+     * Output of a single tool run
+     */
+    public static final class Job {
+
+        private final String name;
+        private final List<Line> lines = new ArrayList<>();
+        private int exitCode;
+
+        private Job(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Returns the consumer of stdout
+         *
+         * @return consumer
+         */
+        public StreamConsumer out() {
+            return line -> add(line, false);
+        }
+
+        /**
+         * Returns the consumer of stderr
+         *
+         * @return consumer
+         */
+        public StreamConsumer err() {
+            return line -> add(line, true);
+        }
+
+        /**
+         * Records the exit code of the tool
+         *
+         * @param exitCode exit code
+         */
+        public synchronized void finish(int exitCode) {
+            this.exitCode = exitCode;
+        }
+
+        // stdout and stderr are pumped by different threads
+        private synchronized void add(String line, boolean error) {
+            lines.add(new Line(line, error));
+        }
+    }
+}
@@ -0,0 +1,558 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Local translation memory of one language, built from the translated messages of all .po files the
+ * plugin has seen. The messages of each .po file are stored in a shard named by the hash of the file
+ * content, so only changed files are parsed again. The shards are combined into one memory-mapped
+ * index holding the records, an open addressing table for exact lookups by key and posting lists of
+ * the character trigrams of the msgids for similarity lookups.
+ */
+public class TranslationMemory {
+
+    private static final int MAGIC = 0x47544d31;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 40;
+    private static final String INDEX_FILE = "memory.idx";
+    private static final String SOURCES_FILE = "sources.properties";
+    private static final String SHARD_SUFFIX = ".seg";
+
+    /**
+     * Longer msgids are only found by exact lookup
+     */
+    private static final int MAX_SIMILAR_LENGTH = 200;
+
+    /**
+     * Candidates with the most shared trigrams whose similarity is computed exactly
+     */
+    private static final int CANDIDATES = 20;
+
+    private final File directory;
+
+    /**
+     * Ctor
+     *
+     * @param root     root directory of all languages
+     * @param language language, i.e. the name of the .po files without extension
+     */
+    public TranslationMemory(File root, String language) {
+        this.directory = new File(root, language);
+    }
+
+    /**
+     * Adds the .po files of the language to the memory. Files whose content did not change since they
+     * were last added are skipped, files that no longer exist are removed. The index is rebuilt if
+     * anything changed. Concurrent updates by other modules or builds wait for each other.
+     *
+     * @param poFiles .po files
+     * @return number of files read
+     * @throws IOException if the memory cannot be updated
+     */
+    public int update(Collection<File> poFiles) throws IOException {
+        CatalogLock lock = CatalogLock.acquire(new File(directory, INDEX_FILE));
+        try {
+            return updateLocked(poFiles);
+        } finally {
+            lock.close();
+        }
+    }
+
+    private int updateLocked(Collection<File> poFiles) throws IOException {
+        File shardDirectory = new File(directory, "shards");
+        Files.createDirectories(shardDirectory.toPath());
+        File sourcesFile = new File(directory, SOURCES_FILE);
+        Properties sources = new Properties();
+        if (sourcesFile.exists()) {
+            try (InputStream in = Files.newInputStream(sourcesFile.toPath())) {
+                sources.load(in);
+            }
+        }
+
+        boolean changed = !new File(directory, INDEX_FILE).exists();
+        int read = 0;
+        for (File poFile : poFiles) {
+            String path = poFile.getAbsolutePath();
+            byte[] content = Files.readAllBytes(poFile.toPath());
+            String hash = hash(content);
+            if (hash.equals(sources.getProperty(path))) {
+                continue;
+            }
+            File shard = new File(shardDirectory, hash + SHARD_SUFFIX);
+            if (!shard.exists()) {
+                writeShard(PoParser.parse(poFile, content), shard);
+            }
+            sources.setProperty(path, hash);
+            changed = true;
+            read++;
+        }
+        changed |= sources.keySet().removeIf(path -> !new File((String) path).exists());
+        if (!changed) {
+            return read;
+        }
+
+        // sorted, so equal sources give an equal index
+        Set<String> hashes = new TreeSet<>();
+        sources.values().forEach(hash -> hashes.add((String) hash));
+        List<File> shards = new ArrayList<>();
+        for (String hash : hashes) {
+            shards.add(new File(shardDirectory, hash + SHARD_SUFFIX));
+        }
+        rebuild(shards);
+        File[] existing = shardDirectory.listFiles((dir, name) -> name.endsWith(SHARD_SUFFIX));
+        if (existing != null) {
+            for (File shard : existing) {
+                if (!shards.contains(shard)) {
+                    Files.deleteIfExists(shard.toPath());
+                }
+            }
+        }
+        File tmp = new File(directory, SOURCES_FILE + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp.toPath())) {
+            sources.store(out, null);
+        }
+        Files.move(tmp.toPath(), sourcesFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return read;
+    }
+
+    private static String hash(byte[] content) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(content));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes the translated messages of a catalog as records: key, plural flag and forms, each string
+     * as length and UTF-8 bytes.
+     */
+    private static void writeShard(Catalog catalog, File shard) throws IOException {
+        File tmp = new File(shard.getPath() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp.toPath())))) {
+            for (Message message : catalog) {
+                if (!message.isCompiled() || message.isHeader()) {
+                    continue;
+                }
+                writeString(out, message.getKey());
+                out.writeByte(message.isPlural() ? 1 : 0);
+                out.writeByte(message.getMsgstr().size());
+                for (String msgstr : message.getMsgstr()) {
+                    writeString(out, msgstr);
+                }
+            }
+        }
+        Files.move(tmp.toPath(), shard.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Writes the index into a temp file that replaces the index atomically, so readers see either
+     * the old or the new index. Layout: header, records, record offsets, trigram counts, exact table,
+     * bucket starts and postings.
+     */
+    private void rebuild(List<File> shards) throws IOException {
+        File tmp = new File(directory, INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            channel.position(HEADER_SIZE);
+            for (File shard : shards) {
+                try (FileChannel in = FileChannel.open(shard.toPath(), StandardOpenOption.READ)) {
+                    long size = in.size();
+                    for (long done = 0; done < size; ) {
+                        done += in.transferTo(done, size - done, channel);
+                    }
+                }
+            }
+            long dataLength = channel.size() - HEADER_SIZE;
+            if (dataLength > Integer.MAX_VALUE) {
+                throw new IOException("Translation memory %s exceeds 2 GB".formatted(directory));
+            }
+            ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, dataLength);
+
+            // records and their trigram buckets
+            long[] offsets = new long[1024];
+            int count = 0;
+            for (int offset = 0; offset < dataLength; offset = skipRecord(data, offset)) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = offset;
+            }
+            int slots = Integer.highestOneBit(Math.max(16, count * 2 - 1)) << 1;
+            int buckets = bucketCount(count);
+            int[] trigramCounts = new int[count];
+            int[] bucketSizes = new int[buckets + 1];
+            for (int id = 0; id < count; id++) {
+                long[] grams = trigrams(msgid(readKey(data, (int) offsets[id])));
+                // the counts bound the Dice coefficient, so they must not shrink by colliding buckets
+                trigramCounts[id] = grams.length;
+                for (int bucket : buckets(grams, buckets)) {
+                    bucketSizes[bucket]++;
+                }
+            }
+            long postings = 0;
+            int[] bucketStarts = new int[buckets + 1];
+            for (int bucket = 0; bucket < buckets; bucket++) {
+                bucketStarts[bucket] = (int) postings;
+                postings += bucketSizes[bucket];
+            }
+            bucketStarts[buckets] = (int) postings;
+
+            Layout layout = new Layout(count, slots, buckets, dataLength, postings);
+            channel.write(ByteBuffer.allocate(1), layout.end() - 1);
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            header.putInt(MAGIC).putInt(VERSION).putInt(count).putInt(slots).putInt(buckets)
+                    .putLong(dataLength).putLong(postings).flip();
+            channel.write(header, 0);
+            map(channel, FileChannel.MapMode.READ_WRITE, layout.offsetsStart(), 8L * count).asLongBuffer().put(offsets, 0, count);
+            map(channel, FileChannel.MapMode.READ_WRITE, layout.countsStart(), 4L * count).asIntBuffer().put(trigramCounts);
+            map(channel, FileChannel.MapMode.READ_WRITE, layout.bucketsStart(), 4L * (buckets + 1)).asIntBuffer().put(bucketStarts);
+
+            IntBuffer table = map(channel, FileChannel.MapMode.READ_WRITE, layout.slotsStart(), 4L * slots).asIntBuffer();
+            IntBuffer postingBuffer = map(channel, FileChannel.MapMode.READ_WRITE, layout.postingsStart(), 4L * postings).asIntBuffer();
+            int[] cursors = Arrays.copyOf(bucketStarts, buckets);
+            for (int id = 0; id < count; id++) {
+                String key = readKey(data, (int) offsets[id]);
+                // the first record of a key wins
+                int slot = findSlot(table, data, offsets, key.getBytes(StandardCharsets.UTF_8));
+                if (table.get(slot) == 0) {
+                    table.put(slot, id + 1);
+                }
+                for (int bucket : buckets(trigrams(msgid(key)), buckets)) {
+                    postingBuffer.put(cursors[bucket]++, id);
+                }
+            }
+            channel.force(false);
+        }
+        Files.move(tmp.toPath(), new File(directory, INDEX_FILE).toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static MappedByteBuffer map(FileChannel channel, FileChannel.MapMode mode, long position, long size) throws IOException {
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Translation memory section exceeds 2 GB");
+        }
+        return channel.map(mode, position, size);
+    }
+
+    /**
+     * Returns the slot of a key in the exact table, the empty slot to insert it at if absent
+     */
+    private static int findSlot(IntBuffer table, ByteBuffer data, LongBuffer offsets, byte[] key) {
+        int mask = table.capacity() - 1;
+        int slot = Utf8StringPool.mix(Arrays.hashCode(key)) & mask;
+        while (true) {
+            int id = table.get(slot);
+            if (id == 0 || keyEquals(data, (int) offsets.get(id - 1), key)) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int findSlot(IntBuffer table, ByteBuffer data, long[] offsets, byte[] key) {
+        return findSlot(table, data, LongBuffer.wrap(offsets), key);
+    }
+
+    private static boolean keyEquals(ByteBuffer data, int offset, byte[] key) {
+        return data.getInt(offset) == key.length && data.slice(offset + 4, key.length).equals(ByteBuffer.wrap(key));
+    }
+
+    private static int skipRecord(ByteBuffer data, int offset) {
+        offset += 4 + data.getInt(offset) + 1;
+        int forms = data.get(offset++);
+        for (int i = 0; i < forms; i++) {
+            offset += 4 + data.getInt(offset);
+        }
+        return offset;
+    }
+
+    private static String readKey(ByteBuffer data, int offset) {
+        return readString(data, offset);
+    }
+
+    private static String readString(ByteBuffer data, int offset) {
+        int length = data.getInt(offset);
+        byte[] bytes = new byte[length];
+        data.get(offset + 4, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static String msgid(String key) {
+        return key.substring(key.indexOf(Message.CONTEXT_SEPARATOR) + 1);
+    }
+
+    /**
+     * Returns the distinct trigrams of a msgid, lower case with collapsed whitespace, empty if the
+     * msgid is too long for similarity lookups
+     */
+    static long[] trigrams(String msgid) {
+        if (msgid.length() > MAX_SIMILAR_LENGTH) {
+            return new long[0];
+        }
+        String s = " " + msgid.toLowerCase(Locale.ROOT).strip().replaceAll("\\s+", " ") + " ";
+        long[] grams = new long[Math.max(0, s.length() - 2)];
+        for (int i = 0; i < grams.length; i++) {
+            grams[i] = (long) s.charAt(i) << 32 | (long) s.charAt(i + 1) << 16 | s.charAt(i + 2);
+        }
+        return Arrays.stream(grams).distinct().sorted().toArray();
+    }
+
+    /**
+     * Returns the number of trigram buckets of an index, a power of two
+     */
+    static int bucketCount(int count) {
+        return Integer.highestOneBit(Math.max(1024, count)) << 1;
+    }
+
+    /**
+     * Returns the distinct buckets of trigrams, several trigrams may share a bucket
+     */
+    static int[] buckets(long[] trigrams, int buckets) {
+        int[] result = new int[trigrams.length];
+        for (int i = 0; i < trigrams.length; i++) {
+            result[i] = Utf8StringPool.mix(Long.hashCode(trigrams[i])) & (buckets - 1);
+        }
+        return Arrays.stream(result).distinct().toArray();
+    }
+
+    /**
+     * Returns the Dice coefficient of two sorted trigram sets
+     */
+    static double similarity(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int common = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] == b[j]) {
+                common++;
+                i++;
+                j++;
+            } else if (a[i] < b[j]) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        return 2.0 * common / (a.length + b.length);
+    }
+
+    /**
+     * Opens the index for lookups
+     *
+     * @return index, null if the memory has not been built yet
+     * @throws IOException if the index cannot be read
+     */
+    public Index open() throws IOException {
+        File file = new File(directory, INDEX_FILE);
+        if (!file.exists()) {
+            return null;
+        }
+        // the mapping stays valid after the channel is closed and the file replaced
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            channel.read(header, 0);
+            header.flip();
+            if (header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION) {
+                throw new IOException("%s is not a translation memory of this version".formatted(file));
+            }
+            int count = header.getInt();
+            int slots = header.getInt();
+            int buckets = header.getInt();
+            Layout layout = new Layout(count, slots, buckets, header.getLong(), header.getLong());
+            return new Index(
+                    map(channel, FileChannel.MapMode.READ_ONLY, HEADER_SIZE, layout.dataLength()),
+                    map(channel, FileChannel.MapMode.READ_ONLY, layout.offsetsStart(), 8L * count).asLongBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, layout.countsStart(), 4L * count).asIntBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, layout.slotsStart(), 4L * slots).asIntBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, layout.bucketsStart(), 4L * (buckets + 1)).asIntBuffer(),
+                    map(channel, FileChannel.MapMode.READ_ONLY, layout.postingsStart(), 4L * layout.postings()).asIntBuffer());
+        }
+    }
+
+    private record Layout(int count, int slots, int buckets, long dataLength, long postings) {
+
+        long offsetsStart() {
+            return HEADER_SIZE + dataLength;
+        }
+
+        long countsStart() {
+            return offsetsStart() + 8L * count;
+        }
+
+        long slotsStart() {
+            return countsStart() + 4L * count;
+        }
+
+        long bucketsStart() {
+            return slotsStart() + 4L * slots;
+        }
+
+        long postingsStart() {
+            return bucketsStart() + 4L * (buckets + 1);
+        }
+
+        long end() {
+            return postingsStart() + 4L * postings;
+        }
+    }
+
+    /**
+     * A translation found in the memory
+     *
+     * @param msgid      msgid of the translated message
+     * @param msgstr     translation, one per plural form
+     * @param similarity 1 for an exact match, the Dice coefficient of the msgid trigrams otherwise
+     */
+    public record Match(String msgid, List<String> msgstr, double similarity) {
+    }
+
+    /**
+     * Memory-mapped index of a translation memory, safe for concurrent lookups
+     */
+    public static final class Index {
+
+        private final ByteBuffer data;
+        private final LongBuffer offsets;
+        private final IntBuffer trigramCounts;
+        private final IntBuffer table;
+        private final IntBuffer bucketStarts;
+        private final IntBuffer postings;
+        private final int maxPostings;
+
+        private Index(ByteBuffer data, LongBuffer offsets, IntBuffer trigramCounts, IntBuffer table, IntBuffer bucketStarts, IntBuffer postings) {
+            this.data = data;
+            this.offsets = offsets;
+            this.trigramCounts = trigramCounts;
+            this.table = table;
+            this.bucketStarts = bucketStarts;
+            this.postings = postings;
+            // trigrams shared by too many msgids, like " th", hardly select candidates
+            this.maxPostings = Math.max(10000, offsets.capacity() / 50);
+        }
+
+        /**
+         * Returns the number of translated messages
+         *
+         * @return size
+         */
+        public int size() {
+            return offsets.capacity();
+        }
+
+        /**
+         * Finds the translation of a message: of the same key, of the same msgid in another context or
+         * of the most similar msgid. Plural messages only match plural messages with the same number
+         * of forms.
+         *
+         * @param message       untranslated message
+         * @param minSimilarity minimum similarity of the msgids, between 0 and 1
+         * @return match, null if none is similar enough
+         */
+        public Match find(Message message, double minSimilarity) {
+            Match match = exact(message, message.getKey());
+            if (match == null && message.getMsgctxt() != null) {
+                match = exact(message, message.getMsgid());
+            }
+            return match != null || minSimilarity >= 1 ? match : similar(message, minSimilarity);
+        }
+
+        private Match exact(Message message, String key) {
+            int id = table.get(findSlot(table, data, offsets, key.getBytes(StandardCharsets.UTF_8)));
+            return id == 0 ? null : match(message, id - 1, 1);
+        }
+
+        private Match similar(Message message, double minSimilarity) {
+            long[] grams = trigrams(message.getMsgid());
+            if (grams.length == 0) {
+                return null;
+            }
+            // the Dice coefficient cannot reach the minimum outside of these trigram counts
+            int minCount = (int) Math.ceil(grams.length * minSimilarity / (2 - minSimilarity));
+            int maxCount = (int) Math.floor(grams.length * (2 - minSimilarity) / minSimilarity);
+            Map<Integer, Integer> hits = new HashMap<>();
+            for (int bucket : buckets(grams, bucketStarts.capacity() - 1)) {
+                int start = bucketStarts.get(bucket);
+                int end = bucketStarts.get(bucket + 1);
+                if (end - start > maxPostings) {
+                    continue;
+                }
+                for (int i = start; i < end; i++) {
+                    int id = postings.get(i);
+                    int count = trigramCounts.get(id);
+                    if (count >= minCount && count <= maxCount) {
+                        hits.merge(id, 1, Integer::sum);
+                    }
+                }
+            }
+            List<Map.Entry<Integer, Integer>> candidates = new ArrayList<>(hits.entrySet());
+            candidates.sort(Map.Entry.<Integer, Integer>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+            Match best = null;
+            Set<String> seen = new HashSet<>();
+            for (Map.Entry<Integer, Integer> candidate : candidates.subList(0, Math.min(CANDIDATES, candidates.size()))) {
+                int id = candidate.getKey();
+                String msgid = msgid(readKey(data, (int) offsets.get(id)));
+                if (!seen.add(msgid)) {
+                    continue;
+                }
+                double similarity = similarity(grams, trigrams(msgid));
+                if (similarity >= minSimilarity && (best == null || similarity > best.similarity())) {
+                    Match match = match(message, id, similarity);
+                    best = match != null ? match : best;
+                }
+            }
+            return best;
+        }
+
+        private Match match(Message message, int id, double similarity) {
+            int offset = (int) offsets.get(id);
+            String key = readKey(data, offset);
+            offset += 4 + data.getInt(offset);
+            boolean plural = data.get(offset++) != 0;
+            int forms = data.get(offset++);
+            if (plural != message.isPlural() || (plural && forms != message.getMsgstr().size())) {
+                return null;
+            }
+            List<String> msgstr = new ArrayList<>(forms);
+            for (int i = 0; i < forms; i++) {
+                msgstr.add(readString(data, offset));
+                offset += 4 + data.getInt(offset);
+            }
+            return new Match(msgid(key), msgstr, similarity);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package io.seventytwo.oss.maven.gettext;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Append-only pool of strings stored once as UTF-8 in a single byte array. A string is identified
+ * by the offset of its length prefix; equal strings share the same id, found through an
+ * open-addressing hash index, so file names, flags and repeated translations cost only an int.
+ */
+public class Utf8StringPool {
+
+    /**
+     * Id of null
+     */
+    public static final int NULL = -1;
+
+    private byte[] bytes = new byte[256];
+    private int length;
+    // open addressing with linear probing, slots hold id + 1 and 0 if empty
+    private int[] slots = new int[64];
+    private int[] hashes = new int[64];
+    private int count;
+
+    /**
+     * Adds a string unless an equal string is pooled
+     *
+     * @param s string, may be null
+     * @return id of the string
+     */
+    public int add(String s) {
+        if (s == null) {
+            return NULL;
+        }
+        if (slots == null) {
+            rebuildIndex();
+        }
+        byte[] utf8 = s.getBytes(StandardCharsets.UTF_8);
+        int hash = mix(s.hashCode());
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != 0) {
+            if (hashes[slot] == hash && contentEquals(slots[slot] - 1, utf8)) {
+                return slots[slot] - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        int id = append(utf8);
+        slots[slot] = id + 1;
+        hashes[slot] = hash;
+        if (++count * 2 > slots.length) {
+            rehash();
+        }
+        return id;
+    }
+
+    /**
+     * Returns a pooled string
+     *
+     * @param id id returned by {@link #add(String)}
+     * @return string, null for {@link #NULL}
+     */
+    public String get(int id) {
+        if (id == NULL) {
+            return null;
+        }
+        int len = readLength(id);
+        return new String(bytes, id + prefixSize(len), len, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of distinct strings
+     *
+     * @return count
+     */
+    public int size() {
+        return count;
+    }
+
+    /**
+     * Returns the number of bytes the strings take
+     *
+     * @return bytes
+     */
+    public int byteSize() {
+        return length;
+    }
+
+    /**
+     * Releases the unused capacity of the byte array and the hash index, which is only needed for
+     * adding and rebuilt if more strings are added
+     */
+    public void trimToSize() {
+        bytes = Arrays.copyOf(bytes, length);
+        slots = null;
+        hashes = null;
+    }
+
+    private int append(byte[] utf8) {
+        ensureCapacity(length + utf8.length + 5);
+        int id = length;
+        int len = utf8.length;
+        // little endian base 128 length prefix, one byte for strings up to 127 bytes
+        while (len >= 0x80) {
+            bytes[length++] = (byte) (len | 0x80);
+            len >>>= 7;
+        }
+        bytes[length++] = (byte) len;
+        System.arraycopy(utf8, 0, bytes, length, utf8.length);
+        length += utf8.length;
+        return id;
+    }
+
+    private boolean contentEquals(int id, byte[] utf8) {
+        int len = readLength(id);
+        int pos = id + prefixSize(len);
+        return len == utf8.length && Arrays.equals(bytes, pos, pos + len, utf8, 0, len);
+    }
+
+    private int readLength(int id) {
+        int len = 0;
+        for (int pos = id, shift = 0; ; shift += 7) {
+            byte b = bytes[pos++];
+            len |= (b & 0x7f) << shift;
+            if (b >= 0) {
+                return len;
+            }
+        }
+    }
+
+    private static int prefixSize(int len) {
+        int size = 1;
+        while (len >= 0x80) {
+            len >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > bytes.length) {
+            bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+        }
+    }
+
+    private void rebuildIndex() {
+        int capacity = 64;
+        while (count * 2 > capacity) {
+            capacity *= 2;
+        }
+        slots = new int[capacity];
+        hashes = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < length; ) {
+            int len = readLength(id);
+            int hash = mix(get(id).hashCode());
+            int slot = hash & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id + 1;
+            hashes[slot] = hash;
+            id += prefixSize(len) + len;
+        }
+    }
+
+    private void rehash() {
+        int[] oldSlots = slots;
+        int[] oldHashes = hashes;
+        slots = new int[oldSlots.length * 2];
+        hashes = new int[oldSlots.length * 2];
+        int mask = slots.length - 1;
+        for (int i = 0; i < oldSlots.length; i++) {
+            if (oldSlots[i] != 0) {
+                int slot = oldHashes[i] & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = oldSlots[i];
+                hashes[slot] = oldHashes[i];
+            }
+        }
+    }
+
+    /**
+     * Spreads the bits of String.hashCode, whose low bits are poor for similar strings
+     *
+     * @param hash hash code
+     * @return mixed hash
+     */
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
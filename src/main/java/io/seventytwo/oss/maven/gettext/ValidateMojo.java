@@ -0,0 +1,98 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.MojoFailureException;
+import org.apache.maven.plugins.annotations.LifecyclePhase;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Validates the .po files in-process and in parallel instead of running msgfmt --check for each of
+ * them. Syntax errors, plural forms not matching the Plural-Forms header, java-format and c-format
+ * placeholders of translations not matching the msgid and duplicate messages are reported with file
+ * and line.
+ */
+@Mojo(name = "validate", defaultPhase = LifecyclePhase.PROCESS_RESOURCES, threadSafe = true)
+public class ValidateMojo extends AbstractGettextMojo {
+
+    /**
+     * Number of .po files validated in parallel, 0 uses one per available processor.
+     */
+    @Parameter(required = true, defaultValue = "0")
+    protected int threads;
+
+    /**
+     * Stop at the first .po file with problems instead of reporting the problems of all files.
+     */
+    @Parameter(property = "gettext.validate.failFast", defaultValue = "true")
+    protected boolean failFast;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
+        String[] files = scan(poDirectory, "**/*.po");
+        getLog().info("Validating %d po files in '%s'.".formatted(files.length, poDirectory.getAbsolutePath()));
+        if (files.length == 0) {
+            return;
+        }
+
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(poolSize, files.length)));
+        CompletionService<List<String>> results = new ExecutorCompletionService<>(executor);
+        List<String> problems = new ArrayList<>();
+        int invalidFiles = 0;
+        int validated = 0;
+        try {
+            for (String file : files) {
+                results.submit(() -> validate(new File(poDirectory, file)));
+            }
+            while (validated < files.length) {
+                List<String> fileProblems = results.take().get();
+                validated++;
+                if (fileProblems.isEmpty()) {
+                    continue;
+                }
+                fileProblems.forEach(getLog()::error);
+                problems.addAll(fileProblems);
+                invalidFiles++;
+                if (failFast) {
+                    break;
+                }
+            }
+        } catch (ExecutionException e) {
+            throw new MojoExecutionException("Unable to validate po files", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted", e);
+        } finally {
+            executor.shutdownNow();
+        }
+        if (!problems.isEmpty()) {
+            throw new MojoFailureException("Found %d problems in %d po files%s".formatted(problems.size(), invalidFiles,
+                    validated < files.length ? ", skipped %d files".formatted(files.length - validated) : ""));
+        }
+    }
+
+    private List<String> validate(File file) throws IOException {
+        getLog().debug("Validating " + file);
+        Catalog catalog;
+        try {
+            catalog = parse(file);
+        } catch (IOException e) {
+            if (!file.isFile()) {
+                throw e;
+            }
+            // syntax errors carry file and line already
+            return List.of(e.getMessage());
+        }
+        return CatalogValidator.validate(catalog);
+    }
+}
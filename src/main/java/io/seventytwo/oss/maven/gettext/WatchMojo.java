@@ -0,0 +1,340 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.model.FileSet;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.codehaus.plexus.util.SelectorUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.FileTime;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Watches the sources and .po files and keeps the bundles up to date until the build is interrupted.
+ * Changed sources are extracted into the keys.pot file, which is merged into the .po files only if
+ * it changed, and only the bundles of the .po files that changed are generated again. Takes the
+ * parameters of the gettext, merge and dist goals. The includes and excludes select the sources,
+ * extraArgs are passed to the tool generating the bundles, xgettextArgs and msgmergeArgs to xgettext
+ * and msgmerge.
+ */
+@Mojo(name = "watch")
+public class WatchMojo extends DistMojo {
+
+    /**
+     * The xgettext command.
+     */
+    @Parameter(required = true, defaultValue = "xgettext")
+    protected String xgettextCmd;
+
+    /**
+     * Extra arguments for xgettext, extraArgs are passed to the tool generating the bundles.
+     */
+    @Parameter
+    protected String[] xgettextArgs = new String[0];
+
+    /**
+     * The msgmerge command.
+     */
+    @Parameter(required = true, defaultValue = "msgmerge")
+    protected String msgmergeCmd;
+
+    /**
+     * Extra arguments for msgmerge.
+     */
+    @Parameter
+    protected String[] msgmergeArgs = new String[0];
+
+    /**
+     * Backup mode for .po files that change, named like msgmerge does: none, numbered, existing, simple
+     */
+    @Parameter(required = true, defaultValue = "none")
+    protected String backup;
+
+    /**
+     * Sort extracted messages, can be "output" or "by-file"
+     */
+    @Parameter(required = true, defaultValue = "by-file")
+    protected String sort;
+
+    /**
+     * Do not break long message lines, longer than the output page width, into several lines
+     */
+    @Parameter(required = true, defaultValue = "false")
+    protected boolean nowrap;
+
+    /**
+     * Pre-fill new messages from the translation memory, see the merge goal.
+     */
+    @Parameter(property = "gettext.translationMemory", defaultValue = "false")
+    protected boolean translationMemory;
+
+    /**
+     * Directory of the translation memory.
+     */
+    @Parameter(property = "gettext.translationMemoryDirectory", defaultValue = "${user.home}/.m2/gettext-tm")
+    protected File translationMemoryDirectory;
+
+    /**
+     * Minimum similarity in percent of translation memory entries.
+     */
+    @Parameter(property = "gettext.translationMemorySimilarity", defaultValue = "80")
+    protected int translationMemorySimilarity;
+
+    /**
+     * An optional set of source files that should be parsed with xgettext, like in the gettext goal.
+     */
+    @Parameter
+    protected FileSet extraSourceFiles = new FileSet();
+
+    /**
+     * Milliseconds without further changes to wait for before processing a burst of changes.
+     */
+    @Parameter(required = true, defaultValue = "200")
+    protected long debounce;
+
+    private GettextMojo gettext;
+    private MergeMojo merge;
+    private WatchService watchService;
+    private final Map<WatchKey, Path> watchedDirectories = new HashMap<>();
+    private final Map<Path, FileTime> written = new HashMap<>();
+
+    public void execute() throws MojoExecutionException {
+        gettext = createGettextMojo();
+        merge = createMergeMojo();
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            watchService = ws;
+            for (Path root : getRoots()) {
+                register(root);
+            }
+            gettext.extract();
+            merge.execute();
+            super.execute();
+            remember();
+            getLog().info("Watching for changes, press Ctrl+C to stop");
+            while (true) {
+                Changes changes = awaitChanges();
+                if (changes.isEmpty()) {
+                    continue;
+                }
+                long start = System.nanoTime();
+                update(changes);
+                getLog().info("Updated in %d ms".formatted(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start)));
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+            getLog().info("Stopped watching");
+        } catch (IOException e) {
+            throw new MojoExecutionException("Unable to watch for changes", e);
+        }
+    }
+
+    GettextMojo createGettextMojo() {
+        GettextMojo mojo = createGoal(GettextMojo::new);
+        // the extraArgs of this goal are passed to the tool generating the bundles
+        mojo.extraArgs = xgettextArgs;
+        mojo.encoding = encoding;
+        mojo.keywords = keywords;
+        mojo.xgettextCmd = xgettextCmd;
+        mojo.sort = sort;
+        mojo.nowrap = nowrap;
+        mojo.extraSourceFiles = extraSourceFiles;
+        // changed sources are passed by path, not taken from git
+        mojo.changedSince = null;
+        mojo.msgcatCmd = msgcatCmd;
+        mojo.gitCmd = "git";
+        return mojo;
+    }
+
+    MergeMojo createMergeMojo() {
+        MergeMojo mojo = createGoal(MergeMojo::new);
+        // the includes and excludes of this goal select sources, not .po files
+        mojo.includes = new String[0];
+        mojo.excludes = new String[0];
+        mojo.extraArgs = msgmergeArgs;
+        mojo.msgmergeCmd = msgmergeCmd;
+        mojo.backup = backup;
+        mojo.sort = sort;
+        mojo.translationMemory = translationMemory;
+        mojo.translationMemoryDirectory = translationMemoryDirectory;
+        mojo.translationMemorySimilarity = translationMemorySimilarity;
+        return mojo;
+    }
+
+    private List<Path> getRoots() {
+        Set<Path> roots = new LinkedHashSet<>();
+        roots.add(sourceDirectory.toPath().toAbsolutePath());
+        if (extraSourceFiles.getDirectory() != null) {
+            roots.add(new File(extraSourceFiles.getDirectory()).toPath().toAbsolutePath());
+        }
+        roots.add(poDirectory.toPath().toAbsolutePath());
+        return roots.stream().filter(Files::isDirectory).toList();
+    }
+
+    /**
+     * Registers a directory and all its subdirectories, the WatchService does not watch recursively
+     */
+    private void register(Path directory) throws IOException {
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path dir : walk.filter(Files::isDirectory).toList()) {
+                WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+                watchedDirectories.put(key, dir);
+            }
+        }
+    }
+
+    /**
+     * Blocks until a change arrives, then collects further changes until none arrived for the
+     * debounce time.
+     */
+    private Changes awaitChanges() throws InterruptedException, IOException {
+        Changes changes = new Changes();
+        WatchKey key = watchService.take();
+        while (key != null) {
+            Path dir = watchedDirectories.get(key);
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                    changes.allSources = true;
+                    changes.keysFile = true;
+                    continue;
+                }
+                Path path = dir.resolve((Path) event.context());
+                if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE && Files.isDirectory(path)) {
+                    register(path);
+                    // files may have been created before the directory was registered
+                    changes.allSources = true;
+                } else {
+                    classify(path, changes);
+                }
+            }
+            if (!key.reset()) {
+                watchedDirectories.remove(key);
+            }
+            key = watchService.poll(debounce, TimeUnit.MILLISECONDS);
+        }
+        return changes;
+    }
+
+    private void classify(Path path, Changes changes) {
+        String name = path.getFileName().toString();
+        // temp files and backups of the goals themselves
+        if (name.startsWith(".") || name.endsWith("~")) {
+            return;
+        }
+        // .po and keys.pot files written by the last update
+        if (isUnchanged(path)) {
+            return;
+        }
+        Path poRoot = poDirectory.toPath().toAbsolutePath();
+        if (path.startsWith(poRoot)) {
+            String relative = poRoot.relativize(path).toString();
+            if (relative.equals(keysFile)) {
+                changes.keysFile = true;
+                return;
+            }
+            if (name.endsWith(".po")) {
+                changes.poFiles.add(relative);
+                return;
+            }
+        }
+        Path sourceRoot = sourceDirectory.toPath().toAbsolutePath();
+        if (path.startsWith(sourceRoot)) {
+            String relative = sourceRoot.relativize(path).toString();
+            String[] patterns = includes != null && includes.length > 0 ? includes : new String[]{"**/*.java"};
+            if (matches(patterns, relative) && (excludes == null || !matches(excludes, relative))) {
+                changes.sources.add(relative.replace(File.separatorChar, '/'));
+            }
+        } else if (extraSourceFiles.getDirectory() != null
+                && path.startsWith(new File(extraSourceFiles.getDirectory()).toPath().toAbsolutePath())) {
+            changes.allSources = true;
+        }
+    }
+
+    private boolean matches(String[] patterns, String path) {
+        for (String pattern : patterns) {
+            if (SelectorUtils.matchPath(pattern, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isUnchanged(Path path) {
+        FileTime time = written.get(path);
+        try {
+            return time != null && Files.exists(path) && time.equals(Files.getLastModifiedTime(path));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void update(Changes changes) throws MojoExecutionException {
+        Set<String> poFiles = new TreeSet<>(changes.poFiles);
+        boolean keysFileChanged = changes.keysFile;
+        if (changes.allSources) {
+            keysFileChanged |= gettext.extract();
+        } else if (!changes.sources.isEmpty()) {
+            keysFileChanged |= gettext.extract(changes.sources);
+        }
+        if (keysFileChanged) {
+            poFiles.addAll(merge.merge(merge.getPoFiles()));
+        }
+        poFiles.removeIf(file -> !new File(poDirectory, file).exists());
+        if (!poFiles.isEmpty()) {
+            // a shared string pool, message IDs and formats are generated from all locales
+            dist(sharedStringPool || messageIds || precompileFormats || instrumentLookups ? getPoFiles() : poFiles.toArray(new String[0]));
+        }
+        remember();
+    }
+
+    /**
+     * Remembers the timestamps of the keys.pot and .po files, so their events caused by the goals
+     * themselves are ignored.
+     */
+    private void remember() throws MojoExecutionException {
+        remember(new File(poDirectory, keysFile));
+        for (String file : merge.getPoFiles()) {
+            remember(new File(poDirectory, file));
+        }
+    }
+
+    private void remember(File file) {
+        Path path = file.toPath().toAbsolutePath();
+        try {
+            written.put(path, Files.getLastModifiedTime(path));
+        } catch (IOException e) {
+            written.remove(path);
+        }
+    }
+
+    /**
+     * Changes of a burst
+     */
+    private static class Changes {
+        boolean allSources;
+        final Set<String> sources = new TreeSet<>();
+        boolean keysFile;
+        final Set<String> poFiles = new TreeSet<>();
+
+        boolean isEmpty() {
+            return !allSources && sources.isEmpty() && !keysFile && poFiles.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.model.Model;
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks which projects the aggregator extracts again, without running xgettext for unchanged ones.
+ */
+class AggregatorMojoTest {
+
+    private static final String POT = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+
+            #: com/acme/Hello.java:5
+            msgid "Hello"
+            msgstr ""
+            """;
+
+    @TempDir
+    Path tmp;
+
+    private AggregatorMojo mojo;
+    private File sources;
+    private File cachedPot;
+    private File fingerprint;
+
+    @BeforeEach
+    void configure() throws IOException {
+        Path module = tmp.resolve("module");
+        Files.createDirectories(module.resolve("src/main/java/com/acme"));
+        Files.writeString(module.resolve("src/main/java/com/acme/Hello.java"), "class Hello {}");
+        Files.writeString(module.resolve("src/main/java/com/acme/World.java"), "class World {}");
+        sources = module.resolve("src/main/java").toFile();
+
+        MavenProject root = project(tmp, "root");
+        MavenProject project = project(module, "module");
+        project.getBuild().setSourceDirectory(sources.getPath());
+
+        mojo = new AggregatorMojo();
+        mojo.project = root;
+        mojo.reactorProjects = List.of(root, project);
+        mojo.poDirectory = tmp.resolve("src/main/po").toFile();
+        mojo.keysFile = "keys.pot";
+        mojo.cacheDirectory = tmp.resolve("target/gettext-aggregator").toFile();
+        mojo.encoding = "UTF-8";
+        mojo.keywords = "-ktr";
+        mojo.xgettextCmd = "no-such-xgettext";
+        mojo.msgcatCmd = "no-such-msgcat";
+        mojo.sort = "by-file";
+        mojo.perModule = true;
+        mojo.threads = 1;
+        mojo.buildContext = new DefaultBuildContext();
+
+        Files.createDirectories(mojo.cacheDirectory.toPath());
+        cachedPot = new File(mojo.cacheDirectory, "com.acme_module.pot");
+        fingerprint = new File(mojo.cacheDirectory, "com.acme_module.fingerprint");
+    }
+
+    @Test
+    void fingerprintsSourcesAndOptions() throws Exception {
+        String[] files = {"com/acme/Hello.java", "com/acme/World.java"};
+        String initial = mojo.fingerprint(sources, files);
+        assertEquals(initial, mojo.fingerprint(sources, new String[]{files[1], files[0]}));
+
+        Path hello = sources.toPath().resolve(files[0]);
+        Files.setLastModifiedTime(hello, FileTime.fromMillis(Files.getLastModifiedTime(hello).toMillis() + 2000));
+        String touched = mojo.fingerprint(sources, files);
+        assertNotEquals(initial, touched);
+        assertNotEquals(touched, mojo.fingerprint(sources, new String[]{files[0]}));
+
+        mojo.keywords = "-ktrc:1c,2";
+        assertNotEquals(touched, mojo.fingerprint(sources, files));
+    }
+
+    @Test
+    void reusesPotFileOfUnchangedProject() throws Exception {
+        Files.writeString(cachedPot.toPath(), POT, StandardCharsets.UTF_8);
+        Files.writeString(fingerprint.toPath(), mojo.fingerprint(sources, mojo.scan(sources, "**/*.java")));
+        mojo.execute();
+        assertEquals(POT, Files.readString(tmp.resolve("module/src/main/po/keys.pot"), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void reusesProjectWithoutMessages() throws Exception {
+        Files.writeString(fingerprint.toPath(), mojo.fingerprint(sources, mojo.scan(sources, "**/*.java")) + "\nempty");
+        mojo.execute();
+        assertTrue(fingerprint.exists());
+        assertFalse(tmp.resolve("module/src/main/po/keys.pot").toFile().exists());
+    }
+
+    @Test
+    void extractsChangedProjectAgain() throws Exception {
+        Files.writeString(cachedPot.toPath(), POT, StandardCharsets.UTF_8);
+        Files.writeString(fingerprint.toPath(), mojo.fingerprint(sources, mojo.scan(sources, "**/*.java")));
+        Files.writeString(sources.toPath().resolve("com/acme/New.java"), "class New {}");
+        mojo.execute();
+        // xgettext does not exist, so the project is extracted again by the next build
+        assertFalse(cachedPot.exists());
+        assertFalse(fingerprint.exists());
+    }
+
+    private static MavenProject project(Path basedir, String artifactId) {
+        Model model = new Model();
+        model.setGroupId("com.acme");
+        model.setArtifactId(artifactId);
+        MavenProject project = new MavenProject(model);
+        project.setFile(basedir.resolve("pom.xml").toFile());
+        project.getBuild().setSourceDirectory(basedir.resolve("src/main/java").toString());
+        return project;
+    }
+}
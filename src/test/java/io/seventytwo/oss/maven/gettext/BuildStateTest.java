@@ -0,0 +1,109 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+class BuildStateTest {
+
+    private static final String[] INCLUDES = {"**/*.po"};
+
+    @TempDir
+    Path tmp;
+
+    private File basedir;
+
+    @BeforeEach
+    void createFiles() throws IOException {
+        BuildState.clear();
+        Files.createDirectories(tmp.resolve("po/sub"));
+        Files.writeString(tmp.resolve("po/de.po"), "");
+        Files.writeString(tmp.resolve("po/sub/fr.po"), "");
+        basedir = tmp.resolve("po").toFile();
+    }
+
+    @Test
+    void reusesScanWhileDirectoriesAreUnchanged() throws IOException {
+        assertArrayEquals(new String[]{"de.po", sub("fr.po")}, sorted(BuildState.scan(basedir, INCLUDES, null)));
+        // a file added without changing the timestamp of its directory goes unnoticed
+        FileTime time = Files.getLastModifiedTime(tmp.resolve("po"));
+        Files.writeString(tmp.resolve("po/pl.po"), "");
+        Files.setLastModifiedTime(tmp.resolve("po"), time);
+        assertArrayEquals(new String[]{"de.po", sub("fr.po")}, sorted(BuildState.scan(basedir, INCLUDES, null)));
+        // other patterns are scanned separately
+        assertArrayEquals(new String[]{"de.po", "pl.po"}, sorted(BuildState.scan(basedir, new String[]{"*.po"}, null)));
+    }
+
+    @Test
+    void rescansWhenNestedDirectoryChanges() throws IOException {
+        BuildState.scan(basedir, INCLUDES, null);
+        Files.writeString(tmp.resolve("po/sub/it.po"), "");
+        touch(tmp.resolve("po/sub"));
+        assertArrayEquals(new String[]{"de.po", sub("fr.po"), sub("it.po")}, sorted(BuildState.scan(basedir, INCLUDES, null)));
+    }
+
+    @Test
+    void rescansWhenDirectoryIsAddedOrRemoved() throws IOException {
+        BuildState.scan(basedir, INCLUDES, new String[]{"sub/**"});
+        Files.createDirectories(tmp.resolve("po/new"));
+        Files.writeString(tmp.resolve("po/new/es.po"), "");
+        touch(tmp.resolve("po"));
+        assertArrayEquals(new String[]{"de.po", "new" + File.separator + "es.po"},
+                sorted(BuildState.scan(basedir, INCLUDES, new String[]{"sub/**"})));
+
+        BuildState.scan(basedir, INCLUDES, null);
+        Files.delete(tmp.resolve("po/sub/fr.po"));
+        Files.delete(tmp.resolve("po/sub"));
+        assertArrayEquals(new String[]{"de.po", "new" + File.separator + "es.po"}, sorted(BuildState.scan(basedir, INCLUDES, null)));
+    }
+
+    @Test
+    void returnsCopiesOfScans() throws IOException {
+        BuildState.scan(basedir, INCLUDES, null)[0] = "modified";
+        assertArrayEquals(new String[]{"de.po", sub("fr.po")}, sorted(BuildState.scan(basedir, INCLUDES, null)));
+    }
+
+    @Test
+    void reusesCatalogOfSameContent() throws IOException {
+        Path po = tmp.resolve("po/de.po");
+        Files.writeString(po, "msgid \"a\"\nmsgstr \"b\"\n", StandardCharsets.UTF_8);
+        Catalog catalog = BuildState.parse(po.toFile());
+        assertSame(catalog, BuildState.parse(po.toFile()));
+
+        // same size and timestamp, different content
+        FileTime time = Files.getLastModifiedTime(po);
+        Files.writeString(po, "msgid \"a\"\nmsgstr \"c\"\n", StandardCharsets.UTF_8);
+        Files.setLastModifiedTime(po, time);
+        Catalog changed = BuildState.parse(po.toFile());
+        assertNotSame(catalog, changed);
+        assertArrayEquals(new Object[]{"c"}, changed.get(0).getMsgstr().toArray());
+    }
+
+    private static String sub(String name) {
+        return "sub" + File.separator + name;
+    }
+
+    private static String[] sorted(String[] files) {
+        Arrays.sort(files);
+        return files;
+    }
+
+    /**
+     * Moves the timestamp forward, file systems with coarse timestamps may not have changed it
+     */
+    private static void touch(Path directory) throws IOException {
+        Files.setLastModifiedTime(directory, FileTime.fromMillis(Files.getLastModifiedTime(directory).toMillis() + 2000));
+    }
+}
@@ -0,0 +1,264 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.MissingResourceException;
+import java.util.ResourceBundle;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Catalog with plurals, contexts, colliding hash codes and messages that must not be compiled, and
+ * assertions comparing the lookups of generated bundles with it and with the bundle msgfmt generates.
+ */
+final class BundleFixture {
+
+    static final String BUNDLE = "com.acme.Messages";
+    static final String LOCALE = "pl";
+
+    private static final String PO = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=3; plural=(n==1 ? 0 : n%10>=2 && n%10<=4 && (n%100<10 || n%100>=20) ? 1 : 2);\\n"
+
+            #: src/main/java/com/acme/app/Main.java:10
+            msgid "File"
+            msgstr "Plik"
+
+            #: src/main/java/com/acme/app/Main.java:11
+            msgctxt "menu"
+            msgid "File"
+            msgstr "Plik (menu)"
+
+            #: src/main/java/com/acme/app/Main.java:12
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Jeden plik"
+            msgstr[1] "{0} pliki"
+            msgstr[2] "{0} plików"
+
+            #: src/main/java/com/acme/admin/Admin.java:20
+            msgctxt "disk"
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Jeden plik na dysku"
+            msgstr[1] "{0} pliki na dysku"
+            msgstr[2] "{0} plików na dysku"
+
+            #: src/main/java/com/acme/app/Main.java:13
+            msgid "AaAa"
+            msgstr "Kolizja aplikacji"
+
+            #: src/main/java/com/acme/admin/Admin.java:21
+            msgid "BBBB"
+            msgstr "Kolizja administracji"
+
+            #: src/main/java/com/acme/app/Main.java:14 src/main/java/com/acme/admin/Admin.java:22
+            msgid "Größe – ½ ✓ 😀"
+            msgstr "Rozmiar – ½ ✓ 😀"
+
+            #: src/main/java/com/acme/admin/Admin.java:23
+            msgid "Tab\\tquote\\" backslash\\\\ line\\n"
+            msgstr "Tab\\tcudzysłów\\" ukośnik\\\\ wiersz\\n"
+
+            #: src/main/java/com/acme/app/Main.java:15
+            #, fuzzy
+            msgid "Fuzzy"
+            msgstr "Rozmyty"
+
+            #: src/main/java/com/acme/app/Main.java:16
+            msgid "Untranslated"
+            msgstr ""
+
+            #~ msgid "Obsolete"
+            #~ msgstr "Przestarzały"
+            """;
+
+    /**
+     * Keys no bundle may contain, "AaBB" has the hash code of "AaAa" and "BBBB"
+     */
+    static final List<String> MISSING = List.of("toolbar\u0004File", "menu", "Fuzzy", "Untranslated", "Obsolete",
+            "AaBB", "No such message", "Message 99999");
+
+    private BundleFixture() {
+    }
+
+    /**
+     * Writes the .po file of the fixture
+     *
+     * @param dir       directory
+     * @param generated number of further messages used in the package com.acme.generated, every tenth
+     *                  with plural forms
+     * @return .po file
+     */
+    static File writePo(Path dir, int generated) throws IOException {
+        StringBuilder po = new StringBuilder(PO);
+        for (int i = 0; i < generated; i++) {
+            po.append("\n#: src/main/java/com/acme/generated/Generated.java:").append(i + 1).append('\n');
+            po.append("msgid \"Message %04d\"\n".formatted(i));
+            if (i % 10 == 0) {
+                po.append("msgid_plural \"Messages %04d\"\n".formatted(i));
+                for (int form = 0; form < 3; form++) {
+                    po.append("msgstr[%d] \"Komunikat %04d/%d\"\n".formatted(form, i, form));
+                }
+            } else {
+                po.append("msgstr \"Komunikat %04d\"\n".formatted(i));
+            }
+        }
+        File file = dir.resolve(LOCALE + ".po").toFile();
+        Files.createDirectories(dir);
+        Files.writeString(file.toPath(), po, StandardCharsets.UTF_8);
+        return file;
+    }
+
+    /**
+     * Returns what a bundle of the catalog must contain: the compiled messages by key, with a String[]
+     * of the forms of plural messages
+     */
+    static Map<String, Object> translations(Catalog catalog) {
+        Map<String, Object> translations = new LinkedHashMap<>();
+        for (Message message : catalog) {
+            if (message.isCompiled()) {
+                List<String> msgstr = message.getMsgstr();
+                translations.putIfAbsent(message.getKey(), message.isPlural() ? msgstr.toArray(new String[0]) : msgstr.get(0));
+            }
+        }
+        return translations;
+    }
+
+    /**
+     * Compiles generated sources
+     *
+     * @return class loader of the compiled classes
+     */
+    static ClassLoader compile(List<File> sources, File classRoot) throws Exception {
+        Files.createDirectories(classRoot.toPath());
+        JavaSourceCompiler.compile(sources, classRoot, StandardCharsets.UTF_8, "8", new SystemStreamLog());
+        return new URLClassLoader(new URL[]{classRoot.toURI().toURL()}, BundleFixture.class.getClassLoader());
+    }
+
+    static ResourceBundle newBundle(ClassLoader loader, String className) throws Exception {
+        return (ResourceBundle) loader.loadClass(className).getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Generates the bundle of a .po file with msgfmt, skips the test if msgfmt is not installed
+     */
+    static ResourceBundle msgfmt(File po, Path dir) throws Exception {
+        assumeTrue(isAvailable("msgfmt"), "gettext tools not installed");
+        File classRoot = dir.toFile();
+        Files.createDirectories(dir);
+        Process process = new ProcessBuilder("msgfmt", "--java2", "-d", classRoot.getPath(), "-r", BUNDLE, "-l", LOCALE, po.getPath())
+                .redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+        ClassLoader loader = new URLClassLoader(new URL[]{classRoot.toURI().toURL()}, BundleFixture.class.getClassLoader());
+        return newBundle(loader, BUNDLE + "_" + LOCALE);
+    }
+
+    /**
+     * Returns the contents of a bundle through its lookup method
+     */
+    static Map<String, Object> contents(ResourceBundle bundle) throws Exception {
+        Map<String, Object> contents = new LinkedHashMap<>();
+        for (String key : Collections.list(bundle.getKeys())) {
+            contents.put(key, lookup(bundle, key));
+        }
+        return contents;
+    }
+
+    /**
+     * Asserts that a bundle contains exactly the expected translations, and none of the missing keys
+     * nor keys sorting between the expected ones
+     */
+    static void assertLookups(Map<String, Object> expected, ResourceBundle bundle) throws Exception {
+        List<String> keys = Collections.list(bundle.getKeys());
+        assertEquals(expected.size(), keys.size(), "duplicate keys");
+        assertEquals(expected.keySet(), new HashSet<>(keys));
+        List<String> missing = new ArrayList<>(MISSING);
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            String key = entry.getKey();
+            Object value = lookup(bundle, key);
+            if (entry.getValue() instanceof String[] forms) {
+                assertArrayEquals(forms, assertInstanceOf(String[].class, value), key);
+                assertEquals(forms[0], bundle.getObject(key), key);
+            } else {
+                assertEquals(entry.getValue(), value, key);
+                assertEquals(entry.getValue(), bundle.getString(key), key);
+            }
+            missing.add(key + "\u0000");
+            missing.add(key + "\uffff");
+        }
+        for (String key : missing) {
+            if (!expected.containsKey(key)) {
+                assertNull(lookup(bundle, key), key);
+                assertThrows(MissingResourceException.class, () -> bundle.getObject(key), key);
+            }
+        }
+    }
+
+    /**
+     * Asserts that the plural rule of a bundle selects the forms of the catalog
+     */
+    static void assertPluralEval(Catalog catalog, ResourceBundle bundle) throws Exception {
+        Method pluralEval = bundle.getClass().getMethod("pluralEval", long.class);
+        for (long n = 0; n <= 1000; n++) {
+            assertEquals(catalog.getPluralForms().evaluate(n), pluralEval.invoke(bundle, n), "n = " + n);
+        }
+    }
+
+    /**
+     * Asserts that a bundle has the lookups and plural rule of the bundle msgfmt generates
+     *
+     * @param excluded keys the bundle leaves out by design
+     */
+    static void assertSameAsMsgfmt(ResourceBundle bundle, ResourceBundle msgfmt, List<String> excluded) throws Exception {
+        Map<String, Object> expected = contents(msgfmt);
+        assertTrue(expected.keySet().containsAll(excluded), excluded.toString());
+        expected.keySet().removeAll(excluded);
+        assertLookups(expected, bundle);
+        Method pluralEval = bundle.getClass().getMethod("pluralEval", long.class);
+        Method expectedPluralEval = msgfmt.getClass().getMethod("pluralEval", long.class);
+        for (long n = 0; n <= 1000; n++) {
+            assertEquals(expectedPluralEval.invoke(null, n), pluralEval.invoke(bundle, n), "n = " + n);
+        }
+    }
+
+    static Object lookup(ResourceBundle bundle, String key) throws Exception {
+        return bundle.getClass().getMethod("lookup", String.class).invoke(bundle, key);
+    }
+
+    static boolean isAvailable(String command) {
+        try {
+            Process process = new ProcessBuilder(command, "--version").redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
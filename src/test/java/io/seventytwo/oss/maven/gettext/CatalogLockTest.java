@@ -0,0 +1,128 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class CatalogLockTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void detectsEditInPlace() throws IOException {
+        Path po = write("de.po", "msgid \"a\"");
+        try (CatalogLock lock = CatalogLock.acquire(po.toFile())) {
+            assertFalse(lock.isModified());
+            FileTime time = Files.getLastModifiedTime(po);
+            Files.writeString(po, "msgid \"ab\"");
+            Files.setLastModifiedTime(po, time);
+            assertTrue(lock.isModified());
+        }
+    }
+
+    @Test
+    void detectsTouch() throws IOException {
+        Path po = write("de.po", "msgid \"a\"");
+        try (CatalogLock lock = CatalogLock.acquire(po.toFile())) {
+            Files.setLastModifiedTime(po, FileTime.fromMillis(Files.getLastModifiedTime(po).toMillis() + 2000));
+            assertTrue(lock.isModified());
+        }
+    }
+
+    @Test
+    void detectsReplaceWithSameSizeAndTime() throws IOException {
+        Path po = write("de.po", "msgid \"a\"");
+        assumeTrue(Files.readAttributes(po, BasicFileAttributes.class).fileKey() != null, "no file keys");
+        try (CatalogLock lock = CatalogLock.acquire(po.toFile())) {
+            Path replacement = write("de.po.new", "msgid \"b\"");
+            Files.setLastModifiedTime(replacement, Files.getLastModifiedTime(po));
+            Files.move(replacement, po, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            assertTrue(lock.isModified());
+        }
+    }
+
+    @Test
+    void detectsCreateAndDelete() throws IOException {
+        File po = tmp.resolve("de.po").toFile();
+        try (CatalogLock lock = CatalogLock.acquire(po)) {
+            assertFalse(lock.isModified());
+            write("de.po", "");
+            assertTrue(lock.isModified());
+        }
+        try (CatalogLock lock = CatalogLock.acquire(po)) {
+            Files.delete(po.toPath());
+            assertTrue(lock.isModified());
+        }
+    }
+
+    @Test
+    void serializesThreads() throws Exception {
+        File po = tmp.resolve("de.po").toFile();
+        CompletableFuture<Void> other;
+        try (CatalogLock lock = CatalogLock.acquire(po)) {
+            // reentrant in the same thread, which still holds the lock after closing the inner one
+            CatalogLock.acquire(new File(tmp.toFile(), "./de.po")).close();
+            other = CompletableFuture.runAsync(() -> {
+                try (CatalogLock ignored = CatalogLock.acquire(po)) {
+                    // acquired
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            assertThrows(TimeoutException.class, () -> other.get(200, TimeUnit.MILLISECONDS));
+        }
+        other.get(10, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void keepsFileModifiedWhileMerging() throws Exception {
+        assumeTrue(new File("/bin/sh").canExecute(), "no POSIX shell");
+        // msgmerge stand-in, and an editor saving the .po file meanwhile
+        Path msgmerge = write("msgmerge", """
+                #!/bin/sh
+                [ "$1" = "--version" ] && echo "msgmerge 0" && exit 0
+                cp "$4" "$3"
+                echo '# merged' >> "$3"
+                echo '# saved by an editor' >> "$4"
+                """);
+        assertTrue(msgmerge.toFile().setExecutable(true));
+        Path po = write("po/de.po", "msgid \"a\"\nmsgstr \"b\"\n");
+        write("po/keys.pot", "msgid \"a\"\nmsgstr \"\"\n");
+
+        MergeMojo mojo = new MergeMojo();
+        mojo.poDirectory = po.getParent().toFile();
+        mojo.keysFile = "keys.pot";
+        mojo.msgmergeCmd = msgmerge.toString();
+        mojo.sort = "by-file";
+        mojo.backup = "none";
+        mojo.buildContext = new DefaultBuildContext();
+        MojoExecutionException e = assertThrows(MojoExecutionException.class, () -> mojo.merge(new String[]{"de.po"}));
+        assertTrue(e.getMessage().contains("modified by another process"), e.getMessage());
+        assertEquals("msgid \"a\"\nmsgstr \"b\"\n# saved by an editor\n", Files.readString(po));
+    }
+
+    private Path write(String name, String contents) throws IOException {
+        Path file = tmp.resolve(name);
+        Files.createDirectories(file.getParent());
+        return Files.writeString(file, contents);
+    }
+}
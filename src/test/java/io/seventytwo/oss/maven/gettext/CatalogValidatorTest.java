@@ -0,0 +1,132 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CatalogValidatorTest {
+
+    private static final File FILE = new File("de.po");
+
+    private static final String HEADER = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+            """;
+
+    @Test
+    void acceptsValidCatalog() throws IOException {
+        assertEquals(List.of(), validate(HEADER + """
+                #, java-format
+                msgid "'{'{0}'}' of {1,number,integer} at {2,TIME}"
+                msgstr "{1,number,integer} ''{0}'' um {2,time}"
+
+                #, java-format
+                msgid "One file"
+                msgid_plural "{0} files"
+                msgstr[0] "Eine Datei"
+                msgstr[1] "{0} Dateien"
+
+                #, c-format
+                msgid "%s has %d items\\n"
+                msgstr "%2$d Einträge in %1$s\\n"
+
+                #, fuzzy, java-format
+                msgid "{0}"
+                msgstr "{1}"
+                """));
+    }
+
+    @Test
+    void comparesFormatTypesIndependentOfDefaultLocale() throws IOException {
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.forLanguageTag("tr"));
+        try {
+            assertEquals(List.of(), validate(HEADER + """
+                    #, java-format
+                    msgid "{0,TIME}"
+                    msgstr "{0,time}"
+                    """));
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    @Test
+    void reportsJavaFormatProblems() throws IOException {
+        assertEquals(List.of(
+                "de.po:6: msgstr references {1}, which does not exist in msgid",
+                "de.po:6: msgstr does not reference {0} of msgid",
+                "de.po:10: msgstr formats {0} as 'date', msgid as 'number'",
+                "de.po:14: unbalanced '{' in java-format string: {0'}' ",
+                "de.po:18: invalid argument '{x}' in java-format string"), validate(HEADER + """
+                #, java-format
+                msgid "{0}"
+                msgstr "{1}"
+
+                #, java-format
+                msgid "{0,number}"
+                msgstr "{0,date}"
+
+                #, java-format
+                msgid "{0} "
+                msgstr "{0'}' "
+
+                #, java-format
+                msgid "{x}"
+                msgstr "{0}"
+                """));
+    }
+
+    @Test
+    void reportsCFormatProblems() throws IOException {
+        assertEquals(List.of(
+                "de.po:6: msgstr has 1 format directives, msgid has 2",
+                "de.po:10: msgstr formats argument 1 as 'float', msgid as 'int'",
+                "de.po:14: invalid format directive '%y' in c-format string"), validate(HEADER + """
+                #, c-format
+                msgid "%s: %d"
+                msgstr "%s"
+
+                #, c-format
+                msgid "%d"
+                msgstr "%f"
+
+                #, c-format
+                msgid "%d "
+                msgstr "%y "
+                """));
+    }
+
+    @Test
+    void reportsPluralFormsNewlinesAndDuplicates() throws IOException {
+        assertEquals(List.of(
+                "de.po:6: 3 plural forms, but the Plural-Forms header declares nplurals=2",
+                "de.po:12: msgid and msgstr do not both end with '\\n'",
+                "de.po:15: duplicate message definition, first defined at line 12"), validate(HEADER + """
+                msgid "One file"
+                msgid_plural "{0} files"
+                msgstr[0] "Eine Datei"
+                msgstr[1] "{0} Dateien"
+                msgstr[2] "{0} Dateien"
+
+                msgid "Line\\n"
+                msgstr "Zeile"
+
+                msgid "Line\\n"
+                msgstr "Zeile\\n"
+                """));
+    }
+
+    private static List<String> validate(String po) throws IOException {
+        return CatalogValidator.validate(PoParser.parse(FILE, po.getBytes(StandardCharsets.UTF_8)));
+    }
+}
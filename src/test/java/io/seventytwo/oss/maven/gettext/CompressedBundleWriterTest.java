@@ -0,0 +1,124 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles bundles reading small compressed blocks through a cache of a single block and checks
+ * the lookups at block boundaries and after evictions.
+ */
+class CompressedBundleWriterTest {
+
+    private static final int BLOCK_SIZE = 256;
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+    private static File resource;
+    private static ClassLoader loader;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        File po = BundleFixture.writePo(tmp, 2000);
+        catalog = PoParser.parse(po);
+        CompressedBundleWriter writer = new CompressedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8, BLOCK_SIZE, 1);
+        File sourceRoot = tmp.resolve("sources").toFile();
+        File classRoot = tmp.resolve("classes").toFile();
+        resource = writer.writeCatalog(LOCALE, catalog, classRoot);
+        List<File> sources = List.of(writer.writeReader(sourceRoot), writer.writeBundle(LOCALE, catalog, sourceRoot));
+        loader = BundleFixture.compile(sources, classRoot);
+    }
+
+    @Test
+    void splitsIntoBlocks() throws IOException {
+        int blocks = firstKeys().size();
+        assertTrue(blocks > 100, String.valueOf(blocks));
+    }
+
+    @Test
+    void looksUpFirstAndLastKeysOfBlocks() throws Exception {
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Map<String, Object> translations = BundleFixture.translations(catalog);
+        List<String> firstKeys = firstKeys();
+        List<String> keys = new ArrayList<>(translations.keySet());
+        Collections.sort(keys);
+        for (String first : firstKeys) {
+            int i = keys.indexOf(first);
+            assertTrue(i >= 0, first);
+            assertLookup(translations, bundle, first);
+            if (i > 0) {
+                // the last key of the previous block, and a missing key between both blocks
+                assertLookup(translations, bundle, keys.get(i - 1));
+                assertNull(BundleFixture.lookup(bundle, keys.get(i - 1) + "\u0000"));
+            }
+        }
+        assertLookup(translations, bundle, keys.get(keys.size() - 1));
+        assertNull(BundleFixture.lookup(bundle, keys.get(keys.size() - 1) + "\u0000"));
+    }
+
+    @Test
+    void evictsBlocksFromCache() throws Exception {
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Map<String, Object> translations = BundleFixture.translations(catalog);
+        List<String> keys = new ArrayList<>(translations.keySet());
+        Random random = new Random(42);
+        for (int i = 0; i < 3; i++) {
+            Collections.shuffle(keys, random);
+            for (String key : keys) {
+                assertLookup(translations, bundle, key);
+            }
+        }
+    }
+
+    private static void assertLookup(Map<String, Object> translations, ResourceBundle bundle, String key) throws Exception {
+        Object expected = translations.get(key);
+        Object value = BundleFixture.lookup(bundle, key);
+        if (expected instanceof String[] forms) {
+            assertArrayEquals(forms, (String[]) value, key);
+        } else {
+            assertEquals(expected, value, key);
+        }
+    }
+
+    /**
+     * Reads the first keys of the blocks from the index of the resource
+     */
+    private static List<String> firstKeys() throws IOException {
+        List<String> firstKeys = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(resource.toPath()))) {
+            in.readInt();
+            int blocks = in.readInt();
+            for (int i = 0; i < blocks; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                firstKeys.add(new String(key, StandardCharsets.UTF_8));
+                in.readInt();
+                in.readInt();
+                in.readInt();
+            }
+        }
+        return firstKeys;
+    }
+}
@@ -0,0 +1,134 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+
+/**
+ * Generates the bundle of the same catalog in every output format and checks its lookups and plural
+ * rule against the catalog and against the bundle msgfmt generates.
+ */
+class GeneratedBundleTest {
+
+    @TempDir
+    static Path tmp;
+
+    private static File po;
+    private static Catalog catalog;
+    private static final Map<String, ResourceBundle> bundles = new HashMap<>();
+
+    @BeforeAll
+    static void parse() throws Exception {
+        // enough messages for several pool classes, many compressed blocks and two segments of a package
+        po = BundleFixture.writePo(tmp, 9000);
+        catalog = PoParser.parse(po);
+    }
+
+    static List<Format> formats() {
+        return List.of(
+                new Format("class", List.of(), dir -> {
+                    JavaBundleWriter writer = new JavaBundleWriter(BUNDLE, true, StandardCharsets.UTF_8);
+                    StringPool pool = new StringPool();
+                    JavaBundleWriter.addToPool(pool, catalog);
+                    File sourceRoot = dir.resolve("sources").toFile();
+                    List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+                    sources.add(writer.writeBundle(LOCALE, catalog, pool, sourceRoot));
+                    return compile(sources, dir);
+                }),
+                new Format("compressed", List.of(), dir -> {
+                    // small blocks read through a cache of a single block
+                    CompressedBundleWriter writer = new CompressedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8, 256, 1);
+                    File sourceRoot = dir.resolve("sources").toFile();
+                    writer.writeCatalog(LOCALE, catalog, dir.resolve("classes").toFile());
+                    return compile(List.of(writer.writeReader(sourceRoot), writer.writeBundle(LOCALE, catalog, sourceRoot)), dir);
+                }),
+                new Format("indexed", IndexedBundleWriterTest.WITHOUT_ID, dir -> {
+                    IndexedBundleWriter writer = new IndexedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8,
+                            IndexedBundleWriterTest.writeKeys(po, dir));
+                    StringPool pool = new StringPool();
+                    writer.addKeysToPool(pool);
+                    writer.addTranslationsToPool(pool, catalog);
+                    File sourceRoot = dir.resolve("sources").toFile();
+                    List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+                    sources.add(writer.writeIds(pool, sourceRoot));
+                    sources.add(writer.writeBase(sourceRoot));
+                    sources.add(writer.writeBundle(LOCALE, catalog, pool, sourceRoot));
+                    return compile(sources, dir);
+                }),
+                new Format("segmented", List.of(), dir -> {
+                    SegmentedBundleWriter writer = new SegmentedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8,
+                            new MessagePackages(catalog, 3));
+                    return compile(List.of(writer.writeBundle(LOCALE, catalog, dir.resolve("sources").toFile()).file()), dir);
+                }),
+                // the header becomes the metadata of the catalog
+                new Format("json", List.of(""), dir -> {
+                    File file = dir.resolve("Messages_" + LOCALE + ".json").toFile();
+                    Files.createDirectories(dir);
+                    new JsonCatalogWriter(new OutputTracker(), null, false).write(catalog, LOCALE, file);
+                    return new JsonCatalogWriterTest.JsonBundle(file);
+                }));
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("formats")
+    void looksUpTranslations(Format format) throws Exception {
+        ResourceBundle bundle = bundle(format);
+        Map<String, Object> translations = BundleFixture.translations(catalog);
+        translations.keySet().removeAll(format.excluded());
+        BundleFixture.assertLookups(translations, bundle);
+        BundleFixture.assertPluralEval(catalog, bundle);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("formats")
+    void looksUpLikeMsgfmt(Format format) throws Exception {
+        ResourceBundle expected = BundleFixture.msgfmt(po, tmp.resolve("msgfmt"));
+        BundleFixture.assertSameAsMsgfmt(bundle(format), expected, format.excluded());
+    }
+
+    private static ResourceBundle bundle(Format format) throws Exception {
+        ResourceBundle bundle = bundles.get(format.name());
+        if (bundle == null) {
+            bundle = format.generator().generate(tmp.resolve(format.name()));
+            bundles.put(format.name(), bundle);
+        }
+        return bundle;
+    }
+
+    private static ResourceBundle compile(List<File> sources, Path dir) throws Exception {
+        ClassLoader loader = BundleFixture.compile(sources, dir.resolve("classes").toFile());
+        return BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+    }
+
+    /**
+     * Output format
+     *
+     * @param excluded keys its bundle leaves out by design
+     */
+    record Format(String name, List<String> excluded, Generator generator) {
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    interface Generator {
+
+        ResourceBundle generate(Path dir) throws Exception;
+    }
+}
@@ -0,0 +1,42 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class GettextUtilsTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void unescapesUnicodeEscapes() throws IOException {
+        assertEquals("Größe ½ 😀", unescape("Gr\\u00f6\\u00dfe \\u00BD \\ud83d\\ude00"));
+    }
+
+    @Test
+    void keepsEscapedBackslashes() throws IOException {
+        assertEquals("\"\\\\u0041\" \\\\A \\n", unescape("\"\\\\u0041\" \\\\\\u0041 \\n"));
+    }
+
+    @Test
+    void keepsInvalidAndIncompleteEscapes() throws IOException {
+        assertEquals("\\uZZZZ \\u00", unescape("\\uZZZZ \\u00"));
+        assertEquals("end \\", unescape("end \\"));
+    }
+
+    private String unescape(String contents) throws IOException {
+        File source = tmp.resolve("Messages_de.java").toFile();
+        File target = tmp.resolve("Messages_de.java.tmp").toFile();
+        Files.writeString(source.toPath(), contents, StandardCharsets.UTF_8);
+        GettextUtils.unescapeUnicode(source, target, "UTF-8");
+        return Files.readString(target.toPath(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,87 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class GitChangesTest {
+
+    @TempDir
+    Path tmp;
+
+    private Path sources;
+
+    @BeforeEach
+    void createRepository() throws Exception {
+        assumeTrue(BundleFixture.isAvailable("git"), "git not installed");
+        sources = Files.createDirectories(tmp.resolve("repo/src/main/java/com/acme"));
+        write("repo/.gitignore", "*.log\n");
+        write("repo/README", "readme");
+        for (String name : List.of("Kept.java", "Changed.java", "Deleted.java", "Renamed.java")) {
+            write("repo/src/main/java/com/acme/" + name, name);
+        }
+        git("init", "-q");
+        git("add", "-A");
+        git("commit", "-q", "-m", "base");
+        git("tag", "base");
+    }
+
+    @Test
+    void findsChangedFilesOfDirectory() throws Exception {
+        write("repo/src/main/java/com/acme/Changed.java", "changed");
+        git("commit", "-q", "-a", "-m", "change");
+        Files.delete(sources.resolve("Deleted.java"));
+        git("mv", "src/main/java/com/acme/Renamed.java", "src/main/java/com/acme/With Spaces.java");
+        write("repo/src/main/java/com/acme/Untracked.java", "untracked");
+        write("repo/src/main/java/com/acme/Ignored.log", "ignored");
+        write("repo/README", "changed outside the directory");
+
+        Set<String> changed = new GitChanges("git", tmp.resolve("repo/src/main/java").toFile(), new SystemStreamLog())
+                .changedSince("base");
+        assertEquals(Set.of("com/acme/Changed.java", "com/acme/Deleted.java", "com/acme/Renamed.java",
+                "com/acme/With Spaces.java", "com/acme/Untracked.java"), changed);
+    }
+
+    @Test
+    void findsNothingWithoutChanges() {
+        assertEquals(Set.of(), new GitChanges("git", sources.toFile(), new SystemStreamLog()).changedSince("base"));
+    }
+
+    @Test
+    void returnsNullForUnknownRef() {
+        assertNull(new GitChanges("git", sources.toFile(), new SystemStreamLog()).changedSince("no-such-ref"));
+    }
+
+    @Test
+    void returnsNullOutsideWorkingTree() throws IOException {
+        Path outside = Files.createDirectories(tmp.resolve("outside"));
+        assertNull(new GitChanges("git", outside.toFile(), new SystemStreamLog()).changedSince("HEAD"));
+    }
+
+    private void write(String path, String contents) throws IOException {
+        Files.writeString(tmp.resolve(path), contents, StandardCharsets.UTF_8);
+    }
+
+    private void git(String... args) throws Exception {
+        List<String> command = new ArrayList<>(List.of("git", "-c", "user.name=test", "-c", "user.email=test@example.com",
+                "-c", "commit.gpgsign=false", "-c", "core.quotepath=false"));
+        command.addAll(List.of(args));
+        Process process = new ProcessBuilder(command).directory(tmp.resolve("repo").toFile())
+                .redirectErrorStream(true).start();
+        String output = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals(0, process.waitFor(), output);
+    }
+}
@@ -0,0 +1,121 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.codehaus.plexus.util.Scanner;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+import org.sonatype.plexus.build.incremental.EmptyScanner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Runs the goals in a build context like the one of an IDE, which reports the changed and deleted
+ * files of whole directories.
+ */
+class IncrementalBuildTest {
+
+    private static final String[] JAVA = {"**/*.java"};
+
+    @TempDir
+    Path tmp;
+
+    private IncrementalContext context;
+    private GettextMojo mojo;
+
+    @BeforeEach
+    void configure() throws IOException {
+        Files.createDirectories(tmp.resolve("src/main/java/com/acme"));
+        Files.createDirectories(tmp.resolve("src/main/po"));
+        Files.writeString(tmp.resolve("src/main/java/com/acme/Hello.java"), "class Hello {}");
+        Files.writeString(tmp.resolve("src/main/java/com/acme/notes.txt"), "");
+
+        context = new IncrementalContext();
+        mojo = new GettextMojo();
+        mojo.sourceDirectory = tmp.resolve("src/main/java").toFile();
+        mojo.poDirectory = tmp.resolve("src/main/po").toFile();
+        mojo.keysFile = "keys.pot";
+        mojo.xgettextCmd = "no-such-xgettext";
+        mojo.buildContext = context;
+    }
+
+    @Test
+    void findsDeltaOfIncludedFiles() {
+        assertFalse(mojo.hasDelta(mojo.sourceDirectory, JAVA, null));
+        context.changed.add(mojo.sourceDirectory);
+        assertTrue(mojo.hasDelta(mojo.sourceDirectory, JAVA, null));
+        assertFalse(mojo.hasDelta(mojo.sourceDirectory, JAVA, new String[]{"com/acme/Hello.java"}));
+        assertFalse(mojo.hasDelta(mojo.sourceDirectory, new String[]{"**/*.po"}, null));
+    }
+
+    @Test
+    void findsDeletedFiles() {
+        context.deleted.add(mojo.sourceDirectory);
+        assertTrue(mojo.hasDelta(mojo.sourceDirectory, JAVA, null));
+    }
+
+    @Test
+    void alwaysFindsDeltaInFullBuilds() {
+        context.incremental = false;
+        assertTrue(mojo.hasDelta(mojo.sourceDirectory, JAVA, null));
+    }
+
+    @Test
+    void refreshesModifiedOutputs() throws IOException {
+        OutputTracker tracker = mojo.newOutputTracker();
+        File file = tmp.resolve("target/Messages.properties").toFile();
+        tracker.write(file, new byte[]{1});
+        tracker.write(file, new byte[]{1});
+        assertEquals(List.of(file), context.refreshed);
+    }
+
+    @Test
+    void keepsKeysFileWithoutSourceChanges() throws Exception {
+        // xgettext does not exist, so running it would fail the goal
+        context.changed.add(mojo.poDirectory);
+        mojo.execute();
+        assertFalse(new File(mojo.poDirectory, mojo.keysFile).exists());
+    }
+
+    /**
+     * Reports all files of the directories marked as changed or deleted
+     */
+    private static final class IncrementalContext extends DefaultBuildContext {
+
+        private final Set<File> changed = new HashSet<>();
+        private final Set<File> deleted = new HashSet<>();
+        private final List<File> refreshed = new ArrayList<>();
+        private boolean incremental = true;
+
+        @Override
+        public boolean isIncremental() {
+            return incremental;
+        }
+
+        @Override
+        public Scanner newScanner(File basedir) {
+            return changed.contains(basedir) ? super.newScanner(basedir) : new EmptyScanner(basedir);
+        }
+
+        @Override
+        public Scanner newDeleteScanner(File basedir) {
+            return deleted.contains(basedir) ? super.newScanner(basedir) : new EmptyScanner(basedir);
+        }
+
+        @Override
+        public void refresh(File file) {
+            refreshed.add(file);
+        }
+    }
+}
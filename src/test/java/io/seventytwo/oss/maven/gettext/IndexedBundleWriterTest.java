@@ -0,0 +1,132 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles a bundle whose IDs are assigned by a keys file differing from the catalog, and checks the
+ * lookups by ID and the generated ID constants.
+ */
+class IndexedBundleWriterTest {
+
+    /**
+     * Neither the header nor the message missing from the keys file has an ID
+     */
+    static final List<String> WITHOUT_ID = List.of("", "BBBB");
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+    private static IndexedBundleWriter writer;
+    private static ClassLoader loader;
+    private static Class<?> ids;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        File po = BundleFixture.writePo(tmp, 500);
+        catalog = PoParser.parse(po);
+        writer = new IndexedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8, writeKeys(po, tmp));
+        StringPool pool = new StringPool();
+        writer.addKeysToPool(pool);
+        writer.addTranslationsToPool(pool, catalog);
+        assertEquals(1, writer.countUnknown(catalog));
+        File sourceRoot = tmp.resolve("sources").toFile();
+        List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+        sources.add(writer.writeIds(pool, sourceRoot));
+        sources.add(writer.writeBase(sourceRoot));
+        sources.add(writer.writeBundle(LOCALE, catalog, pool, sourceRoot));
+        loader = BundleFixture.compile(sources, tmp.resolve("classes").toFile());
+        ids = loader.loadClass("com.acme." + writer.getIdsClassName());
+    }
+
+    @Test
+    void looksUpById() throws Exception {
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Method lookup = bundle.getClass().getMethod("lookup", int.class);
+        Method get = bundle.getClass().getMethod("get", int.class);
+        Method getPlural = bundle.getClass().getMethod("get", int.class, long.class);
+        assertEquals(writer.size(), ids.getField("COUNT").getInt(null));
+
+        Map<String, Object> translations = BundleFixture.translations(catalog);
+        translations.keySet().removeAll(WITHOUT_ID);
+        for (Map.Entry<String, Object> entry : translations.entrySet()) {
+            int id = idOf(entry.getKey());
+            assertTrue(id >= 0, entry.getKey());
+            if (entry.getValue() instanceof String[] forms) {
+                assertArrayEquals(forms, (String[]) lookup.invoke(bundle, id), entry.getKey());
+                assertEquals(forms[0], get.invoke(bundle, id));
+                for (long n = 0; n < 30; n++) {
+                    assertEquals(forms[(int) catalog.getPluralForms().evaluate(n)], getPlural.invoke(bundle, id, n));
+                }
+            } else {
+                assertEquals(entry.getValue(), lookup.invoke(bundle, id), entry.getKey());
+                assertEquals(entry.getValue(), get.invoke(bundle, id));
+                assertEquals(entry.getValue(), getPlural.invoke(bundle, id, 5L));
+            }
+        }
+
+        // untranslated messages fall back to their msgids
+        int untranslated = idOf("Untranslated");
+        assertNull(lookup.invoke(bundle, untranslated));
+        assertEquals("Untranslated", get.invoke(bundle, untranslated));
+        int onlyInKeys = idOf("Only in keys");
+        assertNull(lookup.invoke(bundle, onlyInKeys));
+        assertNull(BundleFixture.lookup(bundle, "Only in keys"));
+        assertEquals("Only in keys", getPlural.invoke(bundle, onlyInKeys, 1L));
+        assertEquals("Only in keys plural", getPlural.invoke(bundle, onlyInKeys, 2L));
+        for (String key : WITHOUT_ID) {
+            assertEquals(-1, idOf(key), key);
+        }
+    }
+
+    @Test
+    void namesIdConstants() throws Exception {
+        assertEquals(idOf("menu\u0004File"), ids.getField("MENU__FILE").getInt(null));
+        assertEquals(idOf("disk\u0004One file"), ids.getField("DISK__ONE_FILE").getInt(null));
+        assertEquals(idOf("Message 0042"), ids.getField("MESSAGE_0042").getInt(null));
+        assertEquals("File", ids.getMethod("msgid", int.class).invoke(null, idOf("menu\u0004File")));
+        assertEquals("{0} files", ids.getMethod("msgidPlural", int.class).invoke(null, idOf("disk\u0004One file")));
+    }
+
+    /**
+     * Writes the keys file of the catalog, with a message in place of "BBBB" that is missing from it
+     */
+    static Catalog writeKeys(File po, Path dir) throws IOException {
+        File pot = dir.resolve("keys.pot").toFile();
+        Files.createDirectories(dir);
+        Files.writeString(pot.toPath(), Files.readString(po.toPath(), StandardCharsets.UTF_8).replace("""
+                msgid "BBBB"
+                msgstr "Kolizja administracji"
+                """, """
+                msgid "Only in keys"
+                msgid_plural "Only in keys plural"
+                msgstr[0] ""
+                msgstr[1] ""
+                """), StandardCharsets.UTF_8);
+        return PoParser.parse(pot);
+    }
+
+    private static int idOf(String key) throws Exception {
+        return (int) ids.getMethod("idOf", String.class).invoke(null, key);
+    }
+}
@@ -0,0 +1,114 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.management.ObjectName;
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles an instrumented bundle and checks the lookup statistics, with and without counting.
+ */
+class InstrumentedBundleTest {
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+    private static File classRoot;
+    private static String statsClassName;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        catalog = PoParser.parse(BundleFixture.writePo(tmp, 0));
+        JavaBundleWriter writer = new JavaBundleWriter(BUNDLE, false, StandardCharsets.UTF_8);
+        writer.setInstrumented(true);
+        StringPool pool = new StringPool();
+        JavaBundleWriter.addToPool(pool, catalog);
+        File sourceRoot = tmp.resolve("sources").toFile();
+        List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+        sources.add(writer.writeStats(sourceRoot));
+        sources.add(writer.writeBundle(LOCALE, catalog, pool, sourceRoot));
+        classRoot = tmp.resolve("classes").toFile();
+        BundleFixture.compile(sources, classRoot);
+        statsClassName = "com.acme." + writer.getStatsClassName();
+    }
+
+    @Test
+    void countsLookups() throws Exception {
+        ClassLoader loader = newLoader();
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Class<?> stats = loader.loadClass(statsClassName);
+        // the bundle behaves like an uninstrumented one
+        BundleFixture.assertLookups(BundleFixture.translations(catalog), bundle);
+        invoke(stats, "reset");
+
+        bundle.getString("menu\u0004File");
+        bundle.getString("menu\u0004File");
+        BundleFixture.lookup(bundle, "No such message");
+        assertEquals(3L, invoke(stats, "lookups"));
+        assertEquals(1L, invoke(stats, "misses"));
+        int keys = BundleFixture.translations(catalog).size() - 1;
+        assertEquals(keys - 1, invoke(stats, "unusedKeys"));
+
+        String[] dump = ((String) invoke(stats, "dump", 1)).split("\n");
+        assertEquals("locale\tkey\tlookups\tmisses", dump[0]);
+        assertEquals(LOCALE + "\tmenu\\u0004File\t2\t0", dump[1]);
+        assertEquals(1 + 1 + keys - 1, dump.length);
+        assertTrue(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName("io.seventytwo.gettext:type=BundleStatistics,bundle=" + BUNDLE)));
+    }
+
+    @Test
+    void countsNothingIfDisabled() throws Exception {
+        ClassLoader loader;
+        String previous = System.setProperty("gettext.instrumentation", "false");
+        try {
+            loader = newLoader();
+            loader.loadClass(statsClassName).getField("ENABLED").getBoolean(null);
+        } finally {
+            if (previous == null) {
+                System.clearProperty("gettext.instrumentation");
+            } else {
+                System.setProperty("gettext.instrumentation", previous);
+            }
+        }
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Class<?> stats = loader.loadClass(statsClassName);
+        assertFalse(stats.getField("ENABLED").getBoolean(null));
+        BundleFixture.assertLookups(BundleFixture.translations(catalog), bundle);
+        assertEquals(0L, invoke(stats, "lookups"));
+    }
+
+    /**
+     * Loads the classes again, so each test has statistics of its own
+     */
+    private static ClassLoader newLoader() throws Exception {
+        return new URLClassLoader(new URL[]{classRoot.toURI().toURL()}, InstrumentedBundleTest.class.getClassLoader());
+    }
+
+    private static Object invoke(Class<?> stats, String name, Object... args) throws Exception {
+        for (Method method : stats.getMethods()) {
+            if (method.getName().equals(name) && method.getParameterCount() == args.length) {
+                return method.invoke(null, args);
+            }
+        }
+        throw new NoSuchMethodException(name);
+    }
+}
@@ -0,0 +1,79 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+
+/**
+ * Compiles the bundles of two locales sharing a string pool and checks the lookups of both.
+ */
+class JavaBundleWriterTest {
+
+    private static final String CS = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=3; plural=(n==1) ? 0 : (n>=2 && n<=4) ? 1 : 2;\\n"
+
+            msgctxt "menu"
+            msgid "File"
+            msgstr "Soubor"
+
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Jeden soubor"
+            msgstr[1] "{0} soubory"
+            msgstr[2] "{0} souborů"
+
+            msgid "AaAa"
+            msgstr "Kolizja aplikacji"
+            """;
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+    private static Catalog cs;
+    private static ClassLoader loader;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        // the pool is split into several classes and fill methods
+        File po = BundleFixture.writePo(tmp, 9000);
+        catalog = PoParser.parse(po);
+        File csPo = tmp.resolve("cs.po").toFile();
+        Files.writeString(csPo.toPath(), CS, StandardCharsets.UTF_8);
+        cs = PoParser.parse(csPo);
+
+        JavaBundleWriter writer = new JavaBundleWriter(BUNDLE, true, StandardCharsets.UTF_8);
+        StringPool pool = new StringPool();
+        JavaBundleWriter.addToPool(pool, catalog);
+        JavaBundleWriter.addToPool(pool, cs);
+        File sourceRoot = tmp.resolve("sources").toFile();
+        List<File> sources = new ArrayList<>(writer.writePool(pool, sourceRoot));
+        sources.add(writer.writeBundle(LOCALE, catalog, pool, sourceRoot));
+        sources.add(writer.writeBundle("cs", cs, pool, sourceRoot));
+        loader = BundleFixture.compile(sources, tmp.resolve("classes").toFile());
+    }
+
+    @Test
+    void sharesPoolBetweenLocales() throws Exception {
+        for (Map.Entry<String, Catalog> entry : Map.of(LOCALE, catalog, "cs", cs).entrySet()) {
+            ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + entry.getKey());
+            BundleFixture.assertLookups(BundleFixture.translations(entry.getValue()), bundle);
+            BundleFixture.assertPluralEval(entry.getValue(), bundle);
+        }
+    }
+}
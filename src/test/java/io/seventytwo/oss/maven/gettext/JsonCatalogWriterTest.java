@@ -0,0 +1,263 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.zip.GZIPInputStream;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Parses the written JSON catalogs, whole and split by package, and checks their metadata and the
+ * packages of their messages.
+ */
+class JsonCatalogWriterTest {
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+
+    @BeforeAll
+    static void parse() throws Exception {
+        File po = BundleFixture.writePo(tmp, 200);
+        catalog = PoParser.parse(po);
+    }
+
+    @Test
+    void writesCatalog() throws Exception {
+        File file = tmp.resolve("whole/Messages_pl.json").toFile();
+        Files.createDirectories(file.getParentFile().toPath());
+        List<File> written = new JsonCatalogWriter(new OutputTracker(), null, true).write(catalog, LOCALE, file);
+        assertEquals(List.of(file), written);
+
+        byte[] json = Files.readAllBytes(file.toPath());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(new File(file.getPath() + ".gz").toPath()))) {
+            assertArrayEquals(json, in.readAllBytes());
+        }
+        assertMetadata(read(file));
+    }
+
+    @Test
+    void splitsByPackage() throws Exception {
+        File file = tmp.resolve("split/Messages_pl.json").toFile();
+        Files.createDirectories(file.getParentFile().toPath());
+        File stale = JsonCatalogWriter.getFile(file, "com.acme.removed");
+        Files.writeString(stale.toPath(), "{}");
+        MessagePackages packages = new MessagePackages(catalog, 3);
+        List<File> written = new JsonCatalogWriter(new OutputTracker(), packages, false).write(catalog, LOCALE, file);
+        assertFalse(stale.exists());
+
+        Set<File> files = new TreeSet<>(written);
+        assertEquals(new TreeSet<>(List.of(file, JsonCatalogWriter.getFile(file, "com.acme.admin"),
+                JsonCatalogWriter.getFile(file, "com.acme.app"), JsonCatalogWriter.getFile(file, "com.acme.generated"))), files);
+        Map<String, Object> merged = new LinkedHashMap<>();
+        for (String packageName : List.of("", "com.acme.admin", "com.acme.app", "com.acme.generated")) {
+            Map<String, Object> contents = read(JsonCatalogWriter.getFile(file, packageName));
+            assertMetadata(contents);
+            contents.remove("");
+            for (String key : contents.keySet()) {
+                assertEquals(packageName, packages.get(key), key);
+                assertNull(merged.put(key, contents.get(key)), key);
+            }
+        }
+        assertLookups(withoutHeader(BundleFixture.translations(catalog)), merged);
+    }
+
+    /**
+     * Asserts the metadata, evaluating the plural rule with the operators JavaScript and C share
+     */
+    private static void assertMetadata(Map<String, Object> contents) {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> metadata = (Map<String, Object>) contents.get("");
+        assertEquals(LOCALE, metadata.get("language"));
+        assertEquals(3L, metadata.get("nplurals"));
+        PluralForms forms = pluralForms(metadata);
+        for (long n = 0; n <= 1000; n++) {
+            assertEquals(catalog.getPluralForms().evaluate(n), forms.evaluate(n), "n = " + n);
+        }
+    }
+
+    private static PluralForms pluralForms(Map<String, Object> metadata) {
+        String plural = ((String) metadata.get("plural")).replace("===", "==").replace("!==", "!=").replace("Math.trunc(", "(");
+        return PluralForms.parse("nplurals=%d; plural=%s;".formatted((Long) metadata.get("nplurals"), plural));
+    }
+
+    private static void assertLookups(Map<String, Object> expected, Map<String, Object> contents) {
+        Map<String, Object> actual = new LinkedHashMap<>(contents);
+        actual.remove("");
+        assertEquals(expected.keySet(), actual.keySet());
+        for (Map.Entry<String, Object> entry : expected.entrySet()) {
+            Object value = entry.getValue() instanceof String[] forms ? Arrays.asList(forms) : entry.getValue();
+            assertEquals(value, actual.get(entry.getKey()), entry.getKey());
+        }
+        for (String key : BundleFixture.MISSING) {
+            assertFalse(actual.containsKey(key), key);
+        }
+    }
+
+    private static Map<String, Object> withoutHeader(Map<String, Object> translations) {
+        translations.remove("");
+        return translations;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> read(File file) throws Exception {
+        Json json = new Json(Files.readString(file.toPath(), StandardCharsets.UTF_8));
+        Object value = json.value();
+        json.skipWhitespace();
+        assertEquals(json.s.length(), json.i, "trailing characters");
+        assertTrue(value instanceof Map, file.getName());
+        return (Map<String, Object>) value;
+    }
+
+    /**
+     * Presents a JSON catalog with the lookup and plural rule methods of the generated bundles
+     */
+    static final class JsonBundle extends ResourceBundle {
+
+        private final Map<String, Object> contents;
+        private final PluralForms pluralForms;
+
+        @SuppressWarnings("unchecked")
+        JsonBundle(File file) throws Exception {
+            contents = read(file);
+            pluralForms = pluralForms((Map<String, Object>) contents.remove(""));
+        }
+
+        public Object lookup(String key) {
+            Object value = contents.get(key);
+            return value instanceof List<?> forms ? forms.toArray(new String[0]) : value;
+        }
+
+        public long pluralEval(long n) {
+            return pluralForms.evaluate(n);
+        }
+
+        @Override
+        protected Object handleGetObject(String key) {
+            Object value = lookup(key);
+            return value instanceof String[] forms ? forms[0] : value;
+        }
+
+        @Override
+        public Enumeration<String> getKeys() {
+            return Collections.enumeration(contents.keySet());
+        }
+    }
+
+    /**
+     * Parses the JSON subset the writer emits: objects, arrays, strings and integers
+     */
+    private static final class Json {
+
+        private final String s;
+        private int i;
+
+        Json(String s) {
+            this.s = s;
+        }
+
+        Object value() {
+            skipWhitespace();
+            char c = s.charAt(i);
+            if (c == '{') {
+                Map<String, Object> object = new LinkedHashMap<>();
+                i++;
+                while (!consume('}')) {
+                    if (!object.isEmpty()) {
+                        expect(',');
+                    }
+                    skipWhitespace();
+                    String key = string();
+                    expect(':');
+                    assertNull(object.put(key, value()), "duplicate key " + key);
+                }
+                return object;
+            }
+            if (c == '[') {
+                List<Object> array = new ArrayList<>();
+                i++;
+                while (!consume(']')) {
+                    if (!array.isEmpty()) {
+                        expect(',');
+                    }
+                    array.add(value());
+                }
+                return array;
+            }
+            if (c == '"') {
+                return string();
+            }
+            int start = i;
+            while (i < s.length() && (Character.isDigit(s.charAt(i)) || s.charAt(i) == '-')) {
+                i++;
+            }
+            return Long.parseLong(s.substring(start, i));
+        }
+
+        private String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            for (char c = s.charAt(i++); c != '"'; c = s.charAt(i++)) {
+                if (c == '\\') {
+                    c = s.charAt(i++);
+                    switch (c) {
+                        case 'n' -> sb.append('\n');
+                        case 'r' -> sb.append('\r');
+                        case 't' -> sb.append('\t');
+                        case 'u' -> {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                            i += 4;
+                        }
+                        default -> sb.append(c);
+                    }
+                } else {
+                    assertTrue(c >= 0x20, "unescaped control character");
+                    sb.append(c);
+                }
+            }
+            return sb.toString();
+        }
+
+        private boolean consume(char c) {
+            skipWhitespace();
+            if (s.charAt(i) == c) {
+                i++;
+                return true;
+            }
+            return false;
+        }
+
+        private void expect(char c) {
+            assertTrue(consume(c), "expected " + c + " at " + i);
+        }
+
+        void skipWhitespace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) {
+                i++;
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class KeysPatcherTest {
+
+    private static final File FILE = new File("keys.pot");
+
+    private static final String HEADER = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=CHARSET\\n"
+
+            """;
+
+    private static final String KEYS = HEADER + """
+            #: com/acme/A.java:3 com/acme/B.java:4
+            msgid "Both"
+            msgstr ""
+
+            #: com/acme/A.java:5
+            msgid "Only A"
+            msgstr ""
+
+            #: com/acme/B.java:9
+            msgid "Only B"
+            msgstr ""
+            """;
+
+    @Test
+    void replacesReferencesOfChangedSources() throws IOException {
+        KeysPatcher.Result result = patch(KEYS, HEADER + """
+                #: com/acme/A.java:10
+                msgid "Both"
+                msgstr ""
+
+                #: com/acme/A.java:12
+                msgid "New"
+                msgstr ""
+                """, true);
+        assertEquals(1, result.added());
+        assertEquals(1, result.removed());
+        assertEquals(List.of("Both", "New", "Only B"), msgids(result.catalog()));
+        Message both = result.catalog().get(result.catalog().indexOf("Both"));
+        assertEquals(List.of("com/acme/A.java:10", "com/acme/B.java:4"), both.getReferences());
+    }
+
+    @Test
+    void sortsLikeXgettext() throws IOException {
+        String extracted = HEADER + """
+                #: com/acme/A.java:1
+                msgid "Zebra"
+                msgstr ""
+                """;
+        assertEquals(List.of("Zebra", "Both", "Only B"), msgids(patch(KEYS, extracted, true).catalog()));
+        assertEquals(List.of("Both", "Only B", "Zebra"), msgids(patch(KEYS, extracted, false).catalog()));
+    }
+
+    @Test
+    void declaresUtf8ForNonAsciiMessages() throws IOException {
+        KeysPatcher.Result result = patch(KEYS, HEADER + """
+                #: com/acme/A.java:1
+                msgid "Größe"
+                msgstr ""
+                """, true);
+        assertEquals("text/plain; charset=UTF-8", result.catalog().getHeaderField("Content-Type"));
+    }
+
+    @Test
+    void takesPluralFormFromChangedSource() throws IOException {
+        KeysPatcher.Result result = patch(KEYS, HEADER + """
+                #: com/acme/A.java:3
+                #, java-format
+                msgid "Only A"
+                msgid_plural "{0} only A"
+                msgstr[0] ""
+                msgstr[1] ""
+                """, true);
+        Message message = result.catalog().get(result.catalog().indexOf("Only A"));
+        assertEquals("{0} only A", message.getMsgidPlural());
+        assertEquals(List.of("java-format"), message.getFlags());
+        assertEquals(0, result.added());
+        assertEquals(0, result.removed());
+    }
+
+    @Test
+    void keepsAttributesYieldedAgainByChangedSource() throws IOException {
+        String keys = HEADER + """
+                #. TRANSLATORS: shared
+                #: com/acme/A.java:3 com/acme/B.java:4
+                #, java-format
+                msgid "Shared {0}"
+                msgstr ""
+                """;
+        KeysPatcher.Result result = patch(keys, HEADER + """
+                #. TRANSLATORS: shared
+                #: com/acme/A.java:7
+                #, java-format
+                msgid "Shared {0}"
+                msgstr ""
+                """, true);
+        assertNotNull(result);
+        Message message = result.catalog().get(result.catalog().indexOf("Shared {0}"));
+        assertEquals(List.of("com/acme/A.java:7", "com/acme/B.java:4"), message.getReferences());
+        assertEquals(List.of("TRANSLATORS: shared"), message.getExtractedComments());
+        assertEquals(List.of("java-format"), message.getFlags());
+    }
+
+    @Test
+    void requiresFullExtractionForAmbiguousAttributes() throws IOException {
+        String keys = HEADER + """
+                #. TRANSLATORS: shared
+                #: com/acme/A.java:3 com/acme/B.java:4
+                #, java-format
+                msgid "Shared {0}"
+                msgid_plural "Shared {0} plural"
+                msgstr[0] ""
+                msgstr[1] ""
+                """;
+        // the changed source dropped the comment, which may have stemmed from either source
+        assertNull(patch(keys, HEADER + """
+                #: com/acme/A.java:3
+                #, java-format
+                msgid "Shared {0}"
+                msgid_plural "Shared {0} plural"
+                msgstr[0] ""
+                msgstr[1] ""
+                """, true));
+        // the changed source no longer uses the message
+        assertNull(patch(keys, HEADER, true));
+        // the plural form may have stemmed from either source
+        assertNull(patch(keys, HEADER + """
+                #. TRANSLATORS: shared
+                #: com/acme/A.java:3
+                #, java-format
+                msgid "Shared {0}"
+                msgstr ""
+                """, true));
+        // nothing to attribute if only the unchanged source used the message
+        assertNotNull(new KeysPatcher(Set.of("com/acme/C.java"), true).patch(parse(keys), parse(HEADER)));
+    }
+
+    @Test
+    void findsFileOfReference() {
+        assertEquals("com/acme/A.java", KeysPatcher.fileOf("com/acme/A.java:12"));
+        assertEquals("com/acme/A.java", KeysPatcher.fileOf("com/acme/A.java"));
+        assertEquals("C:/src/A.java", KeysPatcher.fileOf("C:/src/A.java"));
+        assertEquals("A.java:", KeysPatcher.fileOf("A.java:"));
+    }
+
+    private static KeysPatcher.Result patch(String keys, String extracted, boolean sortByFile) throws IOException {
+        return new KeysPatcher(Set.of("com/acme/A.java"), sortByFile).patch(parse(keys), parse(extracted));
+    }
+
+    private static Catalog parse(String po) throws IOException {
+        return PoParser.parse(FILE, po.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static List<String> msgids(Catalog catalog) {
+        List<String> msgids = new ArrayList<>();
+        for (Message message : catalog) {
+            if (!message.isHeader()) {
+                msgids.add(message.getMsgid());
+            }
+        }
+        return msgids;
+    }
+}
@@ -0,0 +1,116 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LanguagePackWriterTest {
+
+    private static final List<String> LOCALES = List.of("de", "de_CH", "fr");
+
+    @TempDir
+    Path tmp;
+
+    private final LanguagePackWriter writer = new LanguagePackWriter(new OutputTracker(), "com.acme.Messages", true);
+
+    @Test
+    void assignsFilesToLocales() {
+        assertEquals("de", locale("com/acme/Messages_de.class"));
+        assertEquals("de", locale("com/acme/Messages_de$Segment0.class"));
+        assertEquals("de", locale("com/acme/Messages_de.com.acme.json.gz"));
+        assertEquals("de_CH", locale("com/acme/Messages_de_CH.class"));
+        assertEquals("de_CH", locale("com/acme/Messages_de_CH.gtz"));
+        // regardless of the order of the locales
+        assertEquals("de_CH", writer.getLocale(Path.of("com/acme/Messages_de_CH.class"), List.of("de_CH", "de")));
+        assertEquals("de_CH", writer.getLocale(Path.of("com/acme/Messages_de_CH.class"), List.of("de", "de_CH")));
+
+        assertNull(locale("com/acme/Messages_Pool.class"));
+        assertNull(locale("com/acme/Messages_Stats.class"));
+        assertNull(locale("com/acme/Messages_deu.class"));
+        assertNull(locale("com/acme/Messages_de"));
+        assertNull(locale("com/acme/Other_de.class"));
+        assertNull(locale("com/acme/sub/Messages_de.class"));
+        assertNull(locale("Messages_de.class"));
+    }
+
+    @Test
+    void splitsDirectoryByLocale() throws IOException {
+        File classes = tmp.resolve("classes").toFile();
+        write(classes, "com/acme/Messages_de.class", "com/acme/Messages_de_CH.class", "com/acme/Messages_Pool.class",
+                "com/acme/Main.class");
+        Map<String, List<Path>> files = writer.split(classes, LOCALES);
+        assertEquals(List.of(Path.of("com/acme/Main.class"), Path.of("com/acme/Messages_Pool.class")), files.get(""));
+        assertEquals(List.of(Path.of("com/acme/Messages_de.class")), files.get("de"));
+        assertEquals(List.of(Path.of("com/acme/Messages_de_CH.class")), files.get("de_CH"));
+        assertEquals(List.of(), files.get("fr"));
+    }
+
+    @Test
+    void copiesAndDeletesStaleFiles() throws IOException {
+        File from = tmp.resolve("classes").toFile();
+        File to = tmp.resolve("packs/de").toFile();
+        write(from, "com/acme/Messages_de.class");
+        write(to, "com/acme/Messages_de$Segment3.class");
+        assertEquals(1, writer.copy(from, List.of(Path.of("com/acme/Messages_de.class")), to, true));
+        assertTrue(new File(to, "com/acme/Messages_de.class").isFile());
+        assertFalse(new File(to, "com/acme/Messages_de$Segment3.class").exists());
+    }
+
+    @Test
+    void deletesFilesOfLocales() throws IOException {
+        File classes = tmp.resolve("classes").toFile();
+        write(classes, "com/acme/Messages_de.class", "com/acme/Messages_de_CH.class", "com/acme/Messages_Pool.class");
+        assertEquals(1, writer.delete(classes, List.of("de")));
+        assertTrue(new File(classes, "com/acme/Messages_de_CH.class").exists());
+        assertTrue(new File(classes, "com/acme/Messages_Pool.class").exists());
+    }
+
+    @Test
+    void writesReproducibleJar() throws Exception {
+        File pack = tmp.resolve("packs/de").toFile();
+        write(pack, "com/acme/Messages_de.class", "com/acme/Messages_de$Segment0.class");
+        File jar = tmp.resolve("messages-de.jar").toFile();
+        assertTrue(writer.writeJar(pack, jar));
+        byte[] first = Files.readAllBytes(jar.toPath());
+        Files.setLastModifiedTime(pack.toPath().resolve("com/acme/Messages_de.class"), Files.getLastModifiedTime(jar.toPath()));
+        assertFalse(writer.writeJar(pack, jar));
+        assertArrayEquals(first, Files.readAllBytes(jar.toPath()));
+
+        try (JarFile file = new JarFile(jar)) {
+            List<String> names = new ArrayList<>();
+            for (ZipEntry entry : Collections.list(file.entries())) {
+                names.add(entry.getName());
+            }
+            assertEquals(List.of("META-INF/MANIFEST.MF", "com/acme/Messages_de$Segment0.class", "com/acme/Messages_de.class"), names);
+            assertEquals("gettext-maven-plugin", file.getManifest().getMainAttributes().getValue("Created-By"));
+        }
+    }
+
+    private String locale(String path) {
+        return writer.getLocale(Path.of(path), LOCALES);
+    }
+
+    private static void write(File directory, String... paths) throws IOException {
+        for (String path : paths) {
+            Path file = directory.toPath().resolve(path);
+            Files.createDirectories(file.getParent());
+            Files.writeString(file, path);
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.ListResourceBundle;
+import java.util.Locale;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Compiles the generated formatter and compares it with MessageFormat.
+ */
+class MessageFormatWriterTest {
+
+    private static final List<String> PATTERNS = List.of(
+            "{0}",
+            "{0,number}",
+            "{0,number,integer}",
+            "{0,number,percent}",
+            "{0,number,currency}",
+            "{0} and {1,number} of {2}",
+            "'{'quoted'}' it''s {0}",
+            "'{0}' {1}",
+            "{0,date,short}");
+
+    private static final List<Object[]> ARGS = List.of(
+            new Object[]{"text", 1234.5, 42},
+            new Object[]{1234.5, 42L, "text"},
+            new Object[]{0.25, -3, new Date(0)},
+            new Object[]{new Date(0), null, null},
+            new Object[]{null, null, null},
+            new Object[]{null},
+            new Object[]{7},
+            new Object[0]);
+
+    @TempDir
+    static Path tmp;
+
+    private static Method format;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        StringBuilder po = new StringBuilder("""
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+                "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+                """);
+        for (String pattern : PATTERNS) {
+            po.append("#, java-format\nmsgid \"").append(pattern).append("\"\nmsgstr \"").append(pattern).append("\"\n\n");
+        }
+        File poFile = tmp.resolve("de.po").toFile();
+        Files.writeString(poFile.toPath(), po, StandardCharsets.UTF_8);
+        Catalog catalog = PoParser.parse(poFile);
+
+        List<String> errors = new ArrayList<>();
+        Map<String, List<MessagePattern>> patterns = MessageFormatWriter.parse(catalog, "de", errors);
+        assertTrue(errors.isEmpty(), errors.toString());
+        assertEquals(PATTERNS.size(), patterns.size());
+
+        MessageFormatWriter writer = new MessageFormatWriter("com.acme.Messages", false, StandardCharsets.UTF_8);
+        File sourceRoot = tmp.resolve("sources").toFile();
+        File classRoot = tmp.resolve("classes").toFile();
+        File source = writer.write(Map.of("de", patterns), Map.of("de", catalog), sourceRoot);
+        JavaSourceCompiler.compile(List.of(source), classRoot, StandardCharsets.UTF_8, "8", new SystemStreamLog());
+
+        ClassLoader loader = new URLClassLoader(new URL[]{classRoot.toURI().toURL()}, MessageFormatWriterTest.class.getClassLoader());
+        format = loader.loadClass("com.acme.Messages_Formats").getMethod("format", ResourceBundle.class, String.class, Object[].class);
+    }
+
+    @Test
+    void formatsLikeMessageFormat() throws Exception {
+        for (String pattern : PATTERNS) {
+            for (Object[] args : ARGS) {
+                assertEquals(messageFormat(pattern, args), format(pattern, args), pattern + " " + Arrays.toString(args));
+            }
+        }
+    }
+
+    @Test
+    void formatsWithoutArguments() throws Exception {
+        for (String pattern : PATTERNS) {
+            assertEquals(messageFormat(pattern, null), format(pattern, (Object[]) null), pattern);
+        }
+    }
+
+    @Test
+    void formatsMissingMessagesWithMessageFormat() throws Exception {
+        assertEquals("unknown 1.234,5", format("unknown {0,number}", 1234.5));
+    }
+
+    /**
+     * Returns the formatted message or the class of the exception, e.g. if an argument does not match
+     * the format type
+     */
+    private static String messageFormat(String pattern, Object[] args) {
+        try {
+            return new MessageFormat(pattern, Locale.GERMAN).format(args);
+        } catch (RuntimeException e) {
+            return e.getClass().getName();
+        }
+    }
+
+    private static String format(String key, Object... args) throws Exception {
+        try {
+            return (String) format.invoke(null, new Bundle(), key, args);
+        } catch (InvocationTargetException e) {
+            return e.getCause().getClass().getName();
+        }
+    }
+
+    private static class Bundle extends ListResourceBundle {
+        @Override
+        protected Object[][] getContents() {
+            return new Object[0][];
+        }
+
+        @Override
+        public Locale getLocale() {
+            return Locale.GERMAN;
+        }
+    }
+}
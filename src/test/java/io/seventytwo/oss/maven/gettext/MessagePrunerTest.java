@@ -0,0 +1,188 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Prunes a catalog with the classes of a small compiled fixture.
+ */
+class MessagePrunerTest {
+
+    private static final Map<String, String> SOURCES = Map.of(
+            "com/acme/Hello.java", """
+                    package com.acme;
+
+                    class Hello {
+                        String title;
+
+                        String hello() {
+                            return tr("Hello") + trc("menu", "File");
+                        }
+
+                        static String tr(String s) {
+                            return s;
+                        }
+
+                        static String trc(String context, String s) {
+                            return s;
+                        }
+                    }
+                    """,
+            "com/acme/Other.java", """
+                    package com.acme;
+
+                    class Other {
+                        String orphan() {
+                            return "Orphan";
+                        }
+                    }
+                    """,
+            "com/acme/Fields.java", """
+                    package com.acme;
+
+                    class Fields {
+                        String tr = "Field";
+                    }
+                    """);
+
+    private static final String PO = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+
+            #: com/acme/Hello.java:7
+            msgid "Hello"
+            msgstr "Hallo"
+
+            #: com/acme/Hello.java:7
+            msgctxt "menu"
+            msgid "File"
+            msgstr "Datei"
+
+            #: com/acme/Hello.java:4
+            msgid "title"
+            msgstr "Titel"
+
+            #: com/acme/Other.java:5
+            msgid "Orphan"
+            msgstr "Waise"
+
+            #: com/acme/Fields.java:4
+            msgid "Field"
+            msgstr "Feld"
+
+            msgid "Unreferenced"
+            msgstr "Nicht referenziert"
+
+            #: templates/page.html:2
+            msgid "From a template"
+            msgstr "Aus einer Vorlage"
+
+            #: com/acme/Hello.java:7 com/acme/Generated.java
+            msgid "From a generated source"
+            msgstr "Aus einer generierten Quelle"
+
+            #~ msgid "Obsolete"
+            #~ msgstr "Veraltet"
+            """;
+
+    @TempDir
+    static Path tmp;
+
+    private static File classes;
+    private static Catalog catalog;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        File sourceRoot = tmp.resolve("sources").toFile();
+        classes = tmp.resolve("classes").toFile();
+        List<File> sources = new ArrayList<>();
+        for (Map.Entry<String, String> entry : SOURCES.entrySet()) {
+            File source = new File(sourceRoot, entry.getKey());
+            Files.createDirectories(source.getParentFile().toPath());
+            Files.writeString(source.toPath(), entry.getValue(), StandardCharsets.UTF_8);
+            sources.add(source);
+        }
+        Files.createDirectories(classes.toPath());
+        JavaSourceCompiler.compile(sources, classes, StandardCharsets.UTF_8, "8", new SystemStreamLog());
+
+        File po = tmp.resolve("de.po").toFile();
+        Files.writeString(po.toPath(), PO, StandardCharsets.UTF_8);
+        catalog = PoParser.parse(po);
+    }
+
+    @Test
+    void parsesKeywords() {
+        assertEquals(Set.of("trc", "trnc", "tr", "marktr", "trn"), MessagePruner.parseKeywords("-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k"));
+        assertEquals(Set.of("tr"), MessagePruner.parseKeywords("--keyword=I18n.tr:1"));
+    }
+
+    @Test
+    void prunesWithClasses() throws Exception {
+        MessagePruner pruner = new MessagePruner();
+        // Fields only has a field named like a keyword
+        assertEquals(1, pruner.addClasses(classes, Set.of("tr", "trc")));
+        assertEquals(List.of("", "Hello", "menu\u0004File", "From a template", "From a generated source"), keys(pruner.prune(catalog)));
+    }
+
+    @Test
+    void prunesWithKeysFile() throws Exception {
+        File pot = tmp.resolve("keys.pot").toFile();
+        Files.writeString(pot.toPath(), """
+                msgid ""
+                msgstr ""
+
+                msgid "Hello"
+                msgstr ""
+
+                msgid "Unreferenced"
+                msgstr ""
+
+                #~ msgid "Obsolete"
+                #~ msgstr ""
+                """, StandardCharsets.UTF_8);
+        MessagePruner pruner = new MessagePruner();
+        pruner.addKeysFile(PoParser.parse(pot));
+        assertEquals(List.of("", "Hello", "Unreferenced"), keys(pruner.prune(catalog)));
+    }
+
+    @Test
+    void prunesWithKeysFileAndClasses() throws Exception {
+        File pot = tmp.resolve("keys.pot").toFile();
+        Files.writeString(pot.toPath(), """
+                msgid "Hello"
+                msgstr ""
+
+                msgid "From a template"
+                msgstr ""
+
+                msgid "Orphan"
+                msgstr ""
+                """, StandardCharsets.UTF_8);
+        MessagePruner pruner = new MessagePruner();
+        pruner.addKeysFile(PoParser.parse(pot));
+        pruner.addClasses(classes, Set.of("tr", "trc"));
+        assertEquals(List.of("", "Hello", "From a template"), keys(pruner.prune(catalog)));
+    }
+
+    private static List<String> keys(Catalog catalog) {
+        List<String> keys = new ArrayList<>();
+        for (Message message : catalog) {
+            keys.add(message.getKey());
+        }
+        return keys;
+    }
+}
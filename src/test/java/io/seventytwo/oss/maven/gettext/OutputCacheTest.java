@@ -0,0 +1,118 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputCacheTest {
+
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void separatesKeyValues() {
+        assertNotEquals(OutputCache.key().add("ab").add("c").build(), OutputCache.key().add("a").add("bc").build());
+        assertNotEquals(OutputCache.key().add(null).build(), OutputCache.key().add("").build());
+        assertEquals(OutputCache.key().add("a").build(), OutputCache.key().add("a").build());
+    }
+
+    @Test
+    void restoresStoredFiles() throws IOException {
+        OutputCache cache = new OutputCache(tmp.resolve("cache").toFile(), Long.MAX_VALUE);
+        String key = OutputCache.key().addContent(write("de.po", "de")).build();
+        File target = tmp.resolve("restored.po").toFile();
+        assertFalse(cache.restoreFile(key, target));
+
+        cache.storeFile(key, write("de.po", "de"));
+        // an existing entry is kept
+        cache.storeFile(key, write("other.po", "other"));
+        assertTrue(cache.restoreFile(key, target));
+        assertEquals("de", Files.readString(target.toPath()));
+
+        Path sources = Files.createDirectories(tmp.resolve("sources/com/acme"));
+        Files.writeString(sources.resolve("Messages_de.java"), "class Messages_de {}");
+        cache.storeDirectory("sources", tmp.resolve("sources").toFile());
+        assertTrue(cache.restoreDirectory("sources", tmp.resolve("restored").toFile()));
+        assertEquals("class Messages_de {}", Files.readString(tmp.resolve("restored/com/acme/Messages_de.java")));
+    }
+
+    @Test
+    void storesSameKeyConcurrently() throws Exception {
+        OutputCache cache = new OutputCache(tmp.resolve("cache").toFile(), Long.MAX_VALUE);
+        List<File> files = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            files.add(write("keys" + i + ".pot", "keys " + i));
+        }
+        for (int round = 0; round < 20; round++) {
+            String key = "key" + round;
+            CountDownLatch start = new CountDownLatch(1);
+            ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+            try {
+                List<Future<?>> stores = new ArrayList<>();
+                for (File file : files) {
+                    stores.add(executor.submit(() -> {
+                        start.await();
+                        cache.storeFile(key, file);
+                        return null;
+                    }));
+                }
+                start.countDown();
+                for (Future<?> store : stores) {
+                    // no build fails because another one stored the entry first
+                    store.get();
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+            File target = tmp.resolve("restored.pot").toFile();
+            assertTrue(cache.restoreFile(key, target));
+            assertTrue(Files.readString(target.toPath()).startsWith("keys "));
+        }
+        try (Stream<Path> entries = Files.list(tmp.resolve("cache"))) {
+            assertEquals(List.of(), entries.filter(p -> p.getFileName().toString().startsWith(".")).toList());
+        }
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedEntries() throws IOException {
+        OutputCache cache = new OutputCache(tmp.resolve("cache").toFile(), 5);
+        for (String key : List.of("old", "used", "new")) {
+            cache.storeFile(key, write(key, "12345"));
+        }
+        Files.setLastModifiedTime(tmp.resolve("cache/old"), FileTime.fromMillis(1000));
+        Files.setLastModifiedTime(tmp.resolve("cache/used"), FileTime.fromMillis(2000));
+        Files.setLastModifiedTime(tmp.resolve("cache/new"), FileTime.fromMillis(3000));
+        // restoring marks an entry as used
+        assertTrue(cache.restoreFile("used", tmp.resolve("restored").toFile()));
+        cache.evict();
+        assertFalse(Files.exists(tmp.resolve("cache/old")));
+        assertFalse(Files.exists(tmp.resolve("cache/new")));
+        assertTrue(Files.exists(tmp.resolve("cache/used")));
+    }
+
+    private File write(String name, String contents) throws IOException {
+        Path file = tmp.resolve(name);
+        Files.writeString(file, contents, StandardCharsets.UTF_8);
+        return file.toFile();
+    }
+}
@@ -0,0 +1,100 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OutputTrackerTest {
+
+    private static final FileTime EPOCH = FileTime.fromMillis(0);
+
+    @TempDir
+    Path tmp;
+
+    private final List<File> modified = new ArrayList<>();
+    private final OutputTracker tracker = new OutputTracker(modified::add);
+
+    @Test
+    void skipsUnchangedOutput() throws IOException {
+        File target = target("Messages.properties", "a=b");
+        File temp = tracker.newTempFile(target);
+        Files.writeString(temp.toPath(), "a=b");
+        assertFalse(tracker.commit(temp, target));
+        assertFalse(temp.exists());
+        assertEquals(EPOCH, Files.getLastModifiedTime(target.toPath()));
+        assertEquals(List.of(), modified);
+        assertEquals(1, tracker.getWritten());
+        assertEquals(0, tracker.getModified());
+    }
+
+    @Test
+    void replacesChangedOutput() throws IOException {
+        // same size, different bytes
+        File target = target("Messages.properties", "a=b");
+        assertTrue(tracker.write(target, "a=c".getBytes(StandardCharsets.UTF_8)));
+        assertEquals("a=c", Files.readString(target.toPath()));
+        assertFalse(tracker.write(target, "a=c".getBytes(StandardCharsets.UTF_8)));
+        assertTrue(tracker.write(target, "a=cd".getBytes(StandardCharsets.UTF_8)));
+        assertEquals(List.of(target, target), modified);
+        assertEquals(3, tracker.getWritten());
+        assertEquals(2, tracker.getModified());
+        assertEquals(List.of(target), siblings(target));
+    }
+
+    @Test
+    void createsMissingOutput() throws IOException {
+        File target = tmp.resolve("com/acme/Messages.properties").toFile();
+        assertTrue(tracker.write(target, new byte[0]));
+        assertTrue(target.isFile());
+    }
+
+    @Test
+    void commitsScratchDirectory() throws IOException {
+        File unchanged = target("com/acme/Messages_de.java", "de");
+        File changed = target("com/acme/Messages_fr.java", "fr");
+        Path scratch = Files.createDirectories(tmp.resolve("scratch/com/acme"));
+        Files.writeString(scratch.resolve("Messages_de.java"), "de");
+        Files.writeString(scratch.resolve("Messages_fr.java"), "fr!");
+        Files.writeString(scratch.resolve("Messages_pl.java"), "pl");
+
+        File added = tmp.resolve("out/com/acme/Messages_pl.java").toFile();
+        List<File> committed = tracker.commitDirectory(tmp.resolve("scratch").toFile(), tmp.resolve("out").toFile());
+        assertEquals(3, committed.size());
+        assertTrue(committed.containsAll(List.of(unchanged, changed, added)));
+        assertEquals(EPOCH, Files.getLastModifiedTime(unchanged.toPath()));
+        assertEquals("fr!", Files.readString(changed.toPath()));
+        assertEquals(2, modified.size());
+        assertTrue(modified.containsAll(List.of(changed, added)));
+        assertEquals(List.of(unchanged, changed, added), siblings(unchanged));
+    }
+
+    private File target(String path, String contents) throws IOException {
+        Path file = tmp.resolve("out").resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, contents);
+        Files.setLastModifiedTime(file, EPOCH);
+        return file.toFile();
+    }
+
+    /**
+     * Returns the files of the directory of a target, which must hold no temp files
+     */
+    private static List<File> siblings(File target) throws IOException {
+        try (Stream<Path> files = Files.list(target.toPath().getParent())) {
+            return files.sorted().map(Path::toFile).toList();
+        }
+    }
+}
@@ -0,0 +1,240 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PoParserTest {
+
+    private static final File FILE = new File("de.po");
+
+    private static final String PO = """
+            # German translations
+            msgid ""
+            msgstr ""
+            "Project-Id-Version: test\\n"
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=3; plural=(n==1 ? 0 : n==2 ? 1 : 2);\\n"
+
+            # translator comment
+            #
+            #. extracted comment
+            #: Main.java:3 Main.java:7
+            #: Other.java:1
+            #, fuzzy, java-format
+            #| msgid "Old {0}"
+            msgid "New {0}"
+            msgstr "Neu {0}"
+
+            msgid "Escapes \\" \\\\ \\t \\r \\a \\b \\f \\v \\x41\\101\\n"
+            msgstr "Ersetzt"
+
+            msgid ""
+            "First line\\n"
+            "Second line\\n"
+            msgstr ""
+            "Erste Zeile\\n"
+            "Zweite Zeile\\n"
+
+            msgctxt "menu"
+            msgid "File"
+            msgstr "Datei"
+
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Eine Datei"
+            msgstr[1] "Zwei Dateien"
+            msgstr[2] "{0} Dateien"
+
+            msgid "Größe – ½ ✓"
+            msgstr "Größe – ½ ✓"
+
+            #~ msgid "Removed"
+            #~ msgstr "Entfernt"
+
+            #~| msgid "Older"
+            #~ msgctxt "menu"
+            #~ msgid "Old"
+            #~ msgstr ""
+            #~ "Alt"
+            """;
+
+    @Test
+    void parsesMessages() throws IOException {
+        Catalog catalog = parse(PO, StandardCharsets.UTF_8);
+        assertEquals(9, catalog.size());
+
+        Message header = catalog.getHeader();
+        assertTrue(header.isHeader());
+        assertEquals(List.of("German translations"), header.getTranslatorComments());
+        assertEquals("test", catalog.getHeaderField("Project-Id-Version"));
+        assertEquals(StandardCharsets.UTF_8, catalog.getCharset());
+        // entries start at their first comment
+        assertEquals(1, header.getLineNumber());
+
+        Message fuzzy = catalog.get(1);
+        assertEquals(List.of("translator comment", ""), fuzzy.getTranslatorComments());
+        assertEquals(List.of("extracted comment"), fuzzy.getExtractedComments());
+        assertEquals(List.of("Main.java:3", "Main.java:7", "Other.java:1"), fuzzy.getReferences());
+        assertEquals(List.of("fuzzy", "java-format"), fuzzy.getFlags());
+        assertEquals(List.of("msgid \"Old {0}\""), fuzzy.getPrevious());
+        assertEquals("New {0}", fuzzy.getMsgid());
+        assertTrue(fuzzy.isFuzzy());
+        assertFalse(fuzzy.isCompiled());
+        assertEquals(8, fuzzy.getLineNumber());
+    }
+
+    @Test
+    void parsesEscapes() throws IOException {
+        Message message = parse(PO, StandardCharsets.UTF_8).get(2);
+        assertEquals("Escapes \" \\ \t \r \u0007 \b \f \u000b AA\n", message.getMsgid());
+    }
+
+    @Test
+    void joinsMultilineStrings() throws IOException {
+        Message message = parse(PO, StandardCharsets.UTF_8).get(3);
+        assertEquals("First line\nSecond line\n", message.getMsgid());
+        assertEquals(List.of("Erste Zeile\nZweite Zeile\n"), message.getMsgstr());
+    }
+
+    @Test
+    void parsesContexts() throws IOException {
+        Catalog catalog = parse(PO, StandardCharsets.UTF_8);
+        Message message = catalog.get(4);
+        assertEquals("menu", message.getMsgctxt());
+        assertEquals("menu\u0004File", message.getKey());
+        assertEquals(4, catalog.indexOf("menu\u0004File"));
+        assertEquals(-1, catalog.indexOf("File"));
+    }
+
+    @Test
+    void parsesPlurals() throws IOException {
+        Catalog catalog = parse(PO, StandardCharsets.UTF_8);
+        Message message = catalog.get(5);
+        assertTrue(message.isPlural());
+        assertEquals("{0} files", message.getMsgidPlural());
+        assertEquals(List.of("Eine Datei", "Zwei Dateien", "{0} Dateien"), message.getMsgstr());
+        assertEquals(3, catalog.getPluralForms().getNplurals());
+        assertEquals(1, catalog.getPluralForms().evaluate(2));
+    }
+
+    @Test
+    void parsesNonAscii() throws IOException {
+        Message message = parse(PO, StandardCharsets.UTF_8).get(6);
+        assertEquals("Größe – ½ ✓", message.getMsgid());
+        assertEquals(List.of("Größe – ½ ✓"), message.getMsgstr());
+    }
+
+    @Test
+    void parsesObsoleteMessages() throws IOException {
+        Catalog catalog = parse(PO, StandardCharsets.UTF_8);
+        Message removed = catalog.get(7);
+        assertTrue(removed.isObsolete());
+        assertEquals("Removed", removed.getMsgid());
+        assertEquals(List.of("Entfernt"), removed.getMsgstr());
+
+        Message old = catalog.get(8);
+        assertTrue(old.isObsolete());
+        assertFalse(old.isCompiled());
+        assertEquals("menu", old.getMsgctxt());
+        assertEquals("Old", old.getMsgid());
+        assertEquals(List.of("msgid \"Older\""), old.getPrevious());
+        assertEquals(List.of("Alt"), old.getMsgstr());
+    }
+
+    @Test
+    void decodesDeclaredCharset() throws IOException {
+        String po = """
+                msgid ""
+                msgstr "Content-Type: text/plain; charset=ISO-8859-1\\n"
+
+                msgid "Größe"
+                msgstr "Größe"
+                """;
+        Catalog catalog = parse(po, StandardCharsets.ISO_8859_1);
+        assertEquals(StandardCharsets.ISO_8859_1, catalog.getCharset());
+        assertEquals("Größe", catalog.get(1).getMsgid());
+    }
+
+    @Test
+    void defaultsToUtf8() throws IOException {
+        String po = """
+                msgid ""
+                msgstr "Content-Type: text/plain; charset=CHARSET\\n"
+
+                msgid "Größe"
+                msgstr ""
+                """;
+        assertEquals("Größe", parse(po, StandardCharsets.UTF_8).get(1).getMsgid());
+        assertEquals(StandardCharsets.UTF_8, PoParser.detectCharset(new byte[0]));
+    }
+
+    @Test
+    void reportsSyntaxErrorsWithLineNumbers() {
+        assertSyntaxError("de.po:2: msgstr without preceding msgid", """
+                # comment
+                msgstr "x"
+                """);
+        assertSyntaxError("de.po:3: Unknown keyword msgfoo", """
+                msgid "a"
+                msgstr "b"
+                msgfoo "c"
+                """);
+        assertSyntaxError("de.po:4: Plural form msgstr[2] out of sequence", """
+                msgid "a"
+                msgid_plural "b"
+                msgstr[0] "c"
+                msgstr[2] "d"
+                """);
+        assertSyntaxError("de.po:2: Invalid string literal", """
+                msgid "a"
+                msgstr "b
+                """);
+        assertSyntaxError("de.po:1: String without keyword", """
+                "a"
+                """);
+    }
+
+    @Test
+    void roundTripsThroughPoWriter() throws IOException {
+        Catalog catalog = parse(PO, StandardCharsets.UTF_8);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new PoWriter(true).write(catalog, out);
+        Catalog reparsed = PoParser.parse(FILE, out.toByteArray());
+        assertEquals(catalog.size(), reparsed.size());
+        for (int i = 0; i < catalog.size(); i++) {
+            Message expected = catalog.get(i);
+            Message actual = reparsed.get(i);
+            assertEquals(expected.getKey(), actual.getKey());
+            assertEquals(expected.getMsgidPlural(), actual.getMsgidPlural());
+            assertEquals(expected.getMsgstr(), actual.getMsgstr());
+            assertEquals(expected.getFlags(), actual.getFlags());
+            assertEquals(expected.getReferences(), actual.getReferences());
+            assertEquals(expected.getPrevious(), actual.getPrevious());
+            assertEquals(expected.getTranslatorComments(), actual.getTranslatorComments());
+            assertEquals(expected.getExtractedComments(), actual.getExtractedComments());
+            assertEquals(expected.isObsolete(), actual.isObsolete());
+        }
+        assertNull(reparsed.get(1).getMsgctxt());
+    }
+
+    private static void assertSyntaxError(String expected, String po) {
+        IOException e = assertThrows(IOException.class, () -> parse(po, StandardCharsets.UTF_8));
+        assertEquals(expected, e.getMessage());
+    }
+
+    private static Catalog parse(String po, Charset charset) throws IOException {
+        return PoParser.parse(FILE, po.getBytes(charset));
+    }
+}
@@ -0,0 +1,246 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Builds the same project twice with reproducible set, at different times and from different
+ * directories, and compares the outputs byte by byte.
+ */
+class ReproducibleBuildTest {
+
+    private static final String SOURCE = """
+            package com.acme;
+
+            class Hello {
+                String hello() {
+                    return tr("Hello") + trc("menu", "File") + trn("One file", "{0} files", 2) + tr("Größe");
+                }
+            }
+            """;
+
+    private static final String PO = """
+            msgid ""
+            msgstr ""
+            "Project-Id-Version: test\\n"
+            "POT-Creation-Date: %1$s\\n"
+            "PO-Revision-Date: %1$s\\n"
+            "Language: %2$s\\n"
+            "MIME-Version: 1.0\\n"
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Content-Transfer-Encoding: 8bit\\n"
+            "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+            #: com/acme/Hello.java:5
+            msgid "Hello"
+            msgstr "Hallo %2$s"
+
+            #: com/acme/Hello.java:5
+            msgctxt "menu"
+            msgid "File"
+            msgstr "Datei %2$s"
+
+            #: com/acme/Hello.java:5
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Eine Datei %2$s"
+            msgstr[1] "{0} Dateien %2$s"
+
+            #: com/acme/Hello.java:5
+            msgid "Größe"
+            msgstr "Größe %2$s"
+            """;
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void sharedStringPoolWithLanguagePacks() throws Exception {
+        assertReproducible(mojo -> {
+            mojo.sharedStringPool = true;
+            mojo.languagePacks = true;
+        });
+    }
+
+    @Test
+    void compressed() throws Exception {
+        assertReproducible(mojo -> mojo.outputFormat = "compressed");
+    }
+
+    @Test
+    void json() throws Exception {
+        assertReproducible(mojo -> mojo.outputFormat = "json");
+    }
+
+    @Test
+    void gettextMergeDist() throws Exception {
+        assumeTrue(isAvailable("xgettext") && isAvailable("msgmerge") && isAvailable("msgfmt"), "gettext tools not installed");
+        Map<String, byte[]> first = build(tmp.resolve("first"), "2024-01-01 10:00+0100", true, mojo -> {
+        });
+        Map<String, byte[]> second = build(tmp.resolve("second"), "2025-06-30 23:59+0200", true, mojo -> {
+        });
+        assertSame(first, second);
+    }
+
+    private void assertReproducible(Consumer<DistMojo> configuration) throws Exception {
+        Map<String, byte[]> first = build(tmp.resolve("first"), "2024-01-01 10:00+0100", false, configuration);
+        Map<String, byte[]> second = build(tmp.resolve("second"), "2025-06-30 23:59+0200", false, configuration);
+        assertSame(first, second);
+    }
+
+    private static void assertSame(Map<String, byte[]> first, Map<String, byte[]> second) {
+        assertFalse(first.isEmpty());
+        assertEquals(first.keySet(), second.keySet());
+        for (Map.Entry<String, byte[]> entry : first.entrySet()) {
+            assertArrayEquals(entry.getValue(), second.get(entry.getKey()), entry.getKey());
+        }
+    }
+
+    /**
+     * Builds a project and returns the content of its outputs by relative path
+     */
+    private Map<String, byte[]> build(Path basedir, String date, boolean extract, Consumer<DistMojo> configuration) throws Exception {
+        Path poDirectory = basedir.resolve("src/main/po");
+        Path sourceDirectory = basedir.resolve("src/main/java");
+        Files.createDirectories(poDirectory);
+        Files.createDirectories(sourceDirectory.resolve("com/acme"));
+        Files.writeString(sourceDirectory.resolve("com/acme/Hello.java"), SOURCE, StandardCharsets.UTF_8);
+        for (String locale : List.of("de", "fr")) {
+            Path po = poDirectory.resolve(locale + ".po");
+            Files.writeString(po, PO.formatted(date, locale), StandardCharsets.UTF_8);
+            Files.setLastModifiedTime(po, FileTime.from(Instant.parse(date.substring(0, 10) + "T12:00:00Z")));
+        }
+
+        if (extract) {
+            GettextMojo gettext = configure(new GettextMojo(), basedir);
+            gettext.encoding = "UTF-8";
+            gettext.keywords = "-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k";
+            gettext.xgettextCmd = "xgettext";
+            gettext.sort = "by-file";
+            gettext.gitCmd = "git";
+            gettext.execute();
+
+            MergeMojo merge = configure(new MergeMojo(), basedir);
+            merge.msgmergeCmd = "msgmerge";
+            merge.backup = "none";
+            merge.sort = "by-file";
+            merge.execute();
+        }
+
+        DistMojo dist = configure(new DistMojo(), basedir);
+        dist.msgcatCmd = "msgcat";
+        dist.msgfmtCmd = "msgfmt";
+        dist.targetBundle = "com.acme.Messages";
+        dist.outputFormat = "class";
+        dist.javaVersion = "2";
+        dist.sourceLocale = "en";
+        dist.encoding = "utf-8";
+        dist.release = "8";
+        dist.compressionBlockSize = 16384;
+        dist.compressionCacheBlocks = 8;
+        dist.gzipJson = true;
+        dist.keywords = "-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k";
+        dist.languagePackDirectory = basedir.resolve("target/gettext-language-packs").toFile();
+        dist.languagePackClassifier = "lang-";
+        dist.project = new MavenProject();
+        dist.project.getBuild().setDirectory(basedir.resolve("target").toString());
+        dist.project.getBuild().setFinalName("app");
+        dist.projectHelper = new ProjectHelper();
+        configuration.accept(dist);
+        dist.execute();
+
+        Map<String, byte[]> outputs = new TreeMap<>();
+        collect(basedir, basedir.resolve("target/classes"), outputs);
+        collect(basedir, basedir.resolve("target/gettext-language-packs"), outputs);
+        try (Stream<Path> jars = Files.list(basedir.resolve("target"))) {
+            for (Path jar : jars.filter(file -> file.toString().endsWith(".jar")).toList()) {
+                outputs.put(basedir.relativize(jar).toString(), Files.readAllBytes(jar));
+            }
+        }
+        if (extract) {
+            collect(basedir, poDirectory, outputs);
+        }
+        return outputs;
+    }
+
+    private static <T extends AbstractGettextMojo> T configure(T mojo, Path basedir) {
+        mojo.outputDirectory = basedir.resolve("target/classes").toFile();
+        mojo.sourceDirectory = basedir.resolve("src/main/java").toFile();
+        mojo.poDirectory = basedir.resolve("src/main/po").toFile();
+        mojo.keysFile = "keys.pot";
+        mojo.reproducible = true;
+        mojo.buildCacheDirectory = basedir.resolve("target/gettext-cache").toFile();
+        mojo.buildContext = new DefaultBuildContext();
+        return mojo;
+    }
+
+    private static void collect(Path basedir, Path directory, Map<String, byte[]> outputs) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> walk = Files.walk(directory)) {
+            for (Path file : walk.filter(Files::isRegularFile).toList()) {
+                outputs.put(basedir.relativize(file).toString(), Files.readAllBytes(file));
+            }
+        }
+    }
+
+    private static boolean isAvailable(String command) {
+        try {
+            Process process = new ProcessBuilder(command, "--version").redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            return process.waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Ignores the attached language packs, the test compares the jars in the build directory
+     */
+    private static class ProjectHelper implements MavenProjectHelper {
+        @Override
+        public void attachArtifact(MavenProject project, File artifactFile, String artifactClassifier) {
+        }
+
+        @Override
+        public void attachArtifact(MavenProject project, String artifactType, File artifactFile) {
+        }
+
+        @Override
+        public void attachArtifact(MavenProject project, String artifactType, String artifactClassifier, File artifactFile) {
+        }
+
+        @Override
+        public void addResource(MavenProject project, String resourceDirectory, List<String> includes, List<String> excludes) {
+        }
+
+        @Override
+        public void addTestResource(MavenProject project, String resourceDirectory, List<String> includes, List<String> excludes) {
+        }
+    }
+}
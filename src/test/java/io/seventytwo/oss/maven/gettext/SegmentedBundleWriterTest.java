@@ -0,0 +1,73 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.ResourceBundle;
+
+import static io.seventytwo.oss.maven.gettext.BundleFixture.BUNDLE;
+import static io.seventytwo.oss.maven.gettext.BundleFixture.LOCALE;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Compiles a bundle split into segments by package, one of them too large for a single segment, and
+ * checks the lookups of equal hash codes and across the segment boundaries.
+ */
+class SegmentedBundleWriterTest {
+
+    @TempDir
+    static Path tmp;
+
+    private static Catalog catalog;
+    private static int segments;
+    private static ClassLoader loader;
+
+    @BeforeAll
+    static void compile() throws Exception {
+        File po = BundleFixture.writePo(tmp, 5000);
+        catalog = PoParser.parse(po);
+        SegmentedBundleWriter writer = new SegmentedBundleWriter(BUNDLE, false, StandardCharsets.UTF_8, new MessagePackages(catalog, 3));
+        SegmentedBundleWriter.Result result = writer.writeBundle(LOCALE, catalog, tmp.resolve("sources").toFile());
+        segments = result.segments();
+        loader = BundleFixture.compile(List.of(result.file()), tmp.resolve("classes").toFile());
+    }
+
+    @Test
+    void splitsByPackage() {
+        // com.acme.admin, com.acme.app, two of com.acme.generated, and the header with messages used in several packages
+        assertEquals(5, segments);
+        assertEquals("com.acme.generated", new MessagePackages(catalog, 3).get("Message 4999"));
+        assertEquals("", new MessagePackages(catalog, 3).get("Größe – ½ ✓ 😀"));
+    }
+
+    @Test
+    void looksUpEqualHashCodesInSeveralSegments() throws Exception {
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        assertEquals("AaAa".hashCode(), "BBBB".hashCode());
+        assertEquals("Kolizja aplikacji", BundleFixture.lookup(bundle, "AaAa"));
+        assertEquals("Kolizja administracji", BundleFixture.lookup(bundle, "BBBB"));
+        assertNull(BundleFixture.lookup(bundle, "AaBB"));
+    }
+
+    @Test
+    void looksUpAcrossSegmentBoundary() throws Exception {
+        ResourceBundle bundle = BundleFixture.newBundle(loader, BUNDLE + "_" + LOCALE);
+        Map<String, Object> translations = BundleFixture.translations(catalog);
+        // the generated messages 4095 and 4096 are the last of the first and the first of the second segment
+        for (String key : List.of("Message 0000", "Message 4095", "Message 4096", "Message 4999")) {
+            if (translations.get(key) instanceof String[] forms) {
+                assertArrayEquals(forms, (String[]) BundleFixture.lookup(bundle, key), key);
+            } else {
+                assertEquals(translations.get(key), BundleFixture.lookup(bundle, key), key);
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ToolOutputTest {
+
+    @TempDir
+    Path tmp;
+
+    @Test
+    void categorizesLinesWithoutLocationsAndQuotes() {
+        String category = "warning: msgid \"...\" is used without plural and with plural.";
+        assertEquals(category, ToolOutput.categorize("src/main/java/com/acme/A.java:12: warning: msgid \"One file\" is used without plural and with plural."));
+        assertEquals(category, ToolOutput.categorize("  C:\\src\\B.java:7:3: warning: msgid \"Files\" is used without plural and with plural.  "));
+        assertEquals("de.po: N fatal errors found", ToolOutput.categorize("msgfmt.exe: de.po: 12 fatal errors found"));
+        assertEquals("warning: Charset \"...\" is not a portable encoding name.",
+                ToolOutput.categorize("msgmerge: warning: Charset \"CHARSET\" is not a portable encoding name."));
+        for (String quoted : List.of("'x'", "`x'", "«x»", "“x”", "‘x’")) {
+            assertEquals("keyword \"...\" unknown", ToolOutput.categorize("xgettext: keyword " + quoted + " unknown"), quoted);
+        }
+    }
+
+    @Test
+    void summarizesRepeatedCategories() throws Exception {
+        ToolOutput output = new ToolOutput(null, 10);
+        ToolOutput.Job de = output.newJob("de.po");
+        de.err().consumeLine("de.po:3: warning: message \"a\" is fuzzy");
+        de.out().consumeLine(". . . done.");
+        de.finish(0);
+        ToolOutput.Job fr = output.newJob("fr.po");
+        fr.err().consumeLine("fr.po:9: warning: message \"b\" is fuzzy");
+        fr.err().consumeLine("fr.po:10: warning: message \"c\" is fuzzy");
+        fr.finish(0);
+        RecordingLog log = new RecordingLog();
+        output.report(log);
+        assertEquals(List.of("info: . . . done.", "warn: warning: message \"...\" is fuzzy (3 times)"), log.lines);
+    }
+
+    @Test
+    void logsFailuresAndWritesLogFile() throws Exception {
+        File logFile = tmp.resolve("logs/msgfmt.log").toFile();
+        ToolOutput output = new ToolOutput(logFile, 2);
+        ToolOutput.Job de = output.newJob("de.po");
+        ToolOutput.Job fr = output.newJob("fr.po");
+        fr.err().consumeLine("fr.po:1: first error");
+        fr.err().consumeLine("fr.po:2: second error");
+        fr.err().consumeLine("fr.po:3: third error");
+        fr.finish(1);
+        de.out().consumeLine("done");
+        de.finish(0);
+        RecordingLog log = new RecordingLog();
+        output.report(log);
+        assertEquals(List.of("error: fr.po failed with exit code 1", "error: fr.po:1: first error", "error: fr.po:2: second error",
+                "info: done", "warn: first error",
+                "info: 4 lines of tool output in 4 categories, see " + logFile), log.lines);
+        assertEquals("""
+                ==> de.po (exit code 0) <==
+                done
+                ==> fr.po (exit code 1) <==
+                fr.po:1: first error
+                fr.po:2: second error
+                fr.po:3: third error
+                """, Files.readString(logFile.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private static final class RecordingLog extends SystemStreamLog {
+
+        private final List<String> lines = new ArrayList<>();
+
+        @Override
+        public void info(CharSequence content) {
+            lines.add("info: " + content);
+        }
+
+        @Override
+        public void warn(CharSequence content) {
+            lines.add("warn: " + content);
+        }
+
+        @Override
+        public void error(CharSequence content) {
+            lines.add("error: " + content);
+        }
+    }
+}
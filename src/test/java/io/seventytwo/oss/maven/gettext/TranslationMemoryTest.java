@@ -0,0 +1,245 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TranslationMemoryTest {
+
+    private static final String LONG = "This message is longer than the page width of the gettext tools, so msgmerge wraps it";
+
+    private static final String MEMORY = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+            msgid "Open file"
+            msgstr "Datei öffnen"
+
+            msgctxt "menu"
+            msgid "Save"
+            msgstr "Speichern"
+
+            msgid "One file"
+            msgid_plural "{0} files"
+            msgstr[0] "Eine Datei"
+            msgstr[1] "{0} Dateien"
+
+            msgid "%s"
+            msgstr "Diese Meldung ist länger als die Seitenbreite der gettext Werkzeuge, daher bricht msgmerge sie um"
+            """.formatted(LONG);
+
+    @TempDir
+    Path tmp;
+
+    private TranslationMemory.Index index;
+
+    @BeforeEach
+    void createMemory() throws Exception {
+        File po = tmp.resolve("project/de.po").toFile();
+        Files.createDirectories(po.getParentFile().toPath());
+        Files.writeString(po.toPath(), MEMORY, StandardCharsets.UTF_8);
+        TranslationMemory memory = new TranslationMemory(tmp.resolve("tm").toFile(), "de");
+        assertEquals(1, memory.update(List.of(po)));
+        assertEquals(0, memory.update(List.of(po)));
+        index = memory.open();
+        assertNotNull(index);
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    void findsEqualKeys() {
+        TranslationMemory.Match match = index.find(message(null, "Open file", null), 0.8);
+        assertEquals(new TranslationMemory.Match("Open file", List.of("Datei öffnen"), 1), match);
+    }
+
+    @Test
+    void findsMsgidsOfOtherContexts() {
+        TranslationMemory.Match match = index.find(message("toolbar", "Save", null), 0.8);
+        assertNotNull(match);
+        assertEquals(List.of("Speichern"), match.msgstr());
+    }
+
+    @Test
+    void findsSimilarMsgids() {
+        TranslationMemory.Match match = index.find(message(null, "Open files", null), 0.8);
+        assertNotNull(match);
+        assertEquals("Open file", match.msgid());
+        assertTrue(match.similarity() >= 0.8 && match.similarity() < 1, String.valueOf(match.similarity()));
+        assertNull(index.find(message(null, "Open files", null), 1));
+        assertNull(index.find(message(null, "Close window", null), 0.8));
+    }
+
+    @Test
+    void findsSimilarMsgidsWithCollidingTrigrams() throws Exception {
+        // a msgid whose trigrams after the first all fall into buckets of earlier ones
+        int buckets = TranslationMemory.bucketCount(1);
+        StringBuilder msgid = new StringBuilder("一丁");
+        Set<Long> grams = new HashSet<>();
+        Set<Integer> used = new HashSet<>();
+        long first = trigram(" " + msgid);
+        grams.add(first);
+        used.add(bucket(first, buckets));
+        while (msgid.length() < 40) {
+            for (char c = '一'; c <= '鿿'; c++) {
+                long gram = trigram(msgid.substring(msgid.length() - 2) + c);
+                if (!grams.contains(gram) && used.contains(bucket(gram, buckets))) {
+                    grams.add(gram);
+                    msgid.append(c);
+                    break;
+                }
+            }
+        }
+        assertTrue(TranslationMemory.buckets(TranslationMemory.trigrams(msgid.toString()), buckets).length <= 2);
+
+        File po = tmp.resolve("collisions/de.po").toFile();
+        Files.createDirectories(po.getParentFile().toPath());
+        Files.writeString(po.toPath(), """
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+
+                msgid "%s"
+                msgstr "Kollision"
+                """.formatted(msgid), StandardCharsets.UTF_8);
+        TranslationMemory memory = new TranslationMemory(tmp.resolve("collisions/tm").toFile(), "de");
+        memory.update(List.of(po));
+        TranslationMemory.Match match = memory.open().find(message(null, msgid + "x", null), 0.9);
+        assertNotNull(match);
+        assertEquals(List.of("Kollision"), match.msgstr());
+    }
+
+    @Test
+    void matchesPluralsOnlyWithPlurals() {
+        assertNull(index.find(message(null, "One file", null), 0.8));
+        TranslationMemory.Match match = index.find(message(null, "One file", "{0} files"), 0.8);
+        assertNotNull(match);
+        assertEquals(List.of("Eine Datei", "{0} Dateien"), match.msgstr());
+        assertNull(index.find(message(null, "One file", "{0} files", "", "", ""), 0.8));
+    }
+
+    @Test
+    void prefillRewritesOnlyFilledEntries() throws Exception {
+        // the translated entry is not wrapped like msgmerge would wrap it and must be kept as it is
+        String merged = """
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+                "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+                #: Main.java:3
+                msgid "Open files"
+                msgstr ""
+
+                #: Main.java:4
+                msgid "Translated message whose translation is not wrapped at the page width of 79"
+                msgstr "Übersetzte Meldung, deren Übersetzung nicht an der Seitenbreite von 79 umgebrochen ist"
+
+                #: Main.java:5
+                msgid ""
+                "%s"
+                msgstr ""
+
+                #: Main.java:6
+                msgid "Close window"
+                msgstr ""
+                """.formatted(LONG.replace("so ", "so \"\n\""));
+        String expected = merged.replace("""
+                #: Main.java:3
+                msgid "Open files"
+                msgstr ""
+                """, """
+                #: Main.java:3
+                #, fuzzy
+                #| msgid "Open file"
+                msgid "Open files"
+                msgstr "Datei öffnen"
+                """).replace("""
+                msgid ""
+                "%s"
+                msgstr ""
+                """.formatted(LONG.replace("so ", "so \"\n\"")), """
+                #, fuzzy
+                msgid "%s"
+                msgstr "Diese Meldung ist länger als die Seitenbreite der gettext Werkzeuge, daher bricht msgmerge sie um"
+                """.formatted(LONG));
+
+        File file = tmp.resolve("de.po").toFile();
+        Files.writeString(file.toPath(), merged, StandardCharsets.UTF_8);
+        MergeMojo mojo = new MergeMojo();
+        mojo.translationMemorySimilarity = 80;
+        mojo.extraArgs = new String[]{"--no-wrap"};
+        assertEquals(2, mojo.prefill(file, index));
+        assertEquals(expected, Files.readString(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void prefillWrapsAtTheWidthOfMsgmerge() throws Exception {
+        String merged = """
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+
+                msgid "%s"
+                msgstr ""
+                """.formatted(LONG).stripTrailing();
+        File file = tmp.resolve("de.po").toFile();
+        Files.writeString(file.toPath(), merged, StandardCharsets.UTF_8);
+        MergeMojo mojo = new MergeMojo();
+        mojo.translationMemorySimilarity = 80;
+        mojo.extraArgs = new String[]{"--width", "60"};
+        assertEquals(1, mojo.prefill(file, index));
+        // the file had no trailing newline
+        assertEquals("""
+                msgid ""
+                msgstr ""
+                "Content-Type: text/plain; charset=UTF-8\\n"
+
+                #, fuzzy
+                msgid ""
+                "This message is longer than the page width of the gettext "
+                "tools, so msgmerge wraps it"
+                msgstr ""
+                "Diese Meldung ist länger als die Seitenbreite der gettext "
+                "Werkzeuge, daher bricht msgmerge sie um"
+                """.stripTrailing(), Files.readString(file.toPath(), StandardCharsets.UTF_8));
+    }
+
+    private static long trigram(String s) {
+        return (long) s.charAt(0) << 32 | (long) s.charAt(1) << 16 | s.charAt(2);
+    }
+
+    private static int bucket(long trigram, int buckets) {
+        return TranslationMemory.buckets(new long[]{trigram}, buckets)[0];
+    }
+
+    private static Message message(String msgctxt, String msgid, String msgidPlural, String... msgstr) {
+        Message message = new Message();
+        message.setMsgctxt(msgctxt);
+        message.setMsgid(msgid);
+        message.setMsgidPlural(msgidPlural);
+        if (msgstr.length > 0) {
+            message.getMsgstr().addAll(List.of(msgstr));
+        } else {
+            message.getMsgstr().add("");
+            if (msgidPlural != null) {
+                message.getMsgstr().add("");
+            }
+        }
+        return message;
+    }
+}
@@ -0,0 +1,104 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class Utf8StringPoolTest {
+
+    @Test
+    void poolsEqualStringsOnce() {
+        Utf8StringPool pool = new Utf8StringPool();
+        int id = pool.add("Hello");
+        assertEquals(id, pool.add(new String("Hello")));
+        assertEquals("Hello", pool.get(id));
+        assertEquals(1, pool.size());
+        assertEquals(6, pool.byteSize());
+    }
+
+    @Test
+    void poolsNullAndEmptyStrings() {
+        Utf8StringPool pool = new Utf8StringPool();
+        assertEquals(Utf8StringPool.NULL, pool.add(null));
+        assertNull(pool.get(Utf8StringPool.NULL));
+        int empty = pool.add("");
+        assertEquals("", pool.get(empty));
+        assertEquals(empty, pool.add(""));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    void distinguishesStringsWithEqualHashCodes() {
+        // "Aa" and "BB" have the same hash code, so have all their concatenations
+        List<String> strings = List.of("AaAa", "AaBB", "BBAa", "BBBB", "AaAaAa", "BBBBBB");
+        assertEquals(1, strings.stream().limit(4).map(String::hashCode).distinct().count());
+        Utf8StringPool pool = new Utf8StringPool();
+        List<Integer> ids = new ArrayList<>();
+        for (String s : strings) {
+            ids.add(pool.add(s));
+        }
+        assertEquals(strings.size(), new HashSet<>(ids).size());
+        for (int i = 0; i < strings.size(); i++) {
+            assertEquals(ids.get(i), pool.add(strings.get(i)));
+            assertEquals(strings.get(i), pool.get(ids.get(i)));
+        }
+        assertEquals(strings.size(), pool.size());
+    }
+
+    @Test
+    void growsIndexAndStorage() {
+        Utf8StringPool pool = new Utf8StringPool();
+        List<String> strings = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            strings.add("message " + i + (i % 7 == 0 ? " – Größe" : ""));
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (String s : strings) {
+            ids.add(pool.add(s));
+        }
+        assertEquals(strings.size(), pool.size());
+        for (int i = 0; i < strings.size(); i++) {
+            assertEquals(ids.get(i), pool.add(strings.get(i)));
+            assertEquals(strings.get(i), pool.get(ids.get(i)));
+        }
+        assertEquals(strings.size(), pool.size());
+    }
+
+    @Test
+    void storesLongStrings() {
+        Utf8StringPool pool = new Utf8StringPool();
+        // length prefixes of one, two and three bytes
+        Set<Integer> ids = new HashSet<>();
+        for (int length : new int[]{127, 128, 16383, 16384, 100000}) {
+            String s = "ä".repeat(length / 2) + "x".repeat(length % 2);
+            assertEquals(length, s.getBytes(StandardCharsets.UTF_8).length);
+            int id = pool.add(s);
+            ids.add(id);
+            assertEquals(s, pool.get(id));
+            assertEquals(id, pool.add(s));
+        }
+        assertEquals(5, ids.size());
+    }
+
+    @Test
+    void rebuildsIndexAfterTrimming() {
+        Utf8StringPool pool = new Utf8StringPool();
+        int hello = pool.add("Hello");
+        int world = pool.add("Wörld");
+        pool.trimToSize();
+        assertEquals(pool.byteSize(), 6 + 7);
+        assertEquals("Wörld", pool.get(world));
+        assertEquals(hello, pool.add("Hello"));
+        assertEquals(world, pool.add("Wörld"));
+        int other = pool.add("Other");
+        assertEquals("Other", pool.get(other));
+        assertEquals(3, pool.size());
+    }
+}
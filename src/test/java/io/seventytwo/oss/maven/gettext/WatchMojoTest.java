@@ -0,0 +1,161 @@
+package io.seventytwo.oss.maven.gettext;
+
+import org.apache.maven.project.MavenProject;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.sonatype.plexus.build.incremental.DefaultBuildContext;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Runs the watch goal with includes selecting the sources.
+ */
+class WatchMojoTest {
+
+    private static final String[] INCLUDES = {"com/acme/**/*.java"};
+    private static final String[] EXCLUDES = {"**/Generated.java"};
+
+    private static final String PO = """
+            msgid ""
+            msgstr ""
+            "Content-Type: text/plain; charset=UTF-8\\n"
+            "Plural-Forms: nplurals=2; plural=(n != 1);\\n"
+
+            msgid "Hello"
+            msgstr "Hallo"
+            """;
+
+    @TempDir
+    Path tmp;
+
+    private WatchMojo watch;
+
+    @BeforeEach
+    void configure() throws Exception {
+        Files.createDirectories(tmp.resolve("src/main/java/com/acme"));
+        Files.createDirectories(tmp.resolve("src/main/po"));
+        Files.writeString(tmp.resolve("src/main/java/com/acme/Hello.java"), source("Hello"), StandardCharsets.UTF_8);
+        Files.writeString(tmp.resolve("src/main/po/de.po"), PO, StandardCharsets.UTF_8);
+
+        watch = new WatchMojo();
+        watch.outputDirectory = tmp.resolve("target/classes").toFile();
+        watch.sourceDirectory = tmp.resolve("src/main/java").toFile();
+        watch.poDirectory = tmp.resolve("src/main/po").toFile();
+        watch.keysFile = "keys.pot";
+        watch.includes = INCLUDES;
+        watch.excludes = EXCLUDES;
+        watch.buildCacheDirectory = tmp.resolve("target/gettext-cache").toFile();
+        watch.buildContext = new DefaultBuildContext();
+        watch.xgettextCmd = "xgettext";
+        watch.xgettextArgs = new String[]{"--from-code=UTF-8"};
+        watch.msgmergeCmd = "msgmerge";
+        watch.msgmergeArgs = new String[]{"--no-wrap"};
+        watch.backup = "none";
+        watch.sort = "by-file";
+        watch.translationMemoryDirectory = tmp.resolve("tm").toFile();
+        watch.translationMemorySimilarity = 80;
+        watch.debounce = 50;
+        watch.msgcatCmd = "msgcat";
+        watch.msgfmtCmd = "msgfmt";
+        watch.targetBundle = "com.acme.Messages";
+        watch.outputFormat = "class";
+        watch.javaVersion = "2";
+        watch.sourceLocale = "en";
+        watch.encoding = "utf-8";
+        watch.release = "8";
+        watch.compressionBlockSize = 16384;
+        watch.compressionCacheBlocks = 8;
+        watch.keywords = "-ktrc:1c,2 -ktrnc:1c,2,3 -ktr -kmarktr -ktrn:1,2 -k";
+        watch.project = new MavenProject();
+        watch.project.getBuild().setDirectory(tmp.resolve("target").toString());
+    }
+
+    @Test
+    void mergesPoFilesDespiteSourceIncludes() throws Exception {
+        MergeMojo merge = watch.createMergeMojo();
+        assertArrayEquals(new String[]{"de.po"}, merge.getPoFiles());
+        assertArrayEquals(new String[]{"--no-wrap"}, merge.extraArgs);
+        assertEquals("msgmerge", merge.msgmergeCmd);
+        assertEquals("none", merge.backup);
+        assertEquals(80, merge.translationMemorySimilarity);
+    }
+
+    @Test
+    void extractsIncludedSources() {
+        GettextMojo gettext = watch.createGettextMojo();
+        assertArrayEquals(INCLUDES, gettext.includes);
+        assertArrayEquals(EXCLUDES, gettext.excludes);
+        assertArrayEquals(new String[]{"--from-code=UTF-8"}, gettext.extraArgs);
+        assertEquals("xgettext", gettext.xgettextCmd);
+        assertEquals("git", gettext.gitCmd);
+        assertNull(gettext.changedSince);
+    }
+
+    @Test
+    void mergesChangedSources() throws Exception {
+        assumeTrue(BundleFixture.isAvailable("xgettext") && BundleFixture.isAvailable("msgmerge")
+                && BundleFixture.isAvailable("msgfmt"), "gettext tools not installed");
+        Path po = tmp.resolve("src/main/po/de.po");
+        Path bundle = tmp.resolve("target/classes/com/acme/Messages_de.class");
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            try {
+                watch.execute();
+            } catch (Exception e) {
+                failure.set(e);
+            }
+        });
+        thread.start();
+        try {
+            await(() -> Files.exists(bundle) && read(po).contains("#: com/acme/Hello.java"));
+            Files.writeString(tmp.resolve("src/main/java/com/acme/Hello.java"), source("World"), StandardCharsets.UTF_8);
+            await(() -> read(po).contains("msgid \"World\""));
+        } finally {
+            thread.interrupt();
+            thread.join(TimeUnit.SECONDS.toMillis(30));
+        }
+        assertFalse(thread.isAlive());
+        assertNull(failure.get());
+    }
+
+    private static String source(String msgid) {
+        return """
+                package com.acme;
+
+                class Hello {
+                    String hello() {
+                        return tr("%s");
+                    }
+                }
+                """.formatted(msgid);
+    }
+
+    private static String read(Path file) {
+        try {
+            return Files.readString(file, StandardCharsets.UTF_8);
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(60);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(100);
+        }
+    }
+}